@@ -0,0 +1,57 @@
+package sample.vsct.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Flux d'un nombre quelconque de colis (jusqu'à plusieurs milliards), sans les
+ * stocker : un bloc de colis générés est relu en boucle.
+ *
+ * @author Gaetan
+ *
+ */
+final class CanalColisSynthetique implements ReadableByteChannel {
+
+	private final byte[] bloc;
+
+	private final long nbColis;
+
+	private long position;
+
+	/**
+	 * @param bloc
+	 *            colis relus en boucle
+	 * @param nbColis
+	 *            nombre total de colis du flux
+	 */
+	CanalColisSynthetique(byte[] bloc, long nbColis) {
+		this.bloc = bloc;
+		this.nbColis = nbColis;
+	}
+
+	@Override
+	public int read(ByteBuffer destination) {
+		if (position == nbColis) {
+			return -1;
+		}
+		int nbLus = 0;
+		while (destination.hasRemaining() && position < nbColis) {
+			int debut = (int) (position % bloc.length);
+			int longueur = (int) Math.min(Math.min(destination.remaining(), bloc.length - debut), nbColis - position);
+			destination.put(bloc, debut, longueur);
+			position += longueur;
+			nbLus += longueur;
+		}
+		return nbLus;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return true;
+	}
+
+	@Override
+	public void close() {
+	}
+
+}
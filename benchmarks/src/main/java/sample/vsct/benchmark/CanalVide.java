@@ -0,0 +1,41 @@
+package sample.vsct.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Canal de sortie qui ignore les octets écrits, pour mesurer l'écriture des
+ * cartons sans le coût d'un vrai support
+ *
+ * @author Gaetan
+ *
+ */
+final class CanalVide implements WritableByteChannel {
+
+	private long nbOctets;
+
+	@Override
+	public int write(ByteBuffer source) {
+		int nbEcrits = source.remaining();
+		source.position(source.limit());
+		nbOctets += nbEcrits;
+		return nbEcrits;
+	}
+
+	/**
+	 * @return le nombre d'octets écrits depuis la création
+	 */
+	long getNbOctets() {
+		return nbOctets;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return true;
+	}
+
+	@Override
+	public void close() {
+	}
+
+}
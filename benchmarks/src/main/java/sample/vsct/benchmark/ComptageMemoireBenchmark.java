@@ -0,0 +1,65 @@
+package sample.vsct.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sample.vsct.lecture.CompteurColis;
+import sample.vsct.service.ConfigurationEmballage;
+
+/**
+ * Vérification et comptage de colis déjà en mémoire, sous forme d'octets ASCII
+ * (huit colis vérifiés à la fois) et sous forme de chaine (caractère par
+ * caractère). Les entrées restent sous le seuil du comptage parallèle, pour
+ * mesurer le débit d'un seul cœur.
+ *
+ * @author Gaetan
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ComptageMemoireBenchmark {
+
+	@Param({ "1000", "1000000" })
+	int nbColis;
+
+	@Param
+	DistributionColis distribution;
+
+	private byte[] octets;
+
+	private String chaine;
+
+	@Setup
+	public void preparer() {
+		Traces.reduire();
+		octets = distribution.generer(nbColis, 42);
+		chaine = new String(octets, StandardCharsets.US_ASCII);
+	}
+
+	@Benchmark
+	public long[] compterOctets() {
+		return CompteurColis.compter(octets, ConfigurationEmballage.DEFAUT);
+	}
+
+	@Benchmark
+	public long[] compterChaine() {
+		return CompteurColis.compter(chaine, ConfigurationEmballage.DEFAUT);
+	}
+
+}
@@ -0,0 +1,67 @@
+package sample.vsct.benchmark;
+
+import java.util.Random;
+
+/**
+ * Répartition des tailles des colis générés pour les bancs d'essai
+ *
+ * @author Gaetan
+ *
+ */
+public enum DistributionColis {
+
+	/** Tailles de 1 à 9 équiprobables */
+	UNIFORME {
+		@Override
+		byte[] generer(int nbColis, long graine) {
+			Random aleatoire = new Random(graine);
+			byte[] colis = new byte[nbColis];
+			for (int i = 0; i < nbColis; i++) {
+				colis[i] = (byte) ('1' + aleatoire.nextInt(9));
+			}
+			return colis;
+		}
+	},
+
+	/** Surtout des petits colis : 70 % de 1 à 3, 20 % de 4 à 6, 10 % de 7 à 9 */
+	ASYMETRIQUE {
+		@Override
+		byte[] generer(int nbColis, long graine) {
+			Random aleatoire = new Random(graine);
+			byte[] colis = new byte[nbColis];
+			for (int i = 0; i < nbColis; i++) {
+				int tirage = aleatoire.nextInt(10);
+				int tranche = tirage < 7 ? 0 : tirage < 9 ? 3 : 6;
+				colis[i] = (byte) ('1' + tranche + aleatoire.nextInt(3));
+			}
+			return colis;
+		}
+	},
+
+	/** Répétition des entrées pièges de l'algorithme glouton */
+	PIEGES {
+		private final byte[] pieges = "2222288888811272723444325416384168952577".getBytes();
+
+		@Override
+		byte[] generer(int nbColis, long graine) {
+			byte[] colis = new byte[nbColis];
+			for (int i = 0; i < nbColis; i++) {
+				colis[i] = pieges[i % pieges.length];
+			}
+			return colis;
+		}
+	};
+
+	/**
+	 * Génère des colis (en ASCII), toujours les mêmes pour une graine donnée
+	 *
+	 * @param nbColis
+	 *            nombre de colis
+	 * @param graine
+	 *            graine du générateur aléatoire, ignorée par les distributions
+	 *            déterministes
+	 * @return les tailles des colis, un chiffre par colis
+	 */
+	abstract byte[] generer(int nbColis, long graine);
+
+}
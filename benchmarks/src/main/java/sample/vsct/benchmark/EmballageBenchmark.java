@@ -0,0 +1,65 @@
+package sample.vsct.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sample.vsct.service.EmballageService;
+import sample.vsct.service.EmballageServiceImpl;
+
+/**
+ * Débit et latence de {@link EmballageService#emballerCartons(String, boolean)}
+ * sur une chaine en mémoire, pour différents nombres de colis, répartitions de
+ * tailles et modes d'affichage.
+ *
+ * Le taux d'allocation s'obtient avec le profileur GC de JMH :
+ * java -jar benchmarks/target/benchmarks.jar EmballageBenchmark -prof gc
+ *
+ * @author Gaetan
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmballageBenchmark {
+
+	@Param({ "10", "1000", "100000", "10000000" })
+	int nbColis;
+
+	@Param({ "UNIFORME", "ASYMETRIQUE", "PIEGES" })
+	DistributionColis distribution;
+
+	@Param({ "true", "false" })
+	boolean affichageOptimisee;
+
+	private EmballageService emballageService;
+
+	private String entreeColis;
+
+	@Setup
+	public void preparer() {
+		Traces.reduire();
+		emballageService = new EmballageServiceImpl();
+		entreeColis = new String(distribution.generer(nbColis, 42), StandardCharsets.US_ASCII);
+	}
+
+	@Benchmark
+	public String emballerCartons() {
+		return emballageService.emballerCartons(entreeColis, affichageOptimisee);
+	}
+
+}
@@ -0,0 +1,67 @@
+package sample.vsct.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sample.vsct.service.EmballageService;
+import sample.vsct.service.EmballageServiceImpl;
+
+/**
+ * Débit de l'emballage d'un flux vers un canal, jusqu'à un milliard de colis :
+ * l'entrée est générée au fil de la lecture et la sortie ignorée, aucune des
+ * deux n'est stockée en mémoire.
+ *
+ * @author Gaetan
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class EmballageFluxBenchmark {
+
+	/** Taille du bloc de colis relu en boucle par le flux */
+	private static final int TAILLE_BLOC = 1 << 16;
+
+	@Param({ "1000000", "100000000", "1000000000" })
+	long nbColis;
+
+	@Param({ "UNIFORME", "ASYMETRIQUE", "PIEGES" })
+	DistributionColis distribution;
+
+	@Param({ "true", "false" })
+	boolean affichageOptimisee;
+
+	private EmballageService emballageService;
+
+	private byte[] bloc;
+
+	@Setup
+	public void preparer() {
+		Traces.reduire();
+		emballageService = new EmballageServiceImpl();
+		bloc = distribution.generer(TAILLE_BLOC, 42);
+	}
+
+	@Benchmark
+	public long emballerFlux() throws IOException {
+		CanalVide sortie = new CanalVide();
+		emballageService.emballerCartons(new CanalColisSynthetique(bloc, nbColis), affichageOptimisee, sortie);
+		return sortie.getNbOctets();
+	}
+
+}
@@ -0,0 +1,69 @@
+package sample.vsct.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sample.vsct.service.ConfigurationEmballage;
+import sample.vsct.service.EmballageService;
+import sample.vsct.service.EmballageServiceImpl;
+import sample.vsct.service.ResultatSolveur;
+
+/**
+ * Durée de l'emballage pour les grandes capacités de carton, au format
+ * délimité, où les combinaisons sont générées à la demande
+ *
+ * @author Gaetan
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.AverageTime, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmballageGrandeCapaciteBenchmark {
+
+	@Param({ "50", "1000" })
+	int capaciteCarton;
+
+	@Param({ "100000" })
+	int nbColis;
+
+	private EmballageService emballageService;
+
+	private String entreeColis;
+
+	@Setup
+	public void preparer() {
+		Traces.reduire();
+		emballageService = new EmballageServiceImpl(
+				new ConfigurationEmballage(capaciteCarton, 1, capaciteCarton - 1, ','));
+		Random aleatoire = new Random(42);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < nbColis; i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append(1 + aleatoire.nextInt(capaciteCarton - 1));
+		}
+		entreeColis = sb.toString();
+	}
+
+	@Benchmark
+	public ResultatSolveur calculerCartons() {
+		return emballageService.calculerCartons(entreeColis);
+	}
+
+}
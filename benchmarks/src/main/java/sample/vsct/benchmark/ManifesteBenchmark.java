@@ -0,0 +1,80 @@
+package sample.vsct.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sample.vsct.ecriture.EcrivainManifeste;
+import sample.vsct.lecture.LecteurColis;
+import sample.vsct.lecture.LecteurManifeste;
+import sample.vsct.service.ConfigurationEmballage;
+
+/**
+ * Comptage des mêmes colis depuis un fichier texte (un chiffre par colis) et
+ * depuis le manifeste binaire équivalent (deux colis par octet)
+ *
+ * @author Gaetan
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ManifesteBenchmark {
+
+	@Param({ "10000000", "100000000" })
+	int nbColis;
+
+	@Param
+	DistributionColis distribution;
+
+	private Path fichierTexte;
+
+	private Path fichierManifeste;
+
+	@Setup
+	public void preparer() throws IOException {
+		Traces.reduire();
+		byte[] bloc = distribution.generer(1 << 20, 42);
+		fichierTexte = Files.createTempFile("colis", ".txt");
+		for (long ecrits = 0; ecrits < nbColis; ecrits += bloc.length) {
+			Files.write(fichierTexte, bloc, StandardOpenOption.APPEND);
+		}
+		fichierManifeste = Files.createTempFile("colis", ".bin");
+		EcrivainManifeste.convertir(fichierTexte, fichierManifeste, ConfigurationEmballage.DEFAUT);
+	}
+
+	@TearDown
+	public void nettoyer() throws IOException {
+		Files.delete(fichierTexte);
+		Files.delete(fichierManifeste);
+	}
+
+	@Benchmark
+	public long[] compterTexte() throws IOException {
+		return LecteurColis.compter(fichierTexte);
+	}
+
+	@Benchmark
+	public long[] compterManifeste() throws IOException {
+		return LecteurManifeste.compter(fichierManifeste, ConfigurationEmballage.DEFAUT);
+	}
+
+}
@@ -0,0 +1,24 @@
+package sample.vsct.benchmark;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+/**
+ * Réglage des traces commun aux bancs d'essai
+ *
+ * @author Gaetan
+ *
+ */
+final class Traces {
+
+	private Traces() {
+	}
+
+	/**
+	 * Ne garde que les avertissements : les traces de debug du service, écrites
+	 * sur la console à chaque commande, fausseraient la mesure
+	 */
+	static void reduire() {
+		Logger.getRootLogger().setLevel(Level.WARN);
+	}
+}
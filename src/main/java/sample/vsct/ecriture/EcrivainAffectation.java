@@ -0,0 +1,83 @@
+package sample.vsct.ecriture;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Écrit le carton de chaque colis, une ligne "indice carton" par colis, dans un
+ * canal par blocs de taille fixe. Les nombres sont convertis en ASCII
+ * directement dans le tampon, sans chaine intermédiaire.
+ *
+ * @author Gaetan
+ *
+ */
+public final class EcrivainAffectation {
+
+	final static Logger logger = Logger.getLogger(EcrivainAffectation.class);
+
+	/** Taille du tampon d'écriture (64 Ko) */
+	static final int TAILLE_TAMPON = 64 * 1024;
+
+	/** Longueur maximum d'une ligne : deux entiers, un espace et la fin de ligne */
+	private static final int LONGUEUR_LIGNE_MAX = 2 * 10 + 2;
+
+	private EcrivainAffectation() {
+	}
+
+	/**
+	 * Écrit le carton de chaque colis
+	 *
+	 * @param cartonParColis
+	 *            numéro du carton de chaque colis, entre la position et la
+	 *            limite. Sa position est avancée jusqu'à la limite
+	 * @param sortie
+	 *            canal recevant les lignes. Il n'est pas fermé
+	 * @throws IOException
+	 */
+	public static void ecrire(IntBuffer cartonParColis, WritableByteChannel sortie) throws IOException {
+		logger.debug("Écriture du carton de chaque colis dans un canal");
+		ByteBuffer tampon = ByteBuffer.allocate(TAILLE_TAMPON);
+		byte[] chiffres = new byte[10];
+		int indiceColis = 0;
+		while (cartonParColis.hasRemaining()) {
+			if (tampon.remaining() < LONGUEUR_LIGNE_MAX) {
+				vider(tampon, sortie);
+			}
+			ecrireEntier(indiceColis++, tampon, chiffres);
+			tampon.put((byte) ' ');
+			ecrireEntier(cartonParColis.get(), tampon, chiffres);
+			tampon.put((byte) '\n');
+		}
+		vider(tampon, sortie);
+	}
+
+	/**
+	 * Écrit un entier positif en ASCII
+	 */
+	private static void ecrireEntier(int valeur, ByteBuffer tampon, byte[] chiffres) {
+		int nbChiffres = 0;
+		do {
+			chiffres[nbChiffres++] = (byte) ('0' + valeur % 10);
+			valeur /= 10;
+		} while (valeur > 0);
+		while (nbChiffres > 0) {
+			tampon.put(chiffres[--nbChiffres]);
+		}
+	}
+
+	/**
+	 * Écrit le contenu du tampon (en cours de remplissage) puis le réinitialise
+	 */
+	private static void vider(ByteBuffer tampon, WritableByteChannel sortie) throws IOException {
+		tampon.flip();
+		while (tampon.hasRemaining()) {
+			sortie.write(tampon);
+		}
+		tampon.clear();
+	}
+
+}
@@ -0,0 +1,236 @@
+package sample.vsct.ecriture;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.log4j.Logger;
+
+import sample.vsct.service.Combinaisons;
+
+/**
+ * Écrit la liste des cartons emballés dans une sortie, au fil de l'eau. Par
+ * exemple : 91/91/55 (ou 91(2)/55(1) pour l'affichage optimisé).
+ *
+ * Les cartons identiques sont écrits par blocs : un tampon est rempli une fois
+ * avec la combinaison répétée, puis réécrit autant de fois que nécessaire. La
+ * mémoire utilisée ne dépend donc pas du nombre de cartons.
+ *
+ * @author Gaetan
+ *
+ */
+public final class EcrivainCartons {
+
+	final static Logger logger = Logger.getLogger(EcrivainCartons.class);
+
+	/** Taille du tampon d'écriture (64 Ko) */
+	static final int TAILLE_TAMPON = 64 * 1024;
+
+	private static final char SEPARATEUR = '/';
+
+	private EcrivainCartons() {
+	}
+
+	/**
+	 * Calcule le nombre de caractères de la liste des cartons, afin de pouvoir
+	 * dimensionner la sortie à l'avance
+	 *
+	 * @param combinaisons
+	 *            combinaisons de taille
+	 * @param nbCartonsParCombinaison
+	 *            nombre de cartons pour chaque combinaison
+	 * @param affichageOptimisee
+	 *            indique si on affiche les cartons de manière optimisée
+	 * @return le nombre de caractères qui seront écrits
+	 */
+	public static long longueur(Combinaisons combinaisons, long[] nbCartonsParCombinaison,
+			boolean affichageOptimisee) {
+		long longueur = 0;
+		long nbElements = 0;
+		for (int combinaison = 0; combinaison < nbCartonsParCombinaison.length; combinaison++) {
+			long nbCartons = nbCartonsParCombinaison[combinaison];
+			if (nbCartons > 0) {
+				int longueurLibelle = combinaisons.getLibelle(combinaison).length();
+				if (affichageOptimisee) {
+					longueur += longueurLibelle + 2 + Long.toString(nbCartons).length();
+					nbElements++;
+				} else {
+					longueur += longueurLibelle * nbCartons;
+					nbElements += nbCartons;
+				}
+			}
+		}
+		// Un séparateur entre deux éléments
+		return nbElements == 0 ? 0 : longueur + nbElements - 1;
+	}
+
+	/**
+	 * Écrit la liste des cartons dans une sortie texte
+	 *
+	 * @param combinaisons
+	 *            combinaisons de taille
+	 * @param nbCartonsParCombinaison
+	 *            nombre de cartons pour chaque combinaison
+	 * @param affichageOptimisee
+	 *            indique si on affiche les cartons de manière optimisée
+	 * @param sortie
+	 *            sortie dans laquelle écrire les cartons. Elle n'est ni vidée ni
+	 *            fermée
+	 * @throws IOException
+	 */
+	public static void ecrire(Combinaisons combinaisons, long[] nbCartonsParCombinaison,
+			boolean affichageOptimisee, Appendable sortie) throws IOException {
+		logger.debug("Écriture des cartons dans une sortie texte");
+		boolean premierCarton = true;
+		StringBuilder bloc = null;
+		// Un Writer recopierait le bloc dans une chaine à chaque ajout : il reçoit
+		// une copie du bloc en tableau de caractères
+		Writer ecrivain = sortie instanceof Writer ? (Writer) sortie : null;
+		char[] caracteres = null;
+		for (int combinaison = 0; combinaison < nbCartonsParCombinaison.length; combinaison++) {
+			long nbCartons = nbCartonsParCombinaison[combinaison];
+			if (nbCartons == 0) {
+				continue;
+			}
+			String libelle = combinaisons.getLibelle(combinaison);
+			if (premierCarton) {
+				premierCarton = false;
+			} else {
+				sortie.append(SEPARATEUR);
+			}
+			if (affichageOptimisee) {
+				// Affichage optimisée (Exemple 91(2))
+				sortie.append(libelle).append('(').append(Long.toString(nbCartons)).append(')');
+				continue;
+			}
+
+			// Affichage détaillé (Exemple 91/91) : le premier carton, puis les suivants
+			// précédés du séparateur, écrits par blocs
+			sortie.append(libelle);
+			long nbCartonsRestants = nbCartons - 1;
+			int longueurMotif = libelle.length() + 1;
+			long nbMotifsParBloc = Math.min(nbCartonsRestants, Math.max(1, TAILLE_TAMPON / longueurMotif));
+			if (nbMotifsParBloc == 0) {
+				continue;
+			}
+			if (bloc == null) {
+				bloc = new StringBuilder(TAILLE_TAMPON);
+			}
+			bloc.setLength(0);
+			for (long i = 0; i < nbMotifsParBloc; i++) {
+				bloc.append(SEPARATEUR).append(libelle);
+			}
+			int longueurReste = (int) (nbCartonsRestants % nbMotifsParBloc) * longueurMotif;
+			if (ecrivain != null) {
+				if (caracteres == null || caracteres.length < bloc.length()) {
+					caracteres = new char[bloc.length()];
+				}
+				bloc.getChars(0, bloc.length(), caracteres, 0);
+				for (long i = nbCartonsRestants / nbMotifsParBloc; i > 0; i--) {
+					ecrivain.write(caracteres, 0, bloc.length());
+				}
+				ecrivain.write(caracteres, 0, longueurReste);
+				continue;
+			}
+			for (long i = nbCartonsRestants / nbMotifsParBloc; i > 0; i--) {
+				sortie.append(bloc);
+			}
+			sortie.append(bloc, 0, longueurReste);
+		}
+	}
+
+	/**
+	 * Écrit la liste des cartons dans un canal d'octets (ASCII)
+	 *
+	 * @param combinaisons
+	 *            combinaisons de taille
+	 * @param nbCartonsParCombinaison
+	 *            nombre de cartons pour chaque combinaison
+	 * @param affichageOptimisee
+	 *            indique si on affiche les cartons de manière optimisée
+	 * @param sortie
+	 *            canal dans lequel écrire les cartons. Il n'est pas fermé
+	 * @throws IOException
+	 */
+	public static void ecrire(Combinaisons combinaisons, long[] nbCartonsParCombinaison,
+			boolean affichageOptimisee, WritableByteChannel sortie) throws IOException {
+		logger.debug("Écriture des cartons dans un canal");
+		// Le tampon peut contenir au moins un carton de chaque forme d'affichage,
+		// même avec les longs libellés des grandes capacités
+		int longueurLibelleMax = 0;
+		for (int combinaison = 0; combinaison < nbCartonsParCombinaison.length; combinaison++) {
+			if (nbCartonsParCombinaison[combinaison] > 0) {
+				longueurLibelleMax = Math.max(longueurLibelleMax, combinaisons.getLibelle(combinaison).length());
+			}
+		}
+		ByteBuffer tampon = ByteBuffer.allocate(Math.max(TAILLE_TAMPON, longueurLibelleMax + 24));
+		boolean premierCarton = true;
+		for (int combinaison = 0; combinaison < nbCartonsParCombinaison.length; combinaison++) {
+			long nbCartons = nbCartonsParCombinaison[combinaison];
+			if (nbCartons == 0) {
+				continue;
+			}
+			byte[] libelle = combinaisons.getLibelle(combinaison).getBytes(StandardCharsets.US_ASCII);
+			if (tampon.remaining() < libelle.length + 24) {
+				vider(tampon, sortie);
+			}
+			if (premierCarton) {
+				premierCarton = false;
+			} else {
+				tampon.put((byte) SEPARATEUR);
+			}
+			if (affichageOptimisee) {
+				// Affichage optimisée (Exemple 91(2))
+				tampon.put(libelle).put((byte) '(')
+						.put(Long.toString(nbCartons).getBytes(StandardCharsets.US_ASCII)).put((byte) ')');
+				continue;
+			}
+
+			// Affichage détaillé (Exemple 91/91) : le premier carton, puis les suivants
+			// précédés du séparateur. Le tampon est rempli une seule fois de motifs
+			// "/91" puis réécrit tel quel
+			tampon.put(libelle);
+			vider(tampon, sortie);
+			long nbCartonsRestants = nbCartons - 1;
+			int longueurMotif = libelle.length + 1;
+			long nbMotifsParBloc = Math.min(nbCartonsRestants, tampon.capacity() / longueurMotif);
+			if (nbMotifsParBloc == 0) {
+				continue;
+			}
+			for (long i = 0; i < nbMotifsParBloc; i++) {
+				tampon.put((byte) SEPARATEUR).put(libelle);
+			}
+			tampon.flip();
+			for (long i = nbCartonsRestants / nbMotifsParBloc; i > 0; i--) {
+				ecrireTout(tampon, sortie);
+				tampon.rewind();
+			}
+			tampon.limit((int) (nbCartonsRestants % nbMotifsParBloc) * longueurMotif);
+			ecrireTout(tampon, sortie);
+			tampon.clear();
+		}
+		vider(tampon, sortie);
+	}
+
+	/**
+	 * Écrit le contenu du tampon (en cours de remplissage) puis le réinitialise
+	 */
+	private static void vider(ByteBuffer tampon, WritableByteChannel sortie) throws IOException {
+		tampon.flip();
+		ecrireTout(tampon, sortie);
+		tampon.clear();
+	}
+
+	/**
+	 * Écrit tous les octets restants du tampon, le canal pouvant n'en accepter
+	 * qu'une partie à chaque écriture
+	 */
+	private static void ecrireTout(ByteBuffer tampon, WritableByteChannel sortie) throws IOException {
+		while (tampon.hasRemaining()) {
+			sortie.write(tampon);
+		}
+	}
+
+}
@@ -0,0 +1,219 @@
+package sample.vsct.ecriture;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+
+import sample.vsct.exception.TailleColisException;
+import sample.vsct.lecture.FormatManifeste;
+import sample.vsct.service.ConfigurationEmballage;
+
+/**
+ * Écrit un manifeste binaire (voir {@link FormatManifeste}) colis par colis, ou
+ * en convertissant un fichier texte existant. L'entête, qui contient le nombre
+ * de colis et la somme de contrôle, est écrit à la fermeture.
+ *
+ * @author Gaetan
+ *
+ */
+public class EcrivainManifeste implements Closeable {
+
+	final static Logger logger = Logger.getLogger(EcrivainManifeste.class);
+
+	/** Taille du tampon d'écriture (64 Ko) */
+	static final int TAILLE_TAMPON = 64 * 1024;
+
+	/** Taille des zones du fichier texte projetées en mémoire (64 Mo) */
+	static final long TAILLE_ZONE_PROJETEE = 64L * 1024 * 1024;
+
+	private final FileChannel canal;
+
+	private final ConfigurationEmballage configuration;
+
+	private final ByteBuffer tampon = ByteBuffer.allocateDirect(TAILLE_TAMPON);
+
+	private final CRC32 crc = new CRC32();
+
+	private long nbColis;
+
+	/** Taille du colis en attente de son voisin dans l'octet (colis pair) */
+	private int tailleEnAttente;
+
+	/**
+	 * Crée (ou remplace) un manifeste
+	 *
+	 * @param fichierManifeste
+	 *            fichier à écrire
+	 * @param configuration
+	 *            capacité des cartons et tailles autorisées. La taille maximum
+	 *            doit tenir sur 4 bits, et la capacité sur un octet
+	 * @throws IOException
+	 */
+	public EcrivainManifeste(Path fichierManifeste, ConfigurationEmballage configuration) throws IOException {
+		if (configuration.getTailleColisMax() > FormatManifeste.TAILLE_COLIS_MAX) {
+			throw new IllegalArgumentException(String.format(
+					"Le manifeste binaire est limité aux colis de taille %d au plus (taille maximum %d)",
+					FormatManifeste.TAILLE_COLIS_MAX, configuration.getTailleColisMax()));
+		}
+		if (configuration.getCapaciteCarton() > FormatManifeste.CAPACITE_CARTON_MAX) {
+			throw new IllegalArgumentException(String.format(
+					"Le manifeste binaire est limité aux cartons de capacité %d au plus (capacité %d)",
+					FormatManifeste.CAPACITE_CARTON_MAX, configuration.getCapaciteCarton()));
+		}
+		this.configuration = configuration;
+		this.canal = FileChannel.open(fichierManifeste, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		canal.position(FormatManifeste.TAILLE_ENTETE);
+	}
+
+	/**
+	 * Ajoute un colis
+	 *
+	 * @param taille
+	 *            taille du colis
+	 * @throws TailleColisException
+	 *             si la taille n'est pas autorisée par la configuration
+	 * @throws IOException
+	 */
+	public void ajouter(int taille) throws IOException {
+		if (taille < configuration.getTailleColisMin() || taille > configuration.getTailleColisMax()) {
+			throw new TailleColisException(String.format(
+					"La taille d'un colis vaut %d alors qu'il doit être compris entre %d et %d (position %d)",
+					taille, configuration.getTailleColisMin(), configuration.getTailleColisMax(), nbColis),
+					nbColis);
+		}
+		if ((nbColis & 1) == 0) {
+			tailleEnAttente = taille;
+		} else {
+			if (!tampon.hasRemaining()) {
+				vider();
+			}
+			tampon.put((byte) (tailleEnAttente << 4 | taille));
+		}
+		nbColis++;
+	}
+
+	/**
+	 * @return le nombre de colis ajoutés
+	 */
+	public long getNbColis() {
+		return nbColis;
+	}
+
+	/**
+	 * Écrit le dernier colis et l'entête, puis ferme le fichier
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			if ((nbColis & 1) == 1) {
+				if (!tampon.hasRemaining()) {
+					vider();
+				}
+				tampon.put((byte) (tailleEnAttente << 4));
+			}
+			vider();
+
+			ByteBuffer entete = ByteBuffer.allocate(FormatManifeste.TAILLE_ENTETE);
+			entete.putInt(FormatManifeste.NOMBRE_MAGIQUE);
+			entete.put(FormatManifeste.VERSION);
+			entete.put((byte) configuration.getCapaciteCarton());
+			entete.putShort((short) 0);
+			entete.putLong(nbColis);
+			entete.putInt((int) crc.getValue());
+			entete.flip();
+			long position = 0;
+			while (entete.hasRemaining()) {
+				position += canal.write(entete, position);
+			}
+			if (logger.isDebugEnabled()) {
+				logger.debug(String.format("Manifeste binaire de %d colis écrit", nbColis));
+			}
+		} finally {
+			canal.close();
+		}
+	}
+
+	private void vider() throws IOException {
+		tampon.flip();
+		ByteBuffer pourCrc = tampon.duplicate();
+		crc.update(pourCrc);
+		while (tampon.hasRemaining()) {
+			canal.write(tampon);
+		}
+		tampon.clear();
+	}
+
+	/**
+	 * Convertit un fichier texte de tailles de colis (une taille par chiffre,
+	 * fins de ligne ignorées) en manifeste binaire
+	 *
+	 * @param fichierTexte
+	 *            fichier contenant les tailles des colis. Exemple : "354218465154"
+	 * @param fichierManifeste
+	 *            manifeste à écrire
+	 * @param configuration
+	 *            tailles autorisées, sans séparateur
+	 * @return le nombre de colis convertis
+	 * @throws TailleColisException
+	 *             sur le premier caractère invalide, avec sa position dans le
+	 *             fichier texte
+	 * @throws IOException
+	 */
+	public static long convertir(Path fichierTexte, Path fichierManifeste, ConfigurationEmballage configuration)
+			throws IOException {
+		if (configuration.isAvecSeparateur()) {
+			throw new IllegalArgumentException(
+					"La conversion en manifeste binaire lit une taille par chiffre, sans séparateur");
+		}
+		logger.debug("Conversion d'un fichier texte en manifeste binaire");
+		int tailleColisMin = configuration.getTailleColisMin();
+		int tailleColisMax = configuration.getTailleColisMax();
+		try (FileChannel canalTexte = FileChannel.open(fichierTexte, StandardOpenOption.READ)) {
+			EcrivainManifeste ecrivain = new EcrivainManifeste(fichierManifeste, configuration);
+			try {
+				convertir(canalTexte, ecrivain, tailleColisMin, tailleColisMax);
+			} catch (IOException | RuntimeException e) {
+				// Pas d'entête : un manifeste incomplet ne doit pas pouvoir être lu
+				ecrivain.canal.close();
+				Files.deleteIfExists(fichierManifeste);
+				throw e;
+			}
+			ecrivain.close();
+			return ecrivain.getNbColis();
+		}
+	}
+
+	/**
+	 * Ajoute à l'écrivain les colis d'un fichier texte, zone par zone projetée en
+	 * mémoire
+	 */
+	private static void convertir(FileChannel canalTexte, EcrivainManifeste ecrivain, int tailleColisMin,
+			int tailleColisMax) throws IOException {
+		long tailleFichier = canalTexte.size();
+		for (long position = 0; position < tailleFichier; position += TAILLE_ZONE_PROJETEE) {
+			long tailleZone = Math.min(TAILLE_ZONE_PROJETEE, tailleFichier - position);
+			MappedByteBuffer zone = canalTexte.map(FileChannel.MapMode.READ_ONLY, position, tailleZone);
+			for (int i = 0; i < zone.limit(); i++) {
+				byte octet = zone.get(i);
+				int taille = octet - '0';
+				if (taille >= tailleColisMin && taille <= tailleColisMax) {
+					ecrivain.ajouter(taille);
+				} else if (octet != '\n' && octet != '\r') {
+					throw new TailleColisException(String.format(
+							"Le colis '%s' doit être enregistré avec sa taille entre %d et %d (position %d)",
+							(char) octet, tailleColisMin, tailleColisMax, position + i), position + i);
+				}
+			}
+		}
+	}
+
+}
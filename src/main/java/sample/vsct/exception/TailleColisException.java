@@ -6,11 +6,19 @@ public class TailleColisException extends RuntimeException {
 	
 	String message;
 
+	/** Position du colis en erreur dans l'entrée (-1 si inconnue) */
+	long position = -1;
+
 	public TailleColisException(String message) {
 		super(message);
 		this.message = message;
 	}
 
+	public TailleColisException(String message, long position) {
+		this(message);
+		this.position = position;
+	}
+
 	public String getMessage() {
 		return message;
 	}
@@ -18,6 +26,14 @@ public class TailleColisException extends RuntimeException {
 	public void setMessage(String message) {
 		this.message = message;
 	}
+
+	public long getPosition() {
+		return position;
+	}
+
+	public void setPosition(long position) {
+		this.position = position;
+	}
 	
 	
 }
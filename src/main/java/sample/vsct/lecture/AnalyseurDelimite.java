@@ -0,0 +1,216 @@
+package sample.vsct.lecture;
+
+import java.nio.ByteBuffer;
+
+import sample.vsct.exception.TailleColisException;
+import sample.vsct.service.ConfigurationEmballage;
+
+/**
+ * Vérifie et compte les colis au format délimité, où les tailles peuvent avoir
+ * plusieurs chiffres. Exemple avec le séparateur ',' : "120,80,455".
+ *
+ * L'analyse garde son état entre deux portions d'entrée : une taille peut être
+ * coupée entre deux tampons d'un flux ou deux zones d'un fichier. Les fins de
+ * ligne ('\n' et '\r') terminent la taille en cours, et sont ignorées sinon.
+ *
+ * En mode tolérant, une taille invalide est ignorée jusqu'au séparateur ou à la
+ * fin de ligne suivant, et la position de son premier caractère est notée dans
+ * le rapport.
+ *
+ * @author Gaetan
+ *
+ */
+final class AnalyseurDelimite {
+
+	private final ConfigurationEmballage configuration;
+
+	private final long[] nbColisParTaille;
+
+	/** Reçoit les colis invalides en mode tolérant, null sinon */
+	private final RapportErreurs rapport;
+
+	/** Taille en cours de lecture, -1 si aucune */
+	private int tailleCourante = -1;
+
+	/** Position du premier chiffre de la taille en cours */
+	private long positionTailleCourante;
+
+	/** Vrai au début de l'entrée et après un séparateur : une taille est attendue */
+	private boolean tailleAttendue = true;
+
+	/** Vrai si au moins un séparateur a été lu */
+	private boolean separateurLu;
+
+	/** Vrai pendant la lecture d'une taille invalide, ignorée en mode tolérant */
+	private boolean tailleIgnoree;
+
+	/**
+	 * @param configuration
+	 *            configuration donnant le séparateur et les tailles autorisées
+	 * @param nbColisParTaille
+	 *            tableau des colis par taille à compléter
+	 */
+	AnalyseurDelimite(ConfigurationEmballage configuration, long[] nbColisParTaille) {
+		this(configuration, nbColisParTaille, null);
+	}
+
+	/**
+	 * @param configuration
+	 *            configuration donnant le séparateur et les tailles autorisées
+	 * @param nbColisParTaille
+	 *            tableau des colis par taille à compléter
+	 * @param rapport
+	 *            reçoit les colis invalides (mode tolérant), ou null pour lever
+	 *            une exception sur le premier
+	 */
+	AnalyseurDelimite(ConfigurationEmballage configuration, long[] nbColisParTaille, RapportErreurs rapport) {
+		this.configuration = configuration;
+		this.nbColisParTaille = nbColisParTaille;
+		this.rapport = rapport;
+	}
+
+	/**
+	 * Analyse une portion de chaine
+	 *
+	 * @param entreeTaillesColis
+	 *            chaine contenant les tailles
+	 * @param debut
+	 *            position du premier caractère à analyser
+	 * @param fin
+	 *            position suivant le dernier caractère à analyser
+	 * @throws TailleColisException
+	 *             sur le premier colis invalide
+	 */
+	void analyser(CharSequence entreeTaillesColis, int debut, int fin) {
+		for (int i = debut; i < fin; i++) {
+			analyser(entreeTaillesColis.charAt(i), i);
+		}
+	}
+
+	/**
+	 * Analyse les octets (ASCII) entre la position et la limite du tampon
+	 *
+	 * @param tampon
+	 *            octets à analyser. Sa position n'est pas modifiée
+	 * @param positionDebut
+	 *            position du premier octet du tampon dans l'entrée complète
+	 * @throws TailleColisException
+	 *             sur le premier colis invalide
+	 */
+	void analyser(ByteBuffer tampon, long positionDebut) {
+		int debutTampon = tampon.position();
+		for (int i = debutTampon; i < tampon.limit(); i++) {
+			analyser((char) (tampon.get(i) & 0xFF), positionDebut + i - debutTampon);
+		}
+	}
+
+	/**
+	 * Termine l'analyse : compte la dernière taille
+	 *
+	 * @throws TailleColisException
+	 *             si l'entrée se termine par un séparateur
+	 */
+	void terminer() {
+		if (tailleCourante >= 0) {
+			compterTailleCourante();
+		} else if (tailleAttendue && separateurLu) {
+			if (rapport != null) {
+				rapport.ajouter(positionTailleCourante);
+				return;
+			}
+			throw new TailleColisException(
+					String.format("Il manque la taille d'un colis à la fin de l'entrée, après le séparateur '%s'",
+							configuration.getSeparateur()),
+					positionTailleCourante);
+		}
+	}
+
+	private void analyser(char caractere, long position) {
+		int chiffre = caractere - '0';
+		if (chiffre < 0 || chiffre > 9) {
+			// Cas rare : on accepte, comme Integer.parseInt, les chiffres non ASCII
+			chiffre = caractere < 128 ? -1 : Character.digit(caractere, 10);
+		}
+		if (chiffre >= 0) {
+			if (tailleIgnoree) {
+				return;
+			}
+			if (tailleCourante < 0) {
+				tailleCourante = 0;
+				positionTailleCourante = position;
+			}
+			tailleCourante = tailleCourante * 10 + chiffre;
+			if (tailleCourante > configuration.getTailleColisMax()) {
+				if (rapport != null) {
+					ignorerTailleCourante(positionTailleCourante);
+					return;
+				}
+				throw new TailleColisException(String.format(
+						"La taille d'un colis dépasse la taille maximum %d (position %d)",
+						configuration.getTailleColisMax(), positionTailleCourante), positionTailleCourante);
+			}
+		} else if (caractere == configuration.getSeparateur()) {
+			if (tailleCourante < 0 && tailleAttendue) {
+				if (rapport == null) {
+					throw new TailleColisException(
+							String.format("Il manque la taille d'un colis avant le séparateur (position %d)",
+									position),
+							position);
+				}
+				rapport.ajouter(position);
+			}
+			if (tailleCourante >= 0) {
+				compterTailleCourante();
+			}
+			tailleIgnoree = false;
+			tailleAttendue = true;
+			separateurLu = true;
+			positionTailleCourante = position;
+		} else if (caractere == '\n' || caractere == '\r') {
+			if (tailleCourante >= 0) {
+				compterTailleCourante();
+				tailleAttendue = false;
+			}
+			tailleIgnoree = false;
+		} else if (rapport != null) {
+			if (!tailleIgnoree) {
+				ignorerTailleCourante(tailleCourante >= 0 ? positionTailleCourante : position);
+			}
+		} else {
+			throw CompteurColis.creerErreur(caractere, position, configuration);
+		}
+	}
+
+	private void compterTailleCourante() {
+		if (tailleCourante < configuration.getTailleColisMin()) {
+			if (rapport != null) {
+				rapport.ajouter(positionTailleCourante);
+				tailleCourante = -1;
+				tailleAttendue = false;
+				return;
+			}
+			throw new TailleColisException(String.format(
+					"La taille d'un colis vaut %d alors qu'il doit être compris entre %d et %d (position %d)",
+					tailleCourante, configuration.getTailleColisMin(), configuration.getTailleColisMax(),
+					positionTailleCourante), positionTailleCourante);
+		}
+		nbColisParTaille[tailleCourante]++;
+		tailleCourante = -1;
+		tailleAttendue = false;
+	}
+
+	/**
+	 * Mode tolérant : note une taille invalide et ignore ses caractères jusqu'au
+	 * séparateur ou à la fin de ligne suivant
+	 *
+	 * @param position
+	 *            position du premier caractère de la taille
+	 */
+	private void ignorerTailleCourante(long position) {
+		rapport.ajouter(position);
+		tailleCourante = -1;
+		tailleIgnoree = true;
+		tailleAttendue = false;
+	}
+
+}
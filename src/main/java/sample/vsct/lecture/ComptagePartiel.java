@@ -0,0 +1,416 @@
+package sample.vsct.lecture;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import sample.vsct.exception.TailleColisException;
+import sample.vsct.service.ConfigurationEmballage;
+
+/**
+ * Nombre de colis par taille d'un fragment de l'entrée. Une entrée découpée en
+ * fragments peut être comptée par plusieurs processus : chacun transmet son
+ * comptage partiel sous forme encodée (quelques octets, voir
+ * {@link #encoder()}), et les comptages sont fusionnés en un temps qui ne
+ * dépend que du nombre de fragments avant l'emballage.
+ *
+ * Un comptage est immuable. Les positions des erreurs de lecture sont relatives
+ * au début du fragment.
+ *
+ * @author Gaetan
+ *
+ */
+public final class ComptagePartiel implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	final static Logger logger = Logger.getLogger(ComptagePartiel.class);
+
+	/** Premiers octets d'un comptage encodé ("CP") */
+	public static final short NOMBRE_MAGIQUE = 0x4350;
+
+	/** Version du format d'encodage */
+	public static final byte VERSION = 1;
+
+	/**
+	 * Plus grande capacité de carton d'un comptage encodé. Le décodage alloue un
+	 * compteur par taille jusqu'à la capacité : au delà, l'encodage est tenu pour
+	 * corrompu plutôt que d'allouer un tableau démesuré
+	 */
+	public static final int CAPACITE_CARTON_MAX = 1 << 16;
+
+	/** Taille de la zone projetée en mémoire lors du comptage d'un fichier */
+	private static final long TAILLE_ZONE_PROJETEE = 64L * 1024 * 1024;
+
+	private final int capaciteCarton;
+
+	private final int tailleColisMin;
+
+	private final int tailleColisMax;
+
+	/** Indice : taille des colis. Valeur : nombre de colis ayant cette taille */
+	private final long[] nbColisParTaille;
+
+	private final long nbColis;
+
+	private ComptagePartiel(int capaciteCarton, int tailleColisMin, int tailleColisMax, long[] nbColisParTaille) {
+		this.capaciteCarton = capaciteCarton;
+		this.tailleColisMin = tailleColisMin;
+		this.tailleColisMax = tailleColisMax;
+		this.nbColisParTaille = nbColisParTaille;
+		long total = 0;
+		for (long nb : nbColisParTaille) {
+			total = Math.addExact(total, nb);
+		}
+		this.nbColis = total;
+	}
+
+	/**
+	 * @param configuration
+	 * @return un comptage sans colis
+	 */
+	public static ComptagePartiel vide(ConfigurationEmballage configuration) {
+		return de(configuration.creerNbColisParTaille(), configuration);
+	}
+
+	/**
+	 * Crée un comptage à partir de colis déjà comptés
+	 *
+	 * @param nbColisParTaille
+	 *            Indice : taille des colis. Valeur : nombre de colis ayant cette
+	 *            taille. Le tableau n'est pas modifié
+	 * @param configuration
+	 *            tailles autorisées
+	 * @return le comptage
+	 * @throws TailleColisException
+	 *             si des colis ont une taille non autorisée
+	 * @throws IllegalArgumentException
+	 *             si un nombre de colis est négatif, ou si le volume total des
+	 *             colis dépasse la capacité d'un long
+	 */
+	public static ComptagePartiel de(long[] nbColisParTaille, ConfigurationEmballage configuration) {
+		return new ComptagePartiel(configuration.getCapaciteCarton(), configuration.getTailleColisMin(),
+				configuration.getTailleColisMax(), LecteurQuantites.verifier(nbColisParTaille, configuration));
+	}
+
+	/**
+	 * Compte les colis d'un fragment donné sous forme de chaine. Pour le format
+	 * délimité, le fragment est une entrée complète : le séparateur entre deux
+	 * fragments n'appartient à aucun des deux.
+	 *
+	 * @param fragment
+	 *            Exemple : "354218465154"
+	 * @param configuration
+	 *            format de l'entrée et tailles autorisées
+	 * @return le comptage du fragment
+	 * @throws TailleColisException
+	 *             sur le premier colis invalide, avec sa position dans le
+	 *             fragment
+	 */
+	public static ComptagePartiel compter(String fragment, ConfigurationEmballage configuration) {
+		return new ComptagePartiel(configuration.getCapaciteCarton(), configuration.getTailleColisMin(),
+				configuration.getTailleColisMax(), CompteurColis.compter(fragment, configuration));
+	}
+
+	/**
+	 * Compte les colis d'une plage d'octets d'un fichier, en la projetant en
+	 * mémoire zone par zone. Au format délimité, la plage est une entrée complète
+	 * (voir {@link #compter(String, ConfigurationEmballage)}).
+	 *
+	 * @param fichierColis
+	 *            fichier contenant les tailles des colis
+	 * @param debut
+	 *            position du premier octet du fragment
+	 * @param fin
+	 *            position suivant le dernier octet du fragment
+	 * @param configuration
+	 *            format de l'entrée et tailles autorisées
+	 * @return le comptage du fragment
+	 * @throws IOException
+	 * @throws TailleColisException
+	 *             sur le premier colis invalide, avec sa position relative au
+	 *             début du fragment
+	 */
+	public static ComptagePartiel compter(Path fichierColis, long debut, long fin,
+			ConfigurationEmballage configuration) throws IOException {
+		logger.debug(String.format("Comptage du fragment [%d, %d) de %s", debut, fin, fichierColis));
+		long[] nbColisParTaille = configuration.creerNbColisParTaille();
+		AnalyseurDelimite analyseur = configuration.isAvecSeparateur()
+				? new AnalyseurDelimite(configuration, nbColisParTaille)
+				: null;
+		try (FileChannel canal = FileChannel.open(fichierColis, StandardOpenOption.READ)) {
+			if (debut < 0 || fin < debut || fin > canal.size()) {
+				throw new IllegalArgumentException(String.format(
+						"Fragment [%d, %d) hors du fichier de %d octets", debut, fin, canal.size()));
+			}
+			for (long position = debut; position < fin; position += TAILLE_ZONE_PROJETEE) {
+				long tailleZone = Math.min(TAILLE_ZONE_PROJETEE, fin - position);
+				MappedByteBuffer zone = canal.map(FileChannel.MapMode.READ_ONLY, position, tailleZone);
+				if (analyseur != null) {
+					analyseur.analyser(zone, position - debut);
+				} else {
+					CompteurColis.compter(zone, position - debut, nbColisParTaille, configuration);
+				}
+			}
+			if (analyseur != null) {
+				analyseur.terminer();
+			}
+		} catch (TailleColisException e) {
+			throw new TailleColisException(
+					String.format("Fragment commençant à l'octet %d : %s", debut, e.getMessage()), e.getPosition());
+		}
+		return new ComptagePartiel(configuration.getCapaciteCarton(), configuration.getTailleColisMin(),
+				configuration.getTailleColisMax(), nbColisParTaille);
+	}
+
+	/**
+	 * Fusionne ce comptage avec celui d'un autre fragment
+	 *
+	 * @param autre
+	 *            comptage fait avec les mêmes capacité et tailles autorisées
+	 * @return un nouveau comptage, somme des deux
+	 * @throws IllegalArgumentException
+	 *             si les configurations diffèrent, ou si un nombre de colis
+	 *             dépasse la capacité d'un long
+	 */
+	public ComptagePartiel fusionner(ComptagePartiel autre) {
+		if (autre.capaciteCarton != capaciteCarton || autre.tailleColisMin != tailleColisMin
+				|| autre.tailleColisMax != tailleColisMax) {
+			throw new IllegalArgumentException(String.format(
+					"Comptages incompatibles : capacité %d, tailles de %d à %d contre capacité %d, tailles de %d à %d",
+					capaciteCarton, tailleColisMin, tailleColisMax, autre.capaciteCarton, autre.tailleColisMin,
+					autre.tailleColisMax));
+		}
+		long[] somme = nbColisParTaille.clone();
+		try {
+			for (int taille = tailleColisMin; taille <= tailleColisMax; taille++) {
+				somme[taille] = Math.addExact(somme[taille], autre.nbColisParTaille[taille]);
+			}
+			return new ComptagePartiel(capaciteCarton, tailleColisMin, tailleColisMax, somme);
+		} catch (ArithmeticException e) {
+			throw new IllegalArgumentException(
+					String.format("Le nombre de colis fusionnés dépasse %d", Long.MAX_VALUE), e);
+		}
+	}
+
+	/**
+	 * Fusionne les comptages de tous les fragments
+	 *
+	 * @param comptages
+	 *            au moins un comptage
+	 * @return la somme des comptages
+	 * @throws IllegalArgumentException
+	 *             voir {@link #fusionner(ComptagePartiel)}
+	 */
+	public static ComptagePartiel fusionner(List<ComptagePartiel> comptages) {
+		if (comptages.isEmpty()) {
+			throw new IllegalArgumentException("Aucun comptage à fusionner");
+		}
+		ComptagePartiel somme = comptages.get(0);
+		for (int i = 1; i < comptages.size(); i++) {
+			somme = somme.fusionner(comptages.get(i));
+		}
+		return somme;
+	}
+
+	/**
+	 * Encode le comptage : nombre magique et version, puis la capacité, les
+	 * tailles minimum et maximum et le nombre de colis de chaque taille autorisée,
+	 * chacun en entier de longueur variable (7 bits par octet). Un fragment de
+	 * quelques millions de colis tient en une trentaine d'octets.
+	 *
+	 * @return le comptage encodé
+	 * @throws IllegalStateException
+	 *             si la capacité dépasse {@link #CAPACITE_CARTON_MAX} (l'encodage
+	 *             ne pourrait pas être décodé)
+	 */
+	public byte[] encoder() {
+		if (capaciteCarton > CAPACITE_CARTON_MAX) {
+			throw new IllegalStateException(String.format(
+					"Un comptage partiel encodé est limité aux cartons de capacité %d au plus (capacité %d)",
+					CAPACITE_CARTON_MAX, capaciteCarton));
+		}
+		int nbTailles = tailleColisMax - tailleColisMin + 1;
+		ByteBuffer tampon = ByteBuffer.allocate(3 + 10 * (3 + nbTailles));
+		tampon.putShort(NOMBRE_MAGIQUE);
+		tampon.put(VERSION);
+		ecrireEntier(tampon, capaciteCarton);
+		ecrireEntier(tampon, tailleColisMin);
+		ecrireEntier(tampon, tailleColisMax);
+		for (int taille = tailleColisMin; taille <= tailleColisMax; taille++) {
+			ecrireEntier(tampon, nbColisParTaille[taille]);
+		}
+		return Arrays.copyOf(tampon.array(), tampon.position());
+	}
+
+	/**
+	 * Décode un comptage encodé par {@link #encoder()}
+	 *
+	 * @param encodage
+	 * @return le comptage
+	 * @throws IllegalArgumentException
+	 *             si l'encodage est invalide ou tronqué, ou si la capacité dépasse
+	 *             {@link #CAPACITE_CARTON_MAX}
+	 */
+	public static ComptagePartiel decoder(byte[] encodage) {
+		ByteBuffer tampon = ByteBuffer.wrap(encodage);
+		if (tampon.remaining() < 3 || tampon.getShort() != NOMBRE_MAGIQUE) {
+			throw new IllegalArgumentException("Comptage partiel invalide : nombre magique absent");
+		}
+		byte version = tampon.get();
+		if (version != VERSION) {
+			throw new IllegalArgumentException(
+					String.format("Version %d du comptage partiel non supportée (version %d attendue)", version,
+							VERSION));
+		}
+		long capaciteCarton = lireEntier(tampon);
+		long tailleColisMin = lireEntier(tampon);
+		long tailleColisMax = lireEntier(tampon);
+		if (tailleColisMin < 1 || tailleColisMin > tailleColisMax || tailleColisMax > capaciteCarton
+				|| capaciteCarton > CAPACITE_CARTON_MAX) {
+			throw new IllegalArgumentException(String.format(
+					"Comptage partiel invalide : capacité %d, tailles de %d à %d", capaciteCarton, tailleColisMin,
+					tailleColisMax));
+		}
+		if (tampon.remaining() < tailleColisMax - tailleColisMin + 1) {
+			throw new IllegalArgumentException("Comptage partiel tronqué");
+		}
+		// Le format de l'entrée n'a plus d'importance une fois les colis comptés
+		ConfigurationEmballage configuration = new ConfigurationEmballage((int) capaciteCarton,
+				(int) tailleColisMin, (int) tailleColisMax, LecteurQuantites.SEPARATEUR_QUANTITES);
+		long[] nbColisParTaille = configuration.creerNbColisParTaille();
+		for (int taille = (int) tailleColisMin; taille <= tailleColisMax; taille++) {
+			nbColisParTaille[taille] = lireEntier(tampon);
+		}
+		if (tampon.hasRemaining()) {
+			throw new IllegalArgumentException(
+					String.format("Comptage partiel invalide : %d octets en trop", tampon.remaining()));
+		}
+		return de(nbColisParTaille, configuration);
+	}
+
+	/**
+	 * @return Indice : taille des colis (jusqu'à la capacité des cartons).
+	 *         Valeur : nombre de colis ayant cette taille. Le tableau est une
+	 *         copie
+	 */
+	public long[] getNbColisParTaille() {
+		return nbColisParTaille.clone();
+	}
+
+	/**
+	 * @param taille
+	 * @return le nombre de colis de cette taille
+	 */
+	public long getNbColis(int taille) {
+		return taille >= 0 && taille < nbColisParTaille.length ? nbColisParTaille[taille] : 0;
+	}
+
+	public long getNbColis() {
+		return nbColis;
+	}
+
+	public int getCapaciteCarton() {
+		return capaciteCarton;
+	}
+
+	public int getTailleColisMin() {
+		return tailleColisMin;
+	}
+
+	public int getTailleColisMax() {
+		return tailleColisMax;
+	}
+
+	@Override
+	public boolean equals(Object objet) {
+		if (!(objet instanceof ComptagePartiel)) {
+			return false;
+		}
+		ComptagePartiel autre = (ComptagePartiel) objet;
+		return capaciteCarton == autre.capaciteCarton && tailleColisMin == autre.tailleColisMin
+				&& tailleColisMax == autre.tailleColisMax
+				&& Arrays.equals(nbColisParTaille, autre.nbColisParTaille);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (31 * (31 * capaciteCarton + tailleColisMin) + tailleColisMax)
+				+ Arrays.hashCode(nbColisParTaille);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d colis %s", nbColis,
+				Arrays.toString(Arrays.copyOfRange(nbColisParTaille, tailleColisMin, tailleColisMax + 1)));
+	}
+
+	/**
+	 * Sérialisé sous sa forme encodée, plutôt que champ par champ
+	 */
+	private Object writeReplace() {
+		return new FormeSerialisee(encoder());
+	}
+
+	private void readObject(ObjectInputStream entree) throws InvalidObjectException {
+		throw new InvalidObjectException("Un comptage partiel est désérialisé depuis sa forme encodée");
+	}
+
+	private static void ecrireEntier(ByteBuffer tampon, long valeur) {
+		while ((valeur & ~0x7FL) != 0) {
+			tampon.put((byte) ((valeur & 0x7F) | 0x80));
+			valeur >>>= 7;
+		}
+		tampon.put((byte) valeur);
+	}
+
+	private static long lireEntier(ByteBuffer tampon) {
+		long valeur = 0;
+		for (int decalage = 0; decalage < 64; decalage += 7) {
+			if (!tampon.hasRemaining()) {
+				throw new IllegalArgumentException("Comptage partiel tronqué");
+			}
+			byte octet = tampon.get();
+			valeur |= (long) (octet & 0x7F) << decalage;
+			if (octet >= 0) {
+				return valeur;
+			}
+		}
+		throw new IllegalArgumentException("Comptage partiel invalide : entier trop long");
+	}
+
+	/**
+	 * Forme sérialisée d'un comptage : son encodage
+	 */
+	private static final class FormeSerialisee implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final byte[] encodage;
+
+		FormeSerialisee(byte[] encodage) {
+			this.encodage = encodage;
+		}
+
+		private Object readResolve() throws InvalidObjectException {
+			try {
+				return decoder(encodage);
+			} catch (RuntimeException e) {
+				InvalidObjectException erreur = new InvalidObjectException(e.getMessage());
+				erreur.initCause(e);
+				throw erreur;
+			}
+		}
+	}
+
+}
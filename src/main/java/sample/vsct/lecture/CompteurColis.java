@@ -0,0 +1,551 @@
+package sample.vsct.lecture;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+import sample.vsct.exception.TailleColisException;
+import sample.vsct.service.ConfigurationEmballage;
+
+/**
+ * Vérifie et compte les colis en une seule passe. Les grandes entrées sont
+ * découpées en blocs comptés en parallèle sur le pool fork-join commun, chaque
+ * bloc ayant son propre tableau de comptage. Les tableaux sont fusionnés à la
+ * fin.
+ *
+ * En cas d'erreur, c'est toujours le premier colis invalide de l'entrée qui est
+ * signalé, avec sa position.
+ *
+ * Les tailles autorisées viennent de la {@link ConfigurationEmballage}. Le
+ * format délimité (tailles à plusieurs chiffres) est lu séquentiellement par
+ * {@link AnalyseurDelimite}.
+ *
+ * @author Gaetan
+ *
+ */
+public final class CompteurColis {
+
+	final static Logger logger = Logger.getLogger(CompteurColis.class);
+
+	/** Nombre de colis traités par un bloc */
+	static final int TAILLE_BLOC = 1 << 20;
+
+	/** En dessous de ce nombre de colis, le comptage est fait sur le thread appelant */
+	static final int SEUIL_PARALLELE = 4 * TAILLE_BLOC;
+
+	/** Un long dont chaque octet vaut 1 */
+	private static final long OCTETS_A_UN = 0x0101010101010101L;
+
+	/** Le bit de poids fort de chaque octet d'un long */
+	private static final long BITS_FORTS = 0x8080808080808080L;
+
+	/** Les 4 bits de poids faible de chaque octet d'un long */
+	private static final long QUARTETS_FAIBLES = 0x0F0F0F0F0F0F0F0FL;
+
+	/** Taille d'un compteur de l'accumulateur : 9 tailles de 7 bits tiennent sur un long */
+	private static final int BITS_PAR_COMPTEUR = 7;
+
+	private static final long MASQUE_COMPTEUR = (1L << BITS_PAR_COMPTEUR) - 1;
+
+	/**
+	 * Un mot ajoute au plus 8 à un compteur : l'accumulateur est vidé avant
+	 * qu'un compteur ne dépasse 127
+	 */
+	private static final int MOTS_PAR_VIDAGE = (int) (MASQUE_COMPTEUR / 8);
+
+	/**
+	 * Indice : deux tailles de 4 bits. Valeur : l'accumulateur avec 1 sur le
+	 * compteur de chacune des deux tailles
+	 */
+	private static final long[] COMPTEURS_PAIRE = new long[256];
+
+	static {
+		for (int paire = 0; paire < COMPTEURS_PAIRE.length; paire++) {
+			int premiere = paire & 0xF;
+			int seconde = paire >>> 4;
+			if (premiere >= 1 && premiere <= 9 && seconde >= 1 && seconde <= 9) {
+				COMPTEURS_PAIRE[paire] = (1L << (BITS_PAR_COMPTEUR * (premiere - 1)))
+						+ (1L << (BITS_PAR_COMPTEUR * (seconde - 1)));
+			}
+		}
+	}
+
+	private CompteurColis() {
+	}
+
+	/**
+	 * Vérifie et compte les colis d'une chaine de caractères, avec la
+	 * configuration par défaut
+	 *
+	 * @param entreeTaillesColis
+	 *            Taille des colis entrant. Exemple : "354218465154"
+	 * @return Un tableau avec pour indice la taille et pour valeur, le nombre de
+	 *         colis ayant cette taille
+	 * @throws TailleColisException
+	 *             sur le premier colis invalide
+	 */
+	public static long[] compter(String entreeTaillesColis) {
+		return compter(entreeTaillesColis, ConfigurationEmballage.DEFAUT);
+	}
+
+	/**
+	 * Vérifie et compte les colis d'une chaine de caractères
+	 *
+	 * @param entreeTaillesColis
+	 *            Taille des colis entrant. Exemple : "354218465154", ou
+	 *            "120,80,455" au format délimité
+	 * @param configuration
+	 *            format de l'entrée et tailles autorisées
+	 * @return Un tableau avec pour indice la taille et pour valeur, le nombre de
+	 *         colis ayant cette taille
+	 * @throws TailleColisException
+	 *             sur le premier colis invalide
+	 */
+	public static long[] compter(String entreeTaillesColis, ConfigurationEmballage configuration) {
+		return compter(entreeTaillesColis, configuration, null);
+	}
+
+	/**
+	 * Vérifie et compte les colis d'une chaine de caractères. En mode tolérant,
+	 * les colis invalides sont ignorés et notés dans le rapport
+	 *
+	 * @param entreeTaillesColis
+	 *            Taille des colis entrant. Exemple : "354218465154", ou
+	 *            "120,80,455" au format délimité
+	 * @param configuration
+	 *            format de l'entrée et tailles autorisées
+	 * @param rapport
+	 *            reçoit les colis invalides (mode tolérant), ou null pour lever
+	 *            une exception sur le premier
+	 * @return Un tableau avec pour indice la taille et pour valeur, le nombre de
+	 *         colis valides ayant cette taille
+	 * @throws TailleColisException
+	 *             sur le premier colis invalide, sans rapport
+	 */
+	public static long[] compter(final String entreeTaillesColis, ConfigurationEmballage configuration,
+			RapportErreurs rapport) {
+		logger.debug("Vérification et comptage des colis");
+		long[] nbColisParTaille = configuration.creerNbColisParTaille();
+		if (configuration.isAvecSeparateur()) {
+			AnalyseurDelimite analyseur = new AnalyseurDelimite(configuration, nbColisParTaille, rapport);
+			analyseur.analyser(entreeTaillesColis, 0, entreeTaillesColis.length());
+			analyseur.terminer();
+			return nbColisParTaille;
+		}
+
+		final int tailleColisMin = configuration.getTailleColisMin();
+		final int tailleColisMax = configuration.getTailleColisMax();
+		if (entreeTaillesColis.length() < SEUIL_PARALLELE) {
+			int positionErreur = compterBloc(entreeTaillesColis, 0, entreeTaillesColis.length(), nbColisParTaille,
+					tailleColisMin, tailleColisMax, rapport);
+			if (positionErreur >= 0) {
+				throw creerErreur(entreeTaillesColis.charAt(positionErreur), positionErreur, configuration);
+			}
+			return nbColisParTaille;
+		}
+
+		ComptageParallele comptage = new ComptageParallele(entreeTaillesColis.length()) {
+			@Override
+			int compterBloc(int debut, int fin, long[] nbColisBloc, RapportErreurs rapportBloc) {
+				return CompteurColis.compterBloc(entreeTaillesColis, debut, fin, nbColisBloc, tailleColisMin,
+						tailleColisMax, rapportBloc);
+			}
+		};
+		int positionErreur = comptage.executer(nbColisParTaille, rapport);
+		if (positionErreur >= 0) {
+			throw creerErreur(entreeTaillesColis.charAt(positionErreur), positionErreur, configuration);
+		}
+		return nbColisParTaille;
+	}
+
+	/**
+	 * Vérifie et compte les colis (un chiffre ASCII par colis) d'un tableau
+	 * d'octets déjà en mémoire. Les fins de ligne sont ignorées.
+	 *
+	 * @param octets
+	 *            Taille des colis entrant. Exemple : "354218465154" en ASCII
+	 * @param configuration
+	 *            tailles autorisées, sans séparateur
+	 * @return Un tableau avec pour indice la taille et pour valeur, le nombre de
+	 *         colis ayant cette taille
+	 * @throws TailleColisException
+	 *             sur le premier colis invalide
+	 */
+	public static long[] compter(byte[] octets, ConfigurationEmballage configuration) {
+		return compter(octets, configuration, null);
+	}
+
+	/**
+	 * Vérifie et compte les colis (un chiffre ASCII par colis) d'un tableau
+	 * d'octets déjà en mémoire. En mode tolérant, les colis invalides sont
+	 * ignorés et notés dans le rapport
+	 *
+	 * @param octets
+	 *            Taille des colis entrant. Exemple : "354218465154" en ASCII
+	 * @param configuration
+	 *            tailles autorisées, sans séparateur
+	 * @param rapport
+	 *            reçoit les colis invalides (mode tolérant), ou null pour lever
+	 *            une exception sur le premier
+	 * @return Un tableau avec pour indice la taille et pour valeur, le nombre de
+	 *         colis valides ayant cette taille
+	 * @throws TailleColisException
+	 *             sur le premier colis invalide, sans rapport
+	 */
+	public static long[] compter(byte[] octets, ConfigurationEmballage configuration, RapportErreurs rapport) {
+		long[] nbColisParTaille = configuration.creerNbColisParTaille();
+		compter(ByteBuffer.wrap(octets), 0, nbColisParTaille, configuration, rapport);
+		return nbColisParTaille;
+	}
+
+	/**
+	 * Vérifie et ajoute au tableau les colis contenus entre la position et la
+	 * limite du tampon. Les fins de ligne ('\n' et '\r') sont ignorées.
+	 *
+	 * @param tampon
+	 *            octets à compter. Sa position n'est pas modifiée
+	 * @param positionDebut
+	 *            position du premier octet du tampon dans l'entrée complète (pour
+	 *            les messages d'erreur)
+	 * @param nbColisParTaille
+	 *            tableau des colis par taille à compléter
+	 * @throws TailleColisException
+	 *             sur le premier colis invalide
+	 */
+	public static void compter(ByteBuffer tampon, long positionDebut, long[] nbColisParTaille) {
+		compter(tampon, positionDebut, nbColisParTaille, ConfigurationEmballage.DEFAUT);
+	}
+
+	/**
+	 * Vérifie et ajoute au tableau les colis (un chiffre par colis) contenus entre
+	 * la position et la limite du tampon. Les fins de ligne ('\n' et '\r') sont
+	 * ignorées. Le format délimité n'est pas accepté : une taille pouvant être
+	 * coupée entre deux tampons, il est lu par {@link LecteurColis}.
+	 *
+	 * @param tampon
+	 *            octets à compter. Sa position n'est pas modifiée
+	 * @param positionDebut
+	 *            position du premier octet du tampon dans l'entrée complète (pour
+	 *            les messages d'erreur)
+	 * @param nbColisParTaille
+	 *            tableau des colis par taille à compléter
+	 * @param configuration
+	 *            tailles autorisées, sans séparateur
+	 * @throws TailleColisException
+	 *             sur le premier colis invalide
+	 */
+	public static void compter(ByteBuffer tampon, long positionDebut, long[] nbColisParTaille,
+			ConfigurationEmballage configuration) {
+		compter(tampon, positionDebut, nbColisParTaille, configuration, null);
+	}
+
+	/**
+	 * Vérifie et ajoute au tableau les colis (un chiffre par colis) contenus entre
+	 * la position et la limite du tampon, comme
+	 * {@link #compter(ByteBuffer, long, long[], ConfigurationEmballage)}. En mode
+	 * tolérant, les colis invalides sont ignorés et notés dans le rapport
+	 *
+	 * @param tampon
+	 *            octets à compter. Sa position n'est pas modifiée
+	 * @param positionDebut
+	 *            position du premier octet du tampon dans l'entrée complète
+	 * @param nbColisParTaille
+	 *            tableau des colis par taille à compléter
+	 * @param configuration
+	 *            tailles autorisées, sans séparateur
+	 * @param rapport
+	 *            reçoit les colis invalides (mode tolérant), ou null pour lever
+	 *            une exception sur le premier
+	 * @throws TailleColisException
+	 *             sur le premier colis invalide, sans rapport
+	 */
+	public static void compter(final ByteBuffer tampon, long positionDebut, long[] nbColisParTaille,
+			ConfigurationEmballage configuration, RapportErreurs rapport) {
+		if (configuration.isAvecSeparateur()) {
+			throw new IllegalArgumentException("Le format délimité doit être lu avec LecteurColis");
+		}
+		final int tailleColisMin = configuration.getTailleColisMin();
+		final int tailleColisMax = configuration.getTailleColisMax();
+		final int debutTampon = tampon.position();
+		// Ajouté à une position dans le tampon, donne la position dans l'entrée
+		final long decalage = positionDebut - debutTampon;
+		int positionErreur;
+		if (tampon.remaining() < SEUIL_PARALLELE) {
+			positionErreur = compterBloc(tampon, debutTampon, tampon.limit(), nbColisParTaille, tailleColisMin,
+					tailleColisMax, rapport, decalage);
+		} else {
+			ComptageParallele comptage = new ComptageParallele(tampon.remaining()) {
+				@Override
+				int compterBloc(int debut, int fin, long[] nbColisBloc, RapportErreurs rapportBloc) {
+					int positionErreurBloc = CompteurColis.compterBloc(tampon, debutTampon + debut, debutTampon + fin,
+							nbColisBloc, tailleColisMin, tailleColisMax, rapportBloc, decalage);
+					return positionErreurBloc < 0 ? positionErreurBloc : positionErreurBloc - debutTampon;
+				}
+			};
+			positionErreur = comptage.executer(nbColisParTaille, rapport);
+			if (positionErreur >= 0) {
+				positionErreur += debutTampon;
+			}
+		}
+		if (positionErreur >= 0) {
+			throw creerErreur((char) (tampon.get(positionErreur) & 0xFF),
+					positionDebut + positionErreur - debutTampon, configuration);
+		}
+	}
+
+	/**
+	 * @return un tableau de comptage vide pour la configuration par défaut,
+	 *         indicé par la taille des colis
+	 */
+	static long[] creerNbColisParTaille() {
+		return ConfigurationEmballage.DEFAUT.creerNbColisParTaille();
+	}
+
+	/**
+	 * Compte les colis d'une portion de chaine
+	 *
+	 * @param rapport
+	 *            reçoit les colis invalides, ou null
+	 * @return la position du premier colis invalide, -1 si tous sont valides ou
+	 *         notés dans le rapport
+	 */
+	private static int compterBloc(String entreeTaillesColis, int debut, int fin, long[] nbColisParTaille,
+			int tailleColisMin, int tailleColisMax, RapportErreurs rapport) {
+		for (int i = debut; i < fin; i++) {
+			char caractere = entreeTaillesColis.charAt(i);
+			int tailleColis = caractere - '0';
+			if (tailleColis < tailleColisMin || tailleColis > tailleColisMax) {
+				// Cas rare : on accepte, comme Integer.parseInt, les chiffres non ASCII
+				tailleColis = Character.digit(caractere, 10);
+				if (tailleColis < tailleColisMin || tailleColis > tailleColisMax) {
+					if (rapport == null) {
+						return i;
+					}
+					rapport.ajouter(i);
+					continue;
+				}
+			}
+			nbColisParTaille[tailleColis]++;
+		}
+		return -1;
+	}
+
+	/**
+	 * Compte les colis d'une portion de tampon, en ignorant les fins de ligne.
+	 * Les octets sont vérifiés huit par huit (un long) : un mot ne contenant que
+	 * des tailles autorisées est compté sans test ni écriture en mémoire par
+	 * octet, dans un accumulateur regroupant un compteur de 7 bits par taille. Un
+	 * mot contenant autre chose (fin de ligne, colis invalide) est repris octet
+	 * par octet, ce qui localise le premier colis invalide.
+	 *
+	 * @param rapport
+	 *            reçoit les colis invalides, ou null
+	 * @param decalage
+	 *            ajouté à une position dans le tampon, donne la position dans
+	 *            l'entrée (pour le rapport)
+	 * @return la position (dans le tampon) du premier colis invalide, -1 si tous
+	 *         sont valides ou notés dans le rapport
+	 */
+	private static int compterBloc(ByteBuffer tampon, int debut, int fin, long[] nbColisParTaille,
+			int tailleColisMin, int tailleColisMax, RapportErreurs rapport, long decalage) {
+		// Ajouté à chaque octet, met son bit de poids fort à 1 s'il est >= '0' + min
+		long ajoutMin = (0x80 - ('0' + tailleColisMin)) * OCTETS_A_UN;
+		// Ajouté à chaque octet, met son bit de poids fort à 1 s'il est > '0' + max
+		long ajoutMax = (0x7F - ('0' + tailleColisMax)) * OCTETS_A_UN;
+		long compteurs = 0;
+		int nbMots = 0;
+		int i = debut;
+		for (; i + 8 <= fin; i += 8) {
+			long mot = tampon.getLong(i);
+			if (((mot | (mot + ajoutMax) | ~(mot + ajoutMin)) & BITS_FORTS) == 0) {
+				// Les tailles (1 à 9) tiennent sur 4 bits : chaque paire d'octets
+				// devient un indice sur 8 bits
+				long paires = mot & QUARTETS_FAIBLES;
+				paires |= paires >>> 4;
+				compteurs += (COMPTEURS_PAIRE[(int) paires & 0xFF] + COMPTEURS_PAIRE[(int) (paires >>> 16) & 0xFF])
+						+ (COMPTEURS_PAIRE[(int) (paires >>> 32) & 0xFF]
+								+ COMPTEURS_PAIRE[(int) (paires >>> 48) & 0xFF]);
+				if (++nbMots == MOTS_PAR_VIDAGE) {
+					viderCompteurs(compteurs, nbColisParTaille);
+					compteurs = 0;
+					nbMots = 0;
+				}
+			} else {
+				int positionErreur = compterOctets(tampon, i, i + 8, nbColisParTaille, tailleColisMin,
+						tailleColisMax, rapport, decalage);
+				if (positionErreur >= 0) {
+					viderCompteurs(compteurs, nbColisParTaille);
+					return positionErreur;
+				}
+			}
+		}
+		viderCompteurs(compteurs, nbColisParTaille);
+		return compterOctets(tampon, i, fin, nbColisParTaille, tailleColisMin, tailleColisMax, rapport, decalage);
+	}
+
+	/**
+	 * Ajoute au tableau les compteurs de 7 bits regroupés dans un accumulateur
+	 */
+	private static void viderCompteurs(long compteurs, long[] nbColisParTaille) {
+		if (compteurs == 0) {
+			return;
+		}
+		for (int taille = 1; taille <= 9; taille++) {
+			nbColisParTaille[taille] += (compteurs >>> (BITS_PAR_COMPTEUR * (taille - 1))) & MASQUE_COMPTEUR;
+		}
+	}
+
+	/**
+	 * Compte les colis d'une portion de tampon octet par octet, en ignorant les
+	 * fins de ligne
+	 *
+	 * @return la position (dans le tampon) du premier colis invalide, -1 si tous
+	 *         sont valides ou notés dans le rapport
+	 */
+	private static int compterOctets(ByteBuffer tampon, int debut, int fin, long[] nbColisParTaille,
+			int tailleColisMin, int tailleColisMax, RapportErreurs rapport, long decalage) {
+		for (int i = debut; i < fin; i++) {
+			byte octet = tampon.get(i);
+			int tailleColis = octet - '0';
+			if (tailleColis >= tailleColisMin && tailleColis <= tailleColisMax) {
+				nbColisParTaille[tailleColis]++;
+			} else if (octet != '\n' && octet != '\r') {
+				if (rapport == null) {
+					return i;
+				}
+				rapport.ajouter(i + decalage);
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Construit l'erreur correspondant à un colis invalide
+	 *
+	 * @param colis
+	 *            caractère invalide
+	 * @param position
+	 *            position du colis dans l'entrée
+	 * @param configuration
+	 *            tailles autorisées
+	 * @return l'exception à lever
+	 */
+	static TailleColisException creerErreur(char colis, long position, ConfigurationEmballage configuration) {
+		String messageErreur;
+		int tailleColis = Character.digit(colis, 10);
+		if (tailleColis >= 0) {
+			messageErreur = String.format(
+					"La taille d'un colis vaut %d alors qu'il doit être compris entre %d et %d (position %d)",
+					tailleColis, configuration.getTailleColisMin(), configuration.getTailleColisMax(), position);
+		} else {
+			messageErreur = String.format(
+					"Le colis '%s' doit être enregistré avec sa taille au format nombre (position %d)", colis,
+					position);
+		}
+		return new TailleColisException(messageErreur, position);
+	}
+
+	/**
+	 * Découpe une entrée en blocs comptés en parallèle. Chaque bloc remplit son
+	 * propre tableau, les tableaux sont additionnés une fois tous les blocs
+	 * terminés. Dès qu'une erreur est trouvée, les blocs situés après elle ne sont
+	 * plus comptés.
+	 */
+	private abstract static class ComptageParallele {
+
+		private final int longueur;
+
+		/** Indice du premier bloc en erreur connu (Integer.MAX_VALUE si aucun) */
+		private final AtomicInteger premierBlocEnErreur = new AtomicInteger(Integer.MAX_VALUE);
+
+		ComptageParallele(int longueur) {
+			this.longueur = longueur;
+		}
+
+		/**
+		 * Compte les colis entre debut (inclus) et fin (exclus)
+		 *
+		 * @param rapportBloc
+		 *            reçoit les colis invalides du bloc, ou null
+		 * @return la position du premier colis invalide, -1 si tous sont valides
+		 *         ou notés dans le rapport
+		 */
+		abstract int compterBloc(int debut, int fin, long[] nbColisBloc, RapportErreurs rapportBloc);
+
+		/**
+		 * Lance le comptage de tous les blocs et fusionne les résultats
+		 *
+		 * @param nbColisParTaille
+		 *            tableau recevant la somme des blocs
+		 * @param rapport
+		 *            reçoit les colis invalides de tous les blocs dans l'ordre,
+		 *            ou null
+		 * @return la position du premier colis invalide, -1 si tous sont valides
+		 *         ou notés dans le rapport
+		 */
+		int executer(final long[] nbColisParTaille, RapportErreurs rapport) {
+			int nbBlocs = (int) (((long) longueur + TAILLE_BLOC - 1) / TAILLE_BLOC);
+			final long[][] nbColisParBloc = new long[nbBlocs][];
+			final int[] positionErreurParBloc = new int[nbBlocs];
+			// Chaque bloc a son propre rapport, ajoutés au rapport final dans l'ordre
+			final RapportErreurs[] rapportParBloc = new RapportErreurs[nbBlocs];
+			for (int b = 0; rapport != null && b < nbBlocs; b++) {
+				rapportParBloc[b] = rapport.creerVide();
+			}
+			RecursiveAction[] taches = new RecursiveAction[nbBlocs];
+			for (int b = 0; b < nbBlocs; b++) {
+				final int bloc = b;
+				taches[b] = new RecursiveAction() {
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					protected void compute() {
+						positionErreurParBloc[bloc] = -1;
+						if (bloc > premierBlocEnErreur.get()) {
+							// Une erreur a déjà été trouvée avant ce bloc
+							return;
+						}
+						long[] nbColisBloc = new long[nbColisParTaille.length];
+						int debut = bloc * TAILLE_BLOC;
+						int fin = (int) Math.min((long) debut + TAILLE_BLOC, longueur);
+						int positionErreur = compterBloc(debut, fin, nbColisBloc, rapportParBloc[bloc]);
+						if (positionErreur >= 0) {
+							positionErreurParBloc[bloc] = positionErreur;
+							int premierBloc = premierBlocEnErreur.get();
+							while (bloc < premierBloc && !premierBlocEnErreur.compareAndSet(premierBloc, bloc)) {
+								premierBloc = premierBlocEnErreur.get();
+							}
+						}
+						nbColisParBloc[bloc] = nbColisBloc;
+					}
+				};
+			}
+			ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					invokeAll(taches);
+				}
+			});
+
+			// Fusion des comptages dans l'ordre des blocs
+			for (int b = 0; b < nbBlocs; b++) {
+				if (positionErreurParBloc[b] >= 0) {
+					return positionErreurParBloc[b];
+				}
+				for (int taille = 0; taille < nbColisParTaille.length; taille++) {
+					nbColisParTaille[taille] += nbColisParBloc[b][taille];
+				}
+				if (rapport != null) {
+					rapport.ajouter(rapportParBloc[b]);
+				}
+			}
+			return -1;
+		}
+	}
+
+}
@@ -0,0 +1,56 @@
+package sample.vsct.lecture;
+
+/**
+ * Format du manifeste binaire : deux tailles de colis par octet.
+ *
+ * <pre>
+ * position  taille  contenu
+ *        0       4  nombre magique "COLS"
+ *        4       1  version du format
+ *        5       1  capacité des cartons
+ *        6       2  réservé (0)
+ *        8       8  nombre de colis
+ *       16       4  CRC32 des colis
+ *       20       *  colis : le colis i est dans l'octet i / 2, dans les 4 bits
+ *                   de poids fort si i est pair, de poids faible sinon. Si le
+ *                   nombre de colis est impair, les 4 derniers bits valent 0
+ * </pre>
+ *
+ * Les nombres sont écrits en big-endian. Une taille tenant sur 4 bits, le
+ * format est limité aux colis de taille {@link #TAILLE_COLIS_MAX} au plus, et
+ * aux cartons de capacité {@link #CAPACITE_CARTON_MAX} au plus (un octet).
+ *
+ * @author Gaetan
+ *
+ */
+public final class FormatManifeste {
+
+	/** "COLS" en ASCII */
+	public static final int NOMBRE_MAGIQUE = 0x434F4C53;
+
+	public static final byte VERSION = 1;
+
+	public static final int TAILLE_ENTETE = 20;
+
+	public static final int POSITION_NB_COLIS = 8;
+
+	public static final int POSITION_CRC = 16;
+
+	/** Plus grande taille de colis tenant sur 4 bits */
+	public static final int TAILLE_COLIS_MAX = 15;
+
+	/** Plus grande capacité de carton tenant sur un octet */
+	public static final int CAPACITE_CARTON_MAX = 255;
+
+	private FormatManifeste() {
+	}
+
+	/**
+	 * @param nbColis
+	 * @return la taille d'un manifeste de ce nombre de colis, en octets
+	 */
+	public static long tailleFichier(long nbColis) {
+		return TAILLE_ENTETE + (nbColis + 1) / 2;
+	}
+
+}
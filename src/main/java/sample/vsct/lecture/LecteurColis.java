@@ -0,0 +1,195 @@
+package sample.vsct.lecture;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.log4j.Logger;
+
+import sample.vsct.exception.TailleColisException;
+import sample.vsct.service.ConfigurationEmballage;
+
+/**
+ * Lit les tailles des colis depuis un fichier ou un flux, sans jamais charger
+ * toute l'entrée en mémoire. Les chiffres sont comptés directement dans un
+ * tableau indicé par la taille des colis (voir {@link CompteurColis}), la
+ * mémoire utilisée reste donc constante quelle que soit la taille de l'entrée.
+ *
+ * Les fins de ligne ('\n' et '\r') sont ignorées, afin d'accepter les fichiers
+ * se terminant par un retour à la ligne. Au format délimité, une taille pouvant
+ * être coupée entre deux zones ou deux tampons, l'analyse est séquentielle (voir
+ * {@link AnalyseurDelimite}).
+ *
+ * @author Gaetan
+ *
+ */
+public final class LecteurColis {
+
+	final static Logger logger = Logger.getLogger(LecteurColis.class);
+
+	/** Taille des zones du fichier projetées en mémoire (64 Mo) */
+	static final long TAILLE_ZONE_PROJETEE = 64L * 1024 * 1024;
+
+	/** Taille du tampon de lecture d'un flux (64 Ko) */
+	static final int TAILLE_TAMPON = 64 * 1024;
+
+	private LecteurColis() {
+	}
+
+	/**
+	 * Compte les colis d'un fichier en le projetant en mémoire zone par zone, avec
+	 * la configuration par défaut
+	 *
+	 * @param fichierColis
+	 *            fichier contenant les tailles des colis. Exemple : "354218465154"
+	 * @return Un tableau avec pour indice la taille et pour valeur, le nombre de
+	 *         colis ayant cette taille
+	 * @throws IOException
+	 * @throws TailleColisException
+	 */
+	public static long[] compter(Path fichierColis) throws IOException {
+		return compter(fichierColis, ConfigurationEmballage.DEFAUT);
+	}
+
+	/**
+	 * Compte les colis d'un fichier en le projetant en mémoire zone par zone
+	 *
+	 * @param fichierColis
+	 *            fichier contenant les tailles des colis. Exemple : "354218465154"
+	 * @param configuration
+	 *            format de l'entrée et tailles autorisées
+	 * @return Un tableau avec pour indice la taille et pour valeur, le nombre de
+	 *         colis ayant cette taille
+	 * @throws IOException
+	 * @throws TailleColisException
+	 */
+	public static long[] compter(Path fichierColis, ConfigurationEmballage configuration) throws IOException {
+		return compter(fichierColis, configuration, null);
+	}
+
+	/**
+	 * Compte les colis d'un fichier en le projetant en mémoire zone par zone. En
+	 * mode tolérant, les colis invalides sont ignorés et notés dans le rapport
+	 *
+	 * @param fichierColis
+	 *            fichier contenant les tailles des colis. Exemple : "354218465154"
+	 * @param configuration
+	 *            format de l'entrée et tailles autorisées
+	 * @param rapport
+	 *            reçoit les colis invalides (mode tolérant), ou null pour lever
+	 *            une exception sur le premier
+	 * @return Un tableau avec pour indice la taille et pour valeur, le nombre de
+	 *         colis valides ayant cette taille
+	 * @throws IOException
+	 * @throws TailleColisException
+	 *             sur le premier colis invalide, sans rapport
+	 */
+	public static long[] compter(Path fichierColis, ConfigurationEmballage configuration, RapportErreurs rapport)
+			throws IOException {
+		logger.debug("Lecture des colis depuis un fichier projeté en mémoire");
+		long[] nbColisParTaille = configuration.creerNbColisParTaille();
+		AnalyseurDelimite analyseur = configuration.isAvecSeparateur()
+				? new AnalyseurDelimite(configuration, nbColisParTaille, rapport)
+				: null;
+		try (FileChannel canal = FileChannel.open(fichierColis, StandardOpenOption.READ)) {
+			long tailleFichier = canal.size();
+			for (long position = 0; position < tailleFichier; position += TAILLE_ZONE_PROJETEE) {
+				long tailleZone = Math.min(TAILLE_ZONE_PROJETEE, tailleFichier - position);
+				MappedByteBuffer zone = canal.map(FileChannel.MapMode.READ_ONLY, position, tailleZone);
+				if (analyseur != null) {
+					analyseur.analyser(zone, position);
+				} else {
+					CompteurColis.compter(zone, position, nbColisParTaille, configuration, rapport);
+				}
+			}
+		}
+		if (analyseur != null) {
+			analyseur.terminer();
+		}
+		return nbColisParTaille;
+	}
+
+	/**
+	 * Compte les colis d'un flux (l'entrée standard par exemple) en le lisant par
+	 * blocs de taille fixe, avec la configuration par défaut
+	 *
+	 * @param canalColis
+	 *            flux contenant les tailles des colis. Il n'est pas fermé par la
+	 *            méthode
+	 * @return Un tableau avec pour indice la taille et pour valeur, le nombre de
+	 *         colis ayant cette taille
+	 * @throws IOException
+	 * @throws TailleColisException
+	 */
+	public static long[] compter(ReadableByteChannel canalColis) throws IOException {
+		return compter(canalColis, ConfigurationEmballage.DEFAUT);
+	}
+
+	/**
+	 * Compte les colis d'un flux (l'entrée standard par exemple) en le lisant par
+	 * blocs de taille fixe
+	 *
+	 * @param canalColis
+	 *            flux contenant les tailles des colis. Il n'est pas fermé par la
+	 *            méthode
+	 * @param configuration
+	 *            format de l'entrée et tailles autorisées
+	 * @return Un tableau avec pour indice la taille et pour valeur, le nombre de
+	 *         colis ayant cette taille
+	 * @throws IOException
+	 * @throws TailleColisException
+	 */
+	public static long[] compter(ReadableByteChannel canalColis, ConfigurationEmballage configuration)
+			throws IOException {
+		return compter(canalColis, configuration, null);
+	}
+
+	/**
+	 * Compte les colis d'un flux en le lisant par blocs de taille fixe. En mode
+	 * tolérant, les colis invalides sont ignorés et notés dans le rapport
+	 *
+	 * @param canalColis
+	 *            flux contenant les tailles des colis. Il n'est pas fermé par la
+	 *            méthode
+	 * @param configuration
+	 *            format de l'entrée et tailles autorisées
+	 * @param rapport
+	 *            reçoit les colis invalides (mode tolérant), ou null pour lever
+	 *            une exception sur le premier
+	 * @return Un tableau avec pour indice la taille et pour valeur, le nombre de
+	 *         colis valides ayant cette taille
+	 * @throws IOException
+	 * @throws TailleColisException
+	 *             sur le premier colis invalide, sans rapport
+	 */
+	public static long[] compter(ReadableByteChannel canalColis, ConfigurationEmballage configuration,
+			RapportErreurs rapport) throws IOException {
+		logger.debug("Lecture des colis depuis un flux");
+		long[] nbColisParTaille = configuration.creerNbColisParTaille();
+		AnalyseurDelimite analyseur = configuration.isAvecSeparateur()
+				? new AnalyseurDelimite(configuration, nbColisParTaille, rapport)
+				: null;
+		ByteBuffer tampon = ByteBuffer.allocateDirect(TAILLE_TAMPON);
+		long position = 0;
+		while (canalColis.read(tampon) >= 0) {
+			tampon.flip();
+			int nbOctetsLus = tampon.remaining();
+			if (analyseur != null) {
+				analyseur.analyser(tampon, position);
+			} else {
+				CompteurColis.compter(tampon, position, nbColisParTaille, configuration, rapport);
+			}
+			position += nbOctetsLus;
+			tampon.clear();
+		}
+		if (analyseur != null) {
+			analyseur.terminer();
+		}
+		return nbColisParTaille;
+	}
+
+}
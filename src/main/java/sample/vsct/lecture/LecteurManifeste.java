@@ -0,0 +1,206 @@
+package sample.vsct.lecture;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+
+import sample.vsct.exception.TailleColisException;
+import sample.vsct.service.ConfigurationEmballage;
+
+/**
+ * Compte les colis d'un manifeste binaire (voir {@link FormatManifeste}) projeté
+ * en mémoire zone par zone.
+ *
+ * Les octets ne sont pas décodés un par un : chaque octet incrémente le
+ * compteur de sa valeur dans une table de 256 entrées. Les deux tailles de
+ * chaque valeur d'octet ne sont ajoutées au tableau des colis qu'à la fin, 256
+ * fois au plus. Les tailles non autorisées sont donc détectées sur ce tableau ;
+ * le fichier n'est relu que pour trouver la position du premier colis invalide.
+ *
+ * @author Gaetan
+ *
+ */
+public final class LecteurManifeste {
+
+	final static Logger logger = Logger.getLogger(LecteurManifeste.class);
+
+	/** Nombre de valeurs d'un octet */
+	private static final int NB_VALEURS_OCTET = 256;
+
+	/** Nombre de valeurs d'une taille sur 4 bits */
+	private static final int NB_VALEURS_TAILLE = 16;
+
+	private LecteurManifeste() {
+	}
+
+	/**
+	 * Vérifie et compte les colis d'un manifeste binaire
+	 *
+	 * @param fichierManifeste
+	 *            manifeste binaire
+	 * @param configuration
+	 *            capacité des cartons et tailles autorisées. La capacité doit
+	 *            être celle du manifeste
+	 * @return Un tableau avec pour indice la taille et pour valeur, le nombre de
+	 *         colis ayant cette taille
+	 * @throws IOException
+	 *             si le fichier n'est pas un manifeste, est tronqué ou corrompu
+	 *             (somme de contrôle différente)
+	 * @throws TailleColisException
+	 *             sur le premier colis de taille non autorisée, avec sa position
+	 *             dans le manifeste (en nombre de colis)
+	 */
+	public static long[] compter(Path fichierManifeste, ConfigurationEmballage configuration) throws IOException {
+		logger.debug("Lecture des colis depuis un manifeste binaire");
+		try (FileChannel canal = FileChannel.open(fichierManifeste, StandardOpenOption.READ)) {
+			ByteBuffer entete = lireEntete(canal, fichierManifeste, configuration);
+			long nbColis = entete.getLong(FormatManifeste.POSITION_NB_COLIS);
+
+			// Nombre d'octets de chaque valeur, et somme de contrôle
+			long[] nbOctetsParValeur = new long[NB_VALEURS_OCTET];
+			CRC32 crc = new CRC32();
+			long tailleFichier = canal.size();
+			for (long position = FormatManifeste.TAILLE_ENTETE; position < tailleFichier;
+					position += LecteurColis.TAILLE_ZONE_PROJETEE) {
+				long tailleZone = Math.min(LecteurColis.TAILLE_ZONE_PROJETEE, tailleFichier - position);
+				MappedByteBuffer zone = canal.map(FileChannel.MapMode.READ_ONLY, position, tailleZone);
+				crc.update(zone.duplicate());
+				compterOctets(zone, nbOctetsParValeur);
+			}
+			if ((int) crc.getValue() != entete.getInt(FormatManifeste.POSITION_CRC)) {
+				throw new IOException(String.format("Le manifeste %s est corrompu (somme de contrôle différente)",
+						fichierManifeste));
+			}
+
+			// Chaque valeur d'octet contient deux tailles
+			long[] nbColisParTaille4Bits = new long[NB_VALEURS_TAILLE];
+			for (int valeur = 0; valeur < NB_VALEURS_OCTET; valeur++) {
+				nbColisParTaille4Bits[valeur >>> 4] += nbOctetsParValeur[valeur];
+				nbColisParTaille4Bits[valeur & 0x0F] += nbOctetsParValeur[valeur];
+			}
+			if ((nbColis & 1) == 1) {
+				// Les 4 derniers bits complètent l'octet, ce ne sont pas un colis
+				if ((lireOctet(canal, tailleFichier - 1) & 0x0F) != 0) {
+					throw new IOException(String.format(
+							"Le manifeste %s est corrompu (les 4 derniers bits doivent valoir 0)", fichierManifeste));
+				}
+				nbColisParTaille4Bits[0]--;
+			}
+
+			long[] nbColisParTaille = configuration.creerNbColisParTaille();
+			for (int taille = 0; taille < NB_VALEURS_TAILLE; taille++) {
+				if (nbColisParTaille4Bits[taille] == 0) {
+					continue;
+				}
+				if (taille < configuration.getTailleColisMin() || taille > configuration.getTailleColisMax()) {
+					throw creerErreur(canal, nbColis, configuration);
+				}
+				nbColisParTaille[taille] = nbColisParTaille4Bits[taille];
+			}
+			return nbColisParTaille;
+		}
+	}
+
+	/**
+	 * Lit et vérifie l'entête du manifeste
+	 *
+	 * @return l'entête
+	 */
+	private static ByteBuffer lireEntete(FileChannel canal, Path fichierManifeste,
+			ConfigurationEmballage configuration) throws IOException {
+		ByteBuffer entete = ByteBuffer.allocate(FormatManifeste.TAILLE_ENTETE);
+		while (entete.hasRemaining()) {
+			if (canal.read(entete, entete.position()) < 0) {
+				break;
+			}
+		}
+		if (entete.hasRemaining() || entete.getInt(0) != FormatManifeste.NOMBRE_MAGIQUE) {
+			throw new IOException(String.format("Le fichier %s n'est pas un manifeste binaire", fichierManifeste));
+		}
+		if (entete.get(4) != FormatManifeste.VERSION) {
+			throw new IOException(String.format("Version %d du manifeste %s non supportée", entete.get(4),
+					fichierManifeste));
+		}
+		int capaciteCarton = entete.get(5) & 0xFF;
+		if (capaciteCarton != configuration.getCapaciteCarton()) {
+			throw new IllegalArgumentException(String.format(
+					"Le manifeste %s est prévu pour des cartons de capacité %d (capacité configurée %d)",
+					fichierManifeste, capaciteCarton, configuration.getCapaciteCarton()));
+		}
+		long nbColis = entete.getLong(FormatManifeste.POSITION_NB_COLIS);
+		if (nbColis < 0 || canal.size() != FormatManifeste.tailleFichier(nbColis)) {
+			throw new IOException(String.format(
+					"Le manifeste %s est tronqué : %d octets pour %d colis annoncés", fichierManifeste,
+					canal.size(), nbColis));
+		}
+		return entete;
+	}
+
+	/**
+	 * Ajoute chaque octet de la zone au compteur de sa valeur. Les octets sont
+	 * lus 8 par 8
+	 */
+	private static void compterOctets(ByteBuffer zone, long[] nbOctetsParValeur) {
+		int limite = zone.limit();
+		int i = 0;
+		for (; i + Long.BYTES <= limite; i += Long.BYTES) {
+			long huitOctets = zone.getLong(i);
+			nbOctetsParValeur[(int) (huitOctets >>> 56)]++;
+			nbOctetsParValeur[(int) (huitOctets >>> 48) & 0xFF]++;
+			nbOctetsParValeur[(int) (huitOctets >>> 40) & 0xFF]++;
+			nbOctetsParValeur[(int) (huitOctets >>> 32) & 0xFF]++;
+			nbOctetsParValeur[(int) (huitOctets >>> 24) & 0xFF]++;
+			nbOctetsParValeur[(int) (huitOctets >>> 16) & 0xFF]++;
+			nbOctetsParValeur[(int) (huitOctets >>> 8) & 0xFF]++;
+			nbOctetsParValeur[(int) huitOctets & 0xFF]++;
+		}
+		for (; i < limite; i++) {
+			nbOctetsParValeur[zone.get(i) & 0xFF]++;
+		}
+	}
+
+	private static int lireOctet(FileChannel canal, long position) throws IOException {
+		ByteBuffer octet = ByteBuffer.allocate(1);
+		canal.read(octet, position);
+		return octet.get(0) & 0xFF;
+	}
+
+	/**
+	 * Relit le manifeste pour trouver le premier colis de taille non autorisée
+	 * (cas rare)
+	 *
+	 * @return l'exception à lever
+	 */
+	private static TailleColisException creerErreur(FileChannel canal, long nbColis,
+			ConfigurationEmballage configuration) throws IOException {
+		long tailleFichier = canal.size();
+		for (long position = FormatManifeste.TAILLE_ENTETE; position < tailleFichier;
+				position += LecteurColis.TAILLE_ZONE_PROJETEE) {
+			long tailleZone = Math.min(LecteurColis.TAILLE_ZONE_PROJETEE, tailleFichier - position);
+			MappedByteBuffer zone = canal.map(FileChannel.MapMode.READ_ONLY, position, tailleZone);
+			for (int i = 0; i < zone.limit(); i++) {
+				int octet = zone.get(i) & 0xFF;
+				long colis = 2 * (position - FormatManifeste.TAILLE_ENTETE + i);
+				for (int demiOctet = 0; demiOctet < 2; demiOctet++) {
+					int taille = demiOctet == 0 ? octet >>> 4 : octet & 0x0F;
+					if (colis < nbColis && (taille < configuration.getTailleColisMin()
+							|| taille > configuration.getTailleColisMax())) {
+						return new TailleColisException(String.format(
+								"La taille d'un colis vaut %d alors qu'il doit être compris entre %d et %d (position %d)",
+								taille, configuration.getTailleColisMin(), configuration.getTailleColisMax(), colis),
+								colis);
+					}
+					colis++;
+				}
+			}
+		}
+		throw new IllegalStateException("Colis invalide introuvable");
+	}
+
+}
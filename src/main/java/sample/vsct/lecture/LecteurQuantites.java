@@ -0,0 +1,169 @@
+package sample.vsct.lecture;
+
+import org.apache.log4j.Logger;
+
+import sample.vsct.exception.TailleColisException;
+import sample.vsct.service.ConfigurationEmballage;
+
+/**
+ * Lit des colis déjà regroupés par taille, au format "taille x nombre" :
+ * "9x1000000000,1x500" décrit un milliard de colis de taille 9 et 500 colis de
+ * taille 1. Une taille peut apparaître plusieurs fois, ses nombres de colis
+ * sont additionnés.
+ *
+ * La lecture ne dépend que du nombre de couples, pas du nombre de colis. Les
+ * nombres sont sur 64 bits ; le volume total des colis doit tenir sur un long,
+ * ce qui garantit qu'aucun calcul de l'emballage ne déborde.
+ *
+ * @author Gaetan
+ *
+ */
+public final class LecteurQuantites {
+
+	final static Logger logger = Logger.getLogger(LecteurQuantites.class);
+
+	/** Sépare deux couples taille x nombre */
+	public static final char SEPARATEUR_QUANTITES = ',';
+
+	/** Sépare la taille du nombre de colis */
+	public static final char SEPARATEUR_NOMBRE = 'x';
+
+	private LecteurQuantites() {
+	}
+
+	/**
+	 * Vérifie et lit des quantités de colis par taille
+	 *
+	 * @param quantitesParTaille
+	 *            Exemple : "9x1000000000,1x500"
+	 * @param configuration
+	 *            tailles autorisées
+	 * @return Un tableau avec pour indice la taille et pour valeur, le nombre de
+	 *         colis ayant cette taille
+	 * @throws TailleColisException
+	 *             sur le premier couple invalide, avec la position du caractère
+	 *             en erreur
+	 */
+	public static long[] lire(String quantitesParTaille, ConfigurationEmballage configuration) {
+		logger.debug("Lecture des quantités de colis par taille");
+		long[] nbColisParTaille = configuration.creerNbColisParTaille();
+		int longueur = quantitesParTaille.length();
+		int position = 0;
+		while (position < longueur) {
+			// Taille du colis
+			int debutTaille = position;
+			long taille = 0;
+			while (position < longueur && estChiffre(quantitesParTaille.charAt(position))) {
+				taille = taille * 10 + (quantitesParTaille.charAt(position) - '0');
+				if (taille > configuration.getTailleColisMax()) {
+					throw new TailleColisException(String.format(
+							"La taille d'un colis dépasse la taille maximum %d (position %d)",
+							configuration.getTailleColisMax(), debutTaille), debutTaille);
+				}
+				position++;
+			}
+			if (position == debutTaille) {
+				throw creerErreurFormat("la taille des colis", quantitesParTaille, position);
+			}
+			if (taille < configuration.getTailleColisMin()) {
+				throw new TailleColisException(String.format(
+						"La taille d'un colis vaut %d alors qu'il doit être compris entre %d et %d (position %d)",
+						taille, configuration.getTailleColisMin(), configuration.getTailleColisMax(), debutTaille),
+						debutTaille);
+			}
+			if (position == longueur || quantitesParTaille.charAt(position) != SEPARATEUR_NOMBRE) {
+				throw creerErreurFormat(String.format("'%s' après la taille", SEPARATEUR_NOMBRE),
+						quantitesParTaille, position);
+			}
+			position++;
+
+			// Nombre de colis de cette taille
+			int debutNombre = position;
+			long nbColis = 0;
+			try {
+				while (position < longueur && estChiffre(quantitesParTaille.charAt(position))) {
+					nbColis = Math.addExact(Math.multiplyExact(nbColis, 10L),
+							quantitesParTaille.charAt(position) - '0');
+					position++;
+				}
+				if (position == debutNombre) {
+					throw creerErreurFormat("le nombre de colis", quantitesParTaille, position);
+				}
+				nbColisParTaille[(int) taille] = Math.addExact(nbColisParTaille[(int) taille], nbColis);
+			} catch (ArithmeticException e) {
+				throw new TailleColisException(String.format(
+						"Le nombre de colis de taille %d dépasse %d (position %d)", taille, Long.MAX_VALUE,
+						debutNombre), debutNombre);
+			}
+
+			if (position < longueur) {
+				if (quantitesParTaille.charAt(position) != SEPARATEUR_QUANTITES) {
+					throw creerErreurFormat(String.format("'%s' après le nombre de colis", SEPARATEUR_QUANTITES),
+							quantitesParTaille, position);
+				}
+				position++;
+				if (position == longueur) {
+					throw creerErreurFormat("la taille des colis", quantitesParTaille, position);
+				}
+			}
+		}
+		return verifier(nbColisParTaille, configuration);
+	}
+
+	/**
+	 * Vérifie des nombres de colis par taille
+	 *
+	 * @param nbColisParTaille
+	 *            Indice : taille des colis. Valeur : nombre de colis ayant cette
+	 *            taille. Le tableau peut être plus court que la capacité des
+	 *            cartons
+	 * @param configuration
+	 *            tailles autorisées
+	 * @return une copie du tableau, indicée jusqu'à la capacité des cartons
+	 * @throws TailleColisException
+	 *             si des colis ont une taille non autorisée
+	 * @throws IllegalArgumentException
+	 *             si un nombre de colis est négatif, ou si le volume total des
+	 *             colis dépasse la capacité d'un long
+	 */
+	public static long[] verifier(long[] nbColisParTaille, ConfigurationEmballage configuration) {
+		long[] copie = configuration.creerNbColisParTaille();
+		long volume = 0;
+		for (int taille = 0; taille < nbColisParTaille.length; taille++) {
+			long nbColis = nbColisParTaille[taille];
+			if (nbColis == 0) {
+				continue;
+			}
+			if (taille < configuration.getTailleColisMin() || taille > configuration.getTailleColisMax()) {
+				throw new TailleColisException(String.format(
+						"La taille d'un colis vaut %d alors qu'il doit être compris entre %d et %d", taille,
+						configuration.getTailleColisMin(), configuration.getTailleColisMax()));
+			}
+			if (nbColis < 0) {
+				throw new IllegalArgumentException(
+						String.format("Nombre de colis de taille %d négatif : %d", taille, nbColis));
+			}
+			try {
+				volume = Math.addExact(volume, Math.multiplyExact(nbColis, (long) taille));
+			} catch (ArithmeticException e) {
+				throw new IllegalArgumentException(
+						String.format("Le volume total des colis dépasse %d", Long.MAX_VALUE), e);
+			}
+			copie[taille] = nbColis;
+		}
+		return copie;
+	}
+
+	private static boolean estChiffre(char caractere) {
+		return caractere >= '0' && caractere <= '9';
+	}
+
+	private static TailleColisException creerErreurFormat(String attendu, String quantitesParTaille, int position) {
+		String trouve = position < quantitesParTaille.length()
+				? String.format("'%s'", quantitesParTaille.charAt(position))
+				: "la fin de l'entrée";
+		return new TailleColisException(
+				String.format("Il manque %s : %s trouvé (position %d)", attendu, trouve, position), position);
+	}
+
+}
@@ -0,0 +1,141 @@
+package sample.vsct.lecture;
+
+import java.util.Arrays;
+
+/**
+ * Colis invalides rencontrés lors d'une lecture en mode tolérant : au lieu de
+ * lever une {@link sample.vsct.exception.TailleColisException} sur le premier
+ * colis invalide, la lecture l'ignore et note sa position ici, puis continue.
+ *
+ * Seules les premières positions sont gardées, pour qu'une entrée très sale
+ * n'occupe pas toute la mémoire ; le nombre total de colis invalides est
+ * toujours exact. Noter une erreur ne crée aucun objet.
+ *
+ * Un rapport n'est pas partagé entre plusieurs lectures simultanées.
+ *
+ * @author Gaetan
+ *
+ */
+public final class RapportErreurs {
+
+	/** Nombre de positions gardées par défaut */
+	public static final int NB_POSITIONS_DEFAUT = 1000;
+
+	/** Nombre de positions affichées par toString */
+	private static final int NB_POSITIONS_AFFICHEES = 10;
+
+	/** Premières positions en erreur, dans l'ordre de l'entrée */
+	private final long[] positions;
+
+	private int nbPositions;
+
+	private long nbErreurs;
+
+	public RapportErreurs() {
+		this(NB_POSITIONS_DEFAUT);
+	}
+
+	/**
+	 * @param nbPositionsMax
+	 *            nombre de positions gardées, les suivantes sont seulement
+	 *            comptées
+	 */
+	public RapportErreurs(int nbPositionsMax) {
+		if (nbPositionsMax < 0) {
+			throw new IllegalArgumentException(
+					String.format("Le nombre de positions gardées doit être positif : %d", nbPositionsMax));
+		}
+		this.positions = new long[nbPositionsMax];
+	}
+
+	/**
+	 * Note un colis invalide. Les positions doivent être données dans l'ordre de
+	 * l'entrée
+	 *
+	 * @param position
+	 *            position du colis dans l'entrée
+	 */
+	void ajouter(long position) {
+		if (nbPositions < positions.length) {
+			positions[nbPositions++] = position;
+		}
+		nbErreurs++;
+	}
+
+	/**
+	 * Ajoute les erreurs d'une portion de l'entrée située après toutes celles de
+	 * ce rapport
+	 *
+	 * @param suite
+	 *            rapport de la portion suivante
+	 */
+	void ajouter(RapportErreurs suite) {
+		int nbCopiees = Math.min(suite.nbPositions, positions.length - nbPositions);
+		System.arraycopy(suite.positions, 0, positions, nbPositions, nbCopiees);
+		nbPositions += nbCopiees;
+		nbErreurs += suite.nbErreurs;
+	}
+
+	/**
+	 * @return un rapport vide gardant le même nombre de positions
+	 */
+	RapportErreurs creerVide() {
+		return new RapportErreurs(positions.length);
+	}
+
+	/**
+	 * @return le nombre total de colis invalides ignorés
+	 */
+	public long getNbErreurs() {
+		return nbErreurs;
+	}
+
+	/**
+	 * @return les positions des premiers colis invalides, dans l'ordre de
+	 *         l'entrée (une copie)
+	 */
+	public long[] getPositions() {
+		return Arrays.copyOf(positions, nbPositions);
+	}
+
+	/**
+	 * @return vrai si des colis invalides ont été comptés sans que leur position
+	 *         soit gardée
+	 */
+	public boolean isTronque() {
+		return nbErreurs > nbPositions;
+	}
+
+	public boolean isVide() {
+		return nbErreurs == 0;
+	}
+
+	/**
+	 * Résumé du rapport. Exemple : "3 colis invalides ignorés (positions 4, 17,
+	 * 250)"
+	 */
+	@Override
+	public String toString() {
+		if (nbErreurs == 0) {
+			return "Aucun colis invalide";
+		}
+		StringBuilder resume = new StringBuilder();
+		resume.append(nbErreurs).append(nbErreurs > 1 ? " colis invalides ignorés" : " colis invalide ignoré");
+		int nbAffichees = Math.min(nbPositions, NB_POSITIONS_AFFICHEES);
+		if (nbAffichees > 0) {
+			resume.append(nbAffichees > 1 ? " (positions " : " (position ");
+			for (int i = 0; i < nbAffichees; i++) {
+				if (i > 0) {
+					resume.append(", ");
+				}
+				resume.append(positions[i]);
+			}
+			if (nbErreurs > nbAffichees) {
+				resume.append(", ...");
+			}
+			resume.append(')');
+		}
+		return resume.toString();
+	}
+
+}
@@ -1,44 +1,354 @@
 package sample.vsct.main;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 
+import sample.vsct.ecriture.EcrivainCartons;
+import sample.vsct.ecriture.EcrivainManifeste;
 import sample.vsct.exception.TailleColisException;
+import sample.vsct.lecture.ComptagePartiel;
+import sample.vsct.lecture.FormatManifeste;
+import sample.vsct.lecture.RapportErreurs;
+import sample.vsct.mesure.MesuresEnMemoire;
+import sample.vsct.serveur.ServeurEmballage;
+import sample.vsct.service.ConfigurationEmballage;
+import sample.vsct.service.EmballageParFenetres;
 import sample.vsct.service.EmballageService;
 import sample.vsct.service.EmballageServiceImpl;
+import sample.vsct.service.FenetreEmballage;
+import sample.vsct.service.ResultatSolveur;
+import sample.vsct.service.TypeSolveur;
 
 public class Main {
-	
+
 	final static Logger logger = Logger.getLogger(Main.class);
 
+	/** Au delà de ce nombre de colis, on affiche les cartons de manière optimisée */
+	private static final int NB_COLIS_AFFICHAGE_OPTIMISE = 30;
+
+	/** Nombre d'emballages gardés en cache par le serveur */
+	private static final int TAILLE_CACHE_SERVEUR = 4096;
+
+	/** Remplissage en dessous duquel les colis d'un carton passent à la fenêtre suivante */
+	private static final double SEUIL_REMPLISSAGE_FENETRES = 0.8;
+
+	/** Attente maximum des colis retenus, en nombre de durées de fenêtre */
+	private static final int NB_FENETRES_ATTENTE_MAX = 10;
+
+	/** Code de sortie si des colis sont invalides ou illisibles */
+	static final int CODE_ERREUR_COLIS = 1;
+
+	/** Code de sortie si les arguments sont invalides */
+	static final int CODE_ERREUR_ARGUMENTS = 2;
+
+	/** Arguments acceptés, affichés quand ils sont invalides */
+	private static final String USAGE = String.join(System.lineSeparator(), "Usage :",
+			"  (sans argument)                         saisie des colis sur une ligne",
+			"  --fichier chemin [--tolerant]",
+			"  --flux [--tolerant]",
+			"  --quantites 9x1000000000,1x500",
+			"  --manifeste chemin",
+			"  --convertir texte manifeste",
+			"  --serveur port",
+			"  --compter-fragment fichier debut fin comptage",
+			"  --fusionner comptage...",
+			"  --affecter chemin",
+			"  --fenetres nbColis dureeMillis");
+
 	/**
-	 * Méthode de test avec entrée utilisateur
+	 * Méthode de test avec entrée utilisateur. Sans argument, les tailles des colis
+	 * sont saisies sur une ligne. Avec l'argument "--fichier chemin", elles sont lues
+	 * depuis un fichier projeté en mémoire. Avec l'argument "--flux", elles sont lues
+	 * par blocs sur l'entrée standard jusqu'à sa fin. Avec l'argument "--quantites
+	 * 9x1000000000,1x500", les colis sont donnés par nombre pour chaque taille.
+	 * Avec l'argument "--manifeste chemin", ils sont lus depuis un manifeste
+	 * binaire, que "--convertir texte manifeste" crée à partir d'un fichier texte.
+	 * Avec l'argument "--serveur port", le service reste chargé et répond aux
+	 * demandes reçues sur ce port local (voir {@link ServeurEmballage}).
+	 * Avec l'argument "--compter-fragment fichier debut fin comptage", seuls les
+	 * octets de debut (inclus) à fin (exclu) du fichier sont comptés, et le
+	 * comptage partiel est écrit dans le fichier comptage. L'argument "--fusionner
+	 * comptage..." emballe les colis de tous les comptages partiels. Ajouté après
+	 * "--fichier chemin" ou "--flux", l'argument "--tolerant" ignore les colis
+	 * invalides au lieu d'arrêter l'emballage, et affiche leurs positions. Avec
+	 * l'argument "--affecter chemin", le carton de chaque colis du fichier est
+	 * affiché, une ligne "indice carton" par colis. Avec l'argument "--fenetres
+	 * nbColis dureeMillis", les lignes lues sur l'entrée standard sont emballées
+	 * par fenêtres (voir {@link EmballageParFenetres}). Des arguments invalides
+	 * affichent l'usage et terminent le processus avec le code
+	 * {@link #CODE_ERREUR_ARGUMENTS}, des colis invalides ou illisibles avec le
+	 * code {@link #CODE_ERREUR_COLIS}.
 	 * @param args
 	 */
 	public static void main(String[] args) {
+		int code = executer(args);
+		if (code != 0) {
+			System.exit(code);
+		}
+	}
+
+	/**
+	 * Exécute le programme sans terminer le processus
+	 * @param args
+	 *            voir {@link #main(String[])}
+	 * @return le code de sortie : 0, {@link #CODE_ERREUR_COLIS} ou
+	 *         {@link #CODE_ERREUR_ARGUMENTS}
+	 */
+	static int executer(String[] args) {
+		EmballageService emballageService = new EmballageServiceImpl();
+		try {
+			if (args.length >= 2 && args.length <= 3 && "--fichier".equals(args[0])) {
+				emballerFichier(emballageService, Paths.get(args[1]), creerRapport(args, 2));
+			} else if (args.length >= 1 && args.length <= 2 && "--flux".equals(args[0])) {
+				emballerFlux(emballageService, creerRapport(args, 1));
+			} else if (args.length == 2 && "--quantites".equals(args[0])) {
+				emballerQuantites(emballageService, args[1]);
+			} else if (args.length == 2 && "--serveur".equals(args[0])) {
+				servir(Integer.parseInt(args[1]));
+			} else if (args.length == 3 && "--fenetres".equals(args[0])) {
+				emballerParFenetres(Integer.parseInt(args[1]), Long.parseLong(args[2]));
+			} else if (args.length == 2 && "--affecter".equals(args[0])) {
+				emballageService.affecterColis(Paths.get(args[1])).exporter(sortieStandard());
+			} else if (args.length == 2 && "--manifeste".equals(args[0])) {
+				emballerManifeste(emballageService, Paths.get(args[1]));
+			} else if (args.length == 5 && "--compter-fragment".equals(args[0])) {
+				ComptagePartiel comptage = ComptagePartiel.compter(Paths.get(args[1]), Long.parseLong(args[2]),
+						Long.parseLong(args[3]), ConfigurationEmballage.DEFAUT);
+				Files.write(Paths.get(args[4]), comptage.encoder());
+				System.out.println(String.format("%d colis comptés", comptage.getNbColis()));
+			} else if (args.length >= 2 && "--fusionner".equals(args[0])) {
+				emballerComptages(emballageService, args);
+			} else if (args.length == 3 && "--convertir".equals(args[0])) {
+				long nbColis = EcrivainManifeste.convertir(Paths.get(args[1]), Paths.get(args[2]),
+						ConfigurationEmballage.DEFAUT);
+				System.out.println(String.format("%d colis convertis", nbColis));
+			} else {
+				emballerSaisie(emballageService);
+			}
+		} catch (TailleColisException e) {
+			logger.error(e.getMessage());
+			return CODE_ERREUR_COLIS;
+		} catch (IOException e) {
+			logger.error("Erreur de lecture des colis", e);
+			return CODE_ERREUR_COLIS;
+		} catch (NumberFormatException e) {
+			logger.error(String.format("Nombre invalide (%s)%n%s", e.getMessage(), USAGE));
+			return CODE_ERREUR_ARGUMENTS;
+		} catch (IllegalArgumentException e) {
+			// Argument inconnu, quantités ou comptage partiel invalides
+			logger.error(String.format("%s%n%s", e.getMessage(), USAGE));
+			return CODE_ERREUR_ARGUMENTS;
+		}
+		return 0;
+	}
+
+	/**
+	 * Emballe les colis saisis sur une ligne de l'entrée standard
+	 * @param emballageService
+	 */
+	private static void emballerSaisie(EmballageService emballageService) throws IOException {
 		System.out.println("Merci d'indiquer ici les tailles des colis en entrée");
 		// Récupération de l'entrée standard
 		Scanner stdin = new Scanner(System.in);
 		String colisEntree = stdin.nextLine();
-		
-		EmballageService emballageService = new EmballageServiceImpl();
-		try {
-			// S'il y a plus de 30 colis, on affiche de manière optimisée
-			boolean affichageOptimise = false;
-			if (colisEntree.length() > 30) {
-				affichageOptimise = true;
+
+		// S'il y a plus de 30 colis, on affiche de manière optimisée
+		boolean affichageOptimise = false;
+		if (colisEntree.length() > NB_COLIS_AFFICHAGE_OPTIMISE) {
+			affichageOptimise = true;
+		}
+		// Appel de la méthode principale : les colis sont vérifiés avant d'afficher
+		// l'entête, puis les cartons sont écrits directement sur la sortie standard
+		ResultatSolveur resultat = emballageService.calculerCartons(colisEntree);
+		afficherEntete(affichageOptimise);
+		EcrivainCartons.ecrire(resultat.getCombinaisons(), resultat.getNbCartonsParCombinaison(),
+				affichageOptimise, sortieStandard());
+		System.out.println();
+	}
+
+	/**
+	 * Emballe les colis d'un fichier, sans le charger en mémoire
+	 * @param emballageService
+	 * @param fichierColis
+	 * @param rapport
+	 *            reçoit les colis invalides (mode tolérant), ou null
+	 * @throws IOException
+	 */
+	private static void emballerFichier(EmballageService emballageService, Path fichierColis,
+			RapportErreurs rapport) throws IOException {
+		// La taille du fichier donne (à la fin de ligne près) le nombre de colis
+		boolean affichageOptimise = Files.size(fichierColis) > NB_COLIS_AFFICHAGE_OPTIMISE;
+		afficherEntete(affichageOptimise);
+		emballageService.emballerCartons(fichierColis, affichageOptimise, sortieStandard(), rapport);
+		System.out.println();
+		afficherRapport(rapport);
+	}
+
+	/**
+	 * Emballe les colis lus sur l'entrée standard jusqu'à sa fin. Le nombre de colis
+	 * n'étant pas connu à l'avance, on affiche toujours de manière optimisée
+	 * @param emballageService
+	 * @param rapport
+	 *            reçoit les colis invalides (mode tolérant), ou null
+	 * @throws IOException
+	 */
+	private static void emballerFlux(EmballageService emballageService, RapportErreurs rapport)
+			throws IOException {
+		afficherEntete(true);
+		emballageService.emballerCartons(Channels.newChannel(System.in), true, sortieStandard(), rapport);
+		System.out.println();
+		afficherRapport(rapport);
+	}
+
+	/**
+	 * @param args
+	 * @param indice
+	 *            position de l'argument optionnel "--tolerant"
+	 * @return un rapport si le mode tolérant est demandé, null sinon
+	 */
+	private static RapportErreurs creerRapport(String[] args, int indice) {
+		if (args.length <= indice) {
+			return null;
+		}
+		if (!"--tolerant".equals(args[indice])) {
+			throw new IllegalArgumentException(String.format("Argument inconnu : %s", args[indice]));
+		}
+		return new RapportErreurs();
+	}
+
+	/**
+	 * Affiche sur la sortie d'erreur le résumé des colis invalides ignorés
+	 * @param rapport
+	 *            rapport du mode tolérant, ou null
+	 */
+	private static void afficherRapport(RapportErreurs rapport) {
+		if (rapport != null) {
+			System.err.println(rapport);
+		}
+	}
+
+	/**
+	 * Emballe par fenêtres les colis lus ligne par ligne sur l'entrée standard
+	 * jusqu'à sa fin, et affiche chaque fenêtre au fil de l'eau
+	 * @param nbColisParFenetre
+	 * @param dureeFenetreMillis
+	 * @throws IOException
+	 */
+	private static void emballerParFenetres(int nbColisParFenetre, long dureeFenetreMillis) throws IOException {
+		EmballageParFenetres.Recepteur recepteur = new EmballageParFenetres.Recepteur() {
+			@Override
+			public void recevoir(FenetreEmballage fenetre) {
+				System.out.println(fenetre + " : " + fenetre.getResultat().afficher(true));
 			}
-			// Appel de la méthode principale
-			String cartonsEmballes = emballageService.emballerCartons(colisEntree, affichageOptimise);
-			System.out.print("Voici les cartons à emballer :");
-			if (affichageOptimise) {
-				System.out.println("(Avec entre parenthèses le nombre de cartons pour chaque combinaison de tailles)");
+		};
+		BufferedReader lecteur = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.US_ASCII));
+		try (EmballageParFenetres emballage = new EmballageParFenetres(new EmballageServiceImpl(), nbColisParFenetre,
+				dureeFenetreMillis, SEUIL_REMPLISSAGE_FENETRES, NB_FENETRES_ATTENTE_MAX * dureeFenetreMillis,
+				recepteur)) {
+			String ligne;
+			while ((ligne = lecteur.readLine()) != null) {
+				if (!ligne.isEmpty()) {
+					emballage.ajouterTout(ligne);
+				}
 			}
-			System.out.println(cartonsEmballes);
-		} catch (TailleColisException e) {
-			logger.error(e.getMessage());
 		}
+	}
+
+	/**
+	 * Répond aux demandes d'emballage reçues sur un port local, jusqu'à l'arrêt du
+	 * processus. Les profils de commande fréquents sont gardés en cache, et les
+	 * mesures sont tracées toutes les minutes
+	 * @param port
+	 * @throws IOException
+	 */
+	private static void servir(int port) throws IOException {
+		MesuresEnMemoire mesures = new MesuresEnMemoire();
+		EmballageService emballageService = new EmballageServiceImpl(ConfigurationEmballage.DEFAUT,
+				TypeSolveur.GLOUTON, mesures, TAILLE_CACHE_SERVEUR);
+		ScheduledExecutorService planificateur = Executors.newSingleThreadScheduledExecutor();
+		mesures.tracerPeriodiquement(planificateur, 1, TimeUnit.MINUTES);
+		try (ServeurEmballage serveur = new ServeurEmballage(emballageService, port)) {
+			serveur.servir();
+		} finally {
+			planificateur.shutdown();
+		}
+	}
+
+	/**
+	 * Emballe les colis d'un manifeste binaire. Sa taille donne le nombre de colis
+	 * (deux par octet)
+	 * @param emballageService
+	 * @param fichierManifeste
+	 * @throws IOException
+	 */
+	private static void emballerManifeste(EmballageService emballageService, Path fichierManifeste)
+			throws IOException {
+		boolean affichageOptimise = 2 * (Files.size(fichierManifeste)
+				- FormatManifeste.TAILLE_ENTETE) > NB_COLIS_AFFICHAGE_OPTIMISE;
+		afficherEntete(affichageOptimise);
+		emballageService.emballerManifeste(fichierManifeste, affichageOptimise, sortieStandard());
+		System.out.println();
+	}
+
+	/**
+	 * Fusionne les comptages partiels écrits par "--compter-fragment" et emballe
+	 * leurs colis, toujours de manière optimisée
+	 * @param emballageService
+	 * @param args
+	 *            "--fusionner" suivi des fichiers de comptage
+	 * @throws IOException
+	 */
+	private static void emballerComptages(EmballageService emballageService, String[] args) throws IOException {
+		List<ComptagePartiel> comptages = new ArrayList<>();
+		for (int i = 1; i < args.length; i++) {
+			comptages.add(ComptagePartiel.decoder(Files.readAllBytes(Paths.get(args[i]))));
+		}
+		afficherEntete(true);
+		System.out.println(emballageService.emballerCartons(ComptagePartiel.fusionner(comptages), true));
+	}
+
+	/**
+	 * Emballe des colis donnés par nombre pour chaque taille. Leur nombre pouvant
+	 * dépasser le milliard, on affiche toujours de manière optimisée
+	 * @param emballageService
+	 * @param quantitesParTaille
+	 */
+	private static void emballerQuantites(EmballageService emballageService, String quantitesParTaille) {
+		afficherEntete(true);
+		System.out.println(emballageService.emballerQuantites(quantitesParTaille, true));
+	}
+
+	/**
+	 * Affiche l'entête précédant les cartons emballés sur la sortie standard
+	 * @param affichageOptimise
+	 */
+	private static void afficherEntete(boolean affichageOptimise) {
+		System.out.print("Voici les cartons à emballer :");
+		if (affichageOptimise) {
+			System.out.println("(Avec entre parenthèses le nombre de cartons pour chaque combinaison de tailles)");
+		}
+		System.out.flush();
+	}
 
+	/**
+	 * @return un canal écrivant sur la sortie standard
+	 */
+	private static WritableByteChannel sortieStandard() {
+		return Channels.newChannel(System.out);
 	}
 }
@@ -0,0 +1,132 @@
+package sample.vsct.mesure;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogramme de durées par puissance de 2 de nanosecondes, sans verrou : les
+ * compteurs sont des {@link LongAdder}, qui restent rapides quand plusieurs
+ * threads enregistrent en même temps. Utilisé par {@link MesuresEnMemoire} pour
+ * chaque phase, et par {@link sample.vsct.service.EmballageEnLigne} pour la
+ * durée de décision de chaque colis.
+ *
+ * @author Gaetan
+ *
+ */
+public final class HistogrammeDurees {
+
+	/** Indice : log2 de la durée en nanosecondes. Valeur : nombre de durées */
+	private final LongAdder[] nbDureesParLog2Nanos = new LongAdder[Long.SIZE];
+
+	private final LongAdder sommeNanos = new LongAdder();
+
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	public HistogrammeDurees() {
+		for (int log2 = 0; log2 < nbDureesParLog2Nanos.length; log2++) {
+			nbDureesParLog2Nanos[log2] = new LongAdder();
+		}
+	}
+
+	/**
+	 * @param nanos
+	 *            durée en nanosecondes
+	 */
+	public void enregistrer(long nanos) {
+		nbDureesParLog2Nanos[Long.SIZE - Long.numberOfLeadingZeros(Math.max(nanos, 1)) - 1].increment();
+		sommeNanos.add(nanos);
+		long max = maxNanos.get();
+		// Le maximum ne change que rarement : la boucle ne tourne presque jamais
+		while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+			max = maxNanos.get();
+		}
+	}
+
+	/**
+	 * @return une copie du nombre de durées par puissance de 2 de nanosecondes
+	 */
+	long[] copierNbDurees() {
+		long[] copie = new long[nbDureesParLog2Nanos.length];
+		for (int log2 = 0; log2 < copie.length; log2++) {
+			copie[log2] = nbDureesParLog2Nanos[log2].sum();
+		}
+		return copie;
+	}
+
+	/**
+	 * @return le nombre de durées enregistrées
+	 */
+	public long getNbDurees() {
+		long nb = 0;
+		for (LongAdder nbLog2 : nbDureesParLog2Nanos) {
+			nb += nbLog2.sum();
+		}
+		return nb;
+	}
+
+	long getSommeNanos() {
+		return sommeNanos.sum();
+	}
+
+	long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+	/**
+	 * @return la durée moyenne, en microsecondes
+	 */
+	public double getMoyenneMicros() {
+		long nb = getNbDurees();
+		return nb == 0 ? 0 : getSommeNanos() / 1000.0 / nb;
+	}
+
+	/**
+	 * @return la plus longue durée, en microsecondes
+	 */
+	public double getMaxMicros() {
+		return getMaxNanos() / 1000.0;
+	}
+
+	/**
+	 * @param centile
+	 *            centile entre 0 et 100. Exemple : 99
+	 * @return une borne supérieure (à un facteur 2 près) de la durée de ce
+	 *         centile, en microsecondes
+	 */
+	public double getCentileMicros(double centile) {
+		long[] nbDurees = copierNbDurees();
+		long nb = 0;
+		for (long nbLog2 : nbDurees) {
+			nb += nbLog2;
+		}
+		return centileMicros(nbDurees, nb, getMaxNanos(), centile);
+	}
+
+	/**
+	 * Centile d'un histogramme par puissance de 2 de nanosecondes
+	 *
+	 * @param nbDurees
+	 *            Indice : log2 de la durée en nanosecondes. Valeur : nombre de
+	 *            durées
+	 * @param nbTotal
+	 *            nombre total de durées de l'histogramme
+	 * @param maxNanos
+	 *            plus longue durée, qui borne le résultat
+	 * @param centile
+	 *            centile entre 0 et 100
+	 * @return la borne supérieure de la tranche contenant ce centile, en
+	 *         microsecondes
+	 */
+	static double centileMicros(long[] nbDurees, long nbTotal, long maxNanos, double centile) {
+		long rang = (long) Math.ceil(centile / 100 * nbTotal);
+		long cumul = 0;
+		for (int log2 = 0; log2 < nbDurees.length; log2++) {
+			cumul += nbDurees[log2];
+			if (cumul >= rang && cumul > 0) {
+				return Math.min((double) (2L << log2), maxNanos) / 1000.0;
+			}
+		}
+		return 0;
+	}
+
+}
@@ -0,0 +1,144 @@
+package sample.vsct.mesure;
+
+/**
+ * Copie figée des mesures de l'emballage (voir
+ * {@link MesuresEnMemoire#instantane()})
+ *
+ * @author Gaetan
+ *
+ */
+public class InstantaneMesures {
+
+	/** Centiles affichés par {@link #toString()} */
+	private static final double[] CENTILES_AFFICHES = { 50, 99, 99.9 };
+
+	/** Indices : ordinal de la phase, log2 de la durée en nanosecondes */
+	private final long[][] nbDurees;
+
+	private final long[] sommeNanos;
+
+	private final long[] maxNanos;
+
+	private final long nbCommandes;
+
+	private final long nbColis;
+
+	private final long nbCartons;
+
+	private final long nbErreurs;
+
+	InstantaneMesures(long[][] nbDurees, long[] sommeNanos, long[] maxNanos, long nbCommandes, long nbColis,
+			long nbCartons, long nbErreurs) {
+		this.nbDurees = nbDurees;
+		this.sommeNanos = sommeNanos;
+		this.maxNanos = maxNanos;
+		this.nbCommandes = nbCommandes;
+		this.nbColis = nbColis;
+		this.nbCartons = nbCartons;
+		this.nbErreurs = nbErreurs;
+	}
+
+	/**
+	 * @param phase
+	 * @return le nombre de durées mesurées pour cette phase
+	 */
+	public long getNbMesures(Phase phase) {
+		long nb = 0;
+		for (long nbLog2 : nbDurees[phase.ordinal()]) {
+			nb += nbLog2;
+		}
+		return nb;
+	}
+
+	/**
+	 * @param phase
+	 * @return la durée cumulée de cette phase, en microsecondes
+	 */
+	public double getTotalMicros(Phase phase) {
+		return sommeNanos[phase.ordinal()] / 1000.0;
+	}
+
+	/**
+	 * @param phase
+	 * @return la durée moyenne de cette phase, en microsecondes
+	 */
+	public double getMoyenneMicros(Phase phase) {
+		long nb = getNbMesures(phase);
+		return nb == 0 ? 0 : sommeNanos[phase.ordinal()] / 1000.0 / nb;
+	}
+
+	/**
+	 * @param phase
+	 * @return la plus longue durée de cette phase, en microsecondes
+	 */
+	public double getMaxMicros(Phase phase) {
+		return maxNanos[phase.ordinal()] / 1000.0;
+	}
+
+	/**
+	 * @param phase
+	 * @param centile
+	 *            centile entre 0 et 100. Exemple : 99
+	 * @return une borne supérieure (à un facteur 2 près) de la durée de cette
+	 *         phase pour ce centile des mesures, en microsecondes
+	 */
+	public double getCentileMicros(Phase phase, double centile) {
+		return HistogrammeDurees.centileMicros(nbDurees[phase.ordinal()], getNbMesures(phase),
+				maxNanos[phase.ordinal()], centile);
+	}
+
+	/**
+	 * @return le nombre de commandes emballées
+	 */
+	public long getNbCommandes() {
+		return nbCommandes;
+	}
+
+	/**
+	 * @return le nombre de colis des commandes emballées
+	 */
+	public long getNbColis() {
+		return nbColis;
+	}
+
+	/**
+	 * @return le nombre de cartons des commandes emballées
+	 */
+	public long getNbCartons() {
+		return nbCartons;
+	}
+
+	/**
+	 * @return le nombre de commandes refusées
+	 */
+	public long getNbErreurs() {
+		return nbErreurs;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder texte = new StringBuilder(String.format(
+				"%d commandes, %d colis, %d cartons, %d erreurs", nbCommandes, nbColis, nbCartons, nbErreurs));
+		for (Phase phase : Phase.values()) {
+			long nb = getNbMesures(phase);
+			if (nb > 0) {
+				texte.append(String.format("%n  %-12s %d mesures, moyenne %.1f µs", phase, nb, getMoyenneMicros(phase)));
+				for (double centile : CENTILES_AFFICHES) {
+					texte.append(String.format(", p%s %.1f µs", libelleCentile(centile),
+							getCentileMicros(phase, centile)));
+				}
+				texte.append(String.format(", max %.1f µs", getMaxMicros(phase)));
+			}
+		}
+		return texte.toString();
+	}
+
+	/**
+	 * @param centile
+	 * @return le centile sans décimale s'il est entier. Exemple : "99", "99.9"
+	 */
+	private static String libelleCentile(double centile) {
+		return centile == Math.rint(centile) ? String.valueOf((long) centile) : String.valueOf(centile);
+	}
+
+}
@@ -0,0 +1,53 @@
+package sample.vsct.mesure;
+
+/**
+ * Reçoit les mesures de l'emballage : durée de chaque phase, taille des
+ * commandes et erreurs. Les méthodes sont appelées par les threads d'emballage
+ * et doivent donc être rapides et sûres entre threads.
+ *
+ * @author Gaetan
+ *
+ */
+public interface Mesures {
+
+	/**
+	 * Mesures ignorées (par défaut)
+	 */
+	Mesures AUCUNE = new Mesures() {
+		@Override
+		public void enregistrerDuree(Phase phase, long dureeNanos) {
+		}
+
+		@Override
+		public void enregistrerCommande(long nbColis, long nbCartons) {
+		}
+
+		@Override
+		public void enregistrerErreur() {
+		}
+	};
+
+	/**
+	 * @param phase
+	 *            phase mesurée
+	 * @param dureeNanos
+	 *            durée de la phase, en nanosecondes
+	 */
+	void enregistrerDuree(Phase phase, long dureeNanos);
+
+	/**
+	 * Une commande a été emballée
+	 *
+	 * @param nbColis
+	 *            nombre de colis de la commande
+	 * @param nbCartons
+	 *            nombre de cartons obtenus
+	 */
+	void enregistrerCommande(long nbColis, long nbCartons);
+
+	/**
+	 * Une commande a été refusée (colis invalide)
+	 */
+	void enregistrerErreur();
+
+}
@@ -0,0 +1,96 @@
+package sample.vsct.mesure;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Mesures conservées en mémoire : un histogramme de durées par phase et des
+ * compteurs, sans verrou. Elles peuvent être consultées à tout moment avec
+ * {@link #instantane()}, ou tracées périodiquement avec
+ * {@link #tracerPeriodiquement(ScheduledExecutorService, long, TimeUnit)}.
+ *
+ * @author Gaetan
+ *
+ */
+public class MesuresEnMemoire implements Mesures {
+
+	final static Logger logger = Logger.getLogger(MesuresEnMemoire.class);
+
+	/** Indice : ordinal de la phase */
+	private final HistogrammeDurees[] histogrammes = new HistogrammeDurees[Phase.values().length];
+
+	private final LongAdder nbCommandes = new LongAdder();
+
+	private final LongAdder nbColis = new LongAdder();
+
+	private final LongAdder nbCartons = new LongAdder();
+
+	private final LongAdder nbErreurs = new LongAdder();
+
+	public MesuresEnMemoire() {
+		for (int phase = 0; phase < histogrammes.length; phase++) {
+			histogrammes[phase] = new HistogrammeDurees();
+		}
+	}
+
+	@Override
+	public void enregistrerDuree(Phase phase, long dureeNanos) {
+		histogrammes[phase.ordinal()].enregistrer(dureeNanos);
+	}
+
+	@Override
+	public void enregistrerCommande(long nbColis, long nbCartons) {
+		nbCommandes.increment();
+		this.nbColis.add(nbColis);
+		this.nbCartons.add(nbCartons);
+	}
+
+	@Override
+	public void enregistrerErreur() {
+		nbErreurs.increment();
+	}
+
+	/**
+	 * @return une copie des mesures. Elle est prise sans arrêter les threads
+	 *         d'emballage : sous charge, les compteurs peuvent différer de
+	 *         quelques commandes en cours
+	 */
+	public InstantaneMesures instantane() {
+		long[][] nbDurees = new long[histogrammes.length][];
+		long[] sommeNanos = new long[histogrammes.length];
+		long[] maxNanos = new long[histogrammes.length];
+		for (int phase = 0; phase < histogrammes.length; phase++) {
+			nbDurees[phase] = histogrammes[phase].copierNbDurees();
+			sommeNanos[phase] = histogrammes[phase].getSommeNanos();
+			maxNanos[phase] = histogrammes[phase].getMaxNanos();
+		}
+		return new InstantaneMesures(nbDurees, sommeNanos, maxNanos, nbCommandes.sum(), nbColis.sum(),
+				nbCartons.sum(), nbErreurs.sum());
+	}
+
+	/**
+	 * Trace les mesures (au niveau INFO) à intervalle régulier
+	 *
+	 * @param planificateur
+	 *            exécute la trace. Il n'est pas arrêté par ces mesures
+	 * @param periode
+	 *            intervalle entre deux traces
+	 * @param unite
+	 *            unité de l'intervalle
+	 * @return la tâche planifiée, à annuler pour arrêter la trace
+	 */
+	public ScheduledFuture<?> tracerPeriodiquement(ScheduledExecutorService planificateur, long periode,
+			TimeUnit unite) {
+		return planificateur.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				logger.info(instantane());
+			}
+		}, periode, periode, unite);
+	}
+
+}
@@ -0,0 +1,39 @@
+package sample.vsct.mesure;
+
+/**
+ * Phase de l'emballage d'une commande dont la durée est mesurée
+ *
+ * @author Gaetan
+ *
+ */
+public enum Phase {
+
+	/**
+	 * Vérification des colis et comptage du nombre de colis de chaque taille.
+	 * Les deux sont faits en une seule passe sur l'entrée
+	 */
+	COMPTAGE,
+
+	/**
+	 * Répartition des colis dans les cartons, choix des combinaisons et borne
+	 * inférieure compris
+	 */
+	EMBALLAGE,
+
+	/**
+	 * Construction ou écriture de la liste des cartons
+	 */
+	AFFICHAGE,
+
+	/**
+	 * Affectation de chaque colis de l'entrée à son carton (seconde lecture de
+	 * l'entrée)
+	 */
+	AFFECTATION,
+
+	/**
+	 * Emballage complet d'une commande, de la lecture des colis à l'affichage
+	 */
+	TOTAL
+
+}
@@ -0,0 +1,187 @@
+package sample.vsct.serveur;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+import sample.vsct.exception.TailleColisException;
+import sample.vsct.service.EmballageService;
+
+/**
+ * Serveur d'emballage : garde le service chargé et optimisé par le JIT, et
+ * répond aux demandes reçues sur un port local, une demande par ligne.
+ *
+ * <pre>
+ * demande                       réponse
+ * 163841689525773               OK 163/81/46/82/9/55/73/7
+ * OPTIMISE 9191                 OK 91(2)
+ * DETAILLE 9191                 OK 91/91
+ * QUANTITES 9x1000000000,1x500  OK 91(500)/9(999999500)
+ * 12a4                          ERREUR 2 Le colis 'a' doit être ...
+ * </pre>
+ *
+ * Sans mot clé, les cartons sont affichés comme par {@link sample.vsct.main.Main}
+ * : de manière optimisée au delà de {@link #NB_COLIS_AFFICHAGE_OPTIMISE} colis.
+ * Une erreur donne la position du colis en cause (-1 si inconnue).
+ *
+ * Un client peut envoyer plusieurs demandes sans attendre les réponses : elles
+ * sont traitées dans l'ordre, et les réponses ne sont envoyées qu'une fois
+ * toutes les demandes déjà reçues traitées. Chaque connexion a son thread.
+ *
+ * @author Gaetan
+ *
+ */
+public class ServeurEmballage implements Closeable {
+
+	final static Logger logger = Logger.getLogger(ServeurEmballage.class);
+
+	/** Au delà de ce nombre de colis, on affiche les cartons de manière optimisée */
+	public static final int NB_COLIS_AFFICHAGE_OPTIMISE = 30;
+
+	static final String OPTIMISE = "OPTIMISE ";
+
+	static final String DETAILLE = "DETAILLE ";
+
+	static final String QUANTITES = "QUANTITES ";
+
+	private final EmballageService emballageService;
+
+	private final ServerSocket socketServeur;
+
+	private final ExecutorService connexions;
+
+	/**
+	 * Ouvre le port du serveur, sur l'adresse locale uniquement
+	 *
+	 * @param emballageService
+	 *            service partagé par toutes les connexions
+	 * @param port
+	 *            port d'écoute, 0 pour un port libre quelconque
+	 * @throws IOException
+	 *             si le port ne peut pas être ouvert
+	 */
+	public ServeurEmballage(EmballageService emballageService, int port) throws IOException {
+		this.emballageService = emballageService;
+		this.socketServeur = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+		this.connexions = Executors.newCachedThreadPool(new ThreadFactory() {
+			private final AtomicInteger nbThreads = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable tache) {
+				Thread thread = new Thread(tache, "emballage-connexion-" + nbThreads.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * @return le port d'écoute
+	 */
+	public int getPort() {
+		return socketServeur.getLocalPort();
+	}
+
+	/**
+	 * Accepte les connexions jusqu'à la fermeture du serveur
+	 *
+	 * @throws IOException
+	 *             si une connexion ne peut pas être acceptée
+	 */
+	public void servir() throws IOException {
+		logger.info(String.format("Serveur d'emballage en écoute sur le port %d", getPort()));
+		while (!socketServeur.isClosed()) {
+			final Socket socket;
+			try {
+				socket = socketServeur.accept();
+			} catch (SocketException e) {
+				// Fermeture du serveur
+				break;
+			}
+			connexions.execute(new Runnable() {
+				@Override
+				public void run() {
+					traiterConnexion(socket);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Arrête d'accepter les connexions. Les connexions ouvertes se terminent à
+	 * leur fermeture par le client
+	 */
+	@Override
+	public void close() throws IOException {
+		socketServeur.close();
+		connexions.shutdown();
+	}
+
+	/**
+	 * Répond aux demandes d'une connexion jusqu'à sa fermeture
+	 *
+	 * @param socket
+	 */
+	private void traiterConnexion(Socket socket) {
+		logger.debug("Nouvelle connexion");
+		try (Socket connexion = socket;
+				BufferedReader lecteur = new BufferedReader(
+						new InputStreamReader(connexion.getInputStream(), StandardCharsets.UTF_8));
+				Writer ecrivain = new BufferedWriter(
+						new OutputStreamWriter(connexion.getOutputStream(), StandardCharsets.UTF_8))) {
+			String demande;
+			while ((demande = lecteur.readLine()) != null) {
+				ecrivain.write(repondre(demande));
+				ecrivain.write('\n');
+				// Tant que d'autres demandes sont déjà arrivées, les réponses restent
+				// dans le tampon : elles partent ensemble
+				if (!lecteur.ready()) {
+					ecrivain.flush();
+				}
+			}
+		} catch (IOException e) {
+			logger.warn("Connexion interrompue", e);
+		}
+	}
+
+	/**
+	 * @param demande
+	 *            ligne reçue
+	 * @return la réponse, sans fin de ligne
+	 */
+	String repondre(String demande) {
+		try {
+			if (demande.startsWith(QUANTITES)) {
+				return "OK " + emballageService.emballerQuantites(demande.substring(QUANTITES.length()), true);
+			} else if (demande.startsWith(OPTIMISE)) {
+				return "OK " + emballageService.emballerCartons(demande.substring(OPTIMISE.length()), true);
+			} else if (demande.startsWith(DETAILLE)) {
+				return "OK " + emballageService.emballerCartons(demande.substring(DETAILLE.length()), false);
+			}
+			return "OK " + emballageService.emballerCartons(demande,
+					demande.length() > NB_COLIS_AFFICHAGE_OPTIMISE);
+		} catch (TailleColisException e) {
+			return String.format("ERREUR %d %s", e.getPosition(), e.getMessage());
+		} catch (RuntimeException e) {
+			// La connexion reste utilisable après une demande invalide
+			logger.warn(String.format("Demande en erreur : %s", e.getMessage()));
+			return String.format("ERREUR -1 %s", e.getMessage());
+		}
+	}
+
+}
@@ -0,0 +1,118 @@
+package sample.vsct.service;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+import sample.vsct.ecriture.EcrivainAffectation;
+
+/**
+ * Carton de chaque colis d'un emballage : le colis d'indice i de l'entrée (le
+ * i-ème chiffre, fins de ligne non comptées) va dans le carton
+ * {@link #getCarton(int)}. Les cartons sont numérotés à partir de 0 dans
+ * l'ordre de l'affichage non optimisé de l'emballage ({@link #getResultat()}).
+ *
+ * Les numéros de carton sont rangés dans un tableau d'entiers de 4 octets par
+ * colis, en mémoire (tas ou hors tas) ou dans un fichier projeté en mémoire :
+ * 150 millions de colis occupent 600 Mo sans créer un objet par colis.
+ *
+ * @author Gaetan
+ *
+ */
+public final class AffectationCartons {
+
+	/** Nombre maximum de colis : le tableau hors tas est limité à 2 Go */
+	public static final int NB_COLIS_MAX = Integer.MAX_VALUE / 4;
+
+	private final ResultatSolveur resultat;
+
+	/** Indice : indice du colis dans l'entrée. Valeur : numéro de son carton */
+	private final IntBuffer cartonParColis;
+
+	/** Premier carton de chaque combinaison utilisée, par ordre croissant */
+	private final int[] premierCarton;
+
+	/**
+	 * @param resultat
+	 *            emballage des colis
+	 * @param cartonParColis
+	 *            numéro du carton de chaque colis, rempli
+	 */
+	AffectationCartons(ResultatSolveur resultat, IntBuffer cartonParColis) {
+		this.resultat = resultat;
+		this.cartonParColis = cartonParColis;
+		int[] utilisees = resultat.getCombinaisonsUtilisees();
+		this.premierCarton = new int[utilisees.length];
+		int carton = 0;
+		for (int i = 0; i < utilisees.length; i++) {
+			premierCarton[i] = carton;
+			carton += (int) resultat.getNbCartons(utilisees[i]);
+		}
+	}
+
+	/**
+	 * @return l'emballage dont les cartons reçoivent les colis
+	 */
+	public ResultatSolveur getResultat() {
+		return resultat;
+	}
+
+	public int getNbColis() {
+		return cartonParColis.limit();
+	}
+
+	public int getNbCartons() {
+		return (int) resultat.getNbCartons();
+	}
+
+	/**
+	 * @param indiceColis
+	 *            indice du colis dans l'entrée
+	 * @return le numéro du carton du colis
+	 */
+	public int getCarton(int indiceColis) {
+		return cartonParColis.get(indiceColis);
+	}
+
+	/**
+	 * @param carton
+	 *            numéro du carton
+	 * @return l'indice de la combinaison de tailles du carton (voir
+	 *         {@link ResultatSolveur#getCombinaisons()})
+	 */
+	public int getCombinaison(int carton) {
+		if (carton < 0 || carton >= getNbCartons()) {
+			throw new IndexOutOfBoundsException(
+					String.format("Carton %d inexistant (%d cartons)", carton, getNbCartons()));
+		}
+		int position = Arrays.binarySearch(premierCarton, carton);
+		// Sans correspondance exacte, le carton appartient à la combinaison
+		// commençant juste avant
+		int indice = position >= 0 ? position : -position - 2;
+		return resultat.getCombinaisonsUtilisees()[indice];
+	}
+
+	/**
+	 * @param carton
+	 *            numéro du carton
+	 * @return les tailles des colis du carton. Exemple : "91"
+	 */
+	public String getLibelleCarton(int carton) {
+		return resultat.getCombinaisons().getLibelle(getCombinaison(carton));
+	}
+
+	/**
+	 * Écrit le carton de chaque colis, une ligne par colis dans l'ordre de
+	 * l'entrée : "indice carton". Exemple : "0 1\n1 0\n"
+	 *
+	 * @param sortie
+	 *            canal recevant les lignes. Il n'est pas fermé
+	 * @throws IOException
+	 *             si le canal ne peut pas être écrit
+	 */
+	public void exporter(WritableByteChannel sortie) throws IOException {
+		EcrivainAffectation.ecrire(cartonParColis.duplicate(), sortie);
+	}
+
+}
@@ -0,0 +1,200 @@
+package sample.vsct.service;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache borné des emballages, indexé par le nombre de colis de chaque taille :
+ * deux commandes ayant les mêmes colis, dans n'importe quel ordre, ont le même
+ * emballage. Utile quand beaucoup de commandes ont le même profil (kits
+ * standards...).
+ *
+ * Le cache est découpé en segments, chacun protégé par son propre verrou et
+ * évincant l'emballage utilisé le moins récemment : des threads consultant des
+ * profils différents se bloquent rarement. Un emballage absent est calculé
+ * hors du verrou.
+ *
+ * Un cache appartient à un service (voir
+ * {@link EmballageServiceImpl#getCache()}) : les emballages dépendent de sa
+ * configuration et de son algorithme.
+ *
+ * @author Gaetan
+ *
+ */
+public class CacheResultats {
+
+	/** Nombre maximum de segments (puissance de 2) */
+	private static final int NB_SEGMENTS_MAX = 16;
+
+	private final Segment[] segments;
+
+	private final int tailleMax;
+
+	private final LongAdder nbSucces = new LongAdder();
+
+	private final LongAdder nbEchecs = new LongAdder();
+
+	private final LongAdder nbEvictions = new LongAdder();
+
+	/**
+	 * @param tailleMax
+	 *            nombre maximum d'emballages conservés (au moins 1)
+	 */
+	CacheResultats(int tailleMax) {
+		if (tailleMax < 1) {
+			throw new IllegalArgumentException(
+					String.format("La taille du cache doit être positive (taille demandée %d)", tailleMax));
+		}
+		this.tailleMax = tailleMax;
+		// Chaque segment reçoit sa part de la taille, arrondie à l'inférieur pour ne
+		// jamais dépasser la taille du cache : il y a donc au plus un segment par
+		// emballage conservé
+		int nbSegments = Math.min(NB_SEGMENTS_MAX, Integer.highestOneBit(tailleMax));
+		int tailleSegment = tailleMax / nbSegments;
+		segments = new Segment[nbSegments];
+		for (int segment = 0; segment < nbSegments; segment++) {
+			segments[segment] = new Segment(tailleSegment, nbEvictions);
+		}
+	}
+
+	/**
+	 * @param nbColisParTaille
+	 *            Indice : taille des colis. Valeur : nombre de colis ayant cette
+	 *            taille
+	 * @return l'emballage de ces colis, ou null s'il n'est pas dans le cache
+	 */
+	ResultatSolveur chercher(long[] nbColisParTaille) {
+		// La clé de recherche ne copie pas les colis
+		CleHistogramme cle = new CleHistogramme(nbColisParTaille);
+		Segment segment = segment(cle);
+		ResultatSolveur resultat;
+		synchronized (segment) {
+			resultat = segment.get(cle);
+		}
+		if (resultat == null) {
+			nbEchecs.increment();
+		} else {
+			nbSucces.increment();
+		}
+		return resultat;
+	}
+
+	/**
+	 * @param nbColisParTaille
+	 *            Indice : taille des colis. Valeur : nombre de colis ayant cette
+	 *            taille. Le tableau est copié
+	 * @param resultat
+	 *            emballage de ces colis
+	 */
+	void ajouter(long[] nbColisParTaille, ResultatSolveur resultat) {
+		CleHistogramme cle = new CleHistogramme(nbColisParTaille.clone());
+		Segment segment = segment(cle);
+		synchronized (segment) {
+			segment.put(cle, resultat);
+		}
+	}
+
+	private Segment segment(CleHistogramme cle) {
+		int hash = cle.hashCode();
+		return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+	}
+
+	/**
+	 * @return le nombre maximum d'emballages conservés
+	 */
+	public int getTailleMax() {
+		return tailleMax;
+	}
+
+	/**
+	 * @return le nombre d'emballages actuellement conservés
+	 */
+	public int getTaille() {
+		int taille = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				taille += segment.size();
+			}
+		}
+		return taille;
+	}
+
+	/**
+	 * @return le nombre d'emballages trouvés dans le cache
+	 */
+	public long getNbSucces() {
+		return nbSucces.sum();
+	}
+
+	/**
+	 * @return le nombre d'emballages absents du cache (et donc calculés)
+	 */
+	public long getNbEchecs() {
+		return nbEchecs.sum();
+	}
+
+	/**
+	 * @return le nombre d'emballages évincés pour respecter la taille du cache
+	 */
+	public long getNbEvictions() {
+		return nbEvictions.sum();
+	}
+
+	/**
+	 * Segment du cache : les emballages dans l'ordre de leur dernière
+	 * utilisation, le plus ancien étant évincé quand le segment est plein
+	 */
+	private static class Segment extends LinkedHashMap<CleHistogramme, ResultatSolveur> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int tailleMax;
+
+		private final LongAdder nbEvictions;
+
+		Segment(int tailleMax, LongAdder nbEvictions) {
+			super(16, 0.75f, true);
+			this.tailleMax = tailleMax;
+			this.nbEvictions = nbEvictions;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<CleHistogramme, ResultatSolveur> plusAncien) {
+			if (size() > tailleMax) {
+				nbEvictions.increment();
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Clé du cache : le nombre de colis de chaque taille, avec son code de
+	 * hachage calculé une seule fois
+	 */
+	private static class CleHistogramme {
+
+		private final long[] nbColisParTaille;
+
+		private final int hash;
+
+		CleHistogramme(long[] nbColisParTaille) {
+			this.nbColisParTaille = nbColisParTaille;
+			this.hash = Arrays.hashCode(nbColisParTaille);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object autre) {
+			return autre instanceof CleHistogramme && ((CleHistogramme) autre).hash == hash
+					&& Arrays.equals(((CleHistogramme) autre).nbColisParTaille, nbColisParTaille);
+		}
+	}
+
+}
@@ -0,0 +1,96 @@
+package sample.vsct.service;
+
+/**
+ * Ensemble indicé de combinaisons de tailles de colis, chacune remplissant au
+ * plus un carton. Chaque combinaison est décrite par ses tailles distinctes
+ * (par ordre décroissant) et leur fréquence.
+ *
+ * Trois implémentations : la table complète et partagée pour les petites
+ * capacités ({@link TableCombinaisons}), les combinaisons générées à la
+ * demande pour un emballage donné lorsque la capacité est trop grande pour
+ * énumérer toutes les combinaisons, et les combinaisons de plusieurs types de
+ * cartons ({@link CombinaisonsCatalogue}).
+ *
+ * @author Gaetan
+ *
+ */
+public interface Combinaisons {
+
+	/**
+	 * Séparateur des tailles dans les libellés, lorsque les tailles peuvent
+	 * avoir plusieurs chiffres (capacité supérieure à 10). Exemple : "120+80"
+	 */
+	char SEPARATEUR_TAILLES = '+';
+
+	/**
+	 * @return la capacité des cartons (la plus grande, pour un catalogue de
+	 *         plusieurs types de cartons)
+	 */
+	int getCapaciteCarton();
+
+	/**
+	 * @param combinaison
+	 *            indice de la combinaison
+	 * @return la capacité du carton de la combinaison
+	 */
+	int getCapacite(int combinaison);
+
+	/**
+	 * @return le nombre de combinaisons
+	 */
+	int getNbCombinaisons();
+
+	/**
+	 * @param combinaison
+	 *            indice de la combinaison
+	 * @return l'indice de la première taille distincte de la combinaison (à
+	 *         utiliser avec {@link #getTaille(int)} et {@link #getFrequence(int)})
+	 */
+	int getDebutTailles(int combinaison);
+
+	/**
+	 * @param combinaison
+	 *            indice de la combinaison
+	 * @return l'indice suivant la dernière taille distincte de la combinaison
+	 */
+	int getFinTailles(int combinaison);
+
+	/**
+	 * @param indiceTaille
+	 *            indice compris entre {@link #getDebutTailles(int)} et
+	 *            {@link #getFinTailles(int)}
+	 * @return la taille de colis
+	 */
+	int getTaille(int indiceTaille);
+
+	/**
+	 * @param indiceTaille
+	 *            indice compris entre {@link #getDebutTailles(int)} et
+	 *            {@link #getFinTailles(int)}
+	 * @return le nombre de colis de cette taille dans la combinaison
+	 */
+	int getFrequence(int indiceTaille);
+
+	/**
+	 * @param combinaison
+	 *            indice de la combinaison
+	 * @return la somme des tailles des colis de la combinaison
+	 */
+	int getTotal(int combinaison);
+
+	/**
+	 * @param combinaison
+	 *            indice de la combinaison
+	 * @return le nombre de colis de la combinaison
+	 */
+	int getNbColis(int combinaison);
+
+	/**
+	 * @param combinaison
+	 *            indice de la combinaison
+	 * @return le libellé de la combinaison. Exemple : "721", ou "120+80" pour
+	 *         une capacité supérieure à 10
+	 */
+	String getLibelle(int combinaison);
+
+}
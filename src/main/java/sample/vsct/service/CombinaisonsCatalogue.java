@@ -0,0 +1,205 @@
+package sample.vsct.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Combinaisons de tous les types de cartons d'un catalogue, triées par coût
+ * par unité de volume croissant : un carton bien rempli d'un type bon marché
+ * passe avant un grand carton à moitié vide. À coût par unité de volume égal,
+ * l'ordre de la table de chaque type est conservé (taille totale décroissante,
+ * puis nombre de colis croissant).
+ *
+ * Les combinaisons viennent des tables partagées de chaque capacité (voir
+ * {@link TableCombinaisons}) ; seules celles dont les tailles sont autorisées
+ * par la configuration sont gardées. Le libellé d'une combinaison commence par
+ * le nom de son type de carton. Exemple : "M:91".
+ *
+ * @author Gaetan
+ *
+ */
+class CombinaisonsCatalogue implements Combinaisons {
+
+	final static Logger logger = Logger.getLogger(CombinaisonsCatalogue.class);
+
+	/** Sépare le nom du type de carton des tailles dans les libellés */
+	static final char SEPARATEUR_TYPE = ':';
+
+	private final List<TypeCarton> typesCartons;
+
+	private final int capaciteCarton;
+
+	private final int nbCombinaisons;
+
+	/** Indice : combinaison. Valeur : indice du type de carton dans le catalogue */
+	private final int[] types;
+
+	private final int[] debutTailles;
+
+	private final int[] tailles;
+
+	private final int[] frequences;
+
+	private final int[] totaux;
+
+	private final int[] nbColis;
+
+	private final String[] libelles;
+
+	/**
+	 * @param typesCartons
+	 *            catalogue des types de cartons
+	 * @param configuration
+	 *            tailles de colis autorisées
+	 */
+	CombinaisonsCatalogue(List<TypeCarton> typesCartons, ConfigurationEmballage configuration) {
+		logger.debug(String.format("Calcul des combinaisons de %d types de cartons", typesCartons.size()));
+		this.typesCartons = typesCartons;
+
+		// Combinaisons de chaque type, sous la forme {type, combinaison de la table}
+		final List<int[]> combinaisons = new ArrayList<int[]>();
+		final TableCombinaisons[] tables = new TableCombinaisons[typesCartons.size()];
+		int capaciteMax = 0;
+		int nbTaillesTotal = 0;
+		for (int type = 0; type < typesCartons.size(); type++) {
+			tables[type] = TableCombinaisons.pour(typesCartons.get(type).getCapacite());
+			capaciteMax = Math.max(capaciteMax, typesCartons.get(type).getCapacite());
+			for (int combinaison = 0; combinaison < tables[type].getNbCombinaisons(); combinaison++) {
+				if (isAutorisee(tables[type], combinaison, configuration)) {
+					combinaisons.add(new int[] { type, combinaison });
+					nbTaillesTotal += tables[type].getFinTailles(combinaison) - tables[type].getDebutTailles(combinaison);
+				}
+			}
+		}
+		this.capaciteCarton = capaciteMax;
+
+		// Tri stable par coût par unité de volume : coût1 / total1 < coût2 / total2
+		Collections.sort(combinaisons, new Comparator<int[]>() {
+			@Override
+			public int compare(int[] combinaison1, int[] combinaison2) {
+				long cout1 = typesCartons.get(combinaison1[0]).getCout();
+				long cout2 = typesCartons.get(combinaison2[0]).getCout();
+				int total1 = tables[combinaison1[0]].getTotal(combinaison1[1]);
+				int total2 = tables[combinaison2[0]].getTotal(combinaison2[1]);
+				int comparaison = Long.compare(cout1 * total2, cout2 * total1);
+				return comparaison != 0 ? comparaison : total2 - total1;
+			}
+		});
+
+		// Encodage des combinaisons dans des tableaux d'entiers
+		nbCombinaisons = combinaisons.size();
+		types = new int[nbCombinaisons];
+		debutTailles = new int[nbCombinaisons + 1];
+		tailles = new int[nbTaillesTotal];
+		frequences = new int[nbTaillesTotal];
+		totaux = new int[nbCombinaisons];
+		nbColis = new int[nbCombinaisons];
+		libelles = new String[nbCombinaisons];
+		// Les libellés de tous les types utilisent le même format, celui de la plus
+		// grande capacité
+		boolean avecSeparateur = capaciteMax > TableCombinaisons.CAPACITE_LIBELLE_SANS_SEPARATEUR;
+		int indiceTaille = 0;
+		for (int combinaison = 0; combinaison < nbCombinaisons; combinaison++) {
+			int type = combinaisons.get(combinaison)[0];
+			int combinaisonTable = combinaisons.get(combinaison)[1];
+			TableCombinaisons table = tables[type];
+			types[combinaison] = type;
+			debutTailles[combinaison] = indiceTaille;
+			StringBuilder libelle = new StringBuilder(typesCartons.get(type).getNom()).append(SEPARATEUR_TYPE);
+			int debutLibelle = libelle.length();
+			for (int i = table.getDebutTailles(combinaisonTable); i < table.getFinTailles(combinaisonTable); i++) {
+				tailles[indiceTaille] = table.getTaille(i);
+				frequences[indiceTaille] = table.getFrequence(i);
+				for (int j = 0; j < table.getFrequence(i); j++) {
+					if (avecSeparateur && libelle.length() > debutLibelle) {
+						libelle.append(SEPARATEUR_TAILLES);
+					}
+					libelle.append(table.getTaille(i));
+				}
+				indiceTaille++;
+			}
+			totaux[combinaison] = table.getTotal(combinaisonTable);
+			nbColis[combinaison] = table.getNbColis(combinaisonTable);
+			libelles[combinaison] = libelle.toString();
+		}
+		debutTailles[nbCombinaisons] = indiceTaille;
+	}
+
+	/**
+	 * @return vrai si toutes les tailles de la combinaison sont autorisées
+	 */
+	private static boolean isAutorisee(TableCombinaisons table, int combinaison,
+			ConfigurationEmballage configuration) {
+		for (int i = table.getDebutTailles(combinaison); i < table.getFinTailles(combinaison); i++) {
+			if (table.getTaille(i) < configuration.getTailleColisMin()
+					|| table.getTaille(i) > configuration.getTailleColisMax()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param combinaison
+	 *            indice de la combinaison
+	 * @return le type de carton de la combinaison
+	 */
+	TypeCarton getTypeCarton(int combinaison) {
+		return typesCartons.get(types[combinaison]);
+	}
+
+	@Override
+	public int getCapaciteCarton() {
+		return capaciteCarton;
+	}
+
+	@Override
+	public int getCapacite(int combinaison) {
+		return getTypeCarton(combinaison).getCapacite();
+	}
+
+	@Override
+	public int getNbCombinaisons() {
+		return nbCombinaisons;
+	}
+
+	@Override
+	public int getDebutTailles(int combinaison) {
+		return debutTailles[combinaison];
+	}
+
+	@Override
+	public int getFinTailles(int combinaison) {
+		return debutTailles[combinaison + 1];
+	}
+
+	@Override
+	public int getTaille(int indiceTaille) {
+		return tailles[indiceTaille];
+	}
+
+	@Override
+	public int getFrequence(int indiceTaille) {
+		return frequences[indiceTaille];
+	}
+
+	@Override
+	public int getTotal(int combinaison) {
+		return totaux[combinaison];
+	}
+
+	@Override
+	public int getNbColis(int combinaison) {
+		return nbColis[combinaison];
+	}
+
+	@Override
+	public String getLibelle(int combinaison) {
+		return libelles[combinaison];
+	}
+
+}
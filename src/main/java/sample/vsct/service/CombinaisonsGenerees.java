@@ -0,0 +1,147 @@
+package sample.vsct.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Combinaisons générées à la demande au cours d'un emballage, lorsque la
+ * capacité des cartons est trop grande pour énumérer toutes les combinaisons.
+ * Seules les combinaisons réellement utilisées sont stockées, dans le même
+ * encodage en tableaux d'entiers que {@link TableCombinaisons}. Une combinaison
+ * déjà générée n'est pas dupliquée.
+ *
+ * @author Gaetan
+ *
+ */
+final class CombinaisonsGenerees implements Combinaisons {
+
+	private final int capaciteCarton;
+
+	private int nbCombinaisons;
+
+	/** Voir {@link TableCombinaisons} : la combinaison c occupe [debutTailles[c], debutTailles[c + 1][ */
+	private int[] debutTailles = new int[17];
+
+	private int[] tailles = new int[16];
+
+	private int[] frequences = new int[16];
+
+	private int[] totaux = new int[16];
+
+	private int[] nbColis = new int[16];
+
+	private String[] libelles = new String[16];
+
+	/** Clé : libellé. Valeur : indice de la combinaison */
+	private final Map<String, Integer> indiceParLibelle = new HashMap<String, Integer>();
+
+	CombinaisonsGenerees(int capaciteCarton) {
+		this.capaciteCarton = capaciteCarton;
+	}
+
+	/**
+	 * Ajoute une combinaison si elle n'existe pas déjà
+	 *
+	 * @param taillesCombinaison
+	 *            tailles distinctes, par ordre décroissant
+	 * @param frequencesCombinaison
+	 *            nombre de colis de chaque taille
+	 * @param nbTailles
+	 *            nombre de tailles distinctes utilisées dans les tableaux
+	 * @return l'indice de la combinaison
+	 */
+	int ajouter(int[] taillesCombinaison, int[] frequencesCombinaison, int nbTailles) {
+		StringBuilder stringBuilder = new StringBuilder();
+		int total = 0;
+		int nbColisCombinaison = 0;
+		for (int i = 0; i < nbTailles; i++) {
+			for (int n = 0; n < frequencesCombinaison[i]; n++) {
+				if (capaciteCarton > TableCombinaisons.CAPACITE_LIBELLE_SANS_SEPARATEUR
+						&& stringBuilder.length() > 0) {
+					stringBuilder.append(SEPARATEUR_TAILLES);
+				}
+				stringBuilder.append(taillesCombinaison[i]);
+			}
+			total += taillesCombinaison[i] * frequencesCombinaison[i];
+			nbColisCombinaison += frequencesCombinaison[i];
+		}
+		String libelle = stringBuilder.toString();
+		Integer existante = indiceParLibelle.get(libelle);
+		if (existante != null) {
+			return existante;
+		}
+
+		int combinaison = nbCombinaisons++;
+		if (nbCombinaisons == totaux.length) {
+			totaux = Arrays.copyOf(totaux, 2 * nbCombinaisons);
+			nbColis = Arrays.copyOf(nbColis, 2 * nbCombinaisons);
+			libelles = Arrays.copyOf(libelles, 2 * nbCombinaisons);
+			debutTailles = Arrays.copyOf(debutTailles, 2 * nbCombinaisons + 1);
+		}
+		int debut = debutTailles[combinaison];
+		if (debut + nbTailles > tailles.length) {
+			tailles = Arrays.copyOf(tailles, 2 * (debut + nbTailles));
+			frequences = Arrays.copyOf(frequences, 2 * (debut + nbTailles));
+		}
+		System.arraycopy(taillesCombinaison, 0, tailles, debut, nbTailles);
+		System.arraycopy(frequencesCombinaison, 0, frequences, debut, nbTailles);
+		debutTailles[combinaison + 1] = debut + nbTailles;
+		totaux[combinaison] = total;
+		nbColis[combinaison] = nbColisCombinaison;
+		libelles[combinaison] = libelle;
+		indiceParLibelle.put(libelle, combinaison);
+		return combinaison;
+	}
+
+	@Override
+	public int getCapaciteCarton() {
+		return capaciteCarton;
+	}
+
+	@Override
+	public int getCapacite(int combinaison) {
+		return capaciteCarton;
+	}
+
+	@Override
+	public int getNbCombinaisons() {
+		return nbCombinaisons;
+	}
+
+	@Override
+	public int getDebutTailles(int combinaison) {
+		return debutTailles[combinaison];
+	}
+
+	@Override
+	public int getFinTailles(int combinaison) {
+		return debutTailles[combinaison + 1];
+	}
+
+	@Override
+	public int getTaille(int indiceTaille) {
+		return tailles[indiceTaille];
+	}
+
+	@Override
+	public int getFrequence(int indiceTaille) {
+		return frequences[indiceTaille];
+	}
+
+	@Override
+	public int getTotal(int combinaison) {
+		return totaux[combinaison];
+	}
+
+	@Override
+	public int getNbColis(int combinaison) {
+		return nbColis[combinaison];
+	}
+
+	@Override
+	public String getLibelle(int combinaison) {
+		return libelles[combinaison];
+	}
+
+}
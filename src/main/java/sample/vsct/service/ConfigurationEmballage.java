@@ -0,0 +1,118 @@
+package sample.vsct.service;
+
+/**
+ * Configuration d'un service d'emballage : capacité des cartons, tailles de
+ * colis autorisées et format de l'entrée.
+ *
+ * Sans séparateur, chaque colis est décrit par un seul chiffre (exemple :
+ * "91554"), ce qui limite la taille maximum des colis à 9. Avec un séparateur,
+ * les tailles peuvent avoir plusieurs chiffres (exemple avec ',' :
+ * "120,80,455").
+ *
+ * @author Gaetan
+ *
+ */
+public final class ConfigurationEmballage {
+
+	/** Absence de séparateur : un chiffre par colis */
+	public static final char SANS_SEPARATEUR = 0;
+
+	/** Configuration historique : cartons de 10, colis de 1 à 9 décrits par un chiffre */
+	public static final ConfigurationEmballage DEFAUT = new ConfigurationEmballage(
+			EmballageServiceImpl.TAILLE_CARTON_MAX, EmballageServiceImpl.TAILLE_COLIS_MIN,
+			EmballageServiceImpl.TAILLE_COLIS_MAX);
+
+	private final int capaciteCarton;
+
+	private final int tailleColisMin;
+
+	private final int tailleColisMax;
+
+	private final char separateur;
+
+	/**
+	 * Configuration sans séparateur (un chiffre par colis)
+	 *
+	 * @param capaciteCarton
+	 *            capacité d'un carton
+	 * @param tailleColisMin
+	 *            taille minimum d'un colis (au moins 1)
+	 * @param tailleColisMax
+	 *            taille maximum d'un colis (au plus 9, et au plus la capacité)
+	 */
+	public ConfigurationEmballage(int capaciteCarton, int tailleColisMin, int tailleColisMax) {
+		this(capaciteCarton, tailleColisMin, tailleColisMax, SANS_SEPARATEUR);
+	}
+
+	/**
+	 * @param capaciteCarton
+	 *            capacité d'un carton
+	 * @param tailleColisMin
+	 *            taille minimum d'un colis (au moins 1)
+	 * @param tailleColisMax
+	 *            taille maximum d'un colis (au plus la capacité)
+	 * @param separateur
+	 *            caractère séparant les tailles des colis dans l'entrée, ou
+	 *            {@link #SANS_SEPARATEUR}
+	 */
+	public ConfigurationEmballage(int capaciteCarton, int tailleColisMin, int tailleColisMax, char separateur) {
+		if (tailleColisMin < 1 || tailleColisMin > tailleColisMax || tailleColisMax > capaciteCarton) {
+			throw new IllegalArgumentException(String.format(
+					"Les tailles de colis doivent vérifier 1 <= %d <= %d <= %d (capacité du carton)", tailleColisMin,
+					tailleColisMax, capaciteCarton));
+		}
+		if (separateur == SANS_SEPARATEUR && tailleColisMax > 9) {
+			throw new IllegalArgumentException(String.format(
+					"Un séparateur est nécessaire pour des colis de taille supérieure à 9 (taille maximum %d)",
+					tailleColisMax));
+		}
+		if (separateur >= '0' && separateur <= '9') {
+			throw new IllegalArgumentException(String.format("Le séparateur '%s' ne peut pas être un chiffre", separateur));
+		}
+		this.capaciteCarton = capaciteCarton;
+		this.tailleColisMin = tailleColisMin;
+		this.tailleColisMax = tailleColisMax;
+		this.separateur = separateur;
+	}
+
+	public int getCapaciteCarton() {
+		return capaciteCarton;
+	}
+
+	public int getTailleColisMin() {
+		return tailleColisMin;
+	}
+
+	public int getTailleColisMax() {
+		return tailleColisMax;
+	}
+
+	/**
+	 * @return le séparateur des tailles de colis, ou {@link #SANS_SEPARATEUR}
+	 */
+	public char getSeparateur() {
+		return separateur;
+	}
+
+	/**
+	 * @return vrai si les tailles sont séparées (et peuvent avoir plusieurs
+	 *         chiffres)
+	 */
+	public boolean isAvecSeparateur() {
+		return separateur != SANS_SEPARATEUR;
+	}
+
+	/**
+	 * @return un tableau de comptage vide, indicé par la taille des colis
+	 */
+	public long[] creerNbColisParTaille() {
+		return new long[capaciteCarton + 1];
+	}
+
+	@Override
+	public String toString() {
+		return String.format("cartons de %d, colis de %d à %d%s", capaciteCarton, tailleColisMin, tailleColisMax,
+				isAvecSeparateur() ? String.format(", séparés par '%s'", separateur) : "");
+	}
+
+}
@@ -0,0 +1,191 @@
+package sample.vsct.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import sample.vsct.exception.TailleColisException;
+import sample.vsct.lecture.CompteurColis;
+import sample.vsct.lecture.LecteurQuantites;
+
+/**
+ * Emballage avec plusieurs types de cartons, de capacités et de coûts
+ * différents, en cherchant le coût total le plus faible.
+ *
+ * Comme l'algorithme glouton du service, l'emballage travaille sur le nombre
+ * de colis de chaque taille : les combinaisons de tous les types (voir
+ * {@link CombinaisonsCatalogue}) sont parcourues une seule fois, de la moins
+ * chère à la plus chère par unité de volume, et chacune est répétée autant que
+ * les colis restants le permettent. Le temps de calcul ne dépend donc pas du
+ * nombre de colis.
+ *
+ * Le coût obtenu n'est pas garanti minimal : {@link #getBorneInferieureCout}
+ * donne le coût en dessous duquel aucun emballage ne peut descendre, pour
+ * mesurer l'écart.
+ *
+ * @author Gaetan
+ *
+ */
+public class EmballageCatalogue {
+
+	final static Logger logger = Logger.getLogger(EmballageCatalogue.class);
+
+	private final ConfigurationEmballage configuration;
+
+	private final List<TypeCarton> typesCartons;
+
+	private final CombinaisonsCatalogue combinaisons;
+
+	/** Type de carton au plus faible coût par unité de volume */
+	private final TypeCarton typeLeMoinsCher;
+
+	/**
+	 * @param configuration
+	 *            format de l'entrée et tailles autorisées. Sa capacité n'est pas
+	 *            utilisée : ce sont celles des types de cartons
+	 * @param typesCartons
+	 *            catalogue des types de cartons. Le plus grand doit pouvoir
+	 *            contenir la taille maximum de colis
+	 */
+	public EmballageCatalogue(ConfigurationEmballage configuration, List<TypeCarton> typesCartons) {
+		if (typesCartons.isEmpty()) {
+			throw new IllegalArgumentException("Le catalogue doit contenir au moins un type de carton");
+		}
+		TypeCarton typeLeMoinsCher = typesCartons.get(0);
+		int capaciteMax = 0;
+		for (TypeCarton typeCarton : typesCartons) {
+			capaciteMax = Math.max(capaciteMax, typeCarton.getCapacite());
+			if (typeCarton.getCout() * typeLeMoinsCher.getCapacite() < typeLeMoinsCher.getCout()
+					* typeCarton.getCapacite()) {
+				typeLeMoinsCher = typeCarton;
+			}
+		}
+		if (capaciteMax < configuration.getTailleColisMax()) {
+			throw new IllegalArgumentException(String.format(
+					"Aucun carton ne peut contenir les colis de taille %d (plus grande capacité %d)",
+					configuration.getTailleColisMax(), capaciteMax));
+		}
+		this.configuration = configuration;
+		this.typesCartons = Collections.unmodifiableList(new ArrayList<TypeCarton>(typesCartons));
+		this.typeLeMoinsCher = typeLeMoinsCher;
+		this.combinaisons = new CombinaisonsCatalogue(this.typesCartons, configuration);
+	}
+
+	/**
+	 * @return les types de cartons du catalogue
+	 */
+	public List<TypeCarton> getTypesCartons() {
+		return typesCartons;
+	}
+
+	/**
+	 * Emballe des colis au coût le plus faible possible
+	 *
+	 * @param entreeTaillesColis
+	 *            Taille des colis entrant, au format de la configuration.
+	 *            Exemple : "354218465154"
+	 * @return Le nombre de cartons de chaque combinaison, dont le libellé
+	 *         commence par le type de carton. Exemple : "M:91"
+	 * @throws TailleColisException
+	 *             sur le premier colis invalide
+	 */
+	public ResultatSolveur calculerCartons(String entreeTaillesColis) {
+		return resoudre(CompteurColis.compter(entreeTaillesColis, configuration));
+	}
+
+	/**
+	 * Emballe des colis déjà comptés par taille au coût le plus faible possible
+	 *
+	 * @param nbColisParTaille
+	 *            Indice : taille des colis. Valeur : nombre de colis ayant cette
+	 *            taille. Le tableau n'est pas modifié
+	 * @return Le nombre de cartons de chaque combinaison
+	 */
+	public ResultatSolveur calculerCartons(long[] nbColisParTaille) {
+		return resoudre(LecteurQuantites.verifier(nbColisParTaille, configuration));
+	}
+
+	/**
+	 * Emballe des colis et construit la liste des cartons, chacun précédé de son
+	 * type. Exemple : "M:91/P:55", ou "M:91(1)/P:55(1)" en affichage optimisé
+	 *
+	 * @param entreeTaillesColis
+	 *            Taille des colis entrant, au format de la configuration
+	 * @param affichageOptimisee
+	 *            Affiche le nombre de cartons entre parenthèse pour chaque
+	 *            combinaison
+	 * @return la liste des cartons
+	 */
+	public String emballerCartons(String entreeTaillesColis, boolean affichageOptimisee) {
+		return calculerCartons(entreeTaillesColis).afficher(affichageOptimisee);
+	}
+
+	/**
+	 * @param resultat
+	 *            emballage calculé par ce catalogue
+	 * @return le coût total des cartons
+	 */
+	public long getCout(ResultatSolveur resultat) {
+		long cout = 0;
+		for (int combinaison : resultat.getCombinaisonsUtilisees()) {
+			cout = Math.addExact(cout, Math.multiplyExact(resultat.getNbCartons(combinaison),
+					combinaisons.getTypeCarton(combinaison).getCout()));
+		}
+		return cout;
+	}
+
+	/**
+	 * @param resultat
+	 *            emballage calculé par ce catalogue
+	 * @param typeCarton
+	 *            type de carton du catalogue
+	 * @return le nombre de cartons de ce type
+	 */
+	public long getNbCartons(ResultatSolveur resultat, TypeCarton typeCarton) {
+		long nbCartons = 0;
+		for (int combinaison : resultat.getCombinaisonsUtilisees()) {
+			if (combinaisons.getTypeCarton(combinaison) == typeCarton) {
+				nbCartons += resultat.getNbCartons(combinaison);
+			}
+		}
+		return nbCartons;
+	}
+
+	/**
+	 * @param resultat
+	 *            emballage calculé par ce catalogue
+	 * @return une borne inférieure du coût de tout emballage des mêmes colis :
+	 *         leur volume au coût par unité de volume du type de carton le moins
+	 *         cher, comme si les cartons pouvaient être remplis exactement
+	 */
+	public long getBorneInferieureCout(ResultatSolveur resultat) {
+		long volume = resultat.getVolume();
+		long capacite = typeLeMoinsCher.getCapacite();
+		long cout = typeLeMoinsCher.getCout();
+		// Arrondi au supérieur de volume * coût / capacité, sans déborder
+		return Math.addExact(Math.multiplyExact(volume / capacite, cout),
+				((volume % capacite) * cout + capacite - 1) / capacite);
+	}
+
+	/**
+	 * Réalise les cartons en parcourant les combinaisons du catalogue
+	 *
+	 * @param nbColisParTaille
+	 *            colis vérifiés
+	 * @return Nombre de cartons pour chaque combinaison
+	 */
+	private ResultatSolveur resoudre(long[] nbColisParTaille) {
+		long[] nbCartonsParCombinaison = new long[combinaisons.getNbCombinaisons()];
+		EmballageServiceImpl.faireCartons(nbColisParTaille.clone(), combinaisons, nbCartonsParCombinaison);
+		ResultatSolveur resultat = new ResultatSolveur(combinaisons, nbCartonsParCombinaison,
+				SolveurPremierAjustement.borneInferieure(nbColisParTaille, combinaisons.getCapaciteCarton()));
+		if (logger.isDebugEnabled()) {
+			logger.debug(String.format("%d cartons pour un coût de %d (borne inférieure %d)",
+					resultat.getNbCartons(), getCout(resultat), getBorneInferieureCout(resultat)));
+		}
+		return resultat;
+	}
+
+}
@@ -0,0 +1,391 @@
+package sample.vsct.service;
+
+import org.apache.log4j.Logger;
+
+import sample.vsct.exception.TailleColisException;
+import sample.vsct.mesure.HistogrammeDurees;
+
+/**
+ * Emballage en ligne, pour une chaîne où les colis arrivent un par un et où
+ * seuls k cartons peuvent être ouverts en même temps au poste d'emballage.
+ *
+ * Chaque colis est placé dès son arrivée (ou dès que le tampon d'anticipation
+ * est plein) selon la {@link PolitiqueEnLigne} choisie. Un carton est fermé
+ * lorsqu'aucun colis ne peut plus y entrer, ou lorsqu'il faut libérer une
+ * place ; il est alors transmis au {@link Recepteur}. Les cartons ouverts sont
+ * stockés dans des tableaux d'entiers de taille fixe : aucune allocation n'est
+ * faite par colis.
+ *
+ * La durée de décision de chaque colis est mesurée, et le nombre de cartons
+ * peut être comparé à celui de l'emballage hors ligne des mêmes colis.
+ *
+ * Une instance n'est pas prévue pour être partagée entre plusieurs threads.
+ *
+ * @author Gaetan
+ *
+ */
+public class EmballageEnLigne {
+
+	final static Logger logger = Logger.getLogger(EmballageEnLigne.class);
+
+	/**
+	 * Reçoit les cartons fermés
+	 */
+	public interface Recepteur {
+
+		/**
+		 * @param tailles
+		 *            tableau contenant les tailles des colis du carton. Il est
+		 *            réutilisé : il ne doit pas être conservé
+		 * @param debut
+		 *            indice de la première taille du carton
+		 * @param nbColis
+		 *            nombre de colis du carton
+		 */
+		void recevoir(int[] tailles, int debut, int nbColis);
+	}
+
+	private final ConfigurationEmballage configuration;
+
+	private final int capaciteCarton;
+
+	private final int nbCartonsOuvertsMax;
+
+	private final PolitiqueEnLigne politique;
+
+	private final Recepteur recepteur;
+
+	/** Service d'emballage hors ligne, pour la comparaison */
+	private final EmballageServiceImpl emballageHorsLigne;
+
+	/** Nombre maximum de colis dans un carton */
+	private final int nbColisParCartonMax;
+
+	/** Vrai si l'emplacement contient un carton ouvert */
+	private final boolean[] ouvert;
+
+	/** Numéro d'ouverture de chaque carton ouvert (le plus petit est le plus ancien) */
+	private final long[] numeroOuverture;
+
+	/** Somme des tailles des colis de chaque carton ouvert */
+	private final int[] remplissage;
+
+	private final int[] nbColisCarton;
+
+	/** Colis des cartons ouverts : contenus[emplacement * nbColisParCartonMax + i] */
+	private final int[] contenus;
+
+	private int nbCartonsOuverts;
+
+	private long nbOuvertures;
+
+	/** Colis en attente (politique ANTICIPATION) */
+	private final int[] tampon;
+
+	private int nbColisTampon;
+
+	/** Indice : taille des colis. Valeur : nombre de colis reçus de cette taille */
+	private final long[] nbColisParTaille;
+
+	private long nbCartonsFermes;
+
+	private long volumeCartonsFermes;
+
+	/** Durée de décision de chaque colis */
+	private final HistogrammeDurees durees = new HistogrammeDurees();
+
+	/**
+	 * Emballage en ligne sans tampon d'anticipation
+	 *
+	 * @param configuration
+	 *            capacité des cartons et tailles autorisées
+	 * @param nbCartonsOuvertsMax
+	 *            nombre maximum de cartons ouverts en même temps (k)
+	 * @param politique
+	 *            {@link PolitiqueEnLigne#PROCHAIN_AJUSTEMENT} ou
+	 *            {@link PolitiqueEnLigne#MEILLEUR_AJUSTEMENT}
+	 * @param recepteur
+	 *            reçoit les cartons fermés (peut être null)
+	 */
+	public EmballageEnLigne(ConfigurationEmballage configuration, int nbCartonsOuvertsMax,
+			PolitiqueEnLigne politique, Recepteur recepteur) {
+		this(configuration, nbCartonsOuvertsMax, politique, 0, recepteur);
+	}
+
+	/**
+	 * @param configuration
+	 *            capacité des cartons et tailles autorisées
+	 * @param nbCartonsOuvertsMax
+	 *            nombre maximum de cartons ouverts en même temps (k)
+	 * @param politique
+	 *            politique de choix du carton
+	 * @param tailleTampon
+	 *            nombre de colis en attente pour la politique
+	 *            {@link PolitiqueEnLigne#ANTICIPATION} (ignoré sinon)
+	 * @param recepteur
+	 *            reçoit les cartons fermés (peut être null)
+	 */
+	public EmballageEnLigne(ConfigurationEmballage configuration, int nbCartonsOuvertsMax,
+			PolitiqueEnLigne politique, int tailleTampon, Recepteur recepteur) {
+		if (nbCartonsOuvertsMax < 1) {
+			throw new IllegalArgumentException(
+					String.format("Il faut au moins un carton ouvert (%d demandés)", nbCartonsOuvertsMax));
+		}
+		if (politique == PolitiqueEnLigne.ANTICIPATION && tailleTampon < 1) {
+			throw new IllegalArgumentException(
+					String.format("L'anticipation nécessite un tampon d'au moins un colis (%d demandés)", tailleTampon));
+		}
+		this.configuration = configuration;
+		this.capaciteCarton = configuration.getCapaciteCarton();
+		this.nbCartonsOuvertsMax = nbCartonsOuvertsMax;
+		this.politique = politique;
+		this.recepteur = recepteur;
+		this.emballageHorsLigne = new EmballageServiceImpl(configuration);
+		this.nbColisParCartonMax = capaciteCarton / configuration.getTailleColisMin();
+		this.ouvert = new boolean[nbCartonsOuvertsMax];
+		this.numeroOuverture = new long[nbCartonsOuvertsMax];
+		this.remplissage = new int[nbCartonsOuvertsMax];
+		this.nbColisCarton = new int[nbCartonsOuvertsMax];
+		this.contenus = new int[nbCartonsOuvertsMax * nbColisParCartonMax];
+		this.tampon = new int[politique == PolitiqueEnLigne.ANTICIPATION ? tailleTampon : 0];
+		this.nbColisParTaille = configuration.creerNbColisParTaille();
+	}
+
+	/**
+	 * Reçoit un colis de la chaîne et décide de son carton
+	 *
+	 * @param taille
+	 *            taille du colis
+	 * @throws TailleColisException
+	 *             si la taille n'est pas autorisée par la configuration
+	 */
+	public void ajouter(int taille) {
+		if (taille < configuration.getTailleColisMin() || taille > configuration.getTailleColisMax()) {
+			throw new TailleColisException(
+					String.format("La taille d'un colis vaut %d alors qu'il doit être compris entre %d et %d", taille,
+							configuration.getTailleColisMin(), configuration.getTailleColisMax()));
+		}
+		long debut = System.nanoTime();
+		nbColisParTaille[taille]++;
+		if (politique == PolitiqueEnLigne.ANTICIPATION) {
+			tampon[nbColisTampon++] = taille;
+			if (nbColisTampon == tampon.length) {
+				placerDepuisTampon();
+			}
+		} else {
+			placer(taille);
+		}
+		durees.enregistrer(System.nanoTime() - debut);
+	}
+
+	/**
+	 * Fin de la chaîne : place les colis en attente et ferme tous les cartons
+	 * ouverts, du plus ancien au plus récent
+	 */
+	public void terminer() {
+		logger.debug("Fermeture des cartons de l'emballage en ligne");
+		while (nbColisTampon > 0) {
+			placerDepuisTampon();
+		}
+		while (nbCartonsOuverts > 0) {
+			fermer(plusAncien());
+		}
+	}
+
+	/**
+	 * Place un colis selon la politique de prochain ou de meilleur ajustement
+	 */
+	private void placer(int taille) {
+		int emplacement = -1;
+		for (int e = 0; e < nbCartonsOuvertsMax; e++) {
+			if (!ouvert[e] || remplissage[e] + taille > capaciteCarton) {
+				continue;
+			}
+			if (emplacement < 0
+					|| (politique == PolitiqueEnLigne.PROCHAIN_AJUSTEMENT
+							? numeroOuverture[e] < numeroOuverture[emplacement]
+							: remplissage[e] > remplissage[emplacement])) {
+				emplacement = e;
+			}
+		}
+		if (emplacement < 0) {
+			emplacement = ouvrir(politique == PolitiqueEnLigne.PROCHAIN_AJUSTEMENT);
+		}
+		ranger(emplacement, taille);
+	}
+
+	/**
+	 * Place le colis du tampon qui laisse le moins de place libre dans un carton
+	 * ouvert. Si aucun ne tient, le plus grand colis du tampon est placé dans un
+	 * nouveau carton
+	 */
+	private void placerDepuisTampon() {
+		int meilleurColis = -1;
+		int meilleurEmplacement = -1;
+		int meilleurePlaceLibre = Integer.MAX_VALUE;
+		int plusGrandColis = 0;
+		for (int c = 0; c < nbColisTampon; c++) {
+			int taille = tampon[c];
+			if (taille > tampon[plusGrandColis]) {
+				plusGrandColis = c;
+			}
+			for (int e = 0; e < nbCartonsOuvertsMax; e++) {
+				int placeLibre = capaciteCarton - remplissage[e] - taille;
+				if (ouvert[e] && placeLibre >= 0 && (placeLibre < meilleurePlaceLibre
+						|| (placeLibre == meilleurePlaceLibre && taille > tampon[meilleurColis]))) {
+					meilleurColis = c;
+					meilleurEmplacement = e;
+					meilleurePlaceLibre = placeLibre;
+				}
+			}
+		}
+		if (meilleurColis < 0) {
+			meilleurColis = plusGrandColis;
+			meilleurEmplacement = ouvrir(false);
+		}
+		int taille = tampon[meilleurColis];
+		tampon[meilleurColis] = tampon[--nbColisTampon];
+		ranger(meilleurEmplacement, taille);
+	}
+
+	/**
+	 * Ouvre un carton, en fermant d'abord un carton si tous sont ouverts
+	 *
+	 * @param fermerPlusAncien
+	 *            ferme le plus ancien carton si vrai, le plus rempli sinon
+	 * @return l'emplacement du nouveau carton
+	 */
+	private int ouvrir(boolean fermerPlusAncien) {
+		if (nbCartonsOuverts == nbCartonsOuvertsMax) {
+			fermer(fermerPlusAncien ? plusAncien() : plusRempli());
+		}
+		int emplacement = 0;
+		while (ouvert[emplacement]) {
+			emplacement++;
+		}
+		ouvert[emplacement] = true;
+		numeroOuverture[emplacement] = nbOuvertures++;
+		remplissage[emplacement] = 0;
+		nbColisCarton[emplacement] = 0;
+		nbCartonsOuverts++;
+		return emplacement;
+	}
+
+	/**
+	 * Range un colis dans un carton ouvert, et ferme le carton si plus aucun colis
+	 * ne peut y entrer
+	 */
+	private void ranger(int emplacement, int taille) {
+		contenus[emplacement * nbColisParCartonMax + nbColisCarton[emplacement]++] = taille;
+		remplissage[emplacement] += taille;
+		if (capaciteCarton - remplissage[emplacement] < configuration.getTailleColisMin()) {
+			fermer(emplacement);
+		}
+	}
+
+	private void fermer(int emplacement) {
+		if (recepteur != null) {
+			recepteur.recevoir(contenus, emplacement * nbColisParCartonMax, nbColisCarton[emplacement]);
+		}
+		ouvert[emplacement] = false;
+		nbCartonsOuverts--;
+		nbCartonsFermes++;
+		volumeCartonsFermes += remplissage[emplacement];
+	}
+
+	private int plusAncien() {
+		int emplacement = -1;
+		for (int e = 0; e < nbCartonsOuvertsMax; e++) {
+			if (ouvert[e] && (emplacement < 0 || numeroOuverture[e] < numeroOuverture[emplacement])) {
+				emplacement = e;
+			}
+		}
+		return emplacement;
+	}
+
+	private int plusRempli() {
+		int emplacement = -1;
+		for (int e = 0; e < nbCartonsOuvertsMax; e++) {
+			if (ouvert[e] && (emplacement < 0 || remplissage[e] > remplissage[emplacement])) {
+				emplacement = e;
+			}
+		}
+		return emplacement;
+	}
+
+	/**
+	 * @return le nombre de cartons fermés
+	 */
+	public long getNbCartonsFermes() {
+		return nbCartonsFermes;
+	}
+
+	/**
+	 * @return le nombre de cartons fermés et ouverts (après {@link #terminer()},
+	 *         le nombre total de cartons)
+	 */
+	public long getNbCartons() {
+		return nbCartonsFermes + nbCartonsOuverts;
+	}
+
+	/**
+	 * @return le nombre de cartons actuellement ouverts
+	 */
+	public int getNbCartonsOuverts() {
+		return nbCartonsOuverts;
+	}
+
+	/**
+	 * @return le taux de remplissage des cartons fermés, entre 0 et 1
+	 */
+	public double getTauxRemplissage() {
+		return nbCartonsFermes == 0 ? 0 : (double) volumeCartonsFermes / ((double) nbCartonsFermes * capaciteCarton);
+	}
+
+	/**
+	 * @return l'emballage hors ligne de tous les colis reçus, pour comparaison
+	 */
+	public ResultatSolveur calculerHorsLigne() {
+		return emballageHorsLigne.resoudre(nbColisParTaille);
+	}
+
+	/**
+	 * @return le nombre de cartons en plus de l'emballage hors ligne des mêmes
+	 *         colis (à appeler après {@link #terminer()})
+	 */
+	public long getEcartHorsLigne() {
+		return getNbCartons() - calculerHorsLigne().getNbCartons();
+	}
+
+	/**
+	 * @return la durée moyenne de décision d'un colis, en microsecondes
+	 */
+	public double getLatenceMoyenneMicros() {
+		return durees.getMoyenneMicros();
+	}
+
+	/**
+	 * @return la plus longue durée de décision d'un colis, en microsecondes
+	 */
+	public double getLatenceMaxMicros() {
+		return durees.getMaxMicros();
+	}
+
+	/**
+	 * @param centile
+	 *            centile entre 0 et 100. Exemple : 99
+	 * @return une borne supérieure (à un facteur 2 près) de la durée de décision
+	 *         de ce centile des colis, en microsecondes
+	 */
+	public double getLatenceCentileMicros(double centile) {
+		return durees.getCentileMicros(centile);
+	}
+
+	/**
+	 * @return le nombre de colis reçus
+	 */
+	public long getNbColis() {
+		return durees.getNbDurees();
+	}
+
+}
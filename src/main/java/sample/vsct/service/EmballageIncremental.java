@@ -0,0 +1,181 @@
+package sample.vsct.service;
+
+import org.apache.log4j.Logger;
+
+import sample.vsct.exception.TailleColisException;
+import sample.vsct.lecture.CompteurColis;
+import sample.vsct.lecture.LecteurQuantites;
+
+/**
+ * Emballage tenu à jour au fil de l'arrivée (et du départ) des colis, sans
+ * jamais relire l'ensemble des colis.
+ *
+ * Seul le nombre de colis de chaque taille est conservé : un ajout ou un
+ * retrait coûte O(1). L'emballage n'est recalculé qu'à la première
+ * consultation suivant une modification, à partir de ce tableau ; son coût ne
+ * dépend que du nombre de combinaisons, pas du nombre de colis. Une suite de
+ * modifications suivie d'une consultation coûte donc O(1) amorti par opération,
+ * et des consultations répétées sans modification sont immédiates.
+ *
+ * Les méthodes sont synchronisées : un tableau de bord peut consulter
+ * l'emballage pendant que les colis sont scannés sur un autre thread.
+ *
+ * @author Gaetan
+ *
+ */
+public class EmballageIncremental {
+
+	final static Logger logger = Logger.getLogger(EmballageIncremental.class);
+
+	private final EmballageServiceImpl emballageService;
+
+	private final ConfigurationEmballage configuration;
+
+	/** Indice : taille des colis. Valeur : nombre de colis ayant cette taille */
+	private final long[] nbColisParTaille;
+
+	private long nbColis;
+
+	/** Dernier emballage calculé, null s'il doit être recalculé */
+	private ResultatSolveur resultat;
+
+	/**
+	 * Emballage incrémental vide, utilisant l'algorithme et la configuration du
+	 * service
+	 *
+	 * @param emballageService
+	 *            service réalisant l'emballage
+	 */
+	public EmballageIncremental(EmballageServiceImpl emballageService) {
+		this.emballageService = emballageService;
+		this.configuration = emballageService.getConfiguration();
+		this.nbColisParTaille = configuration.creerNbColisParTaille();
+	}
+
+	/**
+	 * Ajoute un colis
+	 *
+	 * @param taille
+	 *            taille du colis
+	 * @throws TailleColisException
+	 *             si la taille n'est pas autorisée par la configuration
+	 */
+	public synchronized void ajouter(int taille) {
+		verifierTaille(taille);
+		nbColisParTaille[taille]++;
+		nbColis++;
+		resultat = null;
+	}
+
+	/**
+	 * Retire un colis
+	 *
+	 * @param taille
+	 *            taille du colis
+	 * @throws TailleColisException
+	 *             si la taille n'est pas autorisée par la configuration
+	 * @throws IllegalStateException
+	 *             s'il n'y a aucun colis de cette taille
+	 */
+	public synchronized void retirer(int taille) {
+		verifierTaille(taille);
+		if (nbColisParTaille[taille] == 0) {
+			throw new IllegalStateException(String.format("Aucun colis de taille %d à retirer", taille));
+		}
+		nbColisParTaille[taille]--;
+		nbColis--;
+		resultat = null;
+	}
+
+	/**
+	 * Ajoute tous les colis d'une entrée. Si un colis est invalide, aucun colis
+	 * n'est ajouté.
+	 *
+	 * @param entreeTaillesColis
+	 *            Taille des colis entrant, au format de la configuration. Exemple
+	 *            : "354218465154"
+	 * @throws TailleColisException
+	 *             sur le premier colis invalide
+	 */
+	public void ajouterTout(String entreeTaillesColis) {
+		// Le comptage est fait hors du verrou : seule la fusion est synchronisée
+		ajouterTout(CompteurColis.compter(entreeTaillesColis, configuration));
+	}
+
+	/**
+	 * Ajoute des colis déjà comptés
+	 *
+	 * @param nbColisAjoutesParTaille
+	 *            Indice : taille des colis. Valeur : nombre de colis ayant cette
+	 *            taille
+	 * @throws TailleColisException
+	 *             si des colis ont une taille non autorisée (aucun colis n'est
+	 *             alors ajouté)
+	 * @throws IllegalArgumentException
+	 *             si un nombre de colis est négatif ou trop grand (aucun colis
+	 *             n'est alors ajouté)
+	 */
+	public synchronized void ajouterTout(long[] nbColisAjoutesParTaille) {
+		long[] nbColisAjoutes = LecteurQuantites.verifier(nbColisAjoutesParTaille, configuration);
+		for (int taille = 0; taille < nbColisAjoutes.length; taille++) {
+			nbColisParTaille[taille] += nbColisAjoutes[taille];
+			nbColis += nbColisAjoutes[taille];
+		}
+		resultat = null;
+	}
+
+	/**
+	 * Retire tous les colis
+	 */
+	public synchronized void vider() {
+		for (int taille = 0; taille < nbColisParTaille.length; taille++) {
+			nbColisParTaille[taille] = 0;
+		}
+		nbColis = 0;
+		resultat = null;
+	}
+
+	/**
+	 * @param taille
+	 *            taille de colis
+	 * @return le nombre de colis de cette taille
+	 */
+	public synchronized long getNbColis(int taille) {
+		return taille >= 0 && taille < nbColisParTaille.length ? nbColisParTaille[taille] : 0;
+	}
+
+	/**
+	 * @return le nombre total de colis
+	 */
+	public synchronized long getNbColis() {
+		return nbColis;
+	}
+
+	/**
+	 * @return le nombre de cartons de l'emballage courant
+	 */
+	public synchronized long getNbCartons() {
+		return getResultat().getNbCartons();
+	}
+
+	/**
+	 * @return l'emballage courant : le nombre de cartons de chaque combinaison et
+	 *         la borne inférieure. Il n'est recalculé qu'après une modification
+	 */
+	public synchronized ResultatSolveur getResultat() {
+		if (resultat == null) {
+			logger.debug("Recalcul de l'emballage incrémental");
+			resultat = emballageService.resoudre(nbColisParTaille);
+		}
+		return resultat;
+	}
+
+	private void verifierTaille(int taille) {
+		if (taille < configuration.getTailleColisMin() || taille > configuration.getTailleColisMax()) {
+			throw new TailleColisException(
+					String.format("La taille d'un colis vaut %d alors qu'il doit être compris entre %d et %d", taille,
+							configuration.getTailleColisMin(), configuration.getTailleColisMax()));
+		}
+	}
+
+}
@@ -0,0 +1,439 @@
+package sample.vsct.service;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import sample.vsct.exception.TailleColisException;
+import sample.vsct.lecture.CompteurColis;
+import sample.vsct.lecture.LecteurQuantites;
+
+/**
+ * Emballage par fenêtres d'un flux continu de colis : les colis sont emballés
+ * tous les N colis ou toutes les T millisecondes, au premier des deux atteint.
+ *
+ * Au lieu de fermer à chaque fenêtre les cartons peu remplis laissés par les
+ * derniers colis, les colis des cartons remplis à moins du seuil sont retenus
+ * et emballés avec ceux de la fenêtre suivante. Un colis n'est jamais retenu
+ * plus longtemps que l'attente maximum (plus une fenêtre) : passé ce délai,
+ * tous les colis retenus sont emballés quel que soit le remplissage.
+ *
+ * Les colis d'une fenêtre et les colis retenus ne sont gardés que sous la forme
+ * du nombre de colis de chaque taille : la mémoire ne dépend pas du débit.
+ * L'emballage est fait par un seul thread de fond, qui transmet chaque
+ * fenêtre au {@link Recepteur} ; les colis peuvent être ajoutés depuis
+ * plusieurs threads. Si l'emballage d'une fenêtre échoue, ses colis sont
+ * reportés avec les colis retenus à la fenêtre suivante.
+ *
+ * @author Gaetan
+ *
+ */
+public class EmballageParFenetres implements Closeable {
+
+	final static Logger logger = Logger.getLogger(EmballageParFenetres.class);
+
+	/**
+	 * Reçoit l'emballage de chaque fenêtre, sur le thread de fond
+	 */
+	public interface Recepteur {
+
+		/**
+		 * @param fenetre
+		 *            cartons fermés à la fin de la fenêtre, latence et taux de
+		 *            remplissage
+		 */
+		void recevoir(FenetreEmballage fenetre);
+	}
+
+	private final EmballageServiceImpl emballageService;
+
+	private final ConfigurationEmballage configuration;
+
+	private final int nbColisParFenetre;
+
+	private final long dureeFenetreNanos;
+
+	private final double seuilRemplissage;
+
+	private final long attenteMaxNanos;
+
+	private final Recepteur recepteur;
+
+	private final ScheduledThreadPoolExecutor planificateur;
+
+	// Fenêtre en cours, protégée par le verrou de l'instance
+
+	/** Indice : taille des colis. Valeur : nombre de colis reçus dans la fenêtre */
+	private long[] nbColisParTaille;
+
+	private long nbColis;
+
+	/** Arrivée du premier colis de la fenêtre ({@link System#nanoTime()}) */
+	private long debutFenetre;
+
+	/** Vrai si la fermeture de la fenêtre pleine est déjà demandée au thread de fond */
+	private boolean fermetureDemandee;
+
+	private boolean ferme;
+
+	// Utilisés uniquement par le thread de fond
+
+	/** Tableau de la fenêtre précédente, réutilisé par la fenêtre suivante */
+	private long[] nbColisParTailleLibre;
+
+	/** Indice : taille des colis. Valeur : nombre de colis retenus */
+	private final long[] nbColisRetenusParTaille;
+
+	private long nbColisRetenus;
+
+	/** Arrivée du plus ancien colis retenu ({@link System#nanoTime()}) */
+	private long debutRetenue;
+
+	private long nbFenetres;
+
+	/** Fermeture de la fenêtre à la fin de sa durée */
+	private ScheduledFuture<?> echeance;
+
+	/**
+	 * @param emballageService
+	 *            service emballant chaque fenêtre
+	 * @param nbColisParFenetre
+	 *            nombre de colis fermant une fenêtre (N)
+	 * @param dureeFenetreMillis
+	 *            durée maximum d'une fenêtre en millisecondes (T)
+	 * @param seuilRemplissage
+	 *            taux de remplissage, entre 0 et 1, en dessous duquel les colis
+	 *            d'un carton sont retenus pour la fenêtre suivante. 0 pour ne
+	 *            jamais retenir de colis
+	 * @param attenteMaxMillis
+	 *            durée en millisecondes au delà de laquelle les colis retenus
+	 *            sont emballés quel que soit le remplissage
+	 * @param recepteur
+	 *            reçoit l'emballage de chaque fenêtre
+	 */
+	public EmballageParFenetres(EmballageServiceImpl emballageService, int nbColisParFenetre,
+			long dureeFenetreMillis, double seuilRemplissage, long attenteMaxMillis, Recepteur recepteur) {
+		if (nbColisParFenetre < 1 || dureeFenetreMillis < 1) {
+			throw new IllegalArgumentException(String.format(
+					"Une fenêtre doit avoir au moins un colis et durer au moins 1 ms : %d colis, %d ms",
+					nbColisParFenetre, dureeFenetreMillis));
+		}
+		if (!(seuilRemplissage >= 0 && seuilRemplissage <= 1) || attenteMaxMillis < 0) {
+			throw new IllegalArgumentException(String.format(
+					"Le seuil de remplissage doit être compris entre 0 et 1 et l'attente positive : %s, %d ms",
+					seuilRemplissage, attenteMaxMillis));
+		}
+		this.emballageService = emballageService;
+		this.configuration = emballageService.getConfiguration();
+		this.nbColisParFenetre = nbColisParFenetre;
+		this.dureeFenetreNanos = TimeUnit.MILLISECONDS.toNanos(dureeFenetreMillis);
+		this.seuilRemplissage = seuilRemplissage;
+		this.attenteMaxNanos = TimeUnit.MILLISECONDS.toNanos(attenteMaxMillis);
+		this.recepteur = recepteur;
+		this.nbColisParTaille = configuration.creerNbColisParTaille();
+		this.nbColisParTailleLibre = configuration.creerNbColisParTaille();
+		this.nbColisRetenusParTaille = configuration.creerNbColisParTaille();
+		this.planificateur = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable tache) {
+				Thread thread = new Thread(tache, "emballage-fenetres");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		// Les échéances annulées ne restent pas dans la file, et celles en attente
+		// sont abandonnées à l'arrêt
+		planificateur.setRemoveOnCancelPolicy(true);
+		planificateur.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+		planificateur.execute(new Runnable() {
+			@Override
+			public void run() {
+				armerEcheance();
+			}
+		});
+	}
+
+	/**
+	 * Ajoute un colis à la fenêtre en cours
+	 *
+	 * @param taille
+	 *            taille du colis
+	 * @throws TailleColisException
+	 *             si la taille n'est pas autorisée par la configuration
+	 * @throws IllegalStateException
+	 *             si l'emballage est fermé
+	 */
+	public void ajouter(int taille) {
+		if (taille < configuration.getTailleColisMin() || taille > configuration.getTailleColisMax()) {
+			throw new TailleColisException(
+					String.format("La taille d'un colis vaut %d alors qu'il doit être compris entre %d et %d", taille,
+							configuration.getTailleColisMin(), configuration.getTailleColisMax()));
+		}
+		synchronized (this) {
+			verifierOuvert();
+			debuterFenetre();
+			nbColisParTaille[taille]++;
+			nbColis++;
+			demanderFermetureSiPleine();
+		}
+	}
+
+	/**
+	 * Ajoute tous les colis d'une entrée à la fenêtre en cours. Si un colis est
+	 * invalide, aucun colis n'est ajouté. Une fenêtre peut dépasser N colis de
+	 * la taille de l'entrée
+	 *
+	 * @param entreeTaillesColis
+	 *            Taille des colis entrant, au format de la configuration. Exemple
+	 *            : "354218465154"
+	 * @throws TailleColisException
+	 *             sur le premier colis invalide
+	 * @throws IllegalStateException
+	 *             si l'emballage est fermé
+	 */
+	public void ajouterTout(String entreeTaillesColis) {
+		// Le comptage est fait hors du verrou : seul l'ajout est synchronisé
+		ajouterTout(CompteurColis.compter(entreeTaillesColis, configuration));
+	}
+
+	/**
+	 * Ajoute des colis déjà comptés à la fenêtre en cours
+	 *
+	 * @param nbColisAjoutesParTaille
+	 *            Indice : taille des colis. Valeur : nombre de colis ayant cette
+	 *            taille
+	 * @throws TailleColisException
+	 *             si des colis ont une taille non autorisée (aucun colis n'est
+	 *             alors ajouté)
+	 * @throws IllegalStateException
+	 *             si l'emballage est fermé
+	 */
+	public synchronized void ajouterTout(long[] nbColisAjoutesParTaille) {
+		verifierOuvert();
+		long[] nbColisAjoutes = LecteurQuantites.verifier(nbColisAjoutesParTaille, configuration);
+		long total = 0;
+		for (int taille = 0; taille < nbColisAjoutes.length; taille++) {
+			total += nbColisAjoutes[taille];
+		}
+		if (total == 0) {
+			return;
+		}
+		debuterFenetre();
+		for (int taille = 0; taille < nbColisAjoutes.length; taille++) {
+			nbColisParTaille[taille] += nbColisAjoutes[taille];
+		}
+		nbColis += total;
+		demanderFermetureSiPleine();
+	}
+
+	/**
+	 * Emballe la fenêtre en cours et tous les colis retenus, puis arrête le
+	 * thread de fond. Attend la transmission de la dernière fenêtre
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			if (ferme) {
+				return;
+			}
+			ferme = true;
+			planificateur.execute(new Runnable() {
+				@Override
+				public void run() {
+					fermerFenetre(false, true);
+				}
+			});
+		}
+		planificateur.shutdown();
+		try {
+			while (!planificateur.awaitTermination(1, TimeUnit.SECONDS)) {
+				logger.debug("Attente de l'emballage de la dernière fenêtre");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void verifierOuvert() {
+		if (ferme) {
+			throw new IllegalStateException("L'emballage par fenêtres est fermé");
+		}
+	}
+
+	private void debuterFenetre() {
+		if (nbColis == 0) {
+			debutFenetre = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Demande au thread de fond de fermer la fenêtre si elle est pleine. Une
+	 * seule demande est en attente à la fois
+	 */
+	private void demanderFermetureSiPleine() {
+		if (nbColis >= nbColisParFenetre && !fermetureDemandee) {
+			fermetureDemandee = true;
+			planificateur.execute(new Runnable() {
+				@Override
+				public void run() {
+					fermerFenetre(true, false);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Arme la fermeture de la fenêtre à la fin de sa durée (thread de fond)
+	 */
+	private void armerEcheance() {
+		if (echeance != null) {
+			echeance.cancel(false);
+		}
+		echeance = planificateur.schedule(new Runnable() {
+			@Override
+			public void run() {
+				fermerFenetre(false, false);
+			}
+		}, dureeFenetreNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Ferme la fenêtre en cours et l'emballe avec les colis retenus (thread de
+	 * fond)
+	 *
+	 * @param pleine
+	 *            vrai si la fermeture a été demandée parce que la fenêtre est
+	 *            pleine, faux à l'échéance
+	 * @param derniere
+	 *            vrai à la fermeture de l'emballage : aucun colis n'est retenu
+	 */
+	private void fermerFenetre(boolean pleine, boolean derniere) {
+		long[] colis;
+		long nbColisRecus;
+		long debut;
+		synchronized (this) {
+			if (pleine) {
+				fermetureDemandee = false;
+				if (nbColis < nbColisParFenetre) {
+					// La fenêtre a déjà été fermée par son échéance
+					return;
+				}
+			}
+			colis = nbColisParTaille;
+			nbColisParTaille = nbColisParTailleLibre;
+			nbColisRecus = nbColis;
+			nbColis = 0;
+			debut = debutFenetre;
+		}
+		nbColisParTailleLibre = colis;
+		try {
+			long debutEmballage = System.nanoTime();
+			boolean liberer = derniere
+					|| (nbColisRetenus > 0 && debutEmballage - debutRetenue >= attenteMaxNanos);
+			if (nbColisRecus > 0 || (liberer && nbColisRetenus > 0)) {
+				emballer(colis, nbColisRecus, nbColisRecus > 0 ? debut : debutRetenue, debutEmballage, liberer);
+			}
+		} catch (RuntimeException e) {
+			// Le thread de fond continue avec les fenêtres suivantes
+			logger.error(String.format("Échec de l'emballage de la fenêtre %d", nbFenetres), e);
+		} finally {
+			Arrays.fill(colis, 0);
+			if (!derniere) {
+				armerEcheance();
+			}
+		}
+	}
+
+	/**
+	 * Emballe les colis d'une fenêtre et les colis retenus, retient les colis des
+	 * cartons trop peu remplis et transmet les cartons fermés au récepteur. Si
+	 * l'emballage échoue, tous les colis restent retenus
+	 *
+	 * @param colis
+	 *            colis reçus pendant la fenêtre, par taille
+	 * @param nbColisRecus
+	 *            nombre de colis reçus pendant la fenêtre
+	 * @param debut
+	 *            arrivée du premier colis de la fenêtre
+	 * @param debutEmballage
+	 *            début de l'emballage
+	 * @param liberer
+	 *            vrai si aucun colis ne doit être retenu
+	 */
+	private void emballer(long[] colis, long nbColisRecus, long debut, long debutEmballage, boolean liberer) {
+		long nbColisReportes = nbColisRetenus;
+		for (int taille = 0; taille < colis.length; taille++) {
+			colis[taille] += nbColisRetenusParTaille[taille];
+		}
+		ResultatSolveur resultat;
+		try {
+			resultat = emballageService.resoudre(colis);
+		} catch (RuntimeException e) {
+			// Les colis retenus ne sont remplacés qu'après l'emballage : en cas
+			// d'échec, ceux de la fenêtre s'y ajoutent, avec leur arrivée
+			System.arraycopy(colis, 0, nbColisRetenusParTaille, 0, colis.length);
+			nbColisRetenus += nbColisRecus;
+			if (nbColisReportes == 0) {
+				debutRetenue = debut;
+			}
+			throw e;
+		}
+
+		Arrays.fill(nbColisRetenusParTaille, 0);
+		nbColisRetenus = 0;
+		if (!liberer && seuilRemplissage > 0) {
+			resultat = retenir(resultat);
+			if (nbColisRetenus > 0 && nbColisReportes == 0) {
+				debutRetenue = debut;
+			}
+		}
+		long fin = System.nanoTime();
+		FenetreEmballage fenetre = new FenetreEmballage(nbFenetres++, nbColisRecus, nbColisReportes,
+				nbColisRetenus, resultat, fin - debut, fin - debutEmballage);
+		if (logger.isDebugEnabled()) {
+			logger.debug(fenetre.toString());
+		}
+		recepteur.recevoir(fenetre);
+	}
+
+	/**
+	 * Retient les colis des cartons remplis à moins du seuil
+	 *
+	 * @param resultat
+	 *            emballage de tous les colis de la fenêtre
+	 * @return l'emballage sans les cartons retenus
+	 */
+	private ResultatSolveur retenir(ResultatSolveur resultat) {
+		Combinaisons combinaisons = resultat.getCombinaisons();
+		long[] nbCartonsParCombinaison = null;
+		long volume = 0;
+		for (int combinaison : resultat.getCombinaisonsUtilisees()) {
+			long nbCartons = resultat.getNbCartons(combinaison);
+			if (combinaisons.getTotal(combinaison) >= seuilRemplissage * combinaisons.getCapacite(combinaison)) {
+				volume += nbCartons * combinaisons.getTotal(combinaison);
+				continue;
+			}
+			if (nbCartonsParCombinaison == null) {
+				nbCartonsParCombinaison = resultat.getNbCartonsParCombinaison().clone();
+			}
+			nbCartonsParCombinaison[combinaison] = 0;
+			for (int i = combinaisons.getDebutTailles(combinaison); i < combinaisons.getFinTailles(combinaison); i++) {
+				long nbColisTaille = nbCartons * combinaisons.getFrequence(i);
+				nbColisRetenusParTaille[combinaisons.getTaille(i)] += nbColisTaille;
+				nbColisRetenus += nbColisTaille;
+			}
+		}
+		if (nbCartonsParCombinaison == null) {
+			return resultat;
+		}
+		int capaciteCarton = combinaisons.getCapaciteCarton();
+		return new ResultatSolveur(combinaisons, nbCartonsParCombinaison,
+				(volume + capaciteCarton - 1) / capaciteCarton);
+	}
+
+}
@@ -1,5 +1,17 @@
 package sample.vsct.service;
 
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import sample.vsct.lecture.ComptagePartiel;
+import sample.vsct.lecture.RapportErreurs;
+
 /**
  * Permet d'emballer des colis dans des cartons
  * @author Gaetan
@@ -22,4 +34,415 @@ public interface EmballageService {
 	 */
 	String emballerCartons(String cartonsEntree, boolean affichageOptimisee);
 
+	/**
+	 * Emballe des colis dans des cartons et retourne le nombre de cartons de chaque
+	 * combinaison de taille, avec l'écart entre le nombre de cartons et une borne
+	 * inférieure (0 si l'emballage est prouvé optimal). Aucun texte n'est
+	 * construit : l'affichage des cartons est une étape optionnelle du résultat.
+	 * 
+	 * @param cartonsEntree
+	 *            Décrit les tailles des colis en entrée
+	 * @return Le nombre de cartons de chaque combinaison et la borne inférieure
+	 */
+	ResultatSolveur calculerCartons(String cartonsEntree);
+
+	/**
+	 * Emballe des colis en mode tolérant : les colis invalides sont ignorés et
+	 * notés dans le rapport au lieu d'interrompre l'emballage, qui porte sur
+	 * tous les colis valides.
+	 * 
+	 * @param cartonsEntree
+	 *            Décrit les tailles des colis en entrée
+	 * @param rapport
+	 *            Reçoit les positions des colis invalides
+	 * @return Le nombre de cartons de chaque combinaison et la borne inférieure
+	 */
+	ResultatSolveur calculerCartons(String cartonsEntree, RapportErreurs rapport);
+
+	/**
+	 * Emballe des colis déjà comptés par taille. Le temps de calcul ne dépend pas
+	 * du nombre de colis.
+	 * 
+	 * @param nbColisParTaille
+	 *            Indice : taille des colis. Valeur : nombre de colis ayant cette
+	 *            taille. Le tableau n'est pas modifié
+	 * @return Le nombre de cartons de chaque combinaison et la borne inférieure
+	 * @throws IllegalArgumentException
+	 *             si un nombre de colis est négatif, ou si le volume total des
+	 *             colis dépasse la capacité d'un long
+	 */
+	ResultatSolveur calculerCartons(long[] nbColisParTaille);
+
+	/**
+	 * Emballe des colis dans le budget de temps de la commande. Une stratégie qui
+	 * améliore sa solution (voir {@link StrategieRecherche}) rend la meilleure
+	 * solution trouvée à l'expiration du budget ; une stratégie rapide répond
+	 * avant. Le cache du service n'est pas utilisé.
+	 * 
+	 * @param cartonsEntree
+	 *            Décrit les tailles des colis en entrée
+	 * @param budget
+	 *            durée maximum du calcul
+	 * @param unite
+	 *            unité du budget
+	 * @return Les cartons, la stratégie qui les a calculés, la durée du calcul
+	 *         et si le minimum de cartons est prouvé
+	 * @throws IllegalArgumentException
+	 *             si le budget est négatif
+	 */
+	ResultatStrategie calculerCartons(String cartonsEntree, long budget, TimeUnit unite);
+
+	/**
+	 * Emballe des colis déjà comptés par taille dans le budget de temps de la
+	 * commande (voir {@link #calculerCartons(String, long, TimeUnit)})
+	 * 
+	 * @param nbColisParTaille
+	 *            Indice : taille des colis. Valeur : nombre de colis ayant cette
+	 *            taille. Le tableau n'est pas modifié
+	 * @param budget
+	 *            durée maximum du calcul
+	 * @param unite
+	 *            unité du budget
+	 * @return Les cartons, la stratégie qui les a calculés, la durée du calcul
+	 *         et si le minimum de cartons est prouvé
+	 */
+	ResultatStrategie calculerCartons(long[] nbColisParTaille, long budget, TimeUnit unite);
+
+	/**
+	 * Emballe des colis déjà comptés par taille
+	 * 
+	 * @param nbColisParTaille
+	 *            Indice : taille des colis. Valeur : nombre de colis ayant cette
+	 *            taille. Le tableau n'est pas modifié
+	 * @param affichageOptimisee
+	 *            Affiche le nombre de cartons entre parenthèse pour chaque
+	 *            combinaison de taille (voir
+	 *            {@link #emballerCartons(String, boolean)})
+	 * @return Les cartons avec les tailles des colis le composant
+	 * @throws IllegalArgumentException
+	 *             si un nombre de colis est négatif, ou si le volume total des
+	 *             colis dépasse la capacité d'un long
+	 */
+	String emballerCartons(long[] nbColisParTaille, boolean affichageOptimisee);
+
+	/**
+	 * Emballe des colis déjà comptés par taille et écrit les cartons (en ASCII)
+	 * dans un canal par blocs de taille fixe. Adapté à l'affichage non optimisé
+	 * de milliards de colis.
+	 * 
+	 * @param nbColisParTaille
+	 *            Indice : taille des colis. Valeur : nombre de colis ayant cette
+	 *            taille. Le tableau n'est pas modifié
+	 * @param affichageOptimisee
+	 *            Affiche le nombre de cartons entre parenthèse pour chaque
+	 *            combinaison de taille
+	 * @param sortie
+	 *            Canal recevant les cartons. Il n'est pas fermé
+	 * @throws IOException
+	 *             si le canal ne peut pas être écrit
+	 */
+	void emballerCartons(long[] nbColisParTaille, boolean affichageOptimisee, WritableByteChannel sortie)
+			throws IOException;
+
+	/**
+	 * Emballe des colis comptés par fragments, une fois les comptages partiels
+	 * fusionnés (voir {@link ComptagePartiel#fusionner(List)})
+	 * 
+	 * @param comptage
+	 *            Nombre de colis de chaque taille
+	 * @return Le nombre de cartons de chaque combinaison et la borne inférieure
+	 * @throws sample.vsct.exception.TailleColisException
+	 *             si le comptage contient des tailles non autorisées par ce
+	 *             service
+	 */
+	ResultatSolveur calculerCartons(ComptagePartiel comptage);
+
+	/**
+	 * Emballe des colis comptés par fragments
+	 * 
+	 * @param comptage
+	 *            Nombre de colis de chaque taille
+	 * @param affichageOptimisee
+	 *            Affiche le nombre de cartons entre parenthèse pour chaque
+	 *            combinaison de taille
+	 * @return Les cartons avec les tailles des colis le composant
+	 */
+	String emballerCartons(ComptagePartiel comptage, boolean affichageOptimisee);
+
+	/**
+	 * Emballe des colis décrits au format "taille x nombre" (voir
+	 * {@link sample.vsct.lecture.LecteurQuantites}). Par exemple, "9x2,1x2"
+	 * donne "91(2)" en affichage optimisé.
+	 * 
+	 * @param quantitesParTaille
+	 *            Nombre de colis de chaque taille. Exemple : "9x1000000000,1x500"
+	 * @param affichageOptimisee
+	 *            Affiche le nombre de cartons entre parenthèse pour chaque
+	 *            combinaison de taille
+	 * @return Les cartons avec les tailles des colis le composant
+	 */
+	String emballerQuantites(String quantitesParTaille, boolean affichageOptimisee);
+
+	/**
+	 * Emballe des colis dans des cartons et écrit les cartons au fil de l'eau dans
+	 * une sortie texte, sans construire la chaine complète en mémoire.
+	 * 
+	 * @param cartonsEntree
+	 *            Décrit les tailles des colis en entrée
+	 * @param affichageOptimisee
+	 *            Affiche le nombre de cartons entre parenthèse pour chaque
+	 *            combinaison de taille (voir
+	 *            {@link #emballerCartons(String, boolean)})
+	 * @param sortie
+	 *            Sortie recevant les cartons. Elle n'est ni vidée ni fermée
+	 * @throws IOException
+	 *             si la sortie ne peut pas être écrite
+	 */
+	void emballerCartons(String cartonsEntree, boolean affichageOptimisee, Appendable sortie) throws IOException;
+
+	/**
+	 * Emballe des colis dans des cartons et écrit les cartons (en ASCII) dans un
+	 * canal par blocs de taille fixe.
+	 * 
+	 * @param cartonsEntree
+	 *            Décrit les tailles des colis en entrée
+	 * @param affichageOptimisee
+	 *            Affiche le nombre de cartons entre parenthèse pour chaque
+	 *            combinaison de taille (voir
+	 *            {@link #emballerCartons(String, boolean)})
+	 * @param sortie
+	 *            Canal recevant les cartons. Il n'est pas fermé
+	 * @throws IOException
+	 *             si le canal ne peut pas être écrit
+	 */
+	void emballerCartons(String cartonsEntree, boolean affichageOptimisee, WritableByteChannel sortie)
+			throws IOException;
+
+	/**
+	 * Emballe les colis décrits dans un fichier. Le fichier est projeté en mémoire
+	 * et lu par zones : la mémoire utilisée ne dépend pas de la taille du fichier.
+	 * Les fins de ligne sont ignorées.
+	 * 
+	 * @param fichierColis
+	 *            Fichier décrivant les tailles des colis en entrée
+	 * @param affichageOptimisee
+	 *            Affiche le nombre de cartons entre parenthèse pour chaque
+	 *            combinaison de taille (voir
+	 *            {@link #emballerCartons(String, boolean)})
+	 * @return Les cartons avec les tailles des colis le composant.
+	 * @throws IOException
+	 *             si le fichier ne peut pas être lu
+	 */
+	String emballerCartons(Path fichierColis, boolean affichageOptimisee) throws IOException;
+
+	/**
+	 * Emballe les colis décrits dans un fichier et écrit les cartons dans un canal.
+	 * Ni l'entrée ni la sortie ne sont chargées en mémoire.
+	 * 
+	 * @param fichierColis
+	 *            Fichier décrivant les tailles des colis en entrée
+	 * @param affichageOptimisee
+	 *            Affiche le nombre de cartons entre parenthèse pour chaque
+	 *            combinaison de taille (voir
+	 *            {@link #emballerCartons(String, boolean)})
+	 * @param sortie
+	 *            Canal recevant les cartons. Il n'est pas fermé
+	 * @throws IOException
+	 *             si le fichier ne peut pas être lu ou le canal écrit
+	 */
+	void emballerCartons(Path fichierColis, boolean affichageOptimisee, WritableByteChannel sortie)
+			throws IOException;
+
+	/**
+	 * Emballe les colis décrits dans un fichier en mode tolérant, et écrit les
+	 * cartons dans un canal. Les colis invalides sont ignorés et notés dans le
+	 * rapport : un flux contenant quelques erreurs est emballé en une seule
+	 * lecture.
+	 * 
+	 * @param fichierColis
+	 *            Fichier décrivant les tailles des colis en entrée
+	 * @param affichageOptimisee
+	 *            Affiche le nombre de cartons entre parenthèse pour chaque
+	 *            combinaison de taille
+	 * @param sortie
+	 *            Canal recevant les cartons. Il n'est pas fermé
+	 * @param rapport
+	 *            Reçoit les positions des colis invalides
+	 * @throws IOException
+	 *             si le fichier ne peut pas être lu ou le canal écrit
+	 */
+	void emballerCartons(Path fichierColis, boolean affichageOptimisee, WritableByteChannel sortie,
+			RapportErreurs rapport) throws IOException;
+
+	/**
+	 * Emballe les colis d'un manifeste binaire (deux tailles de colis par octet,
+	 * voir {@link sample.vsct.lecture.FormatManifeste}) et écrit les cartons dans
+	 * un canal.
+	 * 
+	 * @param fichierManifeste
+	 *            manifeste binaire, écrit par
+	 *            {@link sample.vsct.ecriture.EcrivainManifeste}
+	 * @param affichageOptimisee
+	 *            Affiche le nombre de cartons entre parenthèse pour chaque
+	 *            combinaison de taille
+	 * @param sortie
+	 *            Canal recevant les cartons. Il n'est pas fermé
+	 * @throws IOException
+	 *             si le manifeste est invalide ou ne peut pas être lu, ou si le
+	 *             canal ne peut pas être écrit
+	 */
+	void emballerManifeste(Path fichierManifeste, boolean affichageOptimisee, WritableByteChannel sortie)
+			throws IOException;
+
+	/**
+	 * Emballe les colis décrits dans un flux (l'entrée standard par exemple). Le
+	 * flux est lu par blocs de taille fixe jusqu'à sa fin : la mémoire utilisée ne
+	 * dépend pas du nombre de colis. Les fins de ligne sont ignorées.
+	 * 
+	 * @param canalColis
+	 *            Flux décrivant les tailles des colis en entrée. Il n'est pas fermé
+	 * @param affichageOptimisee
+	 *            Affiche le nombre de cartons entre parenthèse pour chaque
+	 *            combinaison de taille (voir
+	 *            {@link #emballerCartons(String, boolean)})
+	 * @return Les cartons avec les tailles des colis le composant.
+	 * @throws IOException
+	 *             si le flux ne peut pas être lu
+	 */
+	String emballerCartons(ReadableByteChannel canalColis, boolean affichageOptimisee) throws IOException;
+
+	/**
+	 * Emballe les colis décrits dans un flux et écrit les cartons dans un canal.
+	 * Ni l'entrée ni la sortie ne sont chargées en mémoire.
+	 * 
+	 * @param canalColis
+	 *            Flux décrivant les tailles des colis en entrée. Il n'est pas fermé
+	 * @param affichageOptimisee
+	 *            Affiche le nombre de cartons entre parenthèse pour chaque
+	 *            combinaison de taille (voir
+	 *            {@link #emballerCartons(String, boolean)})
+	 * @param sortie
+	 *            Canal recevant les cartons. Il n'est pas fermé
+	 * @throws IOException
+	 *             si le flux ne peut pas être lu ou le canal écrit
+	 */
+	void emballerCartons(ReadableByteChannel canalColis, boolean affichageOptimisee, WritableByteChannel sortie)
+			throws IOException;
+
+	/**
+	 * Emballe les colis décrits dans un flux en mode tolérant, et écrit les
+	 * cartons dans un canal. Les colis invalides sont ignorés et notés dans le
+	 * rapport.
+	 * 
+	 * @param canalColis
+	 *            Flux décrivant les tailles des colis en entrée. Il n'est pas fermé
+	 * @param affichageOptimisee
+	 *            Affiche le nombre de cartons entre parenthèse pour chaque
+	 *            combinaison de taille
+	 * @param sortie
+	 *            Canal recevant les cartons. Il n'est pas fermé
+	 * @param rapport
+	 *            Reçoit les positions des colis invalides
+	 * @throws IOException
+	 *             si le flux ne peut pas être lu ou le canal écrit
+	 */
+	void emballerCartons(ReadableByteChannel canalColis, boolean affichageOptimisee, WritableByteChannel sortie,
+			RapportErreurs rapport) throws IOException;
+
+	/**
+	 * Emballe des colis et donne le carton de chaque colis de l'entrée, rangé
+	 * dans un tableau d'entiers en mémoire. Les cartons sont numérotés dans
+	 * l'ordre de l'affichage non optimisé.
+	 * 
+	 * @param cartonsEntree
+	 *            Décrit les tailles des colis en entrée, un chiffre par colis
+	 * @return Le carton de chaque colis
+	 * @throws IllegalArgumentException
+	 *             au format délimité, ou au delà de
+	 *             {@link AffectationCartons#NB_COLIS_MAX} colis
+	 */
+	AffectationCartons affecterColis(String cartonsEntree);
+
+	/**
+	 * Emballe les colis d'un fichier et donne le carton de chaque colis, rangé
+	 * hors du tas Java. Le fichier est lu deux fois : pour compter les colis,
+	 * puis pour les affecter.
+	 * 
+	 * @param fichierColis
+	 *            Fichier décrivant les tailles des colis, un chiffre par colis
+	 * @return Le carton de chaque colis
+	 * @throws IOException
+	 *             si le fichier ne peut pas être lu
+	 */
+	AffectationCartons affecterColis(Path fichierColis) throws IOException;
+
+	/**
+	 * Emballe les colis d'un fichier et écrit le carton de chaque colis dans un
+	 * fichier projeté en mémoire : un entier de 4 octets (petit boutiste) par
+	 * colis, dans l'ordre de l'entrée. L'affectation retournée lit ce fichier.
+	 * 
+	 * @param fichierColis
+	 *            Fichier décrivant les tailles des colis, un chiffre par colis
+	 * @param fichierAffectation
+	 *            Fichier créé ou remplacé
+	 * @return Le carton de chaque colis
+	 * @throws IOException
+	 *             si un des fichiers ne peut pas être lu ou écrit
+	 */
+	AffectationCartons affecterColis(Path fichierColis, Path fichierAffectation) throws IOException;
+
+	/**
+	 * Emballe un lot de commandes en parallèle sur le pool fork-join commun (voir
+	 * {@link #emballerCartonsBatch(List, boolean, Executor)}).
+	 * 
+	 * @param commandes
+	 *            Tailles des colis de chaque commande
+	 * @param affichageOptimisee
+	 *            Affiche le nombre de cartons entre parenthèse pour chaque
+	 *            combinaison de taille (voir
+	 *            {@link #emballerCartons(String, boolean)})
+	 * @return Le résultat de chaque commande, dans l'ordre des commandes
+	 */
+	List<ResultatCommande> emballerCartonsBatch(List<String> commandes, boolean affichageOptimisee);
+
+	/**
+	 * Emballe un lot de commandes en parallèle. Les commandes sont réparties entre
+	 * les threads de l'exécuteur, qui partagent les tables de combinaisons. Une
+	 * commande invalide ou null n'interrompt pas le lot : son erreur est rendue
+	 * dans son résultat.
+	 * 
+	 * @param commandes
+	 *            Tailles des colis de chaque commande
+	 * @param affichageOptimisee
+	 *            Affiche le nombre de cartons entre parenthèse pour chaque
+	 *            combinaison de taille (voir
+	 *            {@link #emballerCartons(String, boolean)})
+	 * @param executeur
+	 *            Exécuteur des emballages (un pool fork-join, ou un exécuteur de
+	 *            threads virtuels sur les JDK récents). Il n'est pas arrêté
+	 * @return Le résultat de chaque commande, dans l'ordre des commandes
+	 */
+	List<ResultatCommande> emballerCartonsBatch(List<String> commandes, boolean affichageOptimisee,
+			Executor executeur);
+
+	/**
+	 * Emballe au fil de l'eau un flux de commandes en parallèle. Un nombre borné de
+	 * commandes est en cours à un instant donné : la mémoire utilisée ne dépend pas
+	 * du nombre de commandes. Les résultats sont rendus dans l'ordre des commandes,
+	 * avec l'erreur éventuelle de chacune (une commande null est en erreur).
+	 * 
+	 * @param commandes
+	 *            Tailles des colis de chaque commande, lues au fur et à mesure du
+	 *            parcours des résultats
+	 * @param affichageOptimisee
+	 *            Affiche le nombre de cartons entre parenthèse pour chaque
+	 *            combinaison de taille (voir
+	 *            {@link #emballerCartons(String, boolean)})
+	 * @param executeur
+	 *            Exécuteur des emballages. Il n'est pas arrêté
+	 * @return Le résultat de chaque commande, dans l'ordre des commandes
+	 */
+	Iterator<ResultatCommande> emballerCartonsBatch(Iterator<String> commandes, boolean affichageOptimisee,
+			Executor executeur);
+
 }
@@ -1,18 +1,33 @@
 package sample.vsct.service;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.Date;
-import java.util.HashMap;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
 import java.util.List;
-import java.util.ListIterator;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 
+import sample.vsct.ecriture.EcrivainCartons;
 import sample.vsct.exception.TailleColisException;
+import sample.vsct.lecture.ComptagePartiel;
+import sample.vsct.lecture.CompteurColis;
+import sample.vsct.lecture.LecteurColis;
+import sample.vsct.lecture.LecteurManifeste;
+import sample.vsct.lecture.LecteurQuantites;
+import sample.vsct.lecture.RapportErreurs;
+import sample.vsct.mesure.Mesures;
+import sample.vsct.mesure.Phase;
 
 /**
  * Permet d'emballer des colis dans des cartons
@@ -23,9 +38,271 @@ public class EmballageServiceImpl implements EmballageService {
 	public static final Integer TAILLE_CARTON_MAX = 10;
 	public static final Integer TAILLE_COLIS_MAX = 9;
 	public static final Integer TAILLE_COLIS_MIN = 1;
+	/**
+	 * Au delà de cette capacité, la table de toutes les combinaisons devient trop
+	 * grande : les combinaisons sont générées à la demande
+	 */
+	public static final Integer CAPACITE_CARTON_MAX_TABLE = 20;
+
+	/** Taille de la zone du fichier projetée en mémoire lors de l'affectation des colis */
+	private static final long TAILLE_ZONE_AFFECTATION = 64L * 1024 * 1024;
 
 	final static Logger logger = Logger.getLogger(EmballageServiceImpl.class);
 
+	private final ConfigurationEmballage configuration;
+
+	// Table partagée de toutes les combinaisons de taille possibles, déjà triées
+	// afin de prioriser les cartons avec les colis les plus emcombrants,
+	// indépendamment des colis en entrée. Absente pour les grandes capacités
+	private final TableCombinaisons tableCombinaisons;
+
+	private final StrategieEmballage strategie;
+
+	private final Mesures mesures;
+
+	/** Emballages déjà calculés, null sans cache */
+	private final CacheResultats cache;
+
+	/**
+	 * Service utilisant l'algorithme glouton et la configuration par défaut
+	 */
+	public EmballageServiceImpl() {
+		this(TypeSolveur.GLOUTON);
+	}
+
+	/**
+	 * @param typeSolveur
+	 *            algorithme utilisé pour emballer les colis
+	 */
+	public EmballageServiceImpl(TypeSolveur typeSolveur) {
+		this(ConfigurationEmballage.DEFAUT, typeSolveur);
+	}
+
+	/**
+	 * @param configuration
+	 *            capacité des cartons, tailles autorisées et format de l'entrée
+	 */
+	public EmballageServiceImpl(ConfigurationEmballage configuration) {
+		this(configuration, TypeSolveur.GLOUTON);
+	}
+
+	/**
+	 * @param configuration
+	 *            capacité des cartons, tailles autorisées et format de l'entrée
+	 * @param typeSolveur
+	 *            algorithme utilisé pour emballer les colis. Le solveur exact
+	 *            est limité aux capacités inférieures ou égales à
+	 *            {@link SolveurExact#CAPACITE_CARTON_MAX}
+	 */
+	public EmballageServiceImpl(ConfigurationEmballage configuration, TypeSolveur typeSolveur) {
+		this(configuration, typeSolveur, Mesures.AUCUNE);
+	}
+
+	/**
+	 * @param configuration
+	 *            capacité des cartons, tailles autorisées et format de l'entrée
+	 * @param typeSolveur
+	 *            algorithme utilisé pour emballer les colis
+	 * @param mesures
+	 *            reçoit la durée de chaque phase, la taille des commandes et
+	 *            les erreurs (voir {@link sample.vsct.mesure.MesuresEnMemoire})
+	 */
+	public EmballageServiceImpl(ConfigurationEmballage configuration, TypeSolveur typeSolveur, Mesures mesures) {
+		this(configuration, typeSolveur, mesures, 0);
+	}
+
+	/**
+	 * @param configuration
+	 *            capacité des cartons, tailles autorisées et format de l'entrée
+	 * @param typeSolveur
+	 *            algorithme utilisé pour emballer les colis
+	 * @param mesures
+	 *            reçoit la durée de chaque phase, la taille des commandes et
+	 *            les erreurs
+	 * @param tailleCache
+	 *            nombre maximum d'emballages conservés pour les commandes ayant
+	 *            les mêmes colis (voir {@link CacheResultats}). 0 pour ne pas
+	 *            utiliser de cache
+	 */
+	public EmballageServiceImpl(ConfigurationEmballage configuration, TypeSolveur typeSolveur, Mesures mesures,
+			int tailleCache) {
+		this(configuration, typeSolveur.getStrategie(), mesures, tailleCache);
+	}
+
+	/**
+	 * @param configuration
+	 *            capacité des cartons, tailles autorisées et format de l'entrée
+	 * @param strategie
+	 *            stratégie utilisée pour emballer les colis, fournie (voir
+	 *            {@link TypeSolveur#getStrategie()}) ou spécifique. Au delà de
+	 *            {@link #CAPACITE_CARTON_MAX_TABLE}, les colis sont emballés par
+	 *            {@link SolveurPremierAjustement} quelle que soit la stratégie
+	 * @param mesures
+	 *            reçoit la durée de chaque phase, la taille des commandes et
+	 *            les erreurs
+	 * @param tailleCache
+	 *            nombre maximum d'emballages conservés pour les commandes ayant
+	 *            les mêmes colis. 0 pour ne pas utiliser de cache
+	 */
+	public EmballageServiceImpl(ConfigurationEmballage configuration, StrategieEmballage strategie, Mesures mesures,
+			int tailleCache) {
+		int capaciteCarton = configuration.getCapaciteCarton();
+		if (strategie instanceof StrategieExacte && capaciteCarton > SolveurExact.CAPACITE_CARTON_MAX) {
+			throw new IllegalArgumentException(String.format(
+					"Le solveur exact est limité aux cartons de capacité %d au plus (capacité demandée %d)",
+					SolveurExact.CAPACITE_CARTON_MAX, capaciteCarton));
+		}
+		this.configuration = configuration;
+		this.strategie = strategie;
+		this.mesures = mesures;
+		this.cache = tailleCache > 0 ? new CacheResultats(tailleCache) : null;
+		this.tableCombinaisons = capaciteCarton <= CAPACITE_CARTON_MAX_TABLE
+				? TableCombinaisons.pour(capaciteCarton)
+				: null;
+	}
+
+	/**
+	 * @return la configuration du service
+	 */
+	public ConfigurationEmballage getConfiguration() {
+		return configuration;
+	}
+
+	/**
+	 * @return la stratégie utilisée pour emballer les colis
+	 */
+	public StrategieEmballage getStrategie() {
+		return strategie;
+	}
+
+	/**
+	 * @return le cache des emballages et ses compteurs, null si le service n'en
+	 *         utilise pas
+	 */
+	public CacheResultats getCache() {
+		return cache;
+	}
+
+	@Override
+	/*
+	 * (non-Javadoc)
+	 * @see sample.vsct.service.EmballageService#calculerCartons(java.lang.String)
+	 */
+	public ResultatSolveur calculerCartons(String entreeTaillesColis) {
+		return emballer(compter(entreeTaillesColis));
+	}
+
+	@Override
+	/*
+	 * (non-Javadoc)
+	 * @see sample.vsct.service.EmballageService#calculerCartons(java.lang.String, sample.vsct.lecture.RapportErreurs)
+	 */
+	public ResultatSolveur calculerCartons(String entreeTaillesColis, RapportErreurs rapport) {
+		return emballer(compter(entreeTaillesColis, rapport));
+	}
+
+	@Override
+	/*
+	 * (non-Javadoc)
+	 * @see sample.vsct.service.EmballageService#calculerCartons(long[])
+	 */
+	public ResultatSolveur calculerCartons(long[] nbColisParTaille) {
+		return emballer(verifier(nbColisParTaille));
+	}
+
+	@Override
+	/*
+	 * (non-Javadoc)
+	 * @see sample.vsct.service.EmballageService#calculerCartons(java.lang.String, long, java.util.concurrent.TimeUnit)
+	 */
+	public ResultatStrategie calculerCartons(String entreeTaillesColis, long budget, TimeUnit unite) {
+		long budgetNanos = verifierBudget(budget, unite);
+		return emballer(compter(entreeTaillesColis), budgetNanos);
+	}
+
+	@Override
+	/*
+	 * (non-Javadoc)
+	 * @see sample.vsct.service.EmballageService#calculerCartons(long[], long, java.util.concurrent.TimeUnit)
+	 */
+	public ResultatStrategie calculerCartons(long[] nbColisParTaille, long budget, TimeUnit unite) {
+		long budgetNanos = verifierBudget(budget, unite);
+		return emballer(verifier(nbColisParTaille), budgetNanos);
+	}
+
+	@Override
+	/*
+	 * (non-Javadoc)
+	 * @see sample.vsct.service.EmballageService#emballerCartons(long[], boolean)
+	 */
+	public String emballerCartons(long[] nbColisParTaille, boolean affichageOptimisee) {
+		logger.debug("Début de l'exécution de la méthode emballerCartons sur des colis comptés");
+		long debutMethode = System.nanoTime();
+
+		ResultatSolveur resultat = emballer(verifier(nbColisParTaille));
+		String afficherListeCartons = afficherListeCartons(resultat, affichageOptimisee);
+
+		terminer("emballerCartons sur des colis comptés", debutMethode);
+		return afficherListeCartons;
+	}
+
+	@Override
+	/*
+	 * (non-Javadoc)
+	 * @see sample.vsct.service.EmballageService#emballerCartons(long[], boolean, java.nio.channels.WritableByteChannel)
+	 */
+	public void emballerCartons(long[] nbColisParTaille, boolean affichageOptimisee, WritableByteChannel sortie)
+			throws IOException {
+		logger.debug("Début de l'exécution de la méthode emballerCartons de colis comptés vers un canal");
+		long debutMethode = System.nanoTime();
+
+		ResultatSolveur resultat = emballer(verifier(nbColisParTaille));
+		ecrire(resultat, affichageOptimisee, sortie);
+
+		terminer("emballerCartons de colis comptés vers un canal", debutMethode);
+	}
+
+	@Override
+	/*
+	 * (non-Javadoc)
+	 * @see sample.vsct.service.EmballageService#calculerCartons(sample.vsct.lecture.ComptagePartiel)
+	 */
+	public ResultatSolveur calculerCartons(ComptagePartiel comptage) {
+		return emballer(verifier(comptage.getNbColisParTaille()));
+	}
+
+	@Override
+	/*
+	 * (non-Javadoc)
+	 * @see sample.vsct.service.EmballageService#emballerCartons(sample.vsct.lecture.ComptagePartiel, boolean)
+	 */
+	public String emballerCartons(ComptagePartiel comptage, boolean affichageOptimisee) {
+		logger.debug("Début de l'exécution de la méthode emballerCartons sur un comptage partiel");
+		long debutMethode = System.nanoTime();
+
+		ResultatSolveur resultat = emballer(verifier(comptage.getNbColisParTaille()));
+		String afficherListeCartons = afficherListeCartons(resultat, affichageOptimisee);
+
+		terminer("emballerCartons sur un comptage partiel", debutMethode);
+		return afficherListeCartons;
+	}
+
+	@Override
+	/*
+	 * (non-Javadoc)
+	 * @see sample.vsct.service.EmballageService#emballerQuantites(java.lang.String, boolean)
+	 */
+	public String emballerQuantites(String quantitesParTaille, boolean affichageOptimisee) {
+		logger.debug("Début de l'exécution de la méthode emballerQuantites");
+		long debutMethode = System.nanoTime();
+
+		ResultatSolveur resultat = emballer(lireQuantites(quantitesParTaille));
+		String afficherListeCartons = afficherListeCartons(resultat, affichageOptimisee);
+
+		terminer("emballerQuantites", debutMethode);
+		return afficherListeCartons;
+	}
+
 	@Override
 	/*
 	 * (non-Javadoc)
@@ -33,289 +310,757 @@ public class EmballageServiceImpl implements EmballageService {
 	 */
 	public String emballerCartons(String entreeTaillesColis, boolean affichageOptimisee) {
 		logger.debug("Début de l'exécution de la méthode emballerCartons");
-		Long dateDebutMethode = new Date().getTime();
-		String afficherListeCartons = null;
+		long debutMethode = System.nanoTime();
+
+		ResultatSolveur resultat = emballer(compter(entreeTaillesColis));
 
-		// Création d'une structure de données plus simple liant la taille et le nombre
-		// de colis pour cette taille
-		Map<Integer, Integer> mapNbColisParTaille = creerMapNbColisParTaille(entreeTaillesColis);
+		// Récupère la liste des cartons à afficher à l'utilisateur
+		String afficherListeCartons = afficherListeCartons(resultat, affichageOptimisee);
 
-		// Récupère la liste de toutes les combinaisons de taille possibles, pour chaque
-		// taille de cartons,
-		// indépendamment des colis en entrée
-		Map<Integer, List<List<Integer>>> mapTailleTotalListeCombinaisons = creerMapCombinaisonsTaille(
-				TAILLE_CARTON_MAX);
+		terminer("emballerCartons", debutMethode);
+		return afficherListeCartons;
+	}
 
-		// Trie les combinaisons afin de prioriser les cartons avec les colis les plus
-		// emcombrants et ainsi minimiser le nombre de cartons
-		trierListeCombinaisonsTaille(mapTailleTotalListeCombinaisons);
+	@Override
+	/*
+	 * (non-Javadoc)
+	 * @see sample.vsct.service.EmballageService#emballerCartons(java.lang.String, boolean, java.lang.Appendable)
+	 */
+	public void emballerCartons(String entreeTaillesColis, boolean affichageOptimisee, Appendable sortie)
+			throws IOException {
+		logger.debug("Début de l'exécution de la méthode emballerCartons vers une sortie texte");
+		long debutMethode = System.nanoTime();
 
-		// Réalise les cartons à partir de la liste des combinaisons et des taille de
-		// colis
-		Map<String, Integer> mapCartonsEmballes = faireCartons(mapNbColisParTaille, mapTailleTotalListeCombinaisons);
+		ResultatSolveur resultat = emballer(compter(entreeTaillesColis));
 
-		// Récupère la liste des cartons à afficher à l'utilisateur
-		afficherListeCartons = afficherListeCartons(mapCartonsEmballes, affichageOptimisee);
+		// Les cartons sont écrits au fil de l'eau dans la sortie
+		ecrire(resultat, affichageOptimisee, sortie);
+
+		terminer("emballerCartons vers une sortie texte", debutMethode);
+	}
+
+	@Override
+	/*
+	 * (non-Javadoc)
+	 * @see sample.vsct.service.EmballageService#emballerCartons(java.lang.String, boolean, java.nio.channels.WritableByteChannel)
+	 */
+	public void emballerCartons(String entreeTaillesColis, boolean affichageOptimisee, WritableByteChannel sortie)
+			throws IOException {
+		logger.debug("Début de l'exécution de la méthode emballerCartons vers un canal");
+		long debutMethode = System.nanoTime();
+
+		ResultatSolveur resultat = emballer(compter(entreeTaillesColis));
+
+		// Les cartons sont écrits au fil de l'eau dans le canal
+		ecrire(resultat, affichageOptimisee, sortie);
+
+		terminer("emballerCartons vers un canal", debutMethode);
+	}
+
+	@Override
+	/*
+	 * (non-Javadoc)
+	 * @see sample.vsct.service.EmballageService#emballerCartons(java.nio.file.Path, boolean)
+	 */
+	public String emballerCartons(Path fichierColis, boolean affichageOptimisee) throws IOException {
+		logger.debug("Début de l'exécution de la méthode emballerCartons sur un fichier");
+		long debutMethode = System.nanoTime();
+
+		// Les colis sont comptés directement depuis le fichier projeté en mémoire
+		ResultatSolveur resultat = emballer(compter(fichierColis, null));
+
+		String afficherListeCartons = afficherListeCartons(resultat, affichageOptimisee);
+
+		terminer("emballerCartons sur un fichier", debutMethode);
+		return afficherListeCartons;
+	}
+
+	@Override
+	/*
+	 * (non-Javadoc)
+	 * @see sample.vsct.service.EmballageService#emballerCartons(java.nio.file.Path, boolean, java.nio.channels.WritableByteChannel)
+	 */
+	public void emballerCartons(Path fichierColis, boolean affichageOptimisee, WritableByteChannel sortie)
+			throws IOException {
+		emballerCartons(fichierColis, affichageOptimisee, sortie, null);
+	}
+
+	@Override
+	/*
+	 * (non-Javadoc)
+	 * @see sample.vsct.service.EmballageService#emballerCartons(java.nio.file.Path, boolean, java.nio.channels.WritableByteChannel, sample.vsct.lecture.RapportErreurs)
+	 */
+	public void emballerCartons(Path fichierColis, boolean affichageOptimisee, WritableByteChannel sortie,
+			RapportErreurs rapport) throws IOException {
+		logger.debug("Début de l'exécution de la méthode emballerCartons d'un fichier vers un canal");
+		long debutMethode = System.nanoTime();
+
+		ResultatSolveur resultat = emballer(compter(fichierColis, rapport));
+		ecrire(resultat, affichageOptimisee, sortie);
+
+		terminer("emballerCartons d'un fichier vers un canal", debutMethode);
+	}
+
+	@Override
+	/*
+	 * (non-Javadoc)
+	 * @see sample.vsct.service.EmballageService#emballerManifeste(java.nio.file.Path, boolean, java.nio.channels.WritableByteChannel)
+	 */
+	public void emballerManifeste(Path fichierManifeste, boolean affichageOptimisee, WritableByteChannel sortie)
+			throws IOException {
+		logger.debug("Début de l'exécution de la méthode emballerManifeste");
+		long debutMethode = System.nanoTime();
+
+		ResultatSolveur resultat = emballer(compterManifeste(fichierManifeste));
+		ecrire(resultat, affichageOptimisee, sortie);
+
+		terminer("emballerManifeste", debutMethode);
+	}
+
+	@Override
+	/*
+	 * (non-Javadoc)
+	 * @see sample.vsct.service.EmballageService#emballerCartons(java.nio.channels.ReadableByteChannel, boolean)
+	 */
+	public String emballerCartons(ReadableByteChannel canalColis, boolean affichageOptimisee) throws IOException {
+		logger.debug("Début de l'exécution de la méthode emballerCartons sur un flux");
+		long debutMethode = System.nanoTime();
+
+		// Les colis sont comptés au fil de la lecture du flux
+		ResultatSolveur resultat = emballer(compter(canalColis, null));
+
+		String afficherListeCartons = afficherListeCartons(resultat, affichageOptimisee);
 
-		Long dateFinMethode = new Date().getTime();
-		logger.debug(String.format("Fin de l'exécution de la méthode emballerCartons en %d %s",
-				dateFinMethode - dateDebutMethode, "ms"));
+		terminer("emballerCartons sur un flux", debutMethode);
 		return afficherListeCartons;
 	}
 
+	@Override
+	/*
+	 * (non-Javadoc)
+	 * @see sample.vsct.service.EmballageService#emballerCartons(java.nio.channels.ReadableByteChannel, boolean, java.nio.channels.WritableByteChannel)
+	 */
+	public void emballerCartons(ReadableByteChannel canalColis, boolean affichageOptimisee,
+			WritableByteChannel sortie) throws IOException {
+		emballerCartons(canalColis, affichageOptimisee, sortie, null);
+	}
+
+	@Override
+	/*
+	 * (non-Javadoc)
+	 * @see sample.vsct.service.EmballageService#emballerCartons(java.nio.channels.ReadableByteChannel, boolean, java.nio.channels.WritableByteChannel, sample.vsct.lecture.RapportErreurs)
+	 */
+	public void emballerCartons(ReadableByteChannel canalColis, boolean affichageOptimisee,
+			WritableByteChannel sortie, RapportErreurs rapport) throws IOException {
+		logger.debug("Début de l'exécution de la méthode emballerCartons d'un flux vers un canal");
+		long debutMethode = System.nanoTime();
+
+		ResultatSolveur resultat = emballer(compter(canalColis, rapport));
+		ecrire(resultat, affichageOptimisee, sortie);
+
+		terminer("emballerCartons d'un flux vers un canal", debutMethode);
+	}
+
+	@Override
+	/*
+	 * (non-Javadoc)
+	 * @see sample.vsct.service.EmballageService#affecterColis(java.lang.String)
+	 */
+	public AffectationCartons affecterColis(String entreeTaillesColis) {
+		logger.debug("Début de l'exécution de la méthode affecterColis");
+		long debutMethode = System.nanoTime();
+		verifierSansSeparateur();
+
+		long[] nbColisParTaille = compter(entreeTaillesColis);
+		ResultatSolveur resultat = emballer(nbColisParTaille);
+		long debut = System.nanoTime();
+		IntBuffer cartonParColis = IntBuffer.allocate(verifierNbColis(nbColisParTaille));
+		RepartiteurColis repartiteur = new RepartiteurColis(resultat);
+		for (int i = 0; i < entreeTaillesColis.length(); i++) {
+			char caractere = entreeTaillesColis.charAt(i);
+			int tailleColis = caractere - '0';
+			if (tailleColis < 0 || tailleColis > 9) {
+				// Chiffre non ASCII, accepté par le comptage
+				tailleColis = Character.digit(caractere, 10);
+			}
+			cartonParColis.put(i, repartiteur.cartonSuivant(tailleColis));
+		}
+		mesures.enregistrerDuree(Phase.AFFECTATION, System.nanoTime() - debut);
+
+		terminer("affecterColis", debutMethode);
+		return new AffectationCartons(resultat, cartonParColis);
+	}
+
+	@Override
+	/*
+	 * (non-Javadoc)
+	 * @see sample.vsct.service.EmballageService#affecterColis(java.nio.file.Path)
+	 */
+	public AffectationCartons affecterColis(Path fichierColis) throws IOException {
+		logger.debug("Début de l'exécution de la méthode affecterColis sur un fichier");
+		long debutMethode = System.nanoTime();
+		verifierSansSeparateur();
+
+		long[] nbColisParTaille = compter(fichierColis, null);
+		ResultatSolveur resultat = emballer(nbColisParTaille);
+		int nbColis = verifierNbColis(nbColisParTaille);
+		IntBuffer cartonParColis = ByteBuffer.allocateDirect(4 * nbColis).order(ByteOrder.nativeOrder())
+				.asIntBuffer();
+		affecter(fichierColis, resultat, cartonParColis);
+
+		terminer("affecterColis sur un fichier", debutMethode);
+		return new AffectationCartons(resultat, cartonParColis);
+	}
+
+	@Override
+	/*
+	 * (non-Javadoc)
+	 * @see sample.vsct.service.EmballageService#affecterColis(java.nio.file.Path, java.nio.file.Path)
+	 */
+	public AffectationCartons affecterColis(Path fichierColis, Path fichierAffectation) throws IOException {
+		logger.debug("Début de l'exécution de la méthode affecterColis d'un fichier vers un fichier");
+		long debutMethode = System.nanoTime();
+		verifierSansSeparateur();
+
+		long[] nbColisParTaille = compter(fichierColis, null);
+		ResultatSolveur resultat = emballer(nbColisParTaille);
+		int nbColis = verifierNbColis(nbColisParTaille);
+		IntBuffer cartonParColis;
+		try (FileChannel canal = FileChannel.open(fichierAffectation, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			// La projection reste valide après la fermeture du canal
+			cartonParColis = canal.map(FileChannel.MapMode.READ_WRITE, 0, 4L * nbColis)
+					.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+		}
+		affecter(fichierColis, resultat, cartonParColis);
+
+		terminer("affecterColis d'un fichier vers un fichier", debutMethode);
+		return new AffectationCartons(resultat, cartonParColis);
+	}
+
+	@Override
+	/*
+	 * (non-Javadoc)
+	 * @see sample.vsct.service.EmballageService#emballerCartonsBatch(java.util.List, boolean)
+	 */
+	public List<ResultatCommande> emballerCartonsBatch(List<String> commandes, boolean affichageOptimisee) {
+		return emballerCartonsBatch(commandes, affichageOptimisee, ForkJoinPool.commonPool());
+	}
+
+	@Override
+	/*
+	 * (non-Javadoc)
+	 * @see sample.vsct.service.EmballageService#emballerCartonsBatch(java.util.List, boolean, java.util.concurrent.Executor)
+	 */
+	public List<ResultatCommande> emballerCartonsBatch(List<String> commandes, boolean affichageOptimisee,
+			Executor executeur) {
+		logger.debug("Début de l'exécution de la méthode emballerCartonsBatch");
+		long debutMethode = System.nanoTime();
+
+		List<ResultatCommande> resultats = TraitementParLots.traiter(this, commandes, affichageOptimisee, executeur);
+
+		if (logger.isDebugEnabled()) {
+			logger.debug(String.format("Fin de l'exécution de la méthode emballerCartonsBatch en %d %s",
+					TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - debutMethode), "ms"));
+		}
+		return resultats;
+	}
+
+	@Override
+	/*
+	 * (non-Javadoc)
+	 * @see sample.vsct.service.EmballageService#emballerCartonsBatch(java.util.Iterator, boolean, java.util.concurrent.Executor)
+	 */
+	public Iterator<ResultatCommande> emballerCartonsBatch(Iterator<String> commandes, boolean affichageOptimisee,
+			Executor executeur) {
+		logger.debug("Emballage d'un flux de commandes");
+		return TraitementParLots.traiter(this, commandes, affichageOptimisee, executeur);
+	}
+
 	/**
-	 * Créer une map. clé : la taille. Valeur : le nombre de colis pour cette taille
+	 * Emballe une commande d'un lot. Contrairement à
+	 * {@link #emballerCartons(String, boolean)}, ni la durée ni la liste des
+	 * cartons ne sont tracées pour chaque commande, et une commande invalide (ou
+	 * absente) donne un résultat en erreur au lieu d'une exception.
+	 * 
+	 * @param indice
+	 *            position de la commande dans le lot
+	 * @param entreeTaillesColis
+	 *            Taille des colis de la commande, ou null
+	 * @param affichageOptimisee
+	 * @return les cartons de la commande, ou son erreur
+	 */
+	ResultatCommande emballerCommande(long indice, String entreeTaillesColis, boolean affichageOptimisee) {
+		long debutCommande = System.nanoTime();
+		if (entreeTaillesColis == null) {
+			mesures.enregistrerErreur();
+			return new ResultatCommande(indice, null,
+					new TailleColisException(String.format("La commande %d est absente", indice)));
+		}
+		try {
+			ResultatSolveur resultat = emballer(compter(entreeTaillesColis));
+			long debutAffichage = System.nanoTime();
+			String cartons = resultat.afficher(affichageOptimisee);
+			long fin = System.nanoTime();
+			mesures.enregistrerDuree(Phase.AFFICHAGE, fin - debutAffichage);
+			mesures.enregistrerDuree(Phase.TOTAL, fin - debutCommande);
+			return new ResultatCommande(indice, cartons, null);
+		} catch (TailleColisException e) {
+			return new ResultatCommande(indice, null, e);
+		}
+	}
+
+	/**
+	 * Vérifie les colis et crée une structure de données plus simple liant la
+	 * taille et le nombre de colis pour cette taille, en une seule passe
 	 * 
 	 * @param entreeTaillesColis
 	 *            Taille des colis entrant. Exemple : "354218465154"
-	 * @return Une map avec pour clé la taille et pour valeur, le nombre de colis
-	 *         ayant cette taille
-	 */
-	private Map<Integer, Integer> creerMapNbColisParTaille(String entreeTaillesColis) {
-		verifieEntree(entreeTaillesColis);
-		logger.debug("Création de la map avec le nombre de colis pour chaque taille");
-		// Initialisation de la structure de données
-		Map<Integer, Integer> retour = new HashMap<Integer, Integer>();
-		for (int i = 1; i <= TAILLE_CARTON_MAX; i++) {
-			retour.put(i, 0);
+	 * @return Indice : taille des colis. Valeur : nombre de colis ayant cette
+	 *         taille
+	 */
+	private long[] compter(String entreeTaillesColis) {
+		return compter(entreeTaillesColis, null);
+	}
+
+	/**
+	 * Vérifie et compte les colis d'une chaine
+	 * 
+	 * @param entreeTaillesColis
+	 * @param rapport
+	 *            reçoit les colis invalides (mode tolérant), ou null
+	 * @return Indice : taille des colis. Valeur : nombre de colis valides ayant
+	 *         cette taille
+	 */
+	private long[] compter(String entreeTaillesColis, RapportErreurs rapport) {
+		long debut = System.nanoTime();
+		try {
+			long[] nbColisParTaille = CompteurColis.compter(entreeTaillesColis, configuration, rapport);
+			mesures.enregistrerDuree(Phase.COMPTAGE, System.nanoTime() - debut);
+			tracer(rapport);
+			return nbColisParTaille;
+		} catch (TailleColisException e) {
+			mesures.enregistrerErreur();
+			throw e;
 		}
+	}
 
-		// On parcours chaque carton pour ajouter son taille à la map
-		for (int i = 0; i < entreeTaillesColis.length(); i++) {
-			Integer tailleCartonActuel = Character.getNumericValue(entreeTaillesColis.charAt(i));
-			retour.put(tailleCartonActuel, retour.get(tailleCartonActuel) + 1);
+	/**
+	 * Vérifie des colis déjà comptés
+	 * 
+	 * @param nbColisParTaille
+	 * @return une copie vérifiée, indicée jusqu'à la capacité des cartons
+	 */
+	private long[] verifier(long[] nbColisParTaille) {
+		long debut = System.nanoTime();
+		try {
+			long[] nbColisVerifies = LecteurQuantites.verifier(nbColisParTaille, configuration);
+			mesures.enregistrerDuree(Phase.COMPTAGE, System.nanoTime() - debut);
+			return nbColisVerifies;
+		} catch (TailleColisException e) {
+			mesures.enregistrerErreur();
+			throw e;
+		}
+	}
+
+	/**
+	 * Vérifie et lit des quantités de colis au format "taille x nombre"
+	 * 
+	 * @param quantitesParTaille
+	 *            Exemple : "9x1000000000,1x500"
+	 * @return Indice : taille des colis. Valeur : nombre de colis ayant cette
+	 *         taille
+	 */
+	private long[] lireQuantites(String quantitesParTaille) {
+		long debut = System.nanoTime();
+		try {
+			long[] nbColisParTaille = LecteurQuantites.lire(quantitesParTaille, configuration);
+			mesures.enregistrerDuree(Phase.COMPTAGE, System.nanoTime() - debut);
+			return nbColisParTaille;
+		} catch (TailleColisException e) {
+			mesures.enregistrerErreur();
+			throw e;
 		}
+	}
 
-		return retour;
+	/**
+	 * Vérifie et compte les colis d'un fichier projeté en mémoire
+	 * 
+	 * @param fichierColis
+	 * @param rapport
+	 *            reçoit les colis invalides (mode tolérant), ou null
+	 * @return Indice : taille des colis. Valeur : nombre de colis valides ayant
+	 *         cette taille
+	 * @throws IOException
+	 */
+	private long[] compter(Path fichierColis, RapportErreurs rapport) throws IOException {
+		long debut = System.nanoTime();
+		try {
+			long[] nbColisParTaille = LecteurColis.compter(fichierColis, configuration, rapport);
+			mesures.enregistrerDuree(Phase.COMPTAGE, System.nanoTime() - debut);
+			tracer(rapport);
+			return nbColisParTaille;
+		} catch (TailleColisException e) {
+			mesures.enregistrerErreur();
+			throw e;
+		}
 	}
 
 	/**
-	 * Vérifie que les données d'entrée sont au bon format
+	 * Vérifie et compte les colis d'un manifeste binaire
 	 * 
-	 * @param entreeTaillesColis
-	 *            Taille des colis en entrée
-	 * @throws TailleColisException
+	 * @param fichierManifeste
+	 * @return Indice : taille des colis. Valeur : nombre de colis ayant cette
+	 *         taille
+	 * @throws IOException
 	 */
-	private void verifieEntree(String entreeTaillesColis) {
-		logger.debug("Vérification des tailles des colis");
-		for (int i = 0; i < entreeTaillesColis.length(); i++) {
-			Integer tailleColis;
-			String tailleColisString = entreeTaillesColis.substring(i, i + 1);
-			try {
-				tailleColis = Integer.parseInt(tailleColisString);
-			} catch (NumberFormatException e) {
-				String messageErreur = String.format(
-						"Le colis '%s' doit être enregistré avec sa taille au format nombre", tailleColisString);
-				throw new TailleColisException(messageErreur);
-			}
-			if (tailleColis < TAILLE_COLIS_MIN || tailleColis > TAILLE_COLIS_MAX) {
-				String messageErreur = String.format(
-						"La taille d'un colis vaut %d alors qu'il doit être compris entre %d et %d", tailleColis,
-						TAILLE_COLIS_MIN, TAILLE_COLIS_MAX);
-				throw new TailleColisException(messageErreur);
-			}
+	private long[] compterManifeste(Path fichierManifeste) throws IOException {
+		long debut = System.nanoTime();
+		try {
+			long[] nbColisParTaille = LecteurManifeste.compter(fichierManifeste, configuration);
+			mesures.enregistrerDuree(Phase.COMPTAGE, System.nanoTime() - debut);
+			return nbColisParTaille;
+		} catch (TailleColisException e) {
+			mesures.enregistrerErreur();
+			throw e;
 		}
 	}
 
 	/**
-	 * Faire toutes les combinaisons de taille de colis pour une taille totale du
-	 * carton donnée en paramètre
+	 * Vérifie et compte les colis au fil de la lecture d'un flux
 	 * 
-	 * @param tailleCartonMax
-	 * @return Une map avec pour clé, le taille totale du carton et pour valeur, la
-	 *         liste des combinaisons de taille de colis qui ont pour total la clé
-	 *         de la map. Exemple : Clé 3 (taille total cartons). Valeur : <<3>,
-	 *         <2,1>, <1,1,1>> (liste des taille des colis). Clé 2. Valeur <2>,
-	 *         <1,1>
-	 */
-	private Map<Integer, List<List<Integer>>> creerMapCombinaisonsTaille(Integer tailleCartonMax) {
-		logger.debug("Calcul de la liste des combinaisons de taille de colis pour chaque taille de carton");
-		// Initilisation de la map de retour avec le taille total 0 (qui aura pour clé
-		// une liste contenant une liste vide)
-		Map<Integer, List<List<Integer>>> mapTailleTotalListeCombinaisons = new HashMap<Integer, List<List<Integer>>>();
-		List<List<Integer>> listeVide = new ArrayList<List<Integer>>();
-		listeVide.add(new ArrayList<Integer>());
-		mapTailleTotalListeCombinaisons.put(0, listeVide);
-
-		// On parcours toutes les tailles totales de cartons jusqu'au tailleCartonMax.
-		// Ils seront les clés de la map de retour.
-		for (int tailleTotalCartonCourant = 1; tailleTotalCartonCourant <= tailleCartonMax; tailleTotalCartonCourant++) {
-			List<List<Integer>> listeCombinaisonsTailleCourant = new ArrayList<List<Integer>>();
-			/*
-			 * On parcours tous les tailles de colis de 1 jusqu'à tailleTotalCartonCourant.
-			 * Le but étant de construire la clé valeur courante à partir de la clé -valeur
-			 * précédente. Par exemple. Clé 1. Valeur <1>. Clé 2. Valeur : <2> + <1, toutes
-			 * les combinaisons de 1> soit <2> + <1,1>. Clé 3 : Valeur : <3>, <2, toutes les
-			 * combinaisons de 1>, <1, toutes les combinaisons de 2> soit <3>, <2,1>,
-			 * <1,1,1>. En sachant que nous avons retiré les doublons (<1,2> n'a pas été
-			 * pris en compte)
-			 */
-			for (int tailleColisCourant = 1; tailleColisCourant <= tailleTotalCartonCourant; tailleColisCourant++) {
-				// On clone les combinaisons pour une taille inférieure à la taille courante
-				List<List<Integer>> listeCombinaisonsCourant = clonerListeCombinaisonsTaille(
-						mapTailleTotalListeCombinaisons.get(tailleTotalCartonCourant - tailleColisCourant));
-				ListIterator<List<Integer>> listeCombinaisonsIterator = listeCombinaisonsCourant.listIterator();
-				while (listeCombinaisonsIterator.hasNext()) {
-					List<Integer> listeCombinaisons = listeCombinaisonsIterator.next();
-					// On ajoute la combinaison sauf si on créer un doublons. Par défaut, nous
-					// récupérerons les taille dans l'ordre croissant. Par exemple <2,1> mais pas
-					// <1,2>
-					if (listeCombinaisons.size() == 0
-							|| listeCombinaisons.get(listeCombinaisons.size() - 1) >= tailleColisCourant) {
-						listeCombinaisons.add(tailleColisCourant);
-					} else {
-						listeCombinaisonsIterator.remove();
-					}
-				}
+	 * @param canalColis
+	 * @param rapport
+	 *            reçoit les colis invalides (mode tolérant), ou null
+	 * @return Indice : taille des colis. Valeur : nombre de colis valides ayant
+	 *         cette taille
+	 * @throws IOException
+	 */
+	private long[] compter(ReadableByteChannel canalColis, RapportErreurs rapport) throws IOException {
+		long debut = System.nanoTime();
+		try {
+			long[] nbColisParTaille = LecteurColis.compter(canalColis, configuration, rapport);
+			mesures.enregistrerDuree(Phase.COMPTAGE, System.nanoTime() - debut);
+			tracer(rapport);
+			return nbColisParTaille;
+		} catch (TailleColisException e) {
+			mesures.enregistrerErreur();
+			throw e;
+		}
+	}
 
-				listeCombinaisonsTailleCourant.addAll(listeCombinaisonsCourant);
-			}
+	/**
+	 * @param budget
+	 * @param unite
+	 * @return le budget en nanosecondes
+	 * @throws IllegalArgumentException
+	 *             si le budget est négatif
+	 */
+	private static long verifierBudget(long budget, TimeUnit unite) {
+		if (budget < 0) {
+			throw new IllegalArgumentException(String.format("Le budget doit être positif : %d %s", budget, unite));
+		}
+		return unite.toNanos(budget);
+	}
 
-			mapTailleTotalListeCombinaisons.put(tailleTotalCartonCourant, listeCombinaisonsTailleCourant);
+	/**
+	 * Trace le résumé des colis invalides ignorés en mode tolérant
+	 * 
+	 * @param rapport
+	 *            rapport de la lecture, ou null
+	 */
+	private void tracer(RapportErreurs rapport) {
+		if (rapport != null && !rapport.isVide()) {
+			logger.warn(rapport);
 		}
+	}
+
+	/**
+	 * L'affectation des colis relit l'entrée colis par colis : elle n'est
+	 * possible que pour le format d'un chiffre par colis
+	 */
+	private void verifierSansSeparateur() {
+		if (configuration.isAvecSeparateur()) {
+			throw new IllegalArgumentException("L'affectation des colis n'est pas disponible au format délimité");
+		}
+	}
 
-		return mapTailleTotalListeCombinaisons;
+	/**
+	 * @param nbColisParTaille
+	 * @return le nombre total de colis
+	 * @throws IllegalArgumentException
+	 *             au delà de {@link AffectationCartons#NB_COLIS_MAX} colis
+	 */
+	private int verifierNbColis(long[] nbColisParTaille) {
+		long nbColis = 0;
+		for (long nb : nbColisParTaille) {
+			nbColis += nb;
+		}
+		if (nbColis > AffectationCartons.NB_COLIS_MAX) {
+			throw new IllegalArgumentException(String.format("Trop de colis à affecter : %d (maximum %d)", nbColis,
+					AffectationCartons.NB_COLIS_MAX));
+		}
+		return (int) nbColis;
 	}
 
 	/**
-	 * Trie les listes de combinaisons entre elles. Les combinaisons avec le minimum
-	 * de colis seront prioritaires pour faire un carton (car ils contiendront les
-	 * colis les plus "emcombrants"). Par exemple, si on a les colis suivants :
-	 * "2222288888". Alors il ne faut pas commencer par faire un carton <22222>,
-	 * sinon nous auront 6 cartons (1 avec <22222> et 5 avec <8>) alors que nous
-	 * pouvions en faire 5 (<82>). De même, si nous avons les colis suivants
-	 * "81127272", alors il ne faut pas commencer par faire un cartons <811>, sinon
-	 * nous aurons les cartons <72><72><2> soit 4 cartons. Alors que la version
-	 * optimisé est <82><721><721>
+	 * Relit un fichier déjà compté et range le carton de chaque colis
 	 * 
-	 * @param mapTailleTotalListeCombinaisons
-	 */
-	private void trierListeCombinaisonsTaille(Map<Integer, List<List<Integer>>> mapTailleTotalListeCombinaisons) {
-		logger.debug("Tri de la liste des combinaison de taille de colis");
-		for (List<List<Integer>> listeCombinaisonsTaille : mapTailleTotalListeCombinaisons.values()) {
-			Collections.sort(listeCombinaisonsTaille, new Comparator<List<Integer>>() {
-				@Override
-				public int compare(List<Integer> combinaison1, List<Integer> combinaison2) {
-					return combinaison1.size() - combinaison2.size();
+	 * @param fichierColis
+	 * @param resultat
+	 *            emballage des colis du fichier
+	 * @param cartonParColis
+	 *            reçoit le numéro du carton de chaque colis
+	 * @throws IOException
+	 */
+	private void affecter(Path fichierColis, ResultatSolveur resultat, IntBuffer cartonParColis)
+			throws IOException {
+		long debut = System.nanoTime();
+		RepartiteurColis repartiteur = new RepartiteurColis(resultat);
+		int indiceColis = 0;
+		try (FileChannel canal = FileChannel.open(fichierColis, StandardOpenOption.READ)) {
+			long tailleFichier = canal.size();
+			for (long position = 0; position < tailleFichier; position += TAILLE_ZONE_AFFECTATION) {
+				long tailleZone = Math.min(TAILLE_ZONE_AFFECTATION, tailleFichier - position);
+				MappedByteBuffer zone = canal.map(FileChannel.MapMode.READ_ONLY, position, tailleZone);
+				for (int i = 0; i < tailleZone; i++) {
+					int tailleColis = zone.get(i) - '0';
+					// Les fins de ligne, seuls autres caractères acceptés par le
+					// comptage, sont ignorées
+					if (tailleColis > 0 && tailleColis <= 9) {
+						cartonParColis.put(indiceColis++, repartiteur.cartonSuivant(tailleColis));
+					}
 				}
-			});
+			}
+		}
+		if (indiceColis != cartonParColis.limit()) {
+			throw new IllegalStateException(String.format(
+					"Le fichier a changé entre le comptage et l'affectation : %d colis au lieu de %d", indiceColis,
+					cartonParColis.limit()));
 		}
+		mesures.enregistrerDuree(Phase.AFFECTATION, System.nanoTime() - debut);
 	}
 
 	/**
-	 * Cloner la liste des combinaisons de taille
+	 * Emballe les colis d'une commande à partir du nombre de colis pour chaque
+	 * taille
 	 * 
-	 * @param listeCombinaisonTaille
-	 *            liste des combinaison de taille de colis à cloner
-	 * @return liste des combinaison de taille de colis cloné
-	 */
-	private List<List<Integer>> clonerListeCombinaisonsTaille(List<List<Integer>> listeCombinaisonTaille) {
-		List<List<Integer>> listeCombinaisonTailleClone = new ArrayList<List<Integer>>();
-		// Parcours les combinaisons de taille
-		for (List<Integer> combinaison : listeCombinaisonTaille) {
-			List<Integer> combinaisonTailleClone = new ArrayList<Integer>();
-			// Parcours les taille d'une combinaison
-			for (Integer tailleColisCourant : combinaison) {
-				combinaisonTailleClone.add(Integer.valueOf(tailleColisCourant.intValue()));
-			}
-			listeCombinaisonTailleClone.add(combinaisonTailleClone);
+	 * @param nbColisParTaille
+	 *            Indice : taille des colis. Valeur : nombre de colis ayant cette
+	 *            taille
+	 * @return Nombre de cartons pour chaque combinaison
+	 */
+	private ResultatSolveur emballer(long[] nbColisParTaille) {
+		ResultatSolveur resultat = resoudre(nbColisParTaille);
+		long nbColis = 0;
+		for (int taille = 1; taille < nbColisParTaille.length; taille++) {
+			nbColis += nbColisParTaille[taille];
+		}
+		mesures.enregistrerCommande(nbColis, resultat.getNbCartons());
+		return resultat;
+	}
+
+	/**
+	 * Emballe les colis d'une commande dans le budget de temps de la commande. Le
+	 * cache n'est pas utilisé : un emballage calculé avec un autre budget peut
+	 * être moins bon
+	 * 
+	 * @param nbColisParTaille
+	 *            Indice : taille des colis. Valeur : nombre de colis ayant cette
+	 *            taille
+	 * @param budgetNanos
+	 *            durée maximum du calcul
+	 * @return Nombre de cartons pour chaque combinaison, stratégie et durée du
+	 *         calcul
+	 */
+	private ResultatStrategie emballer(long[] nbColisParTaille, long budgetNanos) {
+		long debut = System.nanoTime();
+		ResultatSolveur resultat = calculer(nbColisParTaille, budgetNanos);
+		long duree = System.nanoTime() - debut;
+		long nbColis = 0;
+		for (int taille = 1; taille < nbColisParTaille.length; taille++) {
+			nbColis += nbColisParTaille[taille];
+		}
+		mesures.enregistrerCommande(nbColis, resultat.getNbCartons());
+		String nomStrategie = tableCombinaisons == null ? SolveurPremierAjustement.NOM : strategie.getNom();
+		return new ResultatStrategie(resultat, nomStrategie, duree, budgetNanos);
+	}
+
+	/**
+	 * Emballe les colis avec l'algorithme choisi
+	 * 
+	 * @param nbColisParTaille
+	 *            Indice : taille des colis. Valeur : nombre de colis ayant cette
+	 *            taille
+	 * @return Nombre de cartons pour chaque combinaison, et écart avec la borne
+	 *         inférieure
+	 */
+	ResultatSolveur resoudre(long[] nbColisParTaille) {
+		if (cache == null) {
+			return calculer(nbColisParTaille);
 		}
+		ResultatSolveur resultat = cache.chercher(nbColisParTaille);
+		if (resultat == null) {
+			resultat = calculer(nbColisParTaille);
+			cache.ajouter(nbColisParTaille, resultat);
+		}
+		return resultat;
+	}
 
-		return listeCombinaisonTailleClone;
+	/**
+	 * Calcule l'emballage des colis avec l'algorithme choisi, sans passer par le
+	 * cache
+	 * 
+	 * @param nbColisParTaille
+	 *            Indice : taille des colis. Valeur : nombre de colis ayant cette
+	 *            taille
+	 * @return Nombre de cartons pour chaque combinaison, et écart avec la borne
+	 *         inférieure
+	 */
+	private ResultatSolveur calculer(long[] nbColisParTaille) {
+		return calculer(nbColisParTaille, StrategieEmballage.SANS_LIMITE);
+	}
+
+	/**
+	 * Calcule l'emballage des colis avec la stratégie du service, dans un budget
+	 * de temps
+	 * 
+	 * @param nbColisParTaille
+	 *            Indice : taille des colis. Valeur : nombre de colis ayant cette
+	 *            taille
+	 * @param budgetNanos
+	 *            durée maximum du calcul, ou {@link StrategieEmballage#SANS_LIMITE}
+	 * @return Nombre de cartons pour chaque combinaison, et écart avec la borne
+	 *         inférieure
+	 */
+	private ResultatSolveur calculer(long[] nbColisParTaille, long budgetNanos) {
+		ResultatSolveur resultat;
+		if (tableCombinaisons == null) {
+			// Grande capacité : seules les combinaisons utilisées sont générées
+			long debut = System.nanoTime();
+			resultat = SolveurPremierAjustement.resoudre(nbColisParTaille, configuration.getCapaciteCarton());
+			mesures.enregistrerDuree(Phase.EMBALLAGE, System.nanoTime() - debut);
+		} else {
+			resultat = strategie.resoudre(nbColisParTaille, tableCombinaisons, budgetNanos, mesures);
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug(String.format("%d cartons pour une borne inférieure de %d (écart %d)",
+					resultat.getNbCartons(), resultat.getBorneInferieure(), resultat.getEcart()));
+		}
+		return resultat;
 	}
 
 	/**
-	 * Réalise les cartons à partir des colis entrants et des listes de combinaisons
-	 * de taille possibles. On privilégiera les cartons les plus lourds possibles
-	 * sans dépasser la taille maximum.
+	 * Réalise les cartons à partir des colis entrants et de la table des
+	 * combinaisons de taille possibles. On privilégiera les cartons les plus
+	 * lourds possibles sans dépasser la taille maximum. Aucune allocation n'est
+	 * faite : les colis restants et les cartons sont écrits dans les tableaux
+	 * passés en paramètre.
 	 * 
-	 * @param mapTailleColis
-	 *            cartons entrants sous forme de map. Clé : taille des colis. Valeur
-	 *            : nombre de colis ayant ce taille
-	 * @param mapCombinaisonsTaille
-	 *            map des combinaisons de taille. Clé : taille totale cartons.
-	 *            Valeur : Liste des combinaisons possibles de taille
-	 * @return La map des taille des cartons. Clé : combinaisons de taille. Valeur :
-	 *         Nombre de cartons avec cette combinaison de taille.
-	 */
-	private Map<String, Integer> faireCartons(Map<Integer, Integer> mapNbColisParTaille,
-			Map<Integer, List<List<Integer>>> mapTailleTotalListeCombinaisons) {
+	 * @param nbColisParTaille
+	 *            colis entrants. Indice : taille des colis. Valeur : nombre de
+	 *            colis ayant ce taille. Les colis emballés en sont retirés
+	 * @param tableCombinaisons
+	 *            combinaisons de taille, triées par priorité
+	 * @param nbCartonsParCombinaison
+	 *            Nombre de cartons pour chaque combinaison de la table (rempli par
+	 *            la méthode)
+	 */
+	static void faireCartons(long[] nbColisParTaille, Combinaisons tableCombinaisons,
+			long[] nbCartonsParCombinaison) {
 		logger.debug("Emballage des colis dans les cartons");
-		Map<String, Integer> cartons = new HashMap<String, Integer>();
-
-		for (int tailleCartonCourant = TAILLE_CARTON_MAX; tailleCartonCourant > 0; tailleCartonCourant--) {
-			List<List<Integer>> listeCombinaisonsTaille = mapTailleTotalListeCombinaisons.get(tailleCartonCourant);
-			for (List<Integer> combinaisonCourante : listeCombinaisonsTaille) {
-				// On regarde combien de cartons on peut faire avec cette combinaison de taille.
-				// Le nombre de cartons correspond au nombre minimum de colis pour les tailles
-				// de la combinaison
-				Integer nbCartonsCombinaison = Integer.MAX_VALUE;
-				for (Integer TailleCourante : combinaisonCourante) {
-					Integer nbCartonTailleCourante = mapNbColisParTaille.get(TailleCourante)
-							/ Collections.frequency(combinaisonCourante, TailleCourante);
-					if (nbCartonTailleCourante < nbCartonsCombinaison) {
-						nbCartonsCombinaison = nbCartonTailleCourante;
-					}
+		for (int combinaison = 0; combinaison < tableCombinaisons.getNbCombinaisons(); combinaison++) {
+			int debut = tableCombinaisons.getDebutTailles(combinaison);
+			int fin = tableCombinaisons.getFinTailles(combinaison);
+			// On regarde combien de cartons on peut faire avec cette combinaison de taille.
+			// Le nombre de cartons correspond au nombre minimum de colis pour les tailles
+			// de la combinaison
+			long nbCartonsCombinaison = Long.MAX_VALUE;
+			for (int i = debut; i < fin; i++) {
+				long nbCartonTailleCourante = nbColisParTaille[tableCombinaisons.getTaille(i)]
+						/ tableCombinaisons.getFrequence(i);
+				if (nbCartonTailleCourante < nbCartonsCombinaison) {
+					nbCartonsCombinaison = nbCartonTailleCourante;
 				}
-				if (nbCartonsCombinaison > 0) {
-					StringBuilder stringBuilder = new StringBuilder();
-					for (Integer tailleCourante : combinaisonCourante) {
-						stringBuilder.append(tailleCourante.toString());
-						// ON retire les colis de la liste des colis à traiter
-						mapNbColisParTaille.put(tailleCourante,
-								mapNbColisParTaille.get(tailleCourante) - nbCartonsCombinaison);
-					}
-					cartons.put(stringBuilder.toString(), nbCartonsCombinaison);
+			}
+			if (nbCartonsCombinaison > 0) {
+				// On retire les colis de la liste des colis à traiter
+				for (int i = debut; i < fin; i++) {
+					nbColisParTaille[tableCombinaisons.getTaille(i)] -= nbCartonsCombinaison
+							* tableCombinaisons.getFrequence(i);
 				}
+				nbCartonsParCombinaison[combinaison] = nbCartonsCombinaison;
 			}
 		}
-		return cartons;
 	}
 
 	/**
-	 * Construire une chaine de caractère avec tous les cartons. Par exemple : 91/55
+	 * Construire une chaine de caractère avec tous les cartons. Par exemple : 91/55.
+	 * La chaine est dimensionnée à l'avance et écrite en une seule fois.
 	 * 
-	 * @param cartons
+	 * @param resultat
 	 * @param affichageOptimisee
 	 * @return
 	 */
-	private String afficherListeCartons(Map<String, Integer> cartons, boolean affichageOptimisee) {
+	private String afficherListeCartons(ResultatSolveur resultat, boolean affichageOptimisee) {
 		logger.debug("Affichage des cartons");
-		StringBuilder stringBuilder = new StringBuilder();
-		// On récupère la chaine pour chaque combinaison de taille
-		for (Entry<String, Integer> combinaisonTailleCourante : cartons.entrySet()) {
-			stringBuilder.append(afficherCarton(combinaisonTailleCourante, affichageOptimisee));
+		long debut = System.nanoTime();
+		String listeCartons = resultat.afficher(affichageOptimisee);
+		mesures.enregistrerDuree(Phase.AFFICHAGE, System.nanoTime() - debut);
+		if (logger.isDebugEnabled()) {
+			logger.debug(String.format("liste des cartons emballés : %s", listeCartons));
 		}
-		// On retire le dernier "/" s'il existe
-		if (stringBuilder.length() != 0
-				&& stringBuilder.substring(stringBuilder.length() - 1, stringBuilder.length()).equals("/")) {
-			stringBuilder.deleteCharAt(stringBuilder.length() - 1);
-		}
-		logger.debug(String.format("liste des cartons emballés : %s", stringBuilder.toString()));
-		return stringBuilder.toString();
+		return listeCartons;
 	}
 
 	/**
-	 * Récupère la chaine de caractère d'une combinaison de taillen spécifique. Par
-	 * exemple : 91/91/ (91(2) pour l'affichage optimisée)
+	 * Écrit les cartons au fil de l'eau dans une sortie texte
 	 * 
-	 * @param combinaisonTailleCourante combinaison de taille. Par exemple <"91", 2>
-	 * @param affichageOptimisee indique si on affiche les cartons de manière optimisée
-	 * @return la chaine de caractère du carton
-	 */
-	private String afficherCarton(Entry<String, Integer> combinaisonTailleCourante, boolean affichageOptimisee) {
-		StringBuilder stringBuilder = new StringBuilder();
-		if (affichageOptimisee) {
-			// Affichage optimisée (Exemple 91(2)/)
-			stringBuilder.append(combinaisonTailleCourante.getKey()).append("(")
-					.append(combinaisonTailleCourante.getValue()).append(")").append("/");
-		} else {
-			// Affichage optimisée (Exemple 91/91/)
-			for (int i = 0; i < combinaisonTailleCourante.getValue(); i++) {
-				stringBuilder.append(combinaisonTailleCourante.getKey()).append("/");
-			}
+	 * @param resultat
+	 * @param affichageOptimisee
+	 * @param sortie
+	 * @throws IOException
+	 */
+	private void ecrire(ResultatSolveur resultat, boolean affichageOptimisee, Appendable sortie)
+			throws IOException {
+		long debut = System.nanoTime();
+		EcrivainCartons.ecrire(resultat.getCombinaisons(), resultat.getNbCartonsParCombinaison(),
+				affichageOptimisee, sortie);
+		mesures.enregistrerDuree(Phase.AFFICHAGE, System.nanoTime() - debut);
+	}
+
+	/**
+	 * Écrit les cartons (en ASCII) dans un canal par blocs de taille fixe
+	 * 
+	 * @param resultat
+	 * @param affichageOptimisee
+	 * @param sortie
+	 * @throws IOException
+	 */
+	private void ecrire(ResultatSolveur resultat, boolean affichageOptimisee, WritableByteChannel sortie)
+			throws IOException {
+		long debut = System.nanoTime();
+		EcrivainCartons.ecrire(resultat.getCombinaisons(), resultat.getNbCartonsParCombinaison(),
+				affichageOptimisee, sortie);
+		mesures.enregistrerDuree(Phase.AFFICHAGE, System.nanoTime() - debut);
+	}
+
+	/**
+	 * Enregistre la durée totale d'une commande et la trace. Le message n'est
+	 * construit que si la trace de débogage est active
+	 * 
+	 * @param methode
+	 *            description de la méthode tracée
+	 * @param debutMethode
+	 *            début de la méthode ({@link System#nanoTime()})
+	 */
+	private void terminer(String methode, long debutMethode) {
+		long duree = System.nanoTime() - debutMethode;
+		mesures.enregistrerDuree(Phase.TOTAL, duree);
+		if (logger.isDebugEnabled()) {
+			logger.debug(String.format("Fin de l'exécution de la méthode %s en %d %s", methode,
+					TimeUnit.NANOSECONDS.toMillis(duree), "ms"));
 		}
-		return stringBuilder.toString();
 	}
 
 }
@@ -0,0 +1,128 @@
+package sample.vsct.service;
+
+/**
+ * Emballage d'une fenêtre de {@link EmballageParFenetres} : les cartons fermés
+ * à la fin de la fenêtre, et les colis retenus pour la fenêtre suivante.
+ *
+ * @author Gaetan
+ *
+ */
+public final class FenetreEmballage {
+
+	private final long numero;
+
+	private final long nbColisRecus;
+
+	private final long nbColisReportes;
+
+	private final long nbColisRetenus;
+
+	private final ResultatSolveur resultat;
+
+	private final long latenceNanos;
+
+	private final long dureeEmballageNanos;
+
+	/**
+	 * @param numero
+	 *            numéro de la fenêtre, à partir de 0
+	 * @param nbColisRecus
+	 *            nombre de colis arrivés pendant la fenêtre
+	 * @param nbColisReportes
+	 *            nombre de colis retenus par la fenêtre précédente
+	 * @param nbColisRetenus
+	 *            nombre de colis retenus pour la fenêtre suivante
+	 * @param resultat
+	 *            cartons fermés à la fin de la fenêtre
+	 * @param latenceNanos
+	 *            durée entre l'arrivée du premier colis de la fenêtre et la fin
+	 *            de l'emballage
+	 * @param dureeEmballageNanos
+	 *            durée de l'emballage de la fenêtre
+	 */
+	FenetreEmballage(long numero, long nbColisRecus, long nbColisReportes, long nbColisRetenus,
+			ResultatSolveur resultat, long latenceNanos, long dureeEmballageNanos) {
+		this.numero = numero;
+		this.nbColisRecus = nbColisRecus;
+		this.nbColisReportes = nbColisReportes;
+		this.nbColisRetenus = nbColisRetenus;
+		this.resultat = resultat;
+		this.latenceNanos = latenceNanos;
+		this.dureeEmballageNanos = dureeEmballageNanos;
+	}
+
+	public long getNumero() {
+		return numero;
+	}
+
+	/**
+	 * @return le nombre de colis arrivés pendant la fenêtre
+	 */
+	public long getNbColisRecus() {
+		return nbColisRecus;
+	}
+
+	/**
+	 * @return le nombre de colis retenus par la fenêtre précédente et emballés
+	 *         avec ceux de cette fenêtre
+	 */
+	public long getNbColisReportes() {
+		return nbColisReportes;
+	}
+
+	/**
+	 * @return le nombre de colis retenus pour la fenêtre suivante, au lieu de
+	 *         fermer des cartons trop peu remplis
+	 */
+	public long getNbColisRetenus() {
+		return nbColisRetenus;
+	}
+
+	/**
+	 * @return le nombre de colis des cartons fermés
+	 */
+	public long getNbColisEmballes() {
+		return nbColisRecus + nbColisReportes - nbColisRetenus;
+	}
+
+	/**
+	 * @return les cartons fermés à la fin de la fenêtre
+	 */
+	public ResultatSolveur getResultat() {
+		return resultat;
+	}
+
+	/**
+	 * @return le taux de remplissage des cartons fermés, entre 0 et 1
+	 */
+	public double getTauxRemplissage() {
+		return resultat.getTauxRemplissage();
+	}
+
+	/**
+	 * @return la durée en nanosecondes entre l'arrivée du premier colis de la
+	 *         fenêtre et la fin de son emballage
+	 */
+	public long getLatenceNanos() {
+		return latenceNanos;
+	}
+
+	/**
+	 * @return la durée en nanosecondes de l'emballage de la fenêtre
+	 */
+	public long getDureeEmballageNanos() {
+		return dureeEmballageNanos;
+	}
+
+	/**
+	 * Résumé de la fenêtre. Exemple : "Fenêtre 3 : 1000 colis reçus, 12 reportés,
+	 * 5 retenus, 587 cartons remplis à 96,1 %, latence 2,4 ms"
+	 */
+	@Override
+	public String toString() {
+		return String.format("Fenêtre %d : %d colis reçus, %d reportés, %d retenus, %d cartons remplis à %.1f %%, "
+				+ "latence %.1f ms", numero, nbColisRecus, nbColisReportes, nbColisRetenus, resultat.getNbCartons(),
+				100 * getTauxRemplissage(), latenceNanos / 1e6);
+	}
+
+}
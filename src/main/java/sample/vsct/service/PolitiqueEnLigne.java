@@ -0,0 +1,31 @@
+package sample.vsct.service;
+
+/**
+ * Politique de choix du carton d'un colis pour l'emballage en ligne (voir
+ * {@link EmballageEnLigne})
+ *
+ * @author Gaetan
+ *
+ */
+public enum PolitiqueEnLigne {
+
+	/**
+	 * Le colis va dans le plus ancien carton ouvert où il tient. S'il ne tient
+	 * dans aucun et que tous les cartons sont ouverts, le plus ancien est fermé
+	 */
+	PROCHAIN_AJUSTEMENT,
+
+	/**
+	 * Le colis va dans le carton ouvert le plus rempli où il tient. S'il ne
+	 * tient dans aucun et que tous les cartons sont ouverts, le plus rempli est
+	 * fermé
+	 */
+	MEILLEUR_AJUSTEMENT,
+
+	/**
+	 * Les colis attendent dans un tampon borné. Quand il est plein, on place le
+	 * colis du tampon qui laisse le moins de place libre dans un carton ouvert
+	 */
+	ANTICIPATION
+
+}
@@ -0,0 +1,304 @@
+package sample.vsct.service;
+
+import java.math.BigInteger;
+
+/**
+ * Relaxation linéaire du problème d'emballage, résolue en arithmétique
+ * rationnelle exacte (simplexe).
+ *
+ * Variables : le nombre (réel) de cartons de chaque combinaison de la table.
+ * Contraintes : pour chaque taille présente, les cartons contiennent exactement
+ * le nombre de colis de cette taille. Objectif : minimiser le nombre de cartons.
+ * La table contenant toutes les sous-combinaisons, l'égalité ne coûte rien par
+ * rapport à un recouvrement.
+ *
+ * La valeur optimale arrondie au supérieur est une borne inférieure du nombre
+ * de cartons. Le problème n'a qu'une ligne par taille de colis : sa résolution
+ * ne dépend pas du nombre de colis.
+ *
+ * @author Gaetan
+ *
+ */
+final class RelaxationLineaire {
+
+	/** Combinaison de la table associée à chaque colonne */
+	private final int[] combinaisons;
+
+	/** Tailles associées à chaque ligne */
+	private final int[] tailles;
+
+	/** Tableau du simplexe : B^-1 * A */
+	private final Fraction[][] tableau;
+
+	/** Second membre : B^-1 * nbColis (valeur des variables de base) */
+	private final Fraction[] valeurs;
+
+	/** Colonne en base pour chaque ligne */
+	private final int[] base;
+
+	private RelaxationLineaire(long[] nbColisParTaille, TableCombinaisons tableCombinaisons) {
+		// Lignes : les tailles présentes uniquement
+		int nbLignes = 0;
+		for (int taille = 1; taille < nbColisParTaille.length; taille++) {
+			if (nbColisParTaille[taille] > 0) {
+				nbLignes++;
+			}
+		}
+		tailles = new int[nbLignes];
+		int[] ligneParTaille = new int[tableCombinaisons.getCapaciteCarton() + 1];
+		nbLignes = 0;
+		for (int taille = 1; taille < nbColisParTaille.length; taille++) {
+			ligneParTaille[taille] = -1;
+			if (nbColisParTaille[taille] > 0) {
+				ligneParTaille[taille] = nbLignes;
+				tailles[nbLignes++] = taille;
+			}
+		}
+
+		// Colonnes : les combinaisons n'utilisant que des tailles présentes
+		int nbColonnes = 0;
+		int[] colonnes = new int[tableCombinaisons.getNbCombinaisons()];
+		for (int combinaison = 0; combinaison < tableCombinaisons.getNbCombinaisons(); combinaison++) {
+			if (estUtilisable(tableCombinaisons, combinaison, nbColisParTaille)) {
+				colonnes[nbColonnes++] = combinaison;
+			}
+		}
+		combinaisons = new int[nbColonnes];
+		System.arraycopy(colonnes, 0, combinaisons, 0, nbColonnes);
+
+		// Base initiale : les combinaisons à un seul colis (matrice identité)
+		tableau = new Fraction[nbLignes][nbColonnes];
+		valeurs = new Fraction[nbLignes];
+		base = new int[nbLignes];
+		for (int colonne = 0; colonne < nbColonnes; colonne++) {
+			int combinaison = combinaisons[colonne];
+			for (int ligne = 0; ligne < nbLignes; ligne++) {
+				tableau[ligne][colonne] = Fraction.de(tableCombinaisons.getMultiplicite(combinaison, tailles[ligne]));
+			}
+			if (tableCombinaisons.getNbColis(combinaison) == 1) {
+				base[ligneParTaille[tableCombinaisons.getTaille(tableCombinaisons.getDebutTailles(combinaison))]] = colonne;
+			}
+		}
+		for (int ligne = 0; ligne < nbLignes; ligne++) {
+			valeurs[ligne] = Fraction.de(nbColisParTaille[tailles[ligne]]);
+		}
+	}
+
+	/**
+	 * Résout la relaxation linéaire
+	 *
+	 * @param nbColisParTaille
+	 *            Indice : taille des colis. Valeur : nombre de colis ayant cette
+	 *            taille
+	 * @param tableCombinaisons
+	 *            table des combinaisons de taille
+	 * @return la relaxation résolue
+	 */
+	static RelaxationLineaire resoudre(long[] nbColisParTaille, TableCombinaisons tableCombinaisons) {
+		RelaxationLineaire relaxation = new RelaxationLineaire(nbColisParTaille, tableCombinaisons);
+		relaxation.optimiser();
+		return relaxation;
+	}
+
+	/**
+	 * Itérations du simplexe. La règle de Bland (plus petit indice) garantit la
+	 * terminaison malgré la dégénérescence.
+	 */
+	private void optimiser() {
+		int nbLignes = tailles.length;
+		while (true) {
+			// Colonne entrante : coût réduit 1 - somme de la colonne négatif
+			int colonneEntrante = -1;
+			for (int colonne = 0; colonne < combinaisons.length && colonneEntrante < 0; colonne++) {
+				Fraction somme = Fraction.ZERO;
+				for (int ligne = 0; ligne < nbLignes; ligne++) {
+					somme = somme.plus(tableau[ligne][colonne]);
+				}
+				if (somme.compareTo(Fraction.UN) > 0) {
+					colonneEntrante = colonne;
+				}
+			}
+			if (colonneEntrante < 0) {
+				return;
+			}
+
+			// Ligne sortante : plus petit rapport valeur / coefficient positif
+			int ligneSortante = -1;
+			Fraction meilleurRapport = null;
+			for (int ligne = 0; ligne < nbLignes; ligne++) {
+				Fraction coefficient = tableau[ligne][colonneEntrante];
+				if (coefficient.signum() > 0) {
+					Fraction rapport = valeurs[ligne].divise(coefficient);
+					int comparaison = meilleurRapport == null ? -1 : rapport.compareTo(meilleurRapport);
+					if (comparaison < 0 || (comparaison == 0 && base[ligne] < base[ligneSortante])) {
+						meilleurRapport = rapport;
+						ligneSortante = ligne;
+					}
+				}
+			}
+			pivoter(ligneSortante, colonneEntrante);
+		}
+	}
+
+	private void pivoter(int lignePivot, int colonnePivot) {
+		Fraction pivot = tableau[lignePivot][colonnePivot];
+		Fraction[] lignePivotTableau = tableau[lignePivot];
+		for (int colonne = 0; colonne < combinaisons.length; colonne++) {
+			lignePivotTableau[colonne] = lignePivotTableau[colonne].divise(pivot);
+		}
+		valeurs[lignePivot] = valeurs[lignePivot].divise(pivot);
+		for (int ligne = 0; ligne < tailles.length; ligne++) {
+			Fraction facteur = tableau[ligne][colonnePivot];
+			if (ligne == lignePivot || facteur.signum() == 0) {
+				continue;
+			}
+			for (int colonne = 0; colonne < combinaisons.length; colonne++) {
+				if (lignePivotTableau[colonne].signum() != 0) {
+					tableau[ligne][colonne] = tableau[ligne][colonne].moins(facteur.fois(lignePivotTableau[colonne]));
+				}
+			}
+			valeurs[ligne] = valeurs[ligne].moins(facteur.fois(valeurs[lignePivot]));
+		}
+		base[lignePivot] = colonnePivot;
+	}
+
+	/**
+	 * @return la borne inférieure du nombre de cartons : la valeur optimale
+	 *         arrondie à l'entier supérieur
+	 */
+	long getBorneInferieure() {
+		Fraction total = Fraction.ZERO;
+		for (Fraction valeur : valeurs) {
+			total = total.plus(valeur);
+		}
+		return total.plafond();
+	}
+
+	/**
+	 * Ajoute à chaque combinaison de la solution optimale la partie entière de
+	 * son nombre de cartons, et retire les colis correspondants
+	 *
+	 * @param nbColisParTaille
+	 *            colis à emballer, dont les colis emballés sont retirés
+	 * @param nbCartonsParCombinaison
+	 *            nombre de cartons pour chaque combinaison de la table, à
+	 *            compléter
+	 */
+	void arrondirInferieur(long[] nbColisParTaille, long[] nbCartonsParCombinaison,
+			TableCombinaisons tableCombinaisons) {
+		for (int ligne = 0; ligne < tailles.length; ligne++) {
+			long nbCartons = valeurs[ligne].plancher();
+			if (nbCartons > 0) {
+				int combinaison = combinaisons[base[ligne]];
+				nbCartonsParCombinaison[combinaison] += nbCartons;
+				for (int i = tableCombinaisons.getDebutTailles(combinaison); i < tableCombinaisons
+						.getFinTailles(combinaison); i++) {
+					nbColisParTaille[tableCombinaisons.getTaille(i)] -= nbCartons * tableCombinaisons.getFrequence(i);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return vrai si toutes les tailles de la combinaison sont présentes dans
+	 *         les colis
+	 */
+	private static boolean estUtilisable(TableCombinaisons tableCombinaisons, int combinaison,
+			long[] nbColisParTaille) {
+		for (int i = tableCombinaisons.getDebutTailles(combinaison); i < tableCombinaisons
+				.getFinTailles(combinaison); i++) {
+			int taille = tableCombinaisons.getTaille(i);
+			if (taille >= nbColisParTaille.length || nbColisParTaille[taille] == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Nombre rationnel exact et irréductible (dénominateur positif)
+	 */
+	static final class Fraction implements Comparable<Fraction> {
+
+		static final Fraction ZERO = new Fraction(BigInteger.ZERO, BigInteger.ONE);
+
+		static final Fraction UN = new Fraction(BigInteger.ONE, BigInteger.ONE);
+
+		private final BigInteger numerateur;
+
+		private final BigInteger denominateur;
+
+		private Fraction(BigInteger numerateur, BigInteger denominateur) {
+			this.numerateur = numerateur;
+			this.denominateur = denominateur;
+		}
+
+		static Fraction de(long valeur) {
+			return valeur == 0 ? ZERO : new Fraction(BigInteger.valueOf(valeur), BigInteger.ONE);
+		}
+
+		private static Fraction reduire(BigInteger numerateur, BigInteger denominateur) {
+			if (numerateur.signum() == 0) {
+				return ZERO;
+			}
+			if (denominateur.signum() < 0) {
+				numerateur = numerateur.negate();
+				denominateur = denominateur.negate();
+			}
+			BigInteger pgcd = numerateur.gcd(denominateur);
+			if (!pgcd.equals(BigInteger.ONE)) {
+				numerateur = numerateur.divide(pgcd);
+				denominateur = denominateur.divide(pgcd);
+			}
+			return new Fraction(numerateur, denominateur);
+		}
+
+		Fraction plus(Fraction autre) {
+			if (denominateur.equals(autre.denominateur)) {
+				return reduire(numerateur.add(autre.numerateur), denominateur);
+			}
+			return reduire(numerateur.multiply(autre.denominateur).add(autre.numerateur.multiply(denominateur)),
+					denominateur.multiply(autre.denominateur));
+		}
+
+		Fraction moins(Fraction autre) {
+			return plus(new Fraction(autre.numerateur.negate(), autre.denominateur));
+		}
+
+		Fraction fois(Fraction autre) {
+			return reduire(numerateur.multiply(autre.numerateur), denominateur.multiply(autre.denominateur));
+		}
+
+		Fraction divise(Fraction autre) {
+			return reduire(numerateur.multiply(autre.denominateur), denominateur.multiply(autre.numerateur));
+		}
+
+		int signum() {
+			return numerateur.signum();
+		}
+
+		long plancher() {
+			BigInteger[] quotientReste = numerateur.divideAndRemainder(denominateur);
+			BigInteger plancher = quotientReste[0];
+			if (quotientReste[1].signum() < 0) {
+				plancher = plancher.subtract(BigInteger.ONE);
+			}
+			return plancher.longValue();
+		}
+
+		long plafond() {
+			BigInteger[] quotientReste = numerateur.divideAndRemainder(denominateur);
+			BigInteger plafond = quotientReste[0];
+			if (quotientReste[1].signum() > 0) {
+				plafond = plafond.add(BigInteger.ONE);
+			}
+			return plafond.longValue();
+		}
+
+		@Override
+		public int compareTo(Fraction autre) {
+			return numerateur.multiply(autre.denominateur).compareTo(autre.numerateur.multiply(denominateur));
+		}
+	}
+
+}
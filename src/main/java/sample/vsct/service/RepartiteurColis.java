@@ -0,0 +1,114 @@
+package sample.vsct.service;
+
+/**
+ * Distribue les colis, dans l'ordre de l'entrée, dans les cartons d'un
+ * emballage. Les cartons sont numérotés dans l'ordre de l'affichage non
+ * optimisé : les cartons de la première combinaison utilisée, puis ceux de la
+ * suivante, etc.
+ *
+ * Pour chaque taille, les colis remplissent les places de cette taille carton
+ * par carton : le n-ième colis de taille t d'une combinaison contenant f colis
+ * de taille t va dans son carton n / f. Rien n'est alloué par colis.
+ *
+ * @author Gaetan
+ *
+ */
+final class RepartiteurColis {
+
+	/** Par taille : premier carton de chaque combinaison contenant la taille */
+	private final int[][] premierCarton;
+
+	/** Par taille : nombre de colis de la taille dans chaque combinaison */
+	private final int[][] frequence;
+
+	/** Par taille : nombre total de colis de la taille dans tous les cartons de chaque combinaison */
+	private final long[][] nbPlaces;
+
+	/** Par taille : combinaison en cours de remplissage */
+	private final int[] combinaisonCourante;
+
+	/** Par taille : colis déjà distribués dans la combinaison en cours */
+	private final long[] nbDistribues;
+
+	private final int nbCartons;
+
+	/**
+	 * @param resultat
+	 *            emballage dont les cartons reçoivent les colis
+	 * @throws IllegalArgumentException
+	 *             si l'emballage a plus de cartons qu'un int ne peut en numéroter
+	 */
+	RepartiteurColis(ResultatSolveur resultat) {
+		if (resultat.getNbCartons() > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(
+					String.format("Trop de cartons pour les numéroter : %d", resultat.getNbCartons()));
+		}
+		Combinaisons combinaisons = resultat.getCombinaisons();
+		int capacite = combinaisons.getCapaciteCarton();
+		int[] utilisees = resultat.getCombinaisonsUtilisees();
+
+		// Nombre de combinaisons utilisées contenant chaque taille
+		int[] nbCombinaisonsParTaille = new int[capacite + 1];
+		for (int combinaison : utilisees) {
+			for (int i = combinaisons.getDebutTailles(combinaison); i < combinaisons.getFinTailles(combinaison); i++) {
+				nbCombinaisonsParTaille[combinaisons.getTaille(i)]++;
+			}
+		}
+		premierCarton = new int[capacite + 1][];
+		frequence = new int[capacite + 1][];
+		nbPlaces = new long[capacite + 1][];
+		for (int taille = 0; taille <= capacite; taille++) {
+			premierCarton[taille] = new int[nbCombinaisonsParTaille[taille]];
+			frequence[taille] = new int[nbCombinaisonsParTaille[taille]];
+			nbPlaces[taille] = new long[nbCombinaisonsParTaille[taille]];
+		}
+
+		int[] nbRemplies = new int[capacite + 1];
+		int carton = 0;
+		for (int combinaison : utilisees) {
+			long nbCartonsCombinaison = resultat.getNbCartons(combinaison);
+			for (int i = combinaisons.getDebutTailles(combinaison); i < combinaisons.getFinTailles(combinaison); i++) {
+				int taille = combinaisons.getTaille(i);
+				int k = nbRemplies[taille]++;
+				premierCarton[taille][k] = carton;
+				frequence[taille][k] = combinaisons.getFrequence(i);
+				nbPlaces[taille][k] = nbCartonsCombinaison * combinaisons.getFrequence(i);
+			}
+			carton += (int) nbCartonsCombinaison;
+		}
+		this.nbCartons = carton;
+		this.combinaisonCourante = new int[capacite + 1];
+		this.nbDistribues = new long[capacite + 1];
+	}
+
+	/**
+	 * @param taille
+	 *            taille du colis suivant de l'entrée
+	 * @return le numéro du carton qui reçoit le colis
+	 * @throws IllegalStateException
+	 *             si les cartons n'ont plus de place pour un colis de cette
+	 *             taille (l'entrée ne correspond pas à l'emballage)
+	 */
+	int cartonSuivant(int taille) {
+		int k = combinaisonCourante[taille];
+		long n = nbDistribues[taille];
+		if (k >= nbPlaces[taille].length || n == nbPlaces[taille][k]) {
+			k = ++combinaisonCourante[taille];
+			n = 0;
+			if (k >= nbPlaces[taille].length) {
+				throw new IllegalStateException(
+						String.format("Plus aucune place pour un colis de taille %d : l'entrée a changé", taille));
+			}
+		}
+		nbDistribues[taille] = n + 1;
+		return premierCarton[taille][k] + (int) (n / frequence[taille][k]);
+	}
+
+	/**
+	 * @return le nombre de cartons de l'emballage
+	 */
+	int getNbCartons() {
+		return nbCartons;
+	}
+
+}
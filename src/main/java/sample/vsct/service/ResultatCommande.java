@@ -0,0 +1,54 @@
+package sample.vsct.service;
+
+import sample.vsct.exception.TailleColisException;
+
+/**
+ * Résultat de l'emballage d'une commande d'un lot : les cartons, ou l'erreur
+ * si la commande est invalide.
+ *
+ * @author Gaetan
+ *
+ */
+public class ResultatCommande {
+
+	private final long indice;
+
+	private final String cartons;
+
+	private final TailleColisException erreur;
+
+	ResultatCommande(long indice, String cartons, TailleColisException erreur) {
+		this.indice = indice;
+		this.cartons = cartons;
+		this.erreur = erreur;
+	}
+
+	/**
+	 * @return la position de la commande dans le lot (à partir de 0)
+	 */
+	public long getIndice() {
+		return indice;
+	}
+
+	/**
+	 * @return les cartons de la commande, null si elle est en erreur
+	 */
+	public String getCartons() {
+		return cartons;
+	}
+
+	/**
+	 * @return l'erreur de la commande, null si elle a été emballée
+	 */
+	public TailleColisException getErreur() {
+		return erreur;
+	}
+
+	/**
+	 * @return vrai si la commande n'a pas pu être emballée
+	 */
+	public boolean isEnErreur() {
+		return erreur != null;
+	}
+
+}
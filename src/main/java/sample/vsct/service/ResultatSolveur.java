@@ -0,0 +1,219 @@
+package sample.vsct.service;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import sample.vsct.ecriture.EcrivainCartons;
+
+/**
+ * Résultat d'un solveur d'emballage : le nombre de cartons de chaque
+ * combinaison (de la table, ou générée pour les grandes capacités), et l'écart
+ * avec une borne inférieure du nombre de cartons.
+ *
+ * Le résultat est entièrement numérique : les combinaisons utilisées, les
+ * tailles et multiplicités de chacune (voir {@link #getCombinaisons()}), leur
+ * nombre de cartons et le taux de remplissage sont lus directement dans des
+ * tableaux de types primitifs. L'affichage texte des cartons est une étape
+ * optionnelle ({@link #afficher(boolean)}).
+ *
+ * @author Gaetan
+ *
+ */
+public class ResultatSolveur {
+
+	private final Combinaisons combinaisons;
+
+	private final long[] nbCartonsParCombinaison;
+
+	private final long nbCartons;
+
+	private final long borneInferieure;
+
+	/** Indices des combinaisons ayant au moins un carton, par ordre croissant */
+	private final int[] combinaisonsUtilisees;
+
+	/** Somme des tailles des colis emballés */
+	private final long volume;
+
+	/** Somme des capacités des cartons */
+	private final long capaciteTotale;
+
+	/**
+	 * Affichage optimisé, construit au premier appel : il est court, et le
+	 * résultat peut être partagé par le cache des emballages
+	 */
+	private volatile String affichageOptimise;
+
+	public ResultatSolveur(Combinaisons combinaisons, long[] nbCartonsParCombinaison, long borneInferieure) {
+		this.combinaisons = combinaisons;
+		this.nbCartonsParCombinaison = nbCartonsParCombinaison;
+		long total = 0;
+		long volumeTotal = 0;
+		long capacite = 0;
+		int nbCombinaisonsUtilisees = 0;
+		int[] utilisees = new int[nbCartonsParCombinaison.length];
+		for (int combinaison = 0; combinaison < nbCartonsParCombinaison.length; combinaison++) {
+			long nbCartonsCombinaison = nbCartonsParCombinaison[combinaison];
+			if (nbCartonsCombinaison > 0) {
+				total += nbCartonsCombinaison;
+				volumeTotal += nbCartonsCombinaison * combinaisons.getTotal(combinaison);
+				capacite += nbCartonsCombinaison * combinaisons.getCapacite(combinaison);
+				utilisees[nbCombinaisonsUtilisees++] = combinaison;
+			}
+		}
+		this.nbCartons = total;
+		this.volume = volumeTotal;
+		this.capaciteTotale = capacite;
+		this.combinaisonsUtilisees = Arrays.copyOf(utilisees, nbCombinaisonsUtilisees);
+		this.borneInferieure = borneInferieure;
+	}
+
+	/**
+	 * @return les combinaisons auxquelles se rapportent les nombres de cartons
+	 */
+	public Combinaisons getCombinaisons() {
+		return combinaisons;
+	}
+
+	/**
+	 * @return le nombre de cartons pour chaque combinaison (indice : combinaison
+	 *         de {@link #getCombinaisons()}). Le tableau ne doit pas être
+	 *         modifié
+	 */
+	public long[] getNbCartonsParCombinaison() {
+		return nbCartonsParCombinaison;
+	}
+
+	/**
+	 * @return les indices des combinaisons ayant au moins un carton, par ordre
+	 *         croissant (le tableau ne doit pas être modifié)
+	 */
+	public int[] getCombinaisonsUtilisees() {
+		return combinaisonsUtilisees;
+	}
+
+	/**
+	 * @param combinaison
+	 *            indice de la combinaison
+	 * @return le nombre de cartons de cette combinaison
+	 */
+	public long getNbCartons(int combinaison) {
+		return nbCartonsParCombinaison[combinaison];
+	}
+
+	/**
+	 * @param combinaison
+	 *            indice de la combinaison
+	 * @param taille
+	 *            taille de colis
+	 * @return le nombre de colis de cette taille dans un carton de la
+	 *         combinaison (0 si absente)
+	 */
+	public int getMultiplicite(int combinaison, int taille) {
+		for (int i = combinaisons.getDebutTailles(combinaison); i < combinaisons.getFinTailles(combinaison); i++) {
+			if (combinaisons.getTaille(i) == taille) {
+				return combinaisons.getFrequence(i);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * @return la somme des tailles des colis emballés
+	 */
+	public long getVolume() {
+		return volume;
+	}
+
+	/**
+	 * @return le taux de remplissage des cartons, entre 0 et 1 : le volume des
+	 *         colis divisé par la capacité totale des cartons (0 sans carton)
+	 */
+	public double getTauxRemplissage() {
+		return nbCartons == 0 ? 0 : (double) volume / capaciteTotale;
+	}
+
+	/**
+	 * @return le nombre total de cartons
+	 */
+	public long getNbCartons() {
+		return nbCartons;
+	}
+
+	/**
+	 * @return une borne inférieure du nombre de cartons : aucun emballage ne peut
+	 *         utiliser moins de cartons
+	 */
+	public long getBorneInferieure() {
+		return borneInferieure;
+	}
+
+	/**
+	 * @return l'écart entre le nombre de cartons et la borne inférieure (0 si
+	 *         l'emballage est prouvé optimal)
+	 */
+	public long getEcart() {
+		return nbCartons - borneInferieure;
+	}
+
+	/**
+	 * @return vrai si le nombre de cartons atteint la borne inférieure, l'emballage
+	 *         est alors prouvé optimal
+	 */
+	public boolean isOptimalProuve() {
+		return nbCartons == borneInferieure;
+	}
+
+	/**
+	 * Construit la liste des cartons. Par exemple : 91/55, ou 91(1)/55(1) pour
+	 * l'affichage optimisé
+	 * 
+	 * @param affichageOptimisee
+	 *            indique si on affiche les cartons de manière optimisée
+	 * @return la liste des cartons
+	 * @throws IllegalStateException
+	 *             si la liste est trop longue pour une chaine
+	 */
+	public String afficher(boolean affichageOptimisee) {
+		if (affichageOptimisee) {
+			String affichage = affichageOptimise;
+			if (affichage == null) {
+				affichage = construireAffichage(true);
+				affichageOptimise = affichage;
+			}
+			return affichage;
+		}
+		return construireAffichage(false);
+	}
+
+	private String construireAffichage(boolean affichageOptimisee) {
+		long longueur = EcrivainCartons.longueur(combinaisons, nbCartonsParCombinaison, affichageOptimisee);
+		if (longueur > Integer.MAX_VALUE - 8) {
+			throw new IllegalStateException(String.format(
+					"La liste des %d caractères des cartons est trop longue pour une chaine, utiliser une sortie",
+					longueur));
+		}
+		StringBuilder stringBuilder = new StringBuilder((int) longueur);
+		try {
+			EcrivainCartons.ecrire(combinaisons, nbCartonsParCombinaison, affichageOptimisee, stringBuilder);
+		} catch (IOException e) {
+			// Impossible avec un StringBuilder
+			throw new IllegalStateException(e);
+		}
+		return stringBuilder.toString();
+	}
+
+	/**
+	 * Écrit la liste des cartons au fil de l'eau dans une sortie texte
+	 * 
+	 * @param affichageOptimisee
+	 *            indique si on affiche les cartons de manière optimisée
+	 * @param sortie
+	 *            sortie recevant les cartons. Elle n'est ni vidée ni fermée
+	 * @throws IOException
+	 */
+	public void ecrire(boolean affichageOptimisee, Appendable sortie) throws IOException {
+		EcrivainCartons.ecrire(combinaisons, nbCartonsParCombinaison, affichageOptimisee, sortie);
+	}
+
+}
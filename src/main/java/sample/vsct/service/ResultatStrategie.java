@@ -0,0 +1,95 @@
+package sample.vsct.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Résultat d'un emballage avec budget de temps : les cartons, la stratégie qui
+ * les a calculés, la durée du calcul et si le minimum de cartons est prouvé.
+ *
+ * @author Gaetan
+ *
+ */
+public final class ResultatStrategie {
+
+	private final ResultatSolveur resultat;
+
+	private final String strategie;
+
+	private final long dureeNanos;
+
+	private final long budgetNanos;
+
+	/**
+	 * @param resultat
+	 *            cartons de la commande
+	 * @param strategie
+	 *            nom de la stratégie (voir {@link StrategieEmballage#getNom()})
+	 * @param dureeNanos
+	 *            durée du calcul
+	 * @param budgetNanos
+	 *            budget accordé au calcul
+	 */
+	ResultatStrategie(ResultatSolveur resultat, String strategie, long dureeNanos, long budgetNanos) {
+		this.resultat = resultat;
+		this.strategie = strategie;
+		this.dureeNanos = dureeNanos;
+		this.budgetNanos = budgetNanos;
+	}
+
+	/**
+	 * @return le nombre de cartons de chaque combinaison et la borne inférieure
+	 */
+	public ResultatSolveur getResultat() {
+		return resultat;
+	}
+
+	/**
+	 * @return le nom de la stratégie qui a calculé les cartons. Exemple :
+	 *         "recherche"
+	 */
+	public String getStrategie() {
+		return strategie;
+	}
+
+	/**
+	 * @return la durée du calcul en nanosecondes
+	 */
+	public long getDureeNanos() {
+		return dureeNanos;
+	}
+
+	/**
+	 * @return le budget accordé au calcul en nanosecondes
+	 */
+	public long getBudgetNanos() {
+		return budgetNanos;
+	}
+
+	/**
+	 * @return vrai si le nombre de cartons atteint la borne inférieure : aucun
+	 *         emballage n'utilise moins de cartons
+	 */
+	public boolean isOptimalProuve() {
+		return resultat.isOptimalProuve();
+	}
+
+	/**
+	 * @return vrai si le calcul s'est arrêté à l'expiration du budget sans prouver
+	 *         l'optimalité : plus de temps aurait pu donner moins de cartons
+	 */
+	public boolean isBudgetEpuise() {
+		return !isOptimalProuve() && dureeNanos >= budgetNanos;
+	}
+
+	/**
+	 * Résumé du calcul. Exemple : "recherche : 8 cartons (optimal prouvé) en 0,2
+	 * ms"
+	 */
+	@Override
+	public String toString() {
+		return String.format("%s : %d cartons (%s) en %.1f ms", strategie, resultat.getNbCartons(),
+				isOptimalProuve() ? "optimal prouvé" : "écart maximum " + resultat.getEcart(),
+				dureeNanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+	}
+
+}
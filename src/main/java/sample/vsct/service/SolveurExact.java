@@ -0,0 +1,275 @@
+package sample.vsct.service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Solveur exact travaillant uniquement sur le nombre de colis de chaque taille.
+ * Son temps de calcul ne dépend pas du nombre de colis.
+ *
+ * <ol>
+ * <li>La relaxation linéaire ({@link RelaxationLineaire}) est résolue
+ * exactement. Sa valeur arrondie au supérieur est une borne inférieure du
+ * nombre de cartons.</li>
+ * <li>On garde la partie entière du nombre de cartons de chaque combinaison de
+ * la solution linéaire. Au plus une combinaison par taille de colis est
+ * fractionnaire : il reste donc moins de capacité * nombre de tailles colis à
+ * emballer.</li>
+ * <li>Ces colis restants sont emballés de manière optimale par une recherche
+ * exhaustive mémorisée.</li>
+ * </ol>
+ *
+ * Les colis de la taille d'un carton sont d'abord emballés seuls : la recherche
+ * exhaustive ne code que les tailles inférieures à la capacité.
+ *
+ * Si le nombre de cartons obtenu atteint la borne inférieure, l'emballage est
+ * prouvé optimal. Les petites entrées sont directement résolues par la
+ * recherche exhaustive, et sont donc toujours prouvées optimales.
+ *
+ * @author Gaetan
+ *
+ */
+public final class SolveurExact {
+
+	final static Logger logger = Logger.getLogger(SolveurExact.class);
+
+	/** Nombre de bits utilisés pour coder le nombre de colis d'une taille */
+	private static final int NB_BITS_PAR_TAILLE = 7;
+
+	/** Plus grande capacité de carton dont l'état tient sur un long */
+	public static final int CAPACITE_CARTON_MAX = (Long.SIZE - 1) / NB_BITS_PAR_TAILLE + 1;
+
+	/** Nombre maximum de colis d'une taille pour la recherche exhaustive */
+	static final long NB_COLIS_MAX_RECHERCHE = (1 << NB_BITS_PAR_TAILLE) - 1;
+
+	/** Nombre maximum d'états de la recherche exhaustive sur toute l'entrée */
+	static final long NB_ETATS_MAX_RECHERCHE = 200000;
+
+	private SolveurExact() {
+	}
+
+	/**
+	 * Emballe les colis avec le minimum de cartons
+	 *
+	 * @param nbColisParTaille
+	 *            Indice : taille des colis. Valeur : nombre de colis ayant cette
+	 *            taille. Le tableau n'est pas modifié
+	 * @param tableCombinaisons
+	 *            table des combinaisons de taille
+	 * @return le nombre de cartons de chaque combinaison, et la borne inférieure
+	 */
+	public static ResultatSolveur resoudre(long[] nbColisParTaille, TableCombinaisons tableCombinaisons) {
+		logger.debug("Emballage exact des colis dans les cartons");
+		long[] nbColisRestants = nbColisParTaille.clone();
+		long[] nbCartonsParCombinaison = new long[tableCombinaisons.getNbCombinaisons()];
+		long nbCartonsPleins = emballerColisPleins(nbColisRestants, tableCombinaisons, nbCartonsParCombinaison);
+
+		if (nbEtatsRecherche(nbColisRestants) <= NB_ETATS_MAX_RECHERCHE) {
+			// Petite entrée : la recherche exhaustive donne directement l'optimum
+			long nbCartons = new RechercheExhaustive(tableCombinaisons).emballer(nbColisRestants,
+					nbCartonsParCombinaison);
+			return new ResultatSolveur(tableCombinaisons, nbCartonsParCombinaison, nbCartonsPleins + nbCartons);
+		}
+
+		RelaxationLineaire relaxation = RelaxationLineaire.resoudre(nbColisRestants, tableCombinaisons);
+		relaxation.arrondirInferieur(nbColisRestants, nbCartonsParCombinaison, tableCombinaisons);
+		new RechercheExhaustive(tableCombinaisons).emballer(nbColisRestants, nbCartonsParCombinaison);
+		ResultatSolveur resultat = new ResultatSolveur(tableCombinaisons, nbCartonsParCombinaison,
+				nbCartonsPleins + relaxation.getBorneInferieure());
+		if (!resultat.isOptimalProuve()) {
+			logger.warn(String.format("Emballage non prouvé optimal : %d cartons pour une borne inférieure de %d",
+					resultat.getNbCartons(), resultat.getBorneInferieure()));
+		}
+		return resultat;
+	}
+
+	/**
+	 * Emballe chaque colis de la taille d'un carton seul dans son carton : aucun
+	 * autre colis ne peut l'accompagner
+	 *
+	 * @param nbColisParTaille
+	 *            colis à emballer. Les colis de la taille d'un carton en sont
+	 *            retirés
+	 * @param tableCombinaisons
+	 *            table des combinaisons de taille
+	 * @param nbCartonsParCombinaison
+	 *            nombre de cartons pour chaque combinaison, à compléter
+	 * @return le nombre de cartons ajoutés
+	 */
+	private static long emballerColisPleins(long[] nbColisParTaille, TableCombinaisons tableCombinaisons,
+			long[] nbCartonsParCombinaison) {
+		int capaciteCarton = tableCombinaisons.getCapaciteCarton();
+		if (capaciteCarton >= nbColisParTaille.length || nbColisParTaille[capaciteCarton] == 0) {
+			return 0;
+		}
+		long nbCartons = nbColisParTaille[capaciteCarton];
+		for (int combinaison = 0; combinaison < tableCombinaisons.getNbCombinaisons(); combinaison++) {
+			if (tableCombinaisons.getNbColis(combinaison) == 1
+					&& tableCombinaisons.getMultiplicite(combinaison, capaciteCarton) == 1) {
+				nbCartonsParCombinaison[combinaison] += nbCartons;
+				nbColisParTaille[capaciteCarton] = 0;
+				return nbCartons;
+			}
+		}
+		throw new IllegalStateException(
+				String.format("Combinaison d'un colis de taille %d absente de la table", capaciteCarton));
+	}
+
+	/**
+	 * @return le nombre d'états d'une recherche exhaustive sur ces colis (borne
+	 *         supérieure), ou Long.MAX_VALUE si elle n'est pas envisageable
+	 */
+	private static long nbEtatsRecherche(long[] nbColisParTaille) {
+		long nbEtats = 1;
+		for (int taille = 1; taille < nbColisParTaille.length; taille++) {
+			if (nbColisParTaille[taille] > NB_COLIS_MAX_RECHERCHE) {
+				return Long.MAX_VALUE;
+			}
+			nbEtats *= nbColisParTaille[taille] + 1;
+			if (nbEtats > NB_ETATS_MAX_RECHERCHE) {
+				return Long.MAX_VALUE;
+			}
+		}
+		return nbEtats;
+	}
+
+	/**
+	 * Recherche exhaustive du nombre minimum de cartons, mémorisée par état (le
+	 * nombre de colis restants de chaque taille, codé sur un long).
+	 *
+	 * Le carton contenant le plus grand colis restant est choisi parmi les
+	 * combinaisons auxquelles on ne peut plus ajouter aucun colis restant : il
+	 * existe toujours une solution optimale de cette forme, car ajouter un colis
+	 * à un carton n'augmente pas le nombre de cartons.
+	 */
+	private static final class RechercheExhaustive {
+
+		private final TableCombinaisons tableCombinaisons;
+
+		private final int capaciteCarton;
+
+		/** Clé : état. Valeur : nombre de cartons (32 bits hauts) et combinaison choisie */
+		private final Map<Long, Long> memoire = new HashMap<Long, Long>();
+
+		RechercheExhaustive(TableCombinaisons tableCombinaisons) {
+			this.tableCombinaisons = tableCombinaisons;
+			this.capaciteCarton = tableCombinaisons.getCapaciteCarton();
+			if (capaciteCarton > CAPACITE_CARTON_MAX) {
+				throw new IllegalArgumentException(
+						String.format("Capacité de carton trop grande (%d) pour la recherche exhaustive",
+								capaciteCarton));
+			}
+		}
+
+		/**
+		 * Emballe tous les colis restants de manière optimale
+		 *
+		 * @param nbColisParTaille
+		 *            colis à emballer (chaque nombre inférieur à
+		 *            {@link SolveurExact#NB_COLIS_MAX_RECHERCHE}). Ils en sont
+		 *            retirés
+		 * @param nbCartonsParCombinaison
+		 *            nombre de cartons pour chaque combinaison, à compléter
+		 * @return le nombre de cartons ajoutés
+		 */
+		long emballer(long[] nbColisParTaille, long[] nbCartonsParCombinaison) {
+			long etat = coder(nbColisParTaille);
+			long nbCartons = nbCartons(etat);
+			// Reconstruction de la solution à partir des choix mémorisés
+			while (etat != 0) {
+				int combinaison = (int) (long) memoire.get(etat);
+				nbCartonsParCombinaison[combinaison]++;
+				for (int i = tableCombinaisons.getDebutTailles(combinaison); i < tableCombinaisons
+						.getFinTailles(combinaison); i++) {
+					int taille = tableCombinaisons.getTaille(i);
+					nbColisParTaille[taille] -= tableCombinaisons.getFrequence(i);
+					etat -= (long) tableCombinaisons.getFrequence(i) << decalage(taille);
+				}
+			}
+			return nbCartons;
+		}
+
+		private long nbCartons(long etat) {
+			if (etat == 0) {
+				return 0;
+			}
+			Long memorise = memoire.get(etat);
+			if (memorise != null) {
+				return memorise >>> 32;
+			}
+
+			int plusGrandeTaille = capaciteCarton - 1;
+			while (nombre(etat, plusGrandeTaille) == 0) {
+				plusGrandeTaille--;
+			}
+			long meilleur = Long.MAX_VALUE;
+			int meilleureCombinaison = -1;
+			for (int combinaison = 0; combinaison < tableCombinaisons.getNbCombinaisons(); combinaison++) {
+				if (tableCombinaisons.getMultiplicite(combinaison, plusGrandeTaille) == 0) {
+					continue;
+				}
+				long etatSuivant = retirer(etat, combinaison);
+				if (etatSuivant < 0
+						|| peutAjouterColis(etatSuivant, capaciteCarton - tableCombinaisons.getTotal(combinaison))) {
+					continue;
+				}
+				long nbCartons = 1 + nbCartons(etatSuivant);
+				if (nbCartons < meilleur) {
+					meilleur = nbCartons;
+					meilleureCombinaison = combinaison;
+				}
+			}
+			memoire.put(etat, meilleur << 32 | meilleureCombinaison);
+			return meilleur;
+		}
+
+		/**
+		 * @return l'état sans les colis de la combinaison, -1 s'il n'y a pas assez de
+		 *         colis
+		 */
+		private long retirer(long etat, int combinaison) {
+			for (int i = tableCombinaisons.getDebutTailles(combinaison); i < tableCombinaisons
+					.getFinTailles(combinaison); i++) {
+				int taille = tableCombinaisons.getTaille(i);
+				int frequence = tableCombinaisons.getFrequence(i);
+				if (taille >= capaciteCarton || nombre(etat, taille) < frequence) {
+					return -1;
+				}
+				etat -= (long) frequence << decalage(taille);
+			}
+			return etat;
+		}
+
+		/**
+		 * @return vrai s'il reste un colis de taille inférieure ou égale à la place
+		 *         libre
+		 */
+		private boolean peutAjouterColis(long etat, int placeLibre) {
+			for (int taille = 1; taille <= placeLibre && taille < capaciteCarton; taille++) {
+				if (nombre(etat, taille) > 0) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private long coder(long[] nbColisParTaille) {
+			long etat = 0;
+			for (int taille = 1; taille < nbColisParTaille.length && taille < capaciteCarton; taille++) {
+				etat |= nbColisParTaille[taille] << decalage(taille);
+			}
+			return etat;
+		}
+
+		private static int nombre(long etat, int taille) {
+			return (int) (etat >>> decalage(taille)) & (int) NB_COLIS_MAX_RECHERCHE;
+		}
+
+		private static int decalage(int taille) {
+			return (taille - 1) * NB_BITS_PAR_TAILLE;
+		}
+	}
+
+}
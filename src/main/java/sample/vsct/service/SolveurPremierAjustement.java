@@ -0,0 +1,125 @@
+package sample.vsct.service;
+
+import java.util.Arrays;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Emballage pour les grandes capacités de carton, sans énumérer toutes les
+ * combinaisons de tailles (leur nombre croît exponentiellement avec la
+ * capacité).
+ *
+ * L'algorithme est le premier ajustement décroissant, appliqué au nombre de
+ * colis de chaque taille plutôt qu'aux colis un par un : un carton est rempli
+ * en prenant à chaque fois le plus grand colis restant qui y tient encore. La
+ * combinaison obtenue est ensuite répétée autant de fois que les colis restants
+ * le permettent, puisque les cartons suivants seraient remplis à l'identique.
+ * Seules les tailles présentes sont parcourues, et le temps de calcul ne dépend
+ * pas du nombre de colis.
+ *
+ * @author Gaetan
+ *
+ */
+final class SolveurPremierAjustement {
+
+	final static Logger logger = Logger.getLogger(SolveurPremierAjustement.class);
+
+	/** Nom rapporté par {@link ResultatStrategie} pour les grandes capacités */
+	static final String NOM = "premier-ajustement";
+
+	private SolveurPremierAjustement() {
+	}
+
+	/**
+	 * Emballe les colis en générant uniquement les combinaisons utilisées
+	 *
+	 * @param nbColisParTaille
+	 *            Indice : taille des colis. Valeur : nombre de colis ayant cette
+	 *            taille. Le tableau n'est pas modifié
+	 * @param capaciteCarton
+	 *            capacité d'un carton
+	 * @return les combinaisons générées, le nombre de cartons de chacune et une
+	 *         borne inférieure
+	 */
+	static ResultatSolveur resoudre(long[] nbColisParTaille, int capaciteCarton) {
+		logger.debug("Emballage des colis par premier ajustement décroissant");
+
+		// Tailles présentes, par ordre décroissant
+		int nbTailles = 0;
+		int[] tailles = new int[nbColisParTaille.length];
+		long[] nbColisRestants = new long[nbColisParTaille.length];
+		for (int taille = nbColisParTaille.length - 1; taille > 0; taille--) {
+			if (nbColisParTaille[taille] > 0) {
+				tailles[nbTailles] = taille;
+				nbColisRestants[nbTailles] = nbColisParTaille[taille];
+				nbTailles++;
+			}
+		}
+
+		CombinaisonsGenerees combinaisons = new CombinaisonsGenerees(capaciteCarton);
+		long[] nbCartonsParCombinaison = new long[16];
+		int[] indicesCombinaison = new int[nbTailles];
+		int[] taillesCombinaison = new int[nbTailles];
+		int[] frequencesCombinaison = new int[nbTailles];
+		int premiereTaille = 0;
+		while (true) {
+			while (premiereTaille < nbTailles && nbColisRestants[premiereTaille] == 0) {
+				premiereTaille++;
+			}
+			if (premiereTaille == nbTailles) {
+				break;
+			}
+
+			// Remplissage d'un carton avec les plus grands colis qui y tiennent
+			int placeLibre = capaciteCarton;
+			int nbTaillesCombinaison = 0;
+			for (int i = premiereTaille; i < nbTailles && placeLibre >= tailles[nbTailles - 1]; i++) {
+				if (nbColisRestants[i] == 0 || tailles[i] > placeLibre) {
+					continue;
+				}
+				int frequence = (int) Math.min(nbColisRestants[i], placeLibre / tailles[i]);
+				indicesCombinaison[nbTaillesCombinaison] = i;
+				taillesCombinaison[nbTaillesCombinaison] = tailles[i];
+				frequencesCombinaison[nbTaillesCombinaison] = frequence;
+				nbTaillesCombinaison++;
+				placeLibre -= frequence * tailles[i];
+			}
+
+			// Le même carton est répété tant qu'il reste assez de colis
+			long nbCartons = Long.MAX_VALUE;
+			for (int j = 0; j < nbTaillesCombinaison; j++) {
+				nbCartons = Math.min(nbCartons, nbColisRestants[indicesCombinaison[j]] / frequencesCombinaison[j]);
+			}
+			for (int j = 0; j < nbTaillesCombinaison; j++) {
+				nbColisRestants[indicesCombinaison[j]] -= nbCartons * frequencesCombinaison[j];
+			}
+			int combinaison = combinaisons.ajouter(taillesCombinaison, frequencesCombinaison, nbTaillesCombinaison);
+			if (combinaison == nbCartonsParCombinaison.length) {
+				nbCartonsParCombinaison = Arrays.copyOf(nbCartonsParCombinaison, 2 * combinaison);
+			}
+			nbCartonsParCombinaison[combinaison] += nbCartons;
+		}
+
+		return new ResultatSolveur(combinaisons,
+				Arrays.copyOf(nbCartonsParCombinaison, combinaisons.getNbCombinaisons()),
+				borneInferieure(nbColisParTaille, capaciteCarton));
+	}
+
+	/**
+	 * @return une borne inférieure du nombre de cartons : le volume total divisé
+	 *         par la capacité, ou le nombre de colis plus grands que la moitié
+	 *         d'un carton (deux d'entre eux ne tiennent pas ensemble)
+	 */
+	static long borneInferieure(long[] nbColisParTaille, int capaciteCarton) {
+		long volumeTotal = 0;
+		long nbGrandsColis = 0;
+		for (int taille = 1; taille < nbColisParTaille.length; taille++) {
+			volumeTotal += taille * nbColisParTaille[taille];
+			if (2 * taille > capaciteCarton) {
+				nbGrandsColis += nbColisParTaille[taille];
+			}
+		}
+		return Math.max((volumeTotal + capaciteCarton - 1) / capaciteCarton, nbGrandsColis);
+	}
+
+}
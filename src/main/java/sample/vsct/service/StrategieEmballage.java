@@ -0,0 +1,52 @@
+package sample.vsct.service;
+
+import sample.vsct.mesure.Mesures;
+
+/**
+ * Stratégie de calcul de l'emballage, branchée derrière
+ * {@link EmballageService} : elle choisit le nombre de cartons de chaque
+ * combinaison de la table à partir du nombre de colis de chaque taille.
+ *
+ * Une stratégie reçoit un budget de temps : une stratégie rapide peut
+ * l'ignorer, une stratégie qui améliore sa solution s'arrête au plus tard à
+ * son expiration et rend la meilleure solution trouvée. Les stratégies
+ * fournies sont {@link StrategieGloutonne}, {@link StrategieExacte} et
+ * {@link StrategieRecherche}.
+ *
+ * Une stratégie est partagée par tous les appels d'un service : elle ne doit
+ * pas garder d'état entre deux appels.
+ *
+ * @author Gaetan
+ *
+ */
+public interface StrategieEmballage {
+
+	/** Budget des appels sans limite de temps */
+	long SANS_LIMITE = Long.MAX_VALUE;
+
+	/**
+	 * @return le nom de la stratégie, repris par {@link ResultatStrategie}.
+	 *         Exemple : "glouton"
+	 */
+	String getNom();
+
+	/**
+	 * Emballe les colis
+	 *
+	 * @param nbColisParTaille
+	 *            Indice : taille des colis. Valeur : nombre de colis ayant cette
+	 *            taille. Le tableau n'est pas modifié
+	 * @param tableCombinaisons
+	 *            table des combinaisons de la capacité des cartons
+	 * @param budgetNanos
+	 *            durée maximum du calcul en nanosecondes, ou
+	 *            {@link #SANS_LIMITE}
+	 * @param mesures
+	 *            reçoit la durée de la phase {@link sample.vsct.mesure.Phase#EMBALLAGE}
+	 * @return le nombre de cartons de chaque combinaison de la table, et une borne
+	 *         inférieure
+	 */
+	ResultatSolveur resoudre(long[] nbColisParTaille, TableCombinaisons tableCombinaisons, long budgetNanos,
+			Mesures mesures);
+
+}
@@ -0,0 +1,40 @@
+package sample.vsct.service;
+
+import sample.vsct.mesure.Mesures;
+import sample.vsct.mesure.Phase;
+
+/**
+ * Stratégie exacte : le minimum de cartons, prouvé par une borne inférieure
+ * (voir {@link SolveurExact}). Pour les traitements de masse : le calcul prend
+ * de quelques dizaines de microsecondes à quelques dizaines de millisecondes et
+ * n'est pas interrompu par le budget. Limitée aux cartons de capacité
+ * {@link SolveurExact#CAPACITE_CARTON_MAX} au plus.
+ *
+ * @author Gaetan
+ *
+ */
+public final class StrategieExacte implements StrategieEmballage {
+
+	@Override
+	/*
+	 * (non-Javadoc)
+	 * @see sample.vsct.service.StrategieEmballage#getNom()
+	 */
+	public String getNom() {
+		return "exact";
+	}
+
+	@Override
+	/*
+	 * (non-Javadoc)
+	 * @see sample.vsct.service.StrategieEmballage#resoudre(long[], sample.vsct.service.TableCombinaisons, long, sample.vsct.mesure.Mesures)
+	 */
+	public ResultatSolveur resoudre(long[] nbColisParTaille, TableCombinaisons tableCombinaisons, long budgetNanos,
+			Mesures mesures) {
+		long debut = System.nanoTime();
+		ResultatSolveur resultat = SolveurExact.resoudre(nbColisParTaille, tableCombinaisons);
+		mesures.enregistrerDuree(Phase.EMBALLAGE, System.nanoTime() - debut);
+		return resultat;
+	}
+
+}
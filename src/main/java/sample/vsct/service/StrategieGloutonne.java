@@ -0,0 +1,51 @@
+package sample.vsct.service;
+
+import sample.vsct.mesure.Mesures;
+import sample.vsct.mesure.Phase;
+
+/**
+ * Stratégie gloutonne : les combinaisons de la table sont prises dans l'ordre
+ * de priorité (voir {@link EmballageServiceImpl#faireCartons}). Quelques
+ * microsecondes quel que soit le nombre de colis ; le budget est ignoré.
+ *
+ * @author Gaetan
+ *
+ */
+public final class StrategieGloutonne implements StrategieEmballage {
+
+	@Override
+	/*
+	 * (non-Javadoc)
+	 * @see sample.vsct.service.StrategieEmballage#getNom()
+	 */
+	public String getNom() {
+		return "glouton";
+	}
+
+	@Override
+	/*
+	 * (non-Javadoc)
+	 * @see sample.vsct.service.StrategieEmballage#resoudre(long[], sample.vsct.service.TableCombinaisons, long, sample.vsct.mesure.Mesures)
+	 */
+	public ResultatSolveur resoudre(long[] nbColisParTaille, TableCombinaisons tableCombinaisons, long budgetNanos,
+			Mesures mesures) {
+		long debut = System.nanoTime();
+		// La borne inférieure triviale : le volume total des colis divisé par la
+		// capacité d'un carton
+		long volumeTotal = 0;
+		for (int taille = 1; taille < nbColisParTaille.length; taille++) {
+			volumeTotal += taille * nbColisParTaille[taille];
+		}
+		int capaciteCarton = tableCombinaisons.getCapaciteCarton();
+		long borneInferieure = (volumeTotal + capaciteCarton - 1) / capaciteCarton;
+
+		// Réalise les cartons à partir de la table des combinaisons et des taille de
+		// colis
+		long[] nbCartonsParCombinaison = new long[tableCombinaisons.getNbCombinaisons()];
+		EmballageServiceImpl.faireCartons(nbColisParTaille.clone(), tableCombinaisons, nbCartonsParCombinaison);
+		ResultatSolveur resultat = new ResultatSolveur(tableCombinaisons, nbCartonsParCombinaison, borneInferieure);
+		mesures.enregistrerDuree(Phase.EMBALLAGE, System.nanoTime() - debut);
+		return resultat;
+	}
+
+}
@@ -0,0 +1,224 @@
+package sample.vsct.service;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import sample.vsct.mesure.Mesures;
+import sample.vsct.mesure.Phase;
+
+/**
+ * Stratégie de recherche améliorante, interruptible à tout moment : elle part
+ * de la solution gloutonne puis l'améliore jusqu'à atteindre la borne
+ * inférieure (la solution est alors prouvée optimale) ou l'expiration du
+ * budget, et rend la meilleure solution trouvée.
+ *
+ * Une solution est décrite par un plafond de cartons pour chaque combinaison :
+ * l'algorithme glouton respecte les plafonds, puis emballe les colis restants
+ * sans plafond. Chaque essai baisse le plafond d'une combinaison utilisée (les
+ * pièges de l'algorithme glouton, comme le carton 532 de l'entrée 23344445,
+ * sont des combinaisons prises trop tôt), ou lève un plafond. Un
+ * essai ne coûte qu'un passage sur la table : quelques microsecondes.
+ *
+ * La borne inférieure part de ceil(volume / capacité) et du nombre de grands
+ * colis. Elle est resserrée par la relaxation linéaire ({@link RelaxationLineaire})
+ * quand la recherche stagne, si le budget restant le permet : ce calcul n'est
+ * pas interruptible.
+ *
+ * Les essais sont tirés par un générateur initialisé à partir des colis : le
+ * même appel donne le même résultat, à budget suffisant.
+ *
+ * @author Gaetan
+ *
+ */
+public final class StrategieRecherche implements StrategieEmballage {
+
+	final static Logger logger = Logger.getLogger(StrategieRecherche.class);
+
+	/** Nombre d'essais sans amélioration après lesquels la recherche s'arrête */
+	public static final int NB_ESSAIS_SANS_AMELIORATION_DEFAUT = 5000;
+
+	/** Budget restant minimum pour calculer la relaxation linéaire (plus de 10 ms au pire) */
+	static final long BUDGET_MIN_RELAXATION_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+	/** Plafond d'une combinaison sans plafond */
+	private static final long SANS_PLAFOND = Long.MAX_VALUE;
+
+	private final int nbEssaisSansAmeliorationMax;
+
+	public StrategieRecherche() {
+		this(NB_ESSAIS_SANS_AMELIORATION_DEFAUT);
+	}
+
+	/**
+	 * @param nbEssaisSansAmeliorationMax
+	 *            nombre d'essais sans amélioration après lesquels la recherche
+	 *            s'arrête, même s'il reste du budget
+	 */
+	public StrategieRecherche(int nbEssaisSansAmeliorationMax) {
+		if (nbEssaisSansAmeliorationMax < 1) {
+			throw new IllegalArgumentException(String.format(
+					"Le nombre d'essais sans amélioration doit être positif : %d", nbEssaisSansAmeliorationMax));
+		}
+		this.nbEssaisSansAmeliorationMax = nbEssaisSansAmeliorationMax;
+	}
+
+	@Override
+	/*
+	 * (non-Javadoc)
+	 * @see sample.vsct.service.StrategieEmballage#getNom()
+	 */
+	public String getNom() {
+		return "recherche";
+	}
+
+	@Override
+	/*
+	 * (non-Javadoc)
+	 * @see sample.vsct.service.StrategieEmballage#resoudre(long[], sample.vsct.service.TableCombinaisons, long, sample.vsct.mesure.Mesures)
+	 */
+	public ResultatSolveur resoudre(long[] nbColisParTaille, TableCombinaisons tableCombinaisons, long budgetNanos,
+			Mesures mesures) {
+		long debut = System.nanoTime();
+		int nbCombinaisons = tableCombinaisons.getNbCombinaisons();
+		long[] nbColisRestants = new long[nbColisParTaille.length];
+
+		// Solution gloutonne : aucun plafond
+		long[] plafonds = new long[nbCombinaisons];
+		Arrays.fill(plafonds, SANS_PLAFOND);
+		long[] courante = new long[nbCombinaisons];
+		long nbCourante = emballer(nbColisParTaille, tableCombinaisons, plafonds, courante, nbColisRestants);
+		long[] meilleure = courante.clone();
+		long nbMeilleure = nbCourante;
+		long borneInferieure = SolveurPremierAjustement.borneInferieure(nbColisParTaille,
+				tableCombinaisons.getCapaciteCarton());
+		boolean relaxationFaite = false;
+
+		long[] plafondsEssai = new long[nbCombinaisons];
+		long[] essai = new long[nbCombinaisons];
+		Random aleatoire = new Random(Arrays.hashCode(nbColisParTaille));
+		long nbEssais = 0;
+		int nbEssaisSansAmelioration = 0;
+		while (nbMeilleure > borneInferieure && nbEssaisSansAmelioration < nbEssaisSansAmeliorationMax
+				&& System.nanoTime() - debut < budgetNanos) {
+			if (!relaxationFaite && nbEssaisSansAmelioration >= nbEssaisSansAmeliorationMax / 10
+					&& budgetNanos - (System.nanoTime() - debut) >= BUDGET_MIN_RELAXATION_NANOS) {
+				// La recherche stagne : la solution est peut-être déjà optimale
+				borneInferieure = Math.max(borneInferieure,
+						RelaxationLineaire.resoudre(nbColisParTaille, tableCombinaisons).getBorneInferieure());
+				relaxationFaite = true;
+				continue;
+			}
+			System.arraycopy(plafonds, 0, plafondsEssai, 0, nbCombinaisons);
+			if (!modifierPlafond(courante, plafondsEssai, aleatoire)) {
+				break;
+			}
+			long nbEssai = emballer(nbColisParTaille, tableCombinaisons, plafondsEssai, essai, nbColisRestants);
+			nbEssais++;
+			nbEssaisSansAmelioration++;
+			if (nbEssai <= nbCourante) {
+				// Les essais aussi bons sont acceptés, pour traverser les plateaux
+				System.arraycopy(plafondsEssai, 0, plafonds, 0, nbCombinaisons);
+				System.arraycopy(essai, 0, courante, 0, nbCombinaisons);
+				nbCourante = nbEssai;
+			}
+			if (nbEssai < nbMeilleure) {
+				System.arraycopy(essai, 0, meilleure, 0, nbCombinaisons);
+				nbMeilleure = nbEssai;
+				nbEssaisSansAmelioration = 0;
+			}
+		}
+		long duree = System.nanoTime() - debut;
+		mesures.enregistrerDuree(Phase.EMBALLAGE, duree);
+		if (logger.isDebugEnabled()) {
+			logger.debug(String.format("Recherche : %d essais en %d µs, %d cartons pour une borne inférieure de %d",
+					nbEssais, TimeUnit.NANOSECONDS.toMicros(duree), nbMeilleure, borneInferieure));
+		}
+		return new ResultatSolveur(tableCombinaisons, meilleure, borneInferieure);
+	}
+
+	/**
+	 * Tire un essai voisin : baisse le plafond d'une combinaison utilisée par la
+	 * solution courante, ou (une fois sur quatre, s'il y en a) lève le plafond
+	 * d'une combinaison
+	 *
+	 * @return faux si aucune modification n'est possible
+	 */
+	private static boolean modifierPlafond(long[] courante, long[] plafonds, Random aleatoire) {
+		int nbUtilisees = 0;
+		int nbPlafonnees = 0;
+		for (int combinaison = 0; combinaison < plafonds.length; combinaison++) {
+			if (courante[combinaison] > 0) {
+				nbUtilisees++;
+			}
+			if (plafonds[combinaison] != SANS_PLAFOND) {
+				nbPlafonnees++;
+			}
+		}
+		boolean leverPlafond = nbPlafonnees > 0 && (nbUtilisees == 0 || aleatoire.nextInt(4) == 0);
+		if (!leverPlafond && nbUtilisees == 0) {
+			return false;
+		}
+		int choix = aleatoire.nextInt(leverPlafond ? nbPlafonnees : nbUtilisees);
+		for (int combinaison = 0; combinaison < plafonds.length; combinaison++) {
+			if (leverPlafond ? plafonds[combinaison] != SANS_PLAFOND : courante[combinaison] > 0) {
+				if (choix-- == 0) {
+					// Une baisse sur deux interdit la combinaison, les autres la réduisent au
+					// hasard
+					plafonds[combinaison] = leverPlafond ? SANS_PLAFOND
+							: aleatoire.nextBoolean() ? 0 : (long) (aleatoire.nextDouble() * courante[combinaison]);
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Algorithme glouton avec plafonds : les combinaisons sont prises dans l'ordre
+	 * de priorité sans dépasser leur plafond, puis les colis restants sont
+	 * emballés sans plafond
+	 *
+	 * @param nbColisParTaille
+	 *            colis à emballer (non modifié)
+	 * @param plafonds
+	 *            nombre maximum de cartons de chaque combinaison lors du premier
+	 *            passage
+	 * @param nbCartonsParCombinaison
+	 *            nombre de cartons de chaque combinaison (rempli)
+	 * @param nbColisRestants
+	 *            tableau de travail, de la taille de nbColisParTaille
+	 * @return le nombre total de cartons
+	 */
+	private static long emballer(long[] nbColisParTaille, Combinaisons tableCombinaisons, long[] plafonds,
+			long[] nbCartonsParCombinaison, long[] nbColisRestants) {
+		System.arraycopy(nbColisParTaille, 0, nbColisRestants, 0, nbColisParTaille.length);
+		long nbCartons = 0;
+		for (int passage = 0; passage < 2; passage++) {
+			for (int combinaison = 0; combinaison < tableCombinaisons.getNbCombinaisons(); combinaison++) {
+				int debut = tableCombinaisons.getDebutTailles(combinaison);
+				int fin = tableCombinaisons.getFinTailles(combinaison);
+				long nbCartonsCombinaison = passage == 0 ? plafonds[combinaison] : Long.MAX_VALUE;
+				for (int i = debut; i < fin && nbCartonsCombinaison > 0; i++) {
+					nbCartonsCombinaison = Math.min(nbCartonsCombinaison,
+							nbColisRestants[tableCombinaisons.getTaille(i)] / tableCombinaisons.getFrequence(i));
+				}
+				if (passage == 0) {
+					nbCartonsParCombinaison[combinaison] = 0;
+				}
+				if (nbCartonsCombinaison > 0) {
+					for (int i = debut; i < fin; i++) {
+						nbColisRestants[tableCombinaisons.getTaille(i)] -= nbCartonsCombinaison
+								* tableCombinaisons.getFrequence(i);
+					}
+					nbCartonsParCombinaison[combinaison] += nbCartonsCombinaison;
+					nbCartons += nbCartonsCombinaison;
+				}
+			}
+		}
+		return nbCartons;
+	}
+
+}
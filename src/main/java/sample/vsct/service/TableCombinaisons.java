@@ -0,0 +1,357 @@
+package sample.vsct.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Table immuable des combinaisons de tailles de colis pour une capacité de
+ * carton donnée. La table est calculée une seule fois par capacité puis
+ * partagée entre tous les appels (et tous les threads).
+ *
+ * Les combinaisons sont rangées dans l'ordre de priorité de l'emballage : par
+ * taille totale décroissante, puis par nombre de colis croissant. Chaque
+ * combinaison est encodée sous forme de tableaux d'entiers : pour chaque taille
+ * distincte de la combinaison, on stocke la taille et sa fréquence.
+ *
+ * @author Gaetan
+ *
+ */
+public final class TableCombinaisons implements Combinaisons {
+
+	final static Logger logger = Logger.getLogger(TableCombinaisons.class);
+
+	/**
+	 * Jusqu'à cette capacité, les tailles des libellés ne sont pas séparées (seule
+	 * la combinaison "10" a une taille à deux chiffres)
+	 */
+	static final int CAPACITE_LIBELLE_SANS_SEPARATEUR = 10;
+
+	private static final ConcurrentMap<Integer, TableCombinaisons> TABLES = new ConcurrentHashMap<Integer, TableCombinaisons>();
+
+	private final int capaciteCarton;
+
+	private final int nbCombinaisons;
+
+	/**
+	 * Indice de la première taille distincte de chaque combinaison dans
+	 * {@link #tailles} et {@link #frequences}. La combinaison c occupe les indices
+	 * [debutTailles[c], debutTailles[c + 1][
+	 */
+	private final int[] debutTailles;
+
+	private final int[] tailles;
+
+	private final int[] frequences;
+
+	/** Multiplicité de chaque taille : multiplicites[c * (capacite + 1) + taille] */
+	private final int[] multiplicites;
+
+	private final int[] totaux;
+
+	private final int[] nbColis;
+
+	/** Libellé de chaque combinaison. Exemple : "721" */
+	private final String[] libelles;
+
+	/**
+	 * Récupère la table des combinaisons pour une capacité de carton. La table
+	 * n'est calculée qu'au premier appel pour cette capacité.
+	 *
+	 * @param capaciteCarton
+	 *            capacité du carton
+	 * @return la table partagée des combinaisons
+	 */
+	public static TableCombinaisons pour(int capaciteCarton) {
+		TableCombinaisons table = TABLES.get(capaciteCarton);
+		if (table == null) {
+			TableCombinaisons nouvelleTable = new TableCombinaisons(capaciteCarton);
+			table = TABLES.putIfAbsent(capaciteCarton, nouvelleTable);
+			if (table == null) {
+				table = nouvelleTable;
+			}
+		}
+		return table;
+	}
+
+	private TableCombinaisons(int capaciteCarton) {
+		logger.debug(String.format("Calcul de la table des combinaisons pour des cartons de taille %d", capaciteCarton));
+		this.capaciteCarton = capaciteCarton;
+
+		// Liste ordonnée de toutes les combinaisons, de la taille totale la plus
+		// grande à la plus petite
+		List<List<Integer>> combinaisons = new ArrayList<List<Integer>>();
+		Map<Integer, List<List<Integer>>> mapTailleTotalListeCombinaisons = creerMapCombinaisonsTaille(capaciteCarton);
+		trierListeCombinaisonsTaille(mapTailleTotalListeCombinaisons);
+		for (int tailleTotale = capaciteCarton; tailleTotale > 0; tailleTotale--) {
+			combinaisons.addAll(mapTailleTotalListeCombinaisons.get(tailleTotale));
+		}
+
+		// Encodage des combinaisons dans des tableaux d'entiers
+		nbCombinaisons = combinaisons.size();
+		debutTailles = new int[nbCombinaisons + 1];
+		multiplicites = new int[nbCombinaisons * (capaciteCarton + 1)];
+		totaux = new int[nbCombinaisons];
+		nbColis = new int[nbCombinaisons];
+		libelles = new String[nbCombinaisons];
+		int nbTaillesDistinctes = 0;
+		for (int c = 0; c < nbCombinaisons; c++) {
+			List<Integer> combinaison = combinaisons.get(c);
+			StringBuilder stringBuilder = new StringBuilder();
+			for (Integer taille : combinaison) {
+				if (multiplicites[c * (capaciteCarton + 1) + taille]++ == 0) {
+					nbTaillesDistinctes++;
+				}
+				totaux[c] += taille;
+				if (capaciteCarton > CAPACITE_LIBELLE_SANS_SEPARATEUR && stringBuilder.length() > 0) {
+					stringBuilder.append(SEPARATEUR_TAILLES);
+				}
+				stringBuilder.append(taille);
+			}
+			nbColis[c] = combinaison.size();
+			libelles[c] = stringBuilder.toString();
+		}
+		tailles = new int[nbTaillesDistinctes];
+		frequences = new int[nbTaillesDistinctes];
+		int indice = 0;
+		for (int c = 0; c < nbCombinaisons; c++) {
+			debutTailles[c] = indice;
+			for (int taille = capaciteCarton; taille > 0; taille--) {
+				int frequence = multiplicites[c * (capaciteCarton + 1) + taille];
+				if (frequence > 0) {
+					tailles[indice] = taille;
+					frequences[indice] = frequence;
+					indice++;
+				}
+			}
+		}
+		debutTailles[nbCombinaisons] = indice;
+	}
+
+	/**
+	 * Faire toutes les combinaisons de taille de colis pour une taille totale du
+	 * carton donnée en paramètre
+	 *
+	 * @param tailleCartonMax
+	 * @return Une map avec pour clé, le taille totale du carton et pour valeur, la
+	 *         liste des combinaisons de taille de colis qui ont pour total la clé
+	 *         de la map. Exemple : Clé 3 (taille total cartons). Valeur : <<3>,
+	 *         <2,1>, <1,1,1>> (liste des taille des colis). Clé 2. Valeur <2>,
+	 *         <1,1>
+	 */
+	private static Map<Integer, List<List<Integer>>> creerMapCombinaisonsTaille(Integer tailleCartonMax) {
+		logger.debug("Calcul de la liste des combinaisons de taille de colis pour chaque taille de carton");
+		// Initilisation de la map de retour avec le taille total 0 (qui aura pour clé
+		// une liste contenant une liste vide)
+		Map<Integer, List<List<Integer>>> mapTailleTotalListeCombinaisons = new HashMap<Integer, List<List<Integer>>>();
+		List<List<Integer>> listeVide = new ArrayList<List<Integer>>();
+		listeVide.add(new ArrayList<Integer>());
+		mapTailleTotalListeCombinaisons.put(0, listeVide);
+
+		// On parcours toutes les tailles totales de cartons jusqu'au tailleCartonMax.
+		// Ils seront les clés de la map de retour.
+		for (int tailleTotalCartonCourant = 1; tailleTotalCartonCourant <= tailleCartonMax; tailleTotalCartonCourant++) {
+			List<List<Integer>> listeCombinaisonsTailleCourant = new ArrayList<List<Integer>>();
+			/*
+			 * On parcours tous les tailles de colis de 1 jusqu'à tailleTotalCartonCourant.
+			 * Le but étant de construire la clé valeur courante à partir de la clé -valeur
+			 * précédente. Par exemple. Clé 1. Valeur <1>. Clé 2. Valeur : <2> + <1, toutes
+			 * les combinaisons de 1> soit <2> + <1,1>. Clé 3 : Valeur : <3>, <2, toutes les
+			 * combinaisons de 1>, <1, toutes les combinaisons de 2> soit <3>, <2,1>,
+			 * <1,1,1>. En sachant que nous avons retiré les doublons (<1,2> n'a pas été
+			 * pris en compte)
+			 */
+			for (int tailleColisCourant = 1; tailleColisCourant <= tailleTotalCartonCourant; tailleColisCourant++) {
+				// On clone les combinaisons pour une taille inférieure à la taille courante
+				List<List<Integer>> listeCombinaisonsCourant = clonerListeCombinaisonsTaille(
+						mapTailleTotalListeCombinaisons.get(tailleTotalCartonCourant - tailleColisCourant));
+				ListIterator<List<Integer>> listeCombinaisonsIterator = listeCombinaisonsCourant.listIterator();
+				while (listeCombinaisonsIterator.hasNext()) {
+					List<Integer> listeCombinaisons = listeCombinaisonsIterator.next();
+					// On ajoute la combinaison sauf si on créer un doublons. Par défaut, nous
+					// récupérerons les taille dans l'ordre croissant. Par exemple <2,1> mais pas
+					// <1,2>
+					if (listeCombinaisons.size() == 0
+							|| listeCombinaisons.get(listeCombinaisons.size() - 1) >= tailleColisCourant) {
+						listeCombinaisons.add(tailleColisCourant);
+					} else {
+						listeCombinaisonsIterator.remove();
+					}
+				}
+
+				listeCombinaisonsTailleCourant.addAll(listeCombinaisonsCourant);
+			}
+
+			mapTailleTotalListeCombinaisons.put(tailleTotalCartonCourant, listeCombinaisonsTailleCourant);
+		}
+
+		return mapTailleTotalListeCombinaisons;
+	}
+
+	/**
+	 * Trie les listes de combinaisons entre elles. Les combinaisons avec le minimum
+	 * de colis seront prioritaires pour faire un carton (car ils contiendront les
+	 * colis les plus "emcombrants"). Par exemple, si on a les colis suivants :
+	 * "2222288888". Alors il ne faut pas commencer par faire un carton <22222>,
+	 * sinon nous auront 6 cartons (1 avec <22222> et 5 avec <8>) alors que nous
+	 * pouvions en faire 5 (<82>). De même, si nous avons les colis suivants
+	 * "81127272", alors il ne faut pas commencer par faire un cartons <811>, sinon
+	 * nous aurons les cartons <72><72><2> soit 4 cartons. Alors que la version
+	 * optimisé est <82><721><721>
+	 *
+	 * @param mapTailleTotalListeCombinaisons
+	 */
+	private static void trierListeCombinaisonsTaille(Map<Integer, List<List<Integer>>> mapTailleTotalListeCombinaisons) {
+		logger.debug("Tri de la liste des combinaison de taille de colis");
+		for (List<List<Integer>> listeCombinaisonsTaille : mapTailleTotalListeCombinaisons.values()) {
+			Collections.sort(listeCombinaisonsTaille, new Comparator<List<Integer>>() {
+				@Override
+				public int compare(List<Integer> combinaison1, List<Integer> combinaison2) {
+					return combinaison1.size() - combinaison2.size();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Cloner la liste des combinaisons de taille
+	 *
+	 * @param listeCombinaisonTaille
+	 *            liste des combinaison de taille de colis à cloner
+	 * @return liste des combinaison de taille de colis cloné
+	 */
+	private static List<List<Integer>> clonerListeCombinaisonsTaille(List<List<Integer>> listeCombinaisonTaille) {
+		List<List<Integer>> listeCombinaisonTailleClone = new ArrayList<List<Integer>>();
+		// Parcours les combinaisons de taille
+		for (List<Integer> combinaison : listeCombinaisonTaille) {
+			List<Integer> combinaisonTailleClone = new ArrayList<Integer>();
+			// Parcours les taille d'une combinaison
+			for (Integer tailleColisCourant : combinaison) {
+				combinaisonTailleClone.add(Integer.valueOf(tailleColisCourant.intValue()));
+			}
+			listeCombinaisonTailleClone.add(combinaisonTailleClone);
+		}
+
+		return listeCombinaisonTailleClone;
+	}
+
+	/**
+	 * @return la capacité des cartons de cette table
+	 */
+	@Override
+	public int getCapaciteCarton() {
+		return capaciteCarton;
+	}
+
+	/**
+	 * @param combinaison
+	 *            indice de la combinaison
+	 * @return la capacité des cartons, la même pour toutes les combinaisons
+	 */
+	@Override
+	public int getCapacite(int combinaison) {
+		return capaciteCarton;
+	}
+
+	/**
+	 * @return le nombre de combinaisons de la table
+	 */
+	@Override
+	public int getNbCombinaisons() {
+		return nbCombinaisons;
+	}
+
+	/**
+	 * @param combinaison
+	 *            indice de la combinaison
+	 * @return l'indice de la première taille distincte de la combinaison (à
+	 *         utiliser avec {@link #getTaille(int)} et {@link #getFrequence(int)})
+	 */
+	@Override
+	public int getDebutTailles(int combinaison) {
+		return debutTailles[combinaison];
+	}
+
+	/**
+	 * @param combinaison
+	 *            indice de la combinaison
+	 * @return l'indice suivant la dernière taille distincte de la combinaison
+	 */
+	@Override
+	public int getFinTailles(int combinaison) {
+		return debutTailles[combinaison + 1];
+	}
+
+	/**
+	 * @param indiceTaille
+	 *            indice compris entre {@link #getDebutTailles(int)} et
+	 *            {@link #getFinTailles(int)}
+	 * @return la taille de colis
+	 */
+	@Override
+	public int getTaille(int indiceTaille) {
+		return tailles[indiceTaille];
+	}
+
+	/**
+	 * @param indiceTaille
+	 *            indice compris entre {@link #getDebutTailles(int)} et
+	 *            {@link #getFinTailles(int)}
+	 * @return le nombre de colis de cette taille dans la combinaison
+	 */
+	@Override
+	public int getFrequence(int indiceTaille) {
+		return frequences[indiceTaille];
+	}
+
+	/**
+	 * @param combinaison
+	 *            indice de la combinaison
+	 * @param taille
+	 *            taille de colis
+	 * @return le nombre de colis de cette taille dans la combinaison (0 si
+	 *         absente)
+	 */
+	public int getMultiplicite(int combinaison, int taille) {
+		return multiplicites[combinaison * (capaciteCarton + 1) + taille];
+	}
+
+	/**
+	 * @param combinaison
+	 *            indice de la combinaison
+	 * @return la somme des tailles des colis de la combinaison
+	 */
+	@Override
+	public int getTotal(int combinaison) {
+		return totaux[combinaison];
+	}
+
+	/**
+	 * @param combinaison
+	 *            indice de la combinaison
+	 * @return le nombre de colis de la combinaison
+	 */
+	@Override
+	public int getNbColis(int combinaison) {
+		return nbColis[combinaison];
+	}
+
+	/**
+	 * @param combinaison
+	 *            indice de la combinaison
+	 * @return le libellé de la combinaison. Exemple : "721"
+	 */
+	@Override
+	public String getLibelle(int combinaison) {
+		return libelles[combinaison];
+	}
+
+}
@@ -0,0 +1,182 @@
+package sample.vsct.service;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Répartit l'emballage d'un lot de commandes entre les threads d'un exécuteur.
+ *
+ * Pour une liste, les commandes sont regroupées en tranches contiguës (quelques
+ * tranches par cœur) afin de limiter le coût de planification des petites
+ * commandes. Pour un flux, chaque commande est une tâche et au plus
+ * {@link #NB_COMMANDES_EN_COURS_PAR_COEUR} commandes par cœur sont en cours.
+ * Dans les deux cas, les résultats sont rendus dans l'ordre des commandes.
+ *
+ * @author Gaetan
+ *
+ */
+final class TraitementParLots {
+
+	final static Logger logger = Logger.getLogger(TraitementParLots.class);
+
+	/** Nombre de tranches par cœur pour une liste de commandes */
+	static final int NB_TRANCHES_PAR_COEUR = 4;
+
+	/** Nombre de commandes d'un flux en cours par cœur */
+	static final int NB_COMMANDES_EN_COURS_PAR_COEUR = 8;
+
+	private TraitementParLots() {
+	}
+
+	/**
+	 * Emballe une liste de commandes
+	 *
+	 * @param emballageService
+	 *            service emballant chaque commande
+	 * @param commandes
+	 *            tailles des colis de chaque commande
+	 * @param affichageOptimisee
+	 *            indique si on affiche les cartons de manière optimisée
+	 * @param executeur
+	 *            exécuteur des tranches
+	 * @return le résultat de chaque commande, dans l'ordre des commandes
+	 */
+	static List<ResultatCommande> traiter(final EmballageServiceImpl emballageService, final List<String> commandes,
+			final boolean affichageOptimisee, Executor executeur) {
+		final int nbCommandes = commandes.size();
+		final ResultatCommande[] resultats = new ResultatCommande[nbCommandes];
+		int nbTranches = Math.min(nbCommandes,
+				NB_TRANCHES_PAR_COEUR * Runtime.getRuntime().availableProcessors());
+		if (logger.isDebugEnabled()) {
+			logger.debug(String.format("Emballage de %d commandes en %d tranches", nbCommandes, nbTranches));
+		}
+		CompletableFuture<?>[] tranches = new CompletableFuture<?>[nbTranches];
+		for (int t = 0; t < nbTranches; t++) {
+			final int debut = (int) ((long) nbCommandes * t / nbTranches);
+			final int fin = (int) ((long) nbCommandes * (t + 1) / nbTranches);
+			tranches[t] = CompletableFuture.runAsync(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = debut; i < fin; i++) {
+						resultats[i] = emballageService.emballerCommande(i, commandes.get(i), affichageOptimisee);
+					}
+				}
+			}, executeur);
+		}
+		attendre(CompletableFuture.allOf(tranches));
+		return Arrays.asList(resultats);
+	}
+
+	/**
+	 * Emballe un flux de commandes au fil de l'eau
+	 *
+	 * @param emballageService
+	 *            service emballant chaque commande
+	 * @param commandes
+	 *            tailles des colis de chaque commande
+	 * @param affichageOptimisee
+	 *            indique si on affiche les cartons de manière optimisée
+	 * @param executeur
+	 *            exécuteur des commandes
+	 * @return le résultat de chaque commande, dans l'ordre des commandes
+	 */
+	static Iterator<ResultatCommande> traiter(EmballageServiceImpl emballageService, Iterator<String> commandes,
+			boolean affichageOptimisee, Executor executeur) {
+		return new IterateurResultats(emballageService, commandes, affichageOptimisee, executeur,
+				NB_COMMANDES_EN_COURS_PAR_COEUR * Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Attend la fin d'une tâche, en relançant l'exception qui l'a interrompue
+	 */
+	private static <T> T attendre(CompletableFuture<T> tache) {
+		try {
+			return tache.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Parcourt les résultats d'un flux de commandes. Les commandes suivantes sont
+	 * lancées à chaque résultat rendu, pour garder la fenêtre pleine.
+	 */
+	private static final class IterateurResultats implements Iterator<ResultatCommande> {
+
+		private final EmballageServiceImpl emballageService;
+
+		private final Iterator<String> commandes;
+
+		private final boolean affichageOptimisee;
+
+		private final Executor executeur;
+
+		private final int nbCommandesEnCoursMax;
+
+		private final Deque<CompletableFuture<ResultatCommande>> enCours;
+
+		private long indiceSuivant;
+
+		IterateurResultats(EmballageServiceImpl emballageService, Iterator<String> commandes,
+				boolean affichageOptimisee, Executor executeur, int nbCommandesEnCoursMax) {
+			this.emballageService = emballageService;
+			this.commandes = commandes;
+			this.affichageOptimisee = affichageOptimisee;
+			this.executeur = executeur;
+			this.nbCommandesEnCoursMax = nbCommandesEnCoursMax;
+			this.enCours = new ArrayDeque<CompletableFuture<ResultatCommande>>(nbCommandesEnCoursMax);
+		}
+
+		@Override
+		public boolean hasNext() {
+			remplir();
+			return !enCours.isEmpty();
+		}
+
+		@Override
+		public ResultatCommande next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return attendre(enCours.poll());
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * Lance des commandes jusqu'à remplir la fenêtre
+		 */
+		private void remplir() {
+			while (enCours.size() < nbCommandesEnCoursMax && commandes.hasNext()) {
+				final long indice = indiceSuivant++;
+				final String commande = commandes.next();
+				enCours.add(CompletableFuture.supplyAsync(new Supplier<ResultatCommande>() {
+					@Override
+					public ResultatCommande get() {
+						return emballageService.emballerCommande(indice, commande, affichageOptimisee);
+					}
+				}, executeur));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,63 @@
+package sample.vsct.service;
+
+/**
+ * Type de carton d'un catalogue : nom, capacité et coût (voir
+ * {@link EmballageCatalogue})
+ *
+ * @author Gaetan
+ *
+ */
+public final class TypeCarton {
+
+	private final String nom;
+
+	private final int capacite;
+
+	private final long cout;
+
+	/**
+	 * @param nom
+	 *            nom affiché devant les combinaisons de ce type. Exemple : "M"
+	 * @param capacite
+	 *            capacité du carton, au plus
+	 *            {@link EmballageServiceImpl#CAPACITE_CARTON_MAX_TABLE}
+	 * @param cout
+	 *            coût d'un carton, dans une unité commune à tout le catalogue
+	 *            (centimes par exemple)
+	 */
+	public TypeCarton(String nom, int capacite, long cout) {
+		if (nom == null || nom.isEmpty()) {
+			throw new IllegalArgumentException("Un type de carton doit avoir un nom");
+		}
+		if (capacite < 1 || capacite > EmballageServiceImpl.CAPACITE_CARTON_MAX_TABLE) {
+			throw new IllegalArgumentException(String.format(
+					"La capacité du carton %s vaut %d alors qu'elle doit être comprise entre 1 et %d", nom, capacite,
+					EmballageServiceImpl.CAPACITE_CARTON_MAX_TABLE));
+		}
+		if (cout <= 0) {
+			throw new IllegalArgumentException(
+					String.format("Le coût du carton %s doit être positif (coût %d)", nom, cout));
+		}
+		this.nom = nom;
+		this.capacite = capacite;
+		this.cout = cout;
+	}
+
+	public String getNom() {
+		return nom;
+	}
+
+	public int getCapacite() {
+		return capacite;
+	}
+
+	public long getCout() {
+		return cout;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s (capacité %d, coût %d)", nom, capacite, cout);
+	}
+
+}
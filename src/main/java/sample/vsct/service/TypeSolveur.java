@@ -0,0 +1,43 @@
+package sample.vsct.service;
+
+/**
+ * Algorithme utilisé pour emballer les colis
+ * @author Gaetan
+ *
+ */
+public enum TypeSolveur {
+
+	/**
+	 * Algorithme glouton : les combinaisons de la table sont prises dans l'ordre de
+	 * priorité (taille totale décroissante, puis nombre de colis croissant). Très
+	 * rapide, mais le minimum de cartons n'est pas garanti.
+	 */
+	GLOUTON(new StrategieGloutonne()),
+
+	/**
+	 * Solveur exact ({@link SolveurExact}) : minimum de cartons, prouvé par une
+	 * borne inférieure. Son temps de calcul ne dépend pas du nombre de colis.
+	 */
+	EXACT(new StrategieExacte()),
+
+	/**
+	 * Recherche améliorante ({@link StrategieRecherche}) : part de la solution
+	 * gloutonne et l'améliore jusqu'à la borne inférieure ou l'expiration du
+	 * budget de la commande.
+	 */
+	RECHERCHE(new StrategieRecherche());
+
+	private final StrategieEmballage strategie;
+
+	private TypeSolveur(StrategieEmballage strategie) {
+		this.strategie = strategie;
+	}
+
+	/**
+	 * @return la stratégie de l'algorithme, partagée par les services
+	 */
+	public StrategieEmballage getStrategie() {
+		return strategie;
+	}
+
+}
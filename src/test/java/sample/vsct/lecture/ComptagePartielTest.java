@@ -0,0 +1,158 @@
+package sample.vsct.lecture;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import sample.vsct.exception.TailleColisException;
+import sample.vsct.service.ConfigurationEmballage;
+import sample.vsct.service.EmballageServiceImpl;
+
+/**
+ * Classe de test pour ComptagePartiel
+ * @author Gaetan
+ *
+ */
+public class ComptagePartielTest {
+
+	@Test
+	// Les fragments d'un fichier comptés séparément puis fusionnés donnent le même
+	// emballage que le fichier entier
+	public final void testFusion() throws IOException {
+		// Initialisation
+		StringBuilder colis = new StringBuilder();
+		for (int i = 0; i < 100000; i++) {
+			colis.append((char) ('1' + (int) (Math.random() * 9)));
+		}
+		Path fichier = Files.createTempFile("colis", ".txt");
+		try {
+			Files.write(fichier, colis.toString().getBytes(StandardCharsets.US_ASCII));
+
+			// Appel méthode
+			List<ComptagePartiel> comptages = new ArrayList<>();
+			long[] bornes = { 0, 1, 33333, 70000, 100000 };
+			for (int i = 0; i + 1 < bornes.length; i++) {
+				comptages.add(ComptagePartiel.compter(fichier, bornes[i], bornes[i + 1],
+						ConfigurationEmballage.DEFAUT));
+			}
+			ComptagePartiel total = ComptagePartiel.fusionner(comptages);
+
+			// Vértifications
+			EmballageServiceImpl emballageService = new EmballageServiceImpl();
+			assertArrayEquals(CompteurColis.compter(colis.toString()), total.getNbColisParTaille());
+			assertEquals(100000, total.getNbColis());
+			assertEquals(emballageService.emballerCartons(colis.toString(), true),
+					emballageService.emballerCartons(total, true));
+		} finally {
+			Files.delete(fichier);
+		}
+	}
+
+	@Test
+	// L'encodage tient en quelques octets et se relit à l'identique, y compris
+	// par la sérialisation Java
+	public final void testEncodage() throws IOException, ClassNotFoundException {
+		// Initialisation
+		long[] nbColisParTaille = new long[11];
+		nbColisParTaille[1] = 3;
+		nbColisParTaille[9] = Long.MAX_VALUE / 10;
+		ComptagePartiel comptage = ComptagePartiel.de(nbColisParTaille, ConfigurationEmballage.DEFAUT);
+
+		// Appel méthode
+		byte[] encodage = comptage.encoder();
+		ByteArrayOutputStream octets = new ByteArrayOutputStream();
+		try (ObjectOutputStream sortie = new ObjectOutputStream(octets)) {
+			sortie.writeObject(comptage);
+		}
+		Object relu;
+		try (ObjectInputStream entree = new ObjectInputStream(new ByteArrayInputStream(octets.toByteArray()))) {
+			relu = entree.readObject();
+		}
+
+		// Vértifications
+		assertTrue(encodage.length < 30);
+		assertEquals(comptage, ComptagePartiel.decoder(encodage));
+		assertEquals(comptage, relu);
+		assertArrayEquals(nbColisParTaille, ((ComptagePartiel) relu).getNbColisParTaille());
+	}
+
+	@Test
+	// Un encodage tronqué ou altéré est refusé
+	public final void testEncodageInvalide() {
+		byte[] encodage = ComptagePartiel.compter("955117", ConfigurationEmballage.DEFAUT).encoder();
+		byte[][] invalides = { new byte[0], Arrays.copyOf(encodage, encodage.length - 1),
+				Arrays.copyOf(encodage, encodage.length + 1), { 0x43, 0x50, 2, 10, 1, 9 } };
+		for (byte[] invalide : invalides) {
+			try {
+				ComptagePartiel.decoder(invalide);
+				fail(invalide.length + " octets");
+			} catch (IllegalArgumentException e) {
+				// Attendu
+			}
+		}
+	}
+
+	@Test
+	// Une capacité démesurée est refusée avant d'allouer les compteurs
+	public final void testCapaciteDemesuree() {
+		// Initialisation : capacité Integer.MAX_VALUE - 1 (entier de longueur
+		// variable sur 5 octets), tailles de 1 à 9, aucun colis
+		byte[] encodage = { 0x43, 0x50, ComptagePartiel.VERSION, (byte) 0xFE, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+				0x07, 1, 9, 0, 0, 0, 0, 0, 0, 0, 0, 0 };
+
+		// Appel méthode
+		try {
+			ComptagePartiel.decoder(encodage);
+			fail("IllegalArgumentException attendue");
+		} catch (IllegalArgumentException e) {
+			// Vértifications
+			assertTrue(e.getMessage(), e.getMessage().contains(String.valueOf(Integer.MAX_VALUE - 1)));
+		}
+	}
+
+	@Test
+	// La position d'une taille invalide est relative au début du fragment
+	public final void testErreurFragment() throws IOException {
+		// Initialisation
+		Path fichier = Files.createTempFile("colis", ".txt");
+		try {
+			Files.write(fichier, "1234567890123".getBytes(StandardCharsets.US_ASCII));
+
+			// Appel méthode
+			try {
+				ComptagePartiel.compter(fichier, 5, 13, ConfigurationEmballage.DEFAUT);
+				fail();
+			} catch (TailleColisException e) {
+				// Vértifications
+				assertEquals(4, e.getPosition());
+				assertTrue(e.getMessage().contains("octet 5"));
+			}
+		} finally {
+			Files.delete(fichier);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	// Deux comptages faits avec des tailles autorisées différentes ne se fusionnent
+	// pas
+	public final void testConfigurationsDifferentes() {
+		ComptagePartiel.vide(ConfigurationEmballage.DEFAUT)
+				.fusionner(ComptagePartiel.vide(new ConfigurationEmballage(10, 2, 9)));
+	}
+
+}
@@ -0,0 +1,176 @@
+package sample.vsct.lecture;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import sample.vsct.exception.TailleColisException;
+import sample.vsct.service.ConfigurationEmballage;
+
+/**
+ * Classe de test pour CompteurColis
+ * @author Gaetan
+ *
+ */
+public class CompteurColisTest {
+
+	@Test
+	// Le comptage parallèle donne le même résultat qu'un comptage séquentiel
+	public final void testComptageParallele() {
+		// Initialisation : assez de colis pour découper l'entrée en plusieurs blocs
+		int nbColis = CompteurColis.SEUIL_PARALLELE + 12345;
+		StringBuilder sb = new StringBuilder(nbColis);
+		long[] nbColisAttendus = new long[11];
+		for (int i = 0; i < nbColis; i++) {
+			int taille = i % 9 + 1;
+			sb.append(taille);
+			nbColisAttendus[taille]++;
+		}
+		String entree = sb.toString();
+
+		// Appel méthode et vérifications
+		assertArrayEquals(nbColisAttendus, CompteurColis.compter(entree));
+		long[] nbColisOctets = CompteurColis.creerNbColisParTaille();
+		CompteurColis.compter(ByteBuffer.wrap(entree.getBytes(StandardCharsets.US_ASCII)), 0, nbColisOctets);
+		assertArrayEquals(nbColisAttendus, nbColisOctets);
+	}
+
+	@Test
+	// C'est le premier colis invalide qui est signalé, même s'il y en a d'autres
+	// dans des blocs suivants
+	public final void testPremiereErreur() {
+		// Initialisation
+		int nbColis = CompteurColis.SEUIL_PARALLELE + 12345;
+		StringBuilder sb = new StringBuilder(nbColis);
+		for (int i = 0; i < nbColis; i++) {
+			sb.append('5');
+		}
+		int positionErreur = CompteurColis.TAILLE_BLOC + 17;
+		sb.setCharAt(positionErreur, '0');
+		sb.setCharAt(3 * CompteurColis.TAILLE_BLOC + 1, '@');
+		String entree = sb.toString();
+
+		// Appel méthode et vérifications
+		try {
+			CompteurColis.compter(entree);
+			fail();
+		} catch (TailleColisException e) {
+			assertEquals(positionErreur, e.getPosition());
+		}
+		try {
+			CompteurColis.compter(ByteBuffer.wrap(entree.getBytes(StandardCharsets.US_ASCII)), 100,
+					CompteurColis.creerNbColisParTaille());
+			fail();
+		} catch (TailleColisException e) {
+			assertEquals(100 + positionErreur, e.getPosition());
+		}
+	}
+
+	@Test
+	// Le comptage par mots de 8 octets donne le même résultat qu'un comptage
+	// octet par octet, y compris avec des fins de ligne et des tailles limitées
+	public final void testComptageParMots() {
+		// Initialisation
+		ConfigurationEmballage configuration = new ConfigurationEmballage(10, 2, 8);
+		byte[] octets = new byte[100003];
+		long[] nbColisAttendus = configuration.creerNbColisParTaille();
+		for (int i = 0; i < octets.length; i++) {
+			if (i % 997 == 0) {
+				octets[i] = (byte) (i % 2 == 0 ? '\n' : '\r');
+			} else {
+				int taille = 2 + (int) (Math.random() * 7);
+				octets[i] = (byte) ('0' + taille);
+				nbColisAttendus[taille]++;
+			}
+		}
+
+		// Appel méthode
+		long[] nbColisParTaille = CompteurColis.compter(octets, configuration);
+
+		// Vértifications
+		assertArrayEquals(nbColisAttendus, nbColisParTaille);
+	}
+
+	@Test
+	// Le premier octet invalide est localisé quelle que soit sa place dans un mot,
+	// y compris les octets juste en dehors des tailles autorisées et ceux au delà
+	// de l'ASCII
+	public final void testErreurDansUnMot() {
+		// Initialisation
+		byte[] invalides = { '0', ':', '/', (byte) 0xB5, (byte) 0xFF, 0, ' ' };
+		for (byte invalide : invalides) {
+			for (int positionErreur = 300; positionErreur < 316; positionErreur++) {
+				byte[] octets = new byte[1000];
+				Arrays.fill(octets, (byte) '9');
+				octets[positionErreur] = invalide;
+				octets[positionErreur + 20] = '0';
+
+				// Appel méthode
+				try {
+					CompteurColis.compter(octets, ConfigurationEmballage.DEFAUT);
+					fail();
+				} catch (TailleColisException e) {
+					// Vértifications
+					assertEquals(positionErreur, e.getPosition());
+				}
+			}
+		}
+	}
+
+	@Test
+	// En mode tolérant, les colis invalides de tous les blocs sont notés dans
+	// l'ordre de l'entrée, et seuls les colis valides sont comptés
+	public final void testModeTolerant() {
+		// Initialisation : assez de colis pour découper l'entrée en plusieurs blocs
+		int nbColis = CompteurColis.SEUIL_PARALLELE + 12345;
+		byte[] octets = new byte[nbColis];
+		Arrays.fill(octets, (byte) '4');
+		long[] positionsErreurs = { 3, CompteurColis.TAILLE_BLOC - 1, CompteurColis.TAILLE_BLOC,
+				3L * CompteurColis.TAILLE_BLOC + 8, nbColis - 1 };
+		for (long position : positionsErreurs) {
+			octets[(int) position] = (byte) (position % 2 == 0 ? '0' : '@');
+		}
+		RapportErreurs rapportOctets = new RapportErreurs();
+		RapportErreurs rapportChaine = new RapportErreurs(3);
+
+		// Appel méthode
+		long[] nbColisOctets = CompteurColis.compter(octets, ConfigurationEmballage.DEFAUT, rapportOctets);
+		long[] nbColisChaine = CompteurColis.compter(new String(octets, StandardCharsets.US_ASCII),
+				ConfigurationEmballage.DEFAUT, rapportChaine);
+
+		// Vértifications
+		assertEquals(nbColis - positionsErreurs.length, nbColisOctets[4]);
+		assertArrayEquals(nbColisOctets, nbColisChaine);
+		assertArrayEquals(positionsErreurs, rapportOctets.getPositions());
+		assertEquals(positionsErreurs.length, rapportChaine.getNbErreurs());
+		assertArrayEquals(Arrays.copyOf(positionsErreurs, 3), rapportChaine.getPositions());
+		assertTrue(rapportChaine.isTronque());
+	}
+
+	@Test
+	// Au format délimité, une taille invalide est ignorée jusqu'au séparateur
+	// suivant et notée à la position de son premier caractère
+	public final void testModeTolerantDelimite() {
+		// Initialisation
+		ConfigurationEmballage configuration = new ConfigurationEmballage(20, 1, 15, ',');
+		RapportErreurs rapport = new RapportErreurs();
+
+		// Appel méthode
+		long[] nbColisParTaille = CompteurColis.compter("12,0,,300,7a,5,", configuration, rapport);
+
+		// Vértifications
+		long[] nbColisAttendus = configuration.creerNbColisParTaille();
+		nbColisAttendus[12] = 1;
+		nbColisAttendus[5] = 1;
+		assertArrayEquals(nbColisAttendus, nbColisParTaille);
+		assertArrayEquals(new long[] { 3, 5, 6, 10, 14 }, rapport.getPositions());
+	}
+
+}
@@ -0,0 +1,139 @@
+package sample.vsct.lecture;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import sample.vsct.ecriture.EcrivainManifeste;
+import sample.vsct.exception.TailleColisException;
+import sample.vsct.service.ConfigurationEmballage;
+
+/**
+ * Classe de test pour LecteurManifeste et EcrivainManifeste
+ * @author Gaetan
+ *
+ */
+public class LecteurManifesteTest {
+
+	@Test
+	// Un fichier texte converti en manifeste donne les mêmes colis, sur deux fois
+	// moins d'octets, pour un nombre de colis pair ou impair
+	public final void testConversion() throws IOException {
+		for (int nbColis : new int[] { 0, 1, 15, 100000, 100001 }) {
+			// Initialisation
+			StringBuilder sb = new StringBuilder(nbColis + 1);
+			for (int i = 0; i < nbColis; i++) {
+				sb.append((int) Math.round(Math.random() * 9 + 0.5));
+			}
+			sb.append('\n');
+			Path fichierTexte = Files.createTempFile("colis", ".txt");
+			Path fichierManifeste = Files.createTempFile("colis", ".bin");
+			Files.write(fichierTexte, sb.toString().getBytes(StandardCharsets.US_ASCII));
+
+			// Appel méthode
+			try {
+				long nbColisConvertis = EcrivainManifeste.convertir(fichierTexte, fichierManifeste,
+						ConfigurationEmballage.DEFAUT);
+
+				// Vértifications
+				assertEquals(nbColis, nbColisConvertis);
+				assertEquals(FormatManifeste.tailleFichier(nbColis), Files.size(fichierManifeste));
+				assertArrayEquals(LecteurColis.compter(fichierTexte),
+						LecteurManifeste.compter(fichierManifeste, ConfigurationEmballage.DEFAUT));
+			} finally {
+				Files.delete(fichierTexte);
+				Files.delete(fichierManifeste);
+			}
+		}
+	}
+
+	@Test
+	// Un colis non autorisé par la configuration est signalé avec sa position
+	public final void testColisInvalide() throws IOException {
+		// Initialisation
+		Path fichierManifeste = Files.createTempFile("colis", ".bin");
+		try (EcrivainManifeste ecrivain = new EcrivainManifeste(fichierManifeste, ConfigurationEmballage.DEFAUT)) {
+			for (int taille : new int[] { 5, 5, 9, 3, 1, 8, 1 }) {
+				ecrivain.ajouter(taille);
+			}
+		}
+
+		// Appel méthode
+		try {
+			LecteurManifeste.compter(fichierManifeste, new ConfigurationEmballage(10, 2, 9));
+			fail();
+		} catch (TailleColisException e) {
+			// Vértifications
+			assertEquals(4, e.getPosition());
+		} finally {
+			Files.delete(fichierManifeste);
+		}
+	}
+
+	@Test
+	// Un manifeste modifié après son écriture est refusé
+	public final void testManifesteCorrompu() throws IOException {
+		// Initialisation
+		Path fichierManifeste = Files.createTempFile("colis", ".bin");
+		try (EcrivainManifeste ecrivain = new EcrivainManifeste(fichierManifeste, ConfigurationEmballage.DEFAUT)) {
+			for (int i = 0; i < 1000; i++) {
+				ecrivain.ajouter(i % 9 + 1);
+			}
+		}
+		byte[] octets = Files.readAllBytes(fichierManifeste);
+		octets[FormatManifeste.TAILLE_ENTETE + 100] ^= 0x11;
+		Files.write(fichierManifeste, octets);
+
+		// Appel méthode
+		try {
+			LecteurManifeste.compter(fichierManifeste, ConfigurationEmballage.DEFAUT);
+			fail();
+		} catch (IOException e) {
+			// Vértifications
+			assertTrue(e.getMessage().contains("somme de contrôle"));
+		} finally {
+			Files.delete(fichierManifeste);
+		}
+	}
+
+	@Test
+	// Une capacité de carton qui ne tient pas dans l'octet de l'entête est
+	// refusée avant de créer le manifeste, au lieu d'être tronquée
+	public final void testCapaciteTropGrande() throws IOException {
+		// Initialisation
+		Path fichierManifeste = Files.createTempFile("colis", ".bin");
+		Files.delete(fichierManifeste);
+
+		// Appel méthode
+		try {
+			new EcrivainManifeste(fichierManifeste, new ConfigurationEmballage(300, 1, 9)).close();
+			fail("IllegalArgumentException attendue");
+		} catch (IllegalArgumentException e) {
+			// Vértifications
+			assertTrue(e.getMessage().contains("300"));
+			assertTrue(Files.notExists(fichierManifeste));
+		}
+
+		// La plus grande capacité acceptée fait l'aller-retour
+		try (EcrivainManifeste ecrivain = new EcrivainManifeste(fichierManifeste,
+				new ConfigurationEmballage(FormatManifeste.CAPACITE_CARTON_MAX, 1, 9))) {
+			ecrivain.ajouter(9);
+		}
+		try {
+			long[] nbColisParTaille = LecteurManifeste.compter(fichierManifeste,
+					new ConfigurationEmballage(FormatManifeste.CAPACITE_CARTON_MAX, 1, 9));
+			assertEquals(1, nbColisParTaille[9]);
+		} finally {
+			Files.delete(fichierManifeste);
+		}
+	}
+
+}
@@ -0,0 +1,56 @@
+package sample.vsct.lecture;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import sample.vsct.exception.TailleColisException;
+import sample.vsct.service.ConfigurationEmballage;
+
+/**
+ * Classe de test pour LecteurQuantites
+ * @author Gaetan
+ *
+ */
+public class LecteurQuantitesTest {
+
+	@Test
+	// Les nombres de colis sur 64 bits sont lus, et additionnés pour une même
+	// taille
+	public final void testLecture() {
+		// Appel méthode
+		long[] nbColisParTaille = LecteurQuantites.lire("9x1000000000000,1x500,9x7",
+				ConfigurationEmballage.DEFAUT);
+
+		// Vértifications
+		long[] nbColisAttendus = new long[11];
+		nbColisAttendus[9] = 1000000000007L;
+		nbColisAttendus[1] = 500;
+		assertArrayEquals(nbColisAttendus, nbColisParTaille);
+		assertArrayEquals(new long[11], LecteurQuantites.lire("", ConfigurationEmballage.DEFAUT));
+	}
+
+	@Test
+	// Chaque erreur est signalée avec la position du caractère en cause
+	public final void testErreurs() {
+		String[] entrees = { "9x", "9y2", "0x1", "12x1", "9x2,", "9x2;1x1", "x3", "9x99999999999999999999" };
+		long[] positions = { 2, 1, 0, 0, 4, 3, 0, 2 };
+		for (int i = 0; i < entrees.length; i++) {
+			try {
+				LecteurQuantites.lire(entrees[i], ConfigurationEmballage.DEFAUT);
+				fail(entrees[i]);
+			} catch (TailleColisException e) {
+				assertEquals(entrees[i], positions[i], e.getPosition());
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	// Le volume total des colis doit tenir sur un long
+	public final void testVolumeTropGrand() {
+		LecteurQuantites.lire("9x" + Long.MAX_VALUE / 2, ConfigurationEmballage.DEFAUT);
+	}
+
+}
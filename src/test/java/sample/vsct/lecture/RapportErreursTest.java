@@ -0,0 +1,52 @@
+package sample.vsct.lecture;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Classe de test pour RapportErreurs
+ * @author Gaetan
+ *
+ */
+public class RapportErreursTest {
+
+	@Test
+	// Au delà du nombre de positions gardées, les erreurs sont seulement comptées,
+	// y compris lors de l'ajout d'un autre rapport
+	public final void testPositionsLimitees() {
+		// Initialisation
+		RapportErreurs rapport = new RapportErreurs(3);
+		RapportErreurs suite = rapport.creerVide();
+
+		// Appel méthode
+		rapport.ajouter(4);
+		rapport.ajouter(17);
+		suite.ajouter(250);
+		suite.ajouter(300);
+		suite.ajouter(301);
+		rapport.ajouter(suite);
+
+		// Vértifications
+		assertEquals(5, rapport.getNbErreurs());
+		assertArrayEquals(new long[] { 4, 17, 250 }, rapport.getPositions());
+		assertTrue(rapport.isTronque());
+		assertEquals("5 colis invalides ignorés (positions 4, 17, 250, ...)", rapport.toString());
+	}
+
+	@Test
+	// Le résumé d'un rapport vide ou d'une seule erreur
+	public final void testResume() {
+		// Initialisation
+		RapportErreurs rapport = new RapportErreurs();
+
+		// Appel méthode et vérifications
+		assertEquals("Aucun colis invalide", rapport.toString());
+		rapport.ajouter(12);
+		assertEquals("1 colis invalide ignoré (position 12)", rapport.toString());
+		assertTrue(!rapport.isTronque());
+	}
+
+}
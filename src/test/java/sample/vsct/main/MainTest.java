@@ -0,0 +1,90 @@
+package sample.vsct.main;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.log4j.Logger;
+import org.junit.Test;
+
+/**
+ * Classe de test pour Main
+ * @author Gaetan
+ *
+ */
+public class MainTest {
+
+	private static final String INVITE = "Merci d'indiquer ici les tailles des colis en entrée";
+
+	private static final String ENTETE = "Voici les cartons à emballer :";
+
+	@Test
+	// Les colis saisis sont emballés après l'entête
+	public final void testSaisie() throws UnsupportedEncodingException {
+		// Appel méthode
+		String sortie = executerSaisie("163841689525773\n", 0);
+
+		// Vértifications
+		assertEquals(INVITE + System.lineSeparator() + ENTETE + "91/82/73/73/64/55/81/6" + System.lineSeparator(),
+				sortie);
+	}
+
+	@Test
+	// Un colis invalide n'affiche pas l'entête des cartons
+	public final void testSaisieInvalide() throws UnsupportedEncodingException {
+		// Appel méthode
+		String sortie = executerSaisie("12a4\n", Main.CODE_ERREUR_COLIS);
+
+		// Vértifications
+		assertTrue(sortie, sortie.startsWith(INVITE));
+		assertTrue(sortie, !sortie.contains(ENTETE));
+	}
+
+	@Test
+	// Des arguments invalides sont signalés par le code de sortie, sans exception
+	public final void testArgumentsInvalides() {
+		// Appel méthode
+		int codeNombre = Main.executer(new String[] { "--fenetres", "dix", "100" });
+		int codeFragment = Main.executer(new String[] { "--compter-fragment", "colis.txt", "0", "fin",
+				"comptage.bin" });
+		int codeInconnu = Main.executer(new String[] { "--flux", "--inconnu" });
+
+		// Vértifications
+		assertEquals(Main.CODE_ERREUR_ARGUMENTS, codeNombre);
+		assertEquals(Main.CODE_ERREUR_ARGUMENTS, codeFragment);
+		assertEquals(Main.CODE_ERREUR_ARGUMENTS, codeInconnu);
+	}
+
+	/**
+	 * Exécute le programme sans argument sur une saisie
+	 *
+	 * @param saisie
+	 *            entrée standard
+	 * @param codeAttendu
+	 *            code de sortie attendu
+	 * @return la sortie standard
+	 */
+	private static String executerSaisie(String saisie, int codeAttendu) throws UnsupportedEncodingException {
+		// Les traces restent sur la sortie standard d'origine
+		Logger.getRootLogger();
+		InputStream entreeStandard = System.in;
+		PrintStream sortieStandard = System.out;
+		ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+		try {
+			System.setIn(new ByteArrayInputStream(saisie.getBytes(StandardCharsets.UTF_8)));
+			System.setOut(new PrintStream(sortie, true, "UTF-8"));
+			assertEquals(codeAttendu, Main.executer(new String[0]));
+		} finally {
+			System.setIn(entreeStandard);
+			System.setOut(sortieStandard);
+		}
+		return new String(sortie.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+}
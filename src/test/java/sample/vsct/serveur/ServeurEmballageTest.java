@@ -0,0 +1,64 @@
+package sample.vsct.serveur;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import sample.vsct.service.EmballageServiceImpl;
+
+/**
+ * Classe de test pour ServeurEmballage
+ * @author Gaetan
+ *
+ */
+public class ServeurEmballageTest {
+
+	@Test
+	// Des demandes envoyées d'un bloc, sans attendre les réponses, reçoivent leurs
+	// réponses dans l'ordre, et une erreur ne ferme pas la connexion
+	public final void testDemandesEnchainees() throws IOException {
+		// Initialisation
+		final ServeurEmballage serveur = new ServeurEmballage(new EmballageServiceImpl(), 0);
+		Thread threadServeur = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					serveur.servir();
+				} catch (IOException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		});
+		threadServeur.setDaemon(true);
+		threadServeur.start();
+
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), serveur.getPort());
+				BufferedReader lecteur = new BufferedReader(
+						new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+			// Appel méthode
+			OutputStream sortie = socket.getOutputStream();
+			sortie.write(("9551\nOPTIMISE 9191\n12a4\nQUANTITES 9x1000000000,1x500\nDETAILLE 9191\n")
+					.getBytes(StandardCharsets.UTF_8));
+			sortie.flush();
+
+			// Vértifications
+			assertEquals("OK 91/55", lecteur.readLine());
+			assertEquals("OK 91(2)", lecteur.readLine());
+			assertTrue(lecteur.readLine().startsWith("ERREUR 2 "));
+			assertEquals("OK 91(500)/9(999999500)", lecteur.readLine());
+			assertEquals("OK 91/91", lecteur.readLine());
+		} finally {
+			serveur.close();
+		}
+	}
+
+}
@@ -0,0 +1,119 @@
+package sample.vsct.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+/**
+ * Classe de test pour AffectationCartons
+ * @author Gaetan
+ *
+ */
+public class AffectationCartonsTest {
+
+	private EmballageService emballageService = new EmballageServiceImpl();
+
+	@Test
+	// Chaque carton reçoit exactement les colis de sa combinaison, quel que soit
+	// le solveur
+	public final void testCartonsConformes() {
+		// Initialisation
+		StringBuilder colis = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			colis.append((char) ('1' + (int) (Math.random() * 9)));
+		}
+		for (TypeSolveur typeSolveur : TypeSolveur.values()) {
+			EmballageService service = new EmballageServiceImpl(typeSolveur);
+
+			// Appel méthode
+			AffectationCartons affectation = service.affecterColis(colis.toString());
+
+			// Vértifications
+			Combinaisons combinaisons = affectation.getResultat().getCombinaisons();
+			int[][] nbColisParCarton = new int[affectation.getNbCartons()][10];
+			for (int i = 0; i < affectation.getNbColis(); i++) {
+				nbColisParCarton[affectation.getCarton(i)][colis.charAt(i) - '0']++;
+			}
+			for (int carton = 0; carton < affectation.getNbCartons(); carton++) {
+				int combinaison = affectation.getCombinaison(carton);
+				int[] nbColisAttendus = new int[10];
+				for (int i = combinaisons.getDebutTailles(combinaison); i < combinaisons
+						.getFinTailles(combinaison); i++) {
+					nbColisAttendus[combinaisons.getTaille(i)] = combinaisons.getFrequence(i);
+				}
+				assertArrayEquals(typeSolveur + " carton " + carton, nbColisAttendus, nbColisParCarton[carton]);
+			}
+		}
+	}
+
+	@Test
+	// Les cartons sont numérotés dans l'ordre de l'affichage non optimisé, et
+	// l'export donne une ligne par colis
+	public final void testExport() throws IOException {
+		// Initialisation
+		ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+
+		// Appel méthode
+		AffectationCartons affectation = emballageService.affecterColis("9551");
+		affectation.exporter(Channels.newChannel(sortie));
+
+		// Vértifications
+		assertEquals("91/55", affectation.getResultat().afficher(false));
+		assertEquals("91", affectation.getLibelleCarton(0));
+		assertEquals("55", affectation.getLibelleCarton(1));
+		assertEquals("0 0\n1 1\n2 1\n3 0\n", new String(sortie.toByteArray(), StandardCharsets.US_ASCII));
+	}
+
+	@Test
+	// L'affectation d'un fichier, hors tas ou dans un fichier projeté, est la même
+	// que celle de la chaine équivalente ; les fins de ligne ne sont pas des colis
+	public final void testFichiers() throws IOException {
+		// Initialisation
+		StringBuilder colis = new StringBuilder();
+		for (int i = 0; i < 5000; i++) {
+			colis.append((char) ('1' + (int) (Math.random() * 9)));
+		}
+		Path fichierColis = Files.createTempFile("colis", ".txt");
+		Path fichierAffectation = Files.createTempFile("affectation", ".bin");
+		try {
+			Files.write(fichierColis, (colis.substring(0, 2500) + "\r\n" + colis.substring(2500) + "\n")
+					.getBytes(StandardCharsets.US_ASCII));
+
+			// Appel méthode
+			AffectationCartons enMemoire = emballageService.affecterColis(colis.toString());
+			AffectationCartons horsTas = emballageService.affecterColis(fichierColis);
+			AffectationCartons projetee = emballageService.affecterColis(fichierColis, fichierAffectation);
+
+			// Vértifications
+			ByteBuffer contenu = ByteBuffer.wrap(Files.readAllBytes(fichierAffectation))
+					.order(ByteOrder.LITTLE_ENDIAN);
+			assertEquals(4 * colis.length(), contenu.capacity());
+			assertEquals(colis.length(), horsTas.getNbColis());
+			for (int i = 0; i < colis.length(); i++) {
+				assertEquals(enMemoire.getCarton(i), horsTas.getCarton(i));
+				assertEquals(enMemoire.getCarton(i), projetee.getCarton(i));
+				assertEquals(enMemoire.getCarton(i), contenu.getInt(4 * i));
+			}
+		} finally {
+			Files.delete(fichierColis);
+			Files.delete(fichierAffectation);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	// Le format délimité ne permet pas de retrouver les colis par leur indice
+	public final void testFormatDelimite() {
+		new EmballageServiceImpl(new ConfigurationEmballage(20, 1, 20, ',')).affecterColis("12,8");
+	}
+
+}
@@ -0,0 +1,77 @@
+package sample.vsct.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Classe de test pour EmballageCatalogue
+ * @author Gaetan
+ *
+ */
+public class EmballageCatalogueTest {
+
+	TypeCarton petit = new TypeCarton("P", 5, 10);
+
+	TypeCarton moyen = new TypeCarton("M", 10, 18);
+
+	TypeCarton grand = new TypeCarton("G", 15, 25);
+
+	EmballageCatalogue emballageCatalogue = new EmballageCatalogue(ConfigurationEmballage.DEFAUT,
+			Arrays.asList(petit, moyen, grand));
+
+	@Test
+	// Un colis seul va dans le carton le moins cher qui le contient, et des colis
+	// remplissant exactement les grands cartons y vont tous
+	public final void testChoixTypeCarton() {
+		assertEquals("P:1", emballageCatalogue.emballerCartons("1", false));
+		assertEquals("M:9", emballageCatalogue.emballerCartons("9", false));
+		ResultatSolveur resultat = emballageCatalogue.calculerCartons("163841689525773");
+		assertEquals(5, emballageCatalogue.getNbCartons(resultat, grand));
+		assertEquals(125, emballageCatalogue.getCout(resultat));
+		assertEquals(125, emballageCatalogue.getBorneInferieureCout(resultat));
+	}
+
+	@Test
+	// Tous les colis sont emballés, sans dépasser la capacité de leur carton, pour
+	// un coût au moins égal à la borne inférieure. Le temps de calcul ne dépend
+	// pas du nombre de colis
+	public final void testGrandNombreColis() {
+		// Initialisation
+		long[] nbColisParTaille = new long[EmballageServiceImpl.TAILLE_CARTON_MAX + 1];
+		for (int taille = 1; taille <= EmballageServiceImpl.TAILLE_COLIS_MAX; taille++) {
+			nbColisParTaille[taille] = 1000000000L + taille;
+		}
+
+		// Appel méthode
+		ResultatSolveur resultat = emballageCatalogue.calculerCartons(nbColisParTaille);
+
+		// Vértifications
+		Combinaisons combinaisons = resultat.getCombinaisons();
+		long[] nbColisEmballes = new long[nbColisParTaille.length];
+		long nbCartons = 0;
+		for (int combinaison : resultat.getCombinaisonsUtilisees()) {
+			assertTrue(combinaisons.getTotal(combinaison) <= combinaisons.getCapacite(combinaison));
+			for (int i = combinaisons.getDebutTailles(combinaison); i < combinaisons.getFinTailles(combinaison); i++) {
+				nbColisEmballes[combinaisons.getTaille(i)] += combinaisons.getFrequence(i)
+						* resultat.getNbCartons(combinaison);
+			}
+			nbCartons += resultat.getNbCartons(combinaison);
+		}
+		assertTrue(Arrays.equals(nbColisParTaille, nbColisEmballes));
+		assertEquals(nbCartons, emballageCatalogue.getNbCartons(resultat, petit)
+				+ emballageCatalogue.getNbCartons(resultat, moyen) + emballageCatalogue.getNbCartons(resultat, grand));
+		assertTrue(emballageCatalogue.getCout(resultat) >= emballageCatalogue.getBorneInferieureCout(resultat));
+		assertTrue(resultat.getTauxRemplissage() > 0.99);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	// Le plus grand carton doit pouvoir contenir le plus grand colis
+	public final void testCatalogueTropPetit() {
+		new EmballageCatalogue(ConfigurationEmballage.DEFAUT, Arrays.asList(petit));
+	}
+
+}
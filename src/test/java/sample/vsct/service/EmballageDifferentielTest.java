@@ -0,0 +1,507 @@
+package sample.vsct.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests différentiels de l'emballage sur des milliers d'entrées aléatoires,
+ * dont des entrées construites pour piéger l'algorithme glouton : sur les
+ * petites entrées, le nombre de cartons est comparé à celui d'une recherche
+ * exhaustive indépendante des solveurs ; sur les grandes, à celui du solveur
+ * exact quand il est prouvé optimal, et à la borne inférieure ceil(volume /
+ * capacité).
+ *
+ * La distribution des écarts et le temps par entrée sont tracés, et les écarts
+ * sont bornés : une optimisation de la vitesse du solveur qui dégrade la
+ * qualité de l'emballage fait échouer ces tests. La graine des entrées peut
+ * être changée avec -Demballage.graine=...
+ *
+ * @author Gaetan
+ *
+ */
+public class EmballageDifferentielTest {
+
+	final static Logger logger = Logger.getLogger(EmballageDifferentielTest.class);
+
+	private static final long GRAINE = Long.getLong("emballage.graine", 20161018L);
+
+	private static final int CAPACITE = EmballageServiceImpl.TAILLE_CARTON_MAX;
+
+	/** Nombre maximum de colis d'une petite entrée, résolue par recherche exhaustive */
+	private static final int NB_COLIS_MAX_PETITE_ENTREE = 14;
+
+	/**
+	 * Écart maximum de l'algorithme glouton avec l'optimum sur une petite entrée.
+	 * La borne de la décroissance par premier ajustement est 11/9 OPT + 6/9 : on
+	 * exige mieux
+	 */
+	private static final int ECART_MAX_GLOUTON_PETITE_ENTREE = 1;
+
+	/** Part maximum des petites entrées où l'algorithme glouton n'est pas optimal */
+	private static final double PART_MAX_NON_OPTIMALES = 0.05;
+
+	/**
+	 * Écart relatif maximum de l'algorithme glouton avec l'optimum sur une grande
+	 * entrée. Il atteint presque 20 % sur les pièges comme 2222288888 répétés
+	 */
+	private static final double ECART_RELATIF_MAX_GRANDE_ENTREE = 0.25;
+
+	/** Écart relatif moyen maximum de l'algorithme glouton sur les grandes entrées */
+	private static final double ECART_RELATIF_MOYEN_MAX_GRANDE_ENTREE = 0.005;
+
+	/** Part maximum des grandes entrées où l'algorithme glouton n'est pas optimal */
+	private static final double PART_MAX_NON_OPTIMALES_GRANDE_ENTREE = 0.10;
+
+	private static Level niveauTrace;
+
+	private EmballageServiceImpl emballageService = new EmballageServiceImpl();
+
+	private EmballageServiceImpl emballageServiceExact = new EmballageServiceImpl(TypeSolveur.EXACT);
+
+	@BeforeClass
+	// Les traces de débogage fausseraient le temps par entrée
+	public static void reduireTraces() {
+		Logger racine = Logger.getLogger("sample.vsct");
+		niveauTrace = racine.getLevel();
+		racine.setLevel(Level.INFO);
+	}
+
+	@AfterClass
+	public static void retablirTraces() {
+		Logger.getLogger("sample.vsct").setLevel(niveauTrace);
+	}
+
+	@Test
+	// Sur des petites entrées, le solveur exact trouve l'optimum de la recherche
+	// exhaustive, et l'algorithme glouton s'en écarte peu et rarement
+	public final void testPetitesEntrees() {
+		// Initialisation
+		Random aleatoire = new Random(GRAINE);
+		StatistiquesEcarts glouton = new StatistiquesEcarts("glouton / optimum, petites entrées");
+		StatistiquesEcarts exact = new StatistiquesEcarts("exact / optimum, petites entrées");
+
+		for (int cas = 0; cas < 4000; cas++) {
+			long[] nbColisParTaille = genererPetiteEntree(aleatoire, cas);
+			int optimum = nbCartonsOptimum(nbColisParTaille);
+
+			// Appel méthode
+			long debut = System.nanoTime();
+			ResultatSolveur resultatGlouton = emballageService.calculerCartons(nbColisParTaille);
+			long dureeGlouton = System.nanoTime() - debut;
+			debut = System.nanoTime();
+			ResultatSolveur resultatExact = emballageServiceExact.calculerCartons(nbColisParTaille);
+			long dureeExact = System.nanoTime() - debut;
+
+			// Vértifications
+			String entree = decrire(nbColisParTaille);
+			verifierCartons(entree, nbColisParTaille, resultatGlouton);
+			verifierCartons(entree, nbColisParTaille, resultatExact);
+			assertEquals(entree, optimum, resultatExact.getNbCartons());
+			assertTrue(entree, resultatExact.isOptimalProuve());
+			assertTrue(entree, resultatGlouton.getBorneInferieure() <= optimum);
+			long ecart = resultatGlouton.getNbCartons() - optimum;
+			assertTrue(entree + " : écart " + ecart, ecart >= 0 && ecart <= ECART_MAX_GLOUTON_PETITE_ENTREE);
+			glouton.enregistrer(ecart, optimum, dureeGlouton);
+			exact.enregistrer(resultatExact.getNbCartons() - optimum, optimum, dureeExact);
+		}
+		logger.info(glouton);
+		logger.info(exact);
+		assertTrue(glouton.toString(), glouton.getPartNonNuls() <= PART_MAX_NON_OPTIMALES);
+	}
+
+	@Test
+	// Quand la taille maximum des colis est la capacité des cartons, chaque
+	// solveur emballe aussi les colis remplissant un carton à eux seuls
+	public final void testColisDeLaTailleDuCarton() {
+		// Initialisation
+		ConfigurationEmballage configuration = new ConfigurationEmballage(9, 1, 9);
+		int capacite = configuration.getCapaciteCarton();
+		Random aleatoire = new Random(GRAINE);
+		List<EmballageServiceImpl> services = new ArrayList<EmballageServiceImpl>();
+		for (TypeSolveur typeSolveur : TypeSolveur.values()) {
+			services.add(new EmballageServiceImpl(configuration, typeSolveur));
+		}
+
+		for (int cas = 0; cas < 1000; cas++) {
+			long[] nbColisParTaille = new long[capacite + 1];
+			int nbColis = 1 + aleatoire.nextInt(NB_COLIS_MAX_PETITE_ENTREE);
+			for (int i = 0; i < nbColis; i++) {
+				// Un colis sur trois remplit un carton
+				nbColisParTaille[aleatoire.nextInt(3) == 0 ? capacite : 1 + aleatoire.nextInt(capacite)]++;
+			}
+			int optimum = nbCartonsOptimum(nbColisParTaille, capacite);
+
+			for (EmballageServiceImpl service : services) {
+				// Appel méthode
+				ResultatSolveur resultat = service.calculerCartons(nbColisParTaille);
+
+				// Vértifications
+				String entree = decrire(nbColisParTaille) + " " + service.getStrategie().getNom();
+				verifierCartons(entree, nbColisParTaille, resultat);
+				assertTrue(entree, resultat.getNbCartons() >= optimum);
+				assertTrue(entree, resultat.getBorneInferieure() <= optimum);
+				if (service.getStrategie() instanceof StrategieExacte) {
+					assertEquals(entree, optimum, resultat.getNbCartons());
+					assertTrue(entree, resultat.isOptimalProuve());
+				}
+			}
+		}
+		EmballageService emballageServiceExactNeuf = new EmballageServiceImpl(configuration, TypeSolveur.EXACT);
+		assertEquals("9/9", emballageServiceExactNeuf.emballerCartons("99", false));
+		assertEquals("9/9/11", emballageServiceExactNeuf.emballerCartons("9911", false));
+	}
+
+	@Test
+	// Sur des entrées remplissant exactement leurs cartons, l'optimum est la borne
+	// inférieure : le solveur exact l'atteint, quel que soit le nombre de colis
+	public final void testEntreesParfaites() {
+		// Initialisation
+		Random aleatoire = new Random(GRAINE + 1);
+		StatistiquesEcarts glouton = new StatistiquesEcarts("glouton / borne, entrées parfaites");
+		StatistiquesEcarts exact = new StatistiquesEcarts("exact / borne, entrées parfaites");
+
+		for (int cas = 0; cas < 1000; cas++) {
+			long nbCartons = cas < 500 ? 1 + aleatoire.nextInt(20) : 1 + aleatoire.nextInt(1000000000);
+			long[] nbColisParTaille = genererEntreeParfaite(aleatoire, nbCartons);
+
+			// Appel méthode
+			long debut = System.nanoTime();
+			ResultatSolveur resultatGlouton = emballageService.calculerCartons(nbColisParTaille);
+			long dureeGlouton = System.nanoTime() - debut;
+			debut = System.nanoTime();
+			ResultatSolveur resultatExact = emballageServiceExact.calculerCartons(nbColisParTaille);
+			long dureeExact = System.nanoTime() - debut;
+
+			// Vértifications
+			String entree = decrire(nbColisParTaille);
+			verifierCartons(entree, nbColisParTaille, resultatGlouton);
+			verifierCartons(entree, nbColisParTaille, resultatExact);
+			assertEquals(entree, nbCartons, resultatExact.getNbCartons());
+			long ecart = resultatGlouton.getNbCartons() - nbCartons;
+			assertTrue(entree + " : écart " + ecart,
+					ecart >= 0 && ecart <= ECART_RELATIF_MAX_GRANDE_ENTREE * nbCartons + 1);
+			glouton.enregistrer(ecart, nbCartons, dureeGlouton);
+			exact.enregistrer(resultatExact.getNbCartons() - nbCartons, nbCartons, dureeExact);
+		}
+		logger.info(glouton);
+		logger.info(exact);
+	}
+
+	@Test
+	// Sur des grandes entrées aléatoires, le solveur exact prouve l'optimum, et
+	// l'algorithme glouton s'en écarte peu en moyenne
+	public final void testGrandesEntrees() {
+		// Initialisation
+		Random aleatoire = new Random(GRAINE + 2);
+		StatistiquesEcarts glouton = new StatistiquesEcarts("glouton / optimum, grandes entrées");
+		StatistiquesEcarts gloutonBorne = new StatistiquesEcarts("glouton / ceil(volume / capacité), grandes entrées");
+		StatistiquesEcarts exact = new StatistiquesEcarts("exact / ceil(volume / capacité), grandes entrées");
+
+		for (int cas = 0; cas < 2000; cas++) {
+			long[] nbColisParTaille = genererGrandeEntree(aleatoire);
+			long volume = 0;
+			for (int taille = 1; taille < nbColisParTaille.length; taille++) {
+				volume += taille * nbColisParTaille[taille];
+			}
+			long borne = (volume + CAPACITE - 1) / CAPACITE;
+
+			// Appel méthode
+			long debut = System.nanoTime();
+			ResultatSolveur resultatGlouton = emballageService.calculerCartons(nbColisParTaille);
+			long dureeGlouton = System.nanoTime() - debut;
+			debut = System.nanoTime();
+			ResultatSolveur resultatExact = emballageServiceExact.calculerCartons(nbColisParTaille);
+			long dureeExact = System.nanoTime() - debut;
+
+			// Vértifications
+			String entree = decrire(nbColisParTaille);
+			verifierCartons(entree, nbColisParTaille, resultatGlouton);
+			verifierCartons(entree, nbColisParTaille, resultatExact);
+			assertTrue(entree, resultatExact.isOptimalProuve());
+			assertTrue(entree, resultatExact.getNbCartons() >= borne);
+			assertTrue(entree, resultatGlouton.getBorneInferieure() >= borne);
+			long optimum = resultatExact.getNbCartons();
+			long ecart = resultatGlouton.getNbCartons() - optimum;
+			assertTrue(entree + " : écart " + ecart, ecart >= 0 && ecart <= ECART_RELATIF_MAX_GRANDE_ENTREE * optimum);
+			glouton.enregistrer(ecart, optimum, dureeGlouton);
+			gloutonBorne.enregistrer(resultatGlouton.getNbCartons() - borne, borne, dureeGlouton);
+			exact.enregistrer(optimum - borne, borne, dureeExact);
+		}
+		logger.info(glouton);
+		logger.info(gloutonBorne);
+		logger.info(exact);
+		assertTrue(glouton.toString(), glouton.getEcartRelatifMoyen() <= ECART_RELATIF_MOYEN_MAX_GRANDE_ENTREE);
+		assertTrue(glouton.toString(), glouton.getPartNonNuls() <= PART_MAX_NON_OPTIMALES_GRANDE_ENTREE);
+	}
+
+	/**
+	 * Petite entrée : tailles uniformes, quelques tailles seulement, grands colis,
+	 * ou pièges connus de l'algorithme glouton complétés au hasard
+	 */
+	private static long[] genererPetiteEntree(Random aleatoire, int cas) {
+		long[] nbColisParTaille = new long[CAPACITE + 1];
+		int nbColis = 1 + aleatoire.nextInt(NB_COLIS_MAX_PETITE_ENTREE);
+		switch (cas % 4) {
+		case 0:
+			for (int i = 0; i < nbColis; i++) {
+				nbColisParTaille[1 + aleatoire.nextInt(9)]++;
+			}
+			break;
+		case 1:
+			int[] tailles = { 1 + aleatoire.nextInt(9), 1 + aleatoire.nextInt(9), 1 + aleatoire.nextInt(9) };
+			for (int i = 0; i < nbColis; i++) {
+				nbColisParTaille[tailles[aleatoire.nextInt(tailles.length)]]++;
+			}
+			break;
+		case 2:
+			for (int i = 0; i < nbColis; i++) {
+				nbColisParTaille[3 + aleatoire.nextInt(5)]++;
+			}
+			break;
+		default:
+			String[] pieges = { "2222288888", "81127272", "34443254", "163841689525773" };
+			String piege = pieges[aleatoire.nextInt(pieges.length)];
+			for (int i = 0; i < piege.length() && i < NB_COLIS_MAX_PETITE_ENTREE; i++) {
+				nbColisParTaille[piege.charAt(i) - '0']++;
+			}
+			for (int i = piege.length(); i < nbColis; i++) {
+				nbColisParTaille[1 + aleatoire.nextInt(9)]++;
+			}
+		}
+		return nbColisParTaille;
+	}
+
+	/**
+	 * Entrée dont les colis remplissent exactement nbCartons cartons : chaque
+	 * carton est découpé au hasard en tailles de 1 à 9. Les découpages sont tirés
+	 * pour quelques cartons puis multipliés
+	 */
+	private static long[] genererEntreeParfaite(Random aleatoire, long nbCartons) {
+		long[] nbColisParTaille = new long[CAPACITE + 1];
+		int nbDecoupages = (int) Math.min(nbCartons, 1 + aleatoire.nextInt(8));
+		for (int d = 0; d < nbDecoupages; d++) {
+			long nbCartonsDecoupage = nbCartons / nbDecoupages + (d < nbCartons % nbDecoupages ? 1 : 0);
+			int reste = CAPACITE;
+			while (reste > 0) {
+				int taille = 1 + aleatoire.nextInt(Math.min(reste, CAPACITE - 1));
+				nbColisParTaille[taille] += nbCartonsDecoupage;
+				reste -= taille;
+			}
+		}
+		return nbColisParTaille;
+	}
+
+	/**
+	 * Grande entrée : de 1 à 9 tailles présentes, jusqu'à un milliard de colis par
+	 * taille
+	 */
+	private static long[] genererGrandeEntree(Random aleatoire) {
+		long[] nbColisParTaille = new long[CAPACITE + 1];
+		int nbTailles = 1 + aleatoire.nextInt(9);
+		for (int i = 0; i < nbTailles; i++) {
+			long maximum = aleatoire.nextBoolean() ? 1000 : 1000000000;
+			nbColisParTaille[1 + aleatoire.nextInt(9)] += 1 + (long) (aleatoire.nextDouble() * maximum);
+		}
+		return nbColisParTaille;
+	}
+
+	/**
+	 * Vérifie que les cartons contiennent exactement les colis de l'entrée sans
+	 * dépasser leur capacité
+	 */
+	private static void verifierCartons(String entree, long[] nbColisParTaille, ResultatSolveur resultat) {
+		Combinaisons combinaisons = resultat.getCombinaisons();
+		long[] nbColisEmballes = new long[nbColisParTaille.length];
+		for (int combinaison : resultat.getCombinaisonsUtilisees()) {
+			assertTrue(entree, combinaisons.getTotal(combinaison) <= combinaisons.getCapacite(combinaison));
+			for (int i = combinaisons.getDebutTailles(combinaison); i < combinaisons.getFinTailles(combinaison); i++) {
+				nbColisEmballes[combinaisons.getTaille(i)] += resultat.getNbCartons(combinaison)
+						* combinaisons.getFrequence(i);
+			}
+		}
+		assertTrue(entree, Arrays.equals(nbColisParTaille, nbColisEmballes));
+	}
+
+	/**
+	 * Nombre minimum de cartons par recherche exhaustive, colis par colis du plus
+	 * grand au plus petit. Indépendante des solveurs testés
+	 */
+	private static int nbCartonsOptimum(long[] nbColisParTaille) {
+		return nbCartonsOptimum(nbColisParTaille, CAPACITE);
+	}
+
+	/**
+	 * @param capacite
+	 *            capacité des cartons
+	 */
+	private static int nbCartonsOptimum(long[] nbColisParTaille, int capacite) {
+		int nbColis = 0;
+		int volume = 0;
+		for (int taille = 1; taille < nbColisParTaille.length; taille++) {
+			nbColis += nbColisParTaille[taille];
+			volume += taille * nbColisParTaille[taille];
+		}
+		int[] colis = new int[nbColis];
+		int i = 0;
+		for (int taille = nbColisParTaille.length - 1; taille > 0; taille--) {
+			for (long n = 0; n < nbColisParTaille[taille]; n++) {
+				colis[i++] = taille;
+			}
+		}
+		int borne = (volume + capacite - 1) / capacite;
+		return chercher(colis, capacite, 0, new int[nbColis], 0, nbColis, borne);
+	}
+
+	/**
+	 * @param remplissages
+	 *            remplissage des cartons ouverts
+	 * @param meilleur
+	 *            nombre de cartons de la meilleure solution connue
+	 * @return le nombre de cartons de la meilleure solution, au plus meilleur
+	 */
+	private static int chercher(int[] colis, int capacite, int indice, int[] remplissages, int nbCartons,
+			int meilleur, int borne) {
+		if (indice == colis.length) {
+			return nbCartons;
+		}
+		for (int c = 0; c < nbCartons && meilleur > borne; c++) {
+			if (remplissages[c] + colis[indice] > capacite || dejaEssaye(remplissages, c)) {
+				continue;
+			}
+			remplissages[c] += colis[indice];
+			meilleur = Math.min(meilleur,
+					chercher(colis, capacite, indice + 1, remplissages, nbCartons, meilleur, borne));
+			remplissages[c] -= colis[indice];
+		}
+		if (nbCartons + 1 < meilleur) {
+			remplissages[nbCartons] = colis[indice];
+			meilleur = Math.min(meilleur,
+					chercher(colis, capacite, indice + 1, remplissages, nbCartons + 1, meilleur, borne));
+			remplissages[nbCartons] = 0;
+		}
+		return meilleur;
+	}
+
+	/**
+	 * @return vrai si un carton précédent a le même remplissage : y mettre le colis
+	 *         donne les mêmes solutions
+	 */
+	private static boolean dejaEssaye(int[] remplissages, int carton) {
+		for (int c = 0; c < carton; c++) {
+			if (remplissages[c] == remplissages[carton]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String decrire(long[] nbColisParTaille) {
+		return "Entrée " + Arrays.toString(nbColisParTaille) + " (graine " + GRAINE + ")";
+	}
+
+	/**
+	 * Distribution des écarts au nombre de cartons de référence, et temps par
+	 * entrée
+	 */
+	private static final class StatistiquesEcarts {
+
+		/** Bornes supérieures des tranches d'écart relatif, la dernière est ouverte */
+		private static final double[] SEUILS = { 0, 0.001, 0.01, 0.05, 0.1, 0.25 };
+
+		private final String libelle;
+
+		/** Indice : tranche d'écart relatif. Valeur : nombre d'entrées */
+		private final long[] nbEntreesParTranche = new long[SEUILS.length + 1];
+
+		private long nbEntrees;
+
+		private long ecartMax;
+
+		private double ecartRelatifMax;
+
+		private double sommeEcartsRelatifs;
+
+		private long sommeNanos;
+
+		private long maxNanos;
+
+		StatistiquesEcarts(String libelle) {
+			this.libelle = libelle;
+		}
+
+		/**
+		 * @param ecart
+		 *            nombre de cartons en trop
+		 * @param reference
+		 *            nombre de cartons de référence
+		 * @param nanos
+		 *            durée de l'emballage
+		 */
+		void enregistrer(long ecart, long reference, long nanos) {
+			double ecartRelatif = reference == 0 ? 0 : (double) ecart / reference;
+			int tranche = 0;
+			while (tranche < SEUILS.length && ecartRelatif > SEUILS[tranche]) {
+				tranche++;
+			}
+			nbEntreesParTranche[tranche]++;
+			nbEntrees++;
+			ecartMax = Math.max(ecartMax, ecart);
+			ecartRelatifMax = Math.max(ecartRelatifMax, ecartRelatif);
+			sommeEcartsRelatifs += ecartRelatif;
+			sommeNanos += nanos;
+			maxNanos = Math.max(maxNanos, nanos);
+		}
+
+		/**
+		 * @return la part des entrées dont l'écart n'est pas nul
+		 */
+		double getPartNonNuls() {
+			return nbEntrees == 0 ? 0 : 1 - (double) nbEntreesParTranche[0] / nbEntrees;
+		}
+
+		double getEcartRelatifMoyen() {
+			return nbEntrees == 0 ? 0 : sommeEcartsRelatifs / nbEntrees;
+		}
+
+		/**
+		 * Exemple : "glouton / optimum : 2000 entrées, écarts {0 : 1870, <= 1 % :
+		 * 100, <= 25 % : 30}, écart max 5 cartons (19,9 %), moyen 0,21 %, 2,1 µs par
+		 * entrée, 180,0 µs au plus"
+		 */
+		@Override
+		public String toString() {
+			StringBuilder distribution = new StringBuilder();
+			for (int tranche = 0; tranche < nbEntreesParTranche.length; tranche++) {
+				if (nbEntreesParTranche[tranche] == 0) {
+					continue;
+				}
+				distribution.append(distribution.length() == 0 ? "" : ", ");
+				if (tranche == 0) {
+					distribution.append("0");
+				} else if (tranche < SEUILS.length) {
+					distribution.append(String.format("<= %s %%", 100 * SEUILS[tranche]));
+				} else {
+					distribution.append(String.format("> %s %%", 100 * SEUILS[SEUILS.length - 1]));
+				}
+				distribution.append(" : ").append(nbEntreesParTranche[tranche]);
+			}
+			return String.format(
+					"%s : %d entrées, écarts {%s}, écart max %d cartons (%.1f %%), moyen %.2f %%, "
+							+ "%.1f µs par entrée, %.1f µs au plus",
+					libelle, nbEntrees, distribution, ecartMax, 100 * ecartRelatifMax, 100 * getEcartRelatifMoyen(),
+					sommeNanos / 1e3 / Math.max(nbEntrees, 1), maxNanos / 1e3);
+		}
+	}
+
+}
@@ -0,0 +1,72 @@
+package sample.vsct.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Classe de test pour EmballageEnLigne
+ * @author Gaetan
+ *
+ */
+public class EmballageEnLigneTest {
+
+	@Test
+	// Pour chaque politique, tous les colis sont emballés sans dépasser la capacité
+	// ni le nombre de cartons ouverts, et jamais en moins de cartons que la borne
+	// inférieure
+	public final void testPolitiques() {
+		// Initialisation
+		int nbColis = 100000;
+		int[] colis = new int[nbColis];
+		long[] nbColisParTaille = new long[EmballageServiceImpl.TAILLE_CARTON_MAX + 1];
+		long volume = 0;
+		for (int i = 0; i < nbColis; i++) {
+			colis[i] = (int) Math.round(Math.random() * 9 + 0.5);
+			nbColisParTaille[colis[i]]++;
+			volume += colis[i];
+		}
+
+		for (PolitiqueEnLigne politique : PolitiqueEnLigne.values()) {
+			final long[] nbColisEmballes = new long[EmballageServiceImpl.TAILLE_CARTON_MAX + 1];
+			final boolean[] capaciteDepassee = new boolean[1];
+			EmballageEnLigne emballageEnLigne = new EmballageEnLigne(ConfigurationEmballage.DEFAUT, 3, politique, 8,
+					new EmballageEnLigne.Recepteur() {
+						@Override
+						public void recevoir(int[] tailles, int debut, int nb) {
+							int total = 0;
+							for (int i = debut; i < debut + nb; i++) {
+								nbColisEmballes[tailles[i]]++;
+								total += tailles[i];
+							}
+							capaciteDepassee[0] |= total > EmballageServiceImpl.TAILLE_CARTON_MAX;
+						}
+					});
+
+			// Appel méthode
+			for (int i = 0; i < nbColis; i++) {
+				emballageEnLigne.ajouter(colis[i]);
+				assertTrue(emballageEnLigne.getNbCartonsOuverts() <= 3);
+			}
+			emballageEnLigne.terminer();
+
+			// Vértifications
+			ResultatSolveur horsLigne = emballageEnLigne.calculerHorsLigne();
+			assertArrayEquals(nbColisParTaille, nbColisEmballes);
+			assertTrue(!capaciteDepassee[0]);
+			assertEquals(0, emballageEnLigne.getNbCartonsOuverts());
+			assertEquals(nbColis, emballageEnLigne.getNbColis());
+			assertTrue(emballageEnLigne.getNbCartons() >= horsLigne.getBorneInferieure());
+			assertEquals(emballageEnLigne.getNbCartons() - horsLigne.getNbCartons(),
+					emballageEnLigne.getEcartHorsLigne());
+			assertTrue(emballageEnLigne.getLatenceCentileMicros(99) <= emballageEnLigne.getLatenceMaxMicros());
+			assertEquals(volume / (double) (emballageEnLigne.getNbCartons() * EmballageServiceImpl.TAILLE_CARTON_MAX),
+					emballageEnLigne.getTauxRemplissage(), 1e-9);
+			assertTrue(emballageEnLigne.getLatenceMoyenneMicros() > 0);
+			assertTrue(emballageEnLigne.getLatenceMoyenneMicros() <= emballageEnLigne.getLatenceMaxMicros());
+		}
+	}
+
+}
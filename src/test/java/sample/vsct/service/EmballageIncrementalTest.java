@@ -0,0 +1,76 @@
+package sample.vsct.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import sample.vsct.exception.TailleColisException;
+
+/**
+ * Classe de test pour EmballageIncremental
+ * @author Gaetan
+ *
+ */
+public class EmballageIncrementalTest {
+
+	EmballageServiceImpl emballageService = new EmballageServiceImpl();
+
+	@Test
+	// Après chaque ajout ou retrait, l'emballage est celui de toute l'entrée
+	public final void testAjoutsRetraits() {
+		// Initialisation
+		EmballageIncremental emballageIncremental = new EmballageIncremental(emballageService);
+		StringBuilder entreeColis = new StringBuilder();
+
+		for (int i = 0; i < 2000; i++) {
+			// Appel méthode : un retrait de temps en temps
+			if (i % 5 == 4) {
+				int taille = entreeColis.charAt(0) - '0';
+				emballageIncremental.retirer(taille);
+				entreeColis.deleteCharAt(0);
+			} else {
+				int taille = (int) Math.round(Math.random() * 9 + 0.5);
+				emballageIncremental.ajouter(taille);
+				entreeColis.append(taille);
+			}
+
+			// Vértifications
+			ResultatSolveur attendu = emballageService.calculerCartons(entreeColis.toString());
+			assertEquals(attendu.getNbCartons(), emballageIncremental.getNbCartons());
+			assertArrayEquals(attendu.getNbCartonsParCombinaison(),
+					emballageIncremental.getResultat().getNbCartonsParCombinaison());
+			assertEquals(entreeColis.length(), emballageIncremental.getNbColis());
+		}
+	}
+
+	@Test
+	// Un ajout en masse invalide n'ajoute aucun colis
+	public final void testAjoutToutErreur() {
+		// Initialisation
+		EmballageIncremental emballageIncremental = new EmballageIncremental(emballageService);
+		emballageIncremental.ajouterTout("91554");
+
+		// Appel méthode
+		try {
+			emballageIncremental.ajouterTout("1230");
+			fail("TailleColisException attendue");
+		} catch (TailleColisException e) {
+			assertEquals(3, e.getPosition());
+		}
+
+		// Vértifications
+		assertEquals(5, emballageIncremental.getNbColis());
+		assertEquals(3, emballageIncremental.getNbCartons());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	// On ne peut pas retirer un colis absent
+	public final void testRetraitAbsent() {
+		EmballageIncremental emballageIncremental = new EmballageIncremental(emballageService);
+		emballageIncremental.ajouter(3);
+		emballageIncremental.retirer(4);
+	}
+
+}
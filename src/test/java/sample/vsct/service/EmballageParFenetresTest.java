@@ -0,0 +1,192 @@
+package sample.vsct.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Classe de test pour EmballageParFenetres
+ * @author Gaetan
+ *
+ */
+public class EmballageParFenetresTest {
+
+	private EmballageServiceImpl emballageService = new EmballageServiceImpl();
+
+	private final BlockingQueue<FenetreEmballage> fenetres = new LinkedBlockingQueue<FenetreEmballage>();
+
+	private final EmballageParFenetres.Recepteur recepteur = new EmballageParFenetres.Recepteur() {
+		@Override
+		public void recevoir(FenetreEmballage fenetre) {
+			fenetres.add(fenetre);
+		}
+	};
+
+	@Test
+	// Tous les colis ajoutés, depuis plusieurs threads, sont emballés une fois et
+	// une seule, fenêtre par fenêtre
+	public final void testTousLesColisEmballes() throws InterruptedException {
+		// Initialisation
+		final EmballageParFenetres emballage = new EmballageParFenetres(emballageService, 1000, 5, 0.8, 20,
+				recepteur);
+		final long[][] nbColisParThread = new long[4][EmballageServiceImpl.TAILLE_CARTON_MAX + 1];
+		Thread[] threads = new Thread[nbColisParThread.length];
+		for (int t = 0; t < threads.length; t++) {
+			final long[] nbColisParTaille = nbColisParThread[t];
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 20000; i++) {
+						int taille = (int) Math.round(Math.random() * 9 + 0.5);
+						emballage.ajouter(taille);
+						nbColisParTaille[taille]++;
+					}
+				}
+			};
+		}
+
+		// Appel méthode
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		emballage.close();
+
+		// Vértifications
+		long[] attendus = new long[EmballageServiceImpl.TAILLE_CARTON_MAX + 1];
+		for (long[] nbColisParTaille : nbColisParThread) {
+			for (int taille = 0; taille < attendus.length; taille++) {
+				attendus[taille] += nbColisParTaille[taille];
+			}
+		}
+		long[] emballes = new long[attendus.length];
+		long nbColisRecus = 0;
+		long numero = 0;
+		FenetreEmballage derniere = null;
+		for (FenetreEmballage fenetre : fenetres) {
+			assertEquals(numero++, fenetre.getNumero());
+			nbColisRecus += fenetre.getNbColisRecus();
+			ResultatSolveur resultat = fenetre.getResultat();
+			for (int combinaison : resultat.getCombinaisonsUtilisees()) {
+				for (int taille = 1; taille < emballes.length; taille++) {
+					emballes[taille] += resultat.getNbCartons(combinaison)
+							* resultat.getMultiplicite(combinaison, taille);
+				}
+			}
+			derniere = fenetre;
+		}
+		assertEquals(80000, nbColisRecus);
+		assertArrayEquals(attendus, emballes);
+		assertEquals(0, derniere.getNbColisRetenus());
+	}
+
+	@Test
+	// Les colis d'un carton peu rempli sont retenus pour la fenêtre suivante
+	public final void testColisRetenus() throws InterruptedException {
+		// Initialisation
+		EmballageParFenetres emballage = new EmballageParFenetres(emballageService, 4, 60000, 0.8, 60000,
+				recepteur);
+		try {
+			// Appel méthode
+			emballage.ajouterTout("9995");
+			FenetreEmballage premiere = fenetres.poll(10, TimeUnit.SECONDS);
+			emballage.ajouterTout("5119");
+			FenetreEmballage seconde = fenetres.poll(10, TimeUnit.SECONDS);
+
+			// Vértifications
+			assertNotNull(premiere);
+			assertEquals("9/9/9", premiere.getResultat().afficher(false));
+			assertEquals(1, premiere.getNbColisRetenus());
+			assertEquals(0.9, premiere.getTauxRemplissage(), 1e-9);
+			assertNotNull(seconde);
+			assertEquals(1, seconde.getNbColisReportes());
+			assertEquals("91/55", seconde.getResultat().afficher(false));
+			assertEquals(1, seconde.getNbColisRetenus());
+			assertEquals(4, seconde.getNbColisEmballes());
+			assertEquals(1.0, seconde.getTauxRemplissage(), 1e-9);
+		} finally {
+			emballage.close();
+		}
+	}
+
+	@Test
+	// Passé l'attente maximum, les colis retenus sont emballés même sans nouveau
+	// colis
+	public final void testAttenteMax() throws InterruptedException {
+		// Initialisation
+		EmballageParFenetres emballage = new EmballageParFenetres(emballageService, 1000, 10, 1, 100, recepteur);
+		try {
+			// Appel méthode
+			emballage.ajouter(5);
+			FenetreEmballage retenue = fenetres.poll(10, TimeUnit.SECONDS);
+			FenetreEmballage liberee = fenetres.poll(10, TimeUnit.SECONDS);
+
+			// Vértifications
+			assertNotNull(retenue);
+			assertEquals(1, retenue.getNbColisRetenus());
+			assertEquals(0, retenue.getResultat().getNbCartons());
+			assertNotNull(liberee);
+			assertEquals(0, liberee.getNbColisRecus());
+			assertEquals(1, liberee.getNbColisReportes());
+			assertEquals("5", liberee.getResultat().afficher(false));
+			assertTrue(liberee.getLatenceNanos() >= TimeUnit.MILLISECONDS.toNanos(100));
+		} finally {
+			emballage.close();
+		}
+	}
+
+	@Test
+	// Les colis d'une fenêtre dont l'emballage échoue sont reportés à la fenêtre
+	// suivante au lieu d'être perdus
+	public final void testEchecEmballage() throws InterruptedException {
+		// Initialisation
+		final CountDownLatch echec = new CountDownLatch(1);
+		EmballageServiceImpl emballageServiceDefaillant = new EmballageServiceImpl() {
+			@Override
+			ResultatSolveur resoudre(long[] nbColisParTaille) {
+				if (echec.getCount() > 0) {
+					echec.countDown();
+					throw new IllegalStateException("Échec simulé");
+				}
+				return super.resoudre(nbColisParTaille);
+			}
+		};
+		EmballageParFenetres emballage = new EmballageParFenetres(emballageServiceDefaillant, 4, 60000, 0, 60000,
+				recepteur);
+		try {
+			// Appel méthode
+			emballage.ajouterTout("9995");
+			assertTrue(echec.await(10, TimeUnit.SECONDS));
+			emballage.ajouterTout("5119");
+			FenetreEmballage fenetre = fenetres.poll(10, TimeUnit.SECONDS);
+
+			// Vértifications
+			assertNotNull(fenetre);
+			assertEquals(4, fenetre.getNbColisRecus());
+			assertEquals(4, fenetre.getNbColisReportes());
+			assertEquals(8, fenetre.getNbColisEmballes());
+			assertEquals(0, fenetre.getNbColisRetenus());
+		} finally {
+			emballage.close();
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	// On ne peut plus ajouter de colis après la fermeture
+	public final void testAjoutApresFermeture() {
+		EmballageParFenetres emballage = new EmballageParFenetres(emballageService, 10, 10, 0, 0, recepteur);
+		emballage.close();
+		emballage.ajouter(5);
+	}
+
+}
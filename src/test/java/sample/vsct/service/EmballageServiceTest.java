@@ -1,13 +1,36 @@
 package sample.vsct.service;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
-import java.util.Date;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.StringUtils;
 import org.junit.Test;
 
 import sample.vsct.exception.TailleColisException;
+import sample.vsct.lecture.RapportErreurs;
+import sample.vsct.mesure.InstantaneMesures;
+import sample.vsct.mesure.Mesures;
+import sample.vsct.mesure.MesuresEnMemoire;
+import sample.vsct.mesure.Phase;
 
 /**
  * Classe de test pour EmballageService
@@ -19,25 +42,31 @@ public class EmballageServiceTest {
 	// Normalement, on fait ici de l'IoC avec Spring Core par exemple.
 	EmballageService emballageService = new EmballageServiceImpl();
 
+	EmballageService emballageServiceExact = new EmballageServiceImpl(TypeSolveur.EXACT);
+
 	@Test
-	// Test pour pour un grand nombre de taille de colis choisies aléatoirement
+	// Test pour pour un grand nombre de taille de colis choisies aléatoirement. Les
+	// performances sont mesurées par les bancs d'essai JMH du module benchmarks
 	public final void testMonteeCharge1() {
 		// Initialisations
 		int nbColisEntree = 100000;
+		long volume = 0;
 		StringBuilder sb = new StringBuilder();
 		// Génère des chiffres entre 1 et 9
 		for (int i = 0; i < nbColisEntree; i++) {
-			sb.append(Math.round(Math.random() * 9 + 0.5)).toString();
+			long taille = Math.round(Math.random() * 9 + 0.5);
+			sb.append(taille);
+			volume += taille;
 		}
-		Long tempsAvantExecution = new Date().getTime();
 
 		// Appel méthode
-		emballageService.emballerCartons(sb.toString(), true);
+		String result = emballageService.emballerCartons(sb.toString(), true);
+		ResultatSolveur resultat = emballageService.calculerCartons(sb.toString());
 
-		// Temps de traitement de la méthode
-		Long tempsApresExecution = new Date().getTime();
-		Long tempsExecution = tempsApresExecution - tempsAvantExecution;
-		System.out.println("Le temps d'exécution est de " + tempsExecution.toString() + " ms");
+		// Vértifications
+		assertEquals(resultat.afficher(true), result);
+		assertEquals(volume, resultat.getVolume());
+		assertTrue(resultat.getNbCartons() >= resultat.getBorneInferieure());
 	}
 
 	@Test
@@ -49,15 +78,13 @@ public class EmballageServiceTest {
 		for (int i = 0; i < nbRepetitions; i++) {
 			sb.append("163841689525773");
 		}
-		Long tempsAvantExecution = new Date().getTime();
 
 		// Appel méthode
-		emballageService.emballerCartons(sb.toString(), true);
+		String result = emballageService.emballerCartons(sb.toString(), true);
 
-		// Temps de traitement de la méthode
-		Long tempsApresExecution = new Date().getTime();
-		Long tempsExecution = tempsApresExecution - tempsAvantExecution;
-		System.out.println("Le temps d'exécution est de " + tempsExecution.toString() + " ms");
+		// Vértifications : les combinaisons de l'entrée nominale, à grande échelle
+		assertEquals("91(10000000)/82(10000000)/73(20000000)/64(10000000)/55(10000000)/811(5000000)/8(5000000)/6(10000000)",
+				result);
 	}
 
 	@Test
@@ -158,12 +185,523 @@ public class EmballageServiceTest {
 		emballageService.emballerCartons(entreeColis, false);
 	}
 
-	// Vérifie qu'il y a les mêmes colis en entrée et en sortie
+	@Test
+	// Test nominal avec un fichier projeté en mémoire se terminant par une fin de ligne
+	public final void testFichier() throws IOException {
+		// Initialisation
+		String entreeColis = "163841689525773";
+		Integer nbOptimalCartons = 8;
+		Path fichierColis = Files.createTempFile("colis", ".txt");
+		Files.write(fichierColis, (entreeColis + "\n").getBytes(StandardCharsets.US_ASCII));
+
+		// Appel méthode
+		String result;
+		try {
+			result = emballageService.emballerCartons(fichierColis, false);
+		} finally {
+			Files.delete(fichierColis);
+		}
+
+		// Vértifications
+		assertTrue(nbCartons(result) == nbOptimalCartons);
+		assertTrue(verifieMemeNombreOccurenceEntreeSortie(entreeColis, result));
+		assertTrue(verifieTailleMaxCartons(result));
+	}
+
+	@Test
+	// Test nominal avec un flux
+	public final void testFlux() throws IOException {
+		// Initialisation
+		String entreeColis = "81127272";
+		Integer nbOptimalCartons = 3;
+
+		// Appel méthode
+		String result = emballageService.emballerCartons(
+				Channels.newChannel(new ByteArrayInputStream(entreeColis.getBytes(StandardCharsets.US_ASCII))),
+				false);
+
+		// Vértifications
+		assertTrue(nbCartons(result) == nbOptimalCartons);
+		assertTrue(verifieMemeNombreOccurenceEntreeSortie(entreeColis, result));
+		assertTrue(verifieTailleMaxCartons(result));
+	}
+
+	@Test(expected = TailleColisException.class)
+	// Test flux en erreur
+	public final void testFluxErreur() throws IOException {
+		// Initialisation
+		String entreeColis = "654@654";
+
+		// Appel méthode
+		emballageService.emballerCartons(
+				Channels.newChannel(new ByteArrayInputStream(entreeColis.getBytes(StandardCharsets.US_ASCII))),
+				false);
+	}
+
+	@Test
+	// Les sorties texte (StringBuilder ou Writer) et canal donnent le même résultat
+	// que la chaine, y compris lorsque les cartons identiques dépassent la taille
+	// d'un bloc d'écriture
+	public final void testSorties() throws IOException {
+		// Initialisation
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 100000; i++) {
+			sb.append("9155");
+		}
+		sb.append("163841689525773");
+		String entreeColis = sb.toString();
+
+		for (boolean affichageOptimisee : new boolean[] { false, true }) {
+			// Appel méthode
+			String result = emballageService.emballerCartons(entreeColis, affichageOptimisee);
+			StringBuilder sortieTexte = new StringBuilder();
+			emballageService.emballerCartons(entreeColis, affichageOptimisee, sortieTexte);
+			ByteArrayOutputStream sortieOctets = new ByteArrayOutputStream();
+			emballageService.emballerCartons(entreeColis, affichageOptimisee, Channels.newChannel(sortieOctets));
+			StringWriter sortieWriter = new StringWriter();
+			emballageService.emballerCartons(entreeColis, affichageOptimisee, sortieWriter);
+
+			// Vértifications
+			assertEquals(result, sortieTexte.toString());
+			assertEquals(result, sortieWriter.toString());
+			assertEquals(result, new String(sortieOctets.toByteArray(), StandardCharsets.US_ASCII));
+		}
+	}
+
+	@Test
+	// Le solveur exact trouve l'optimum là où l'algorithme glouton ne le trouve pas
+	// (532/44/44/3)
+	public final void testSolveurExact() {
+		// Initialisation
+		String entreeColis = "34443254";
+		Integer nbOptimalCartons = 3;
+
+		// Appel méthode
+		String result = emballageServiceExact.emballerCartons(entreeColis, false);
+		ResultatSolveur resultat = emballageServiceExact.calculerCartons(entreeColis);
+
+		// Vértifications
+		assertTrue(nbCartons(result) == nbOptimalCartons);
+		assertTrue(verifieMemeNombreOccurenceEntreeSortie(entreeColis, result));
+		assertTrue(verifieTailleMaxCartons(result));
+		assertEquals(3, resultat.getNbCartons());
+		assertTrue(resultat.isOptimalProuve());
+	}
+
+	@Test
+	// Le solveur exact retrouve les résultats des pièges de l'algorithme glouton
+	public final void testSolveurExactPieges() {
+		String[] entreesColis = { "163841689525773", "2222288888", "81127272", "1" };
+		int[] nbOptimauxCartons = { 8, 5, 3, 1 };
+		for (int i = 0; i < entreesColis.length; i++) {
+			// Appel méthode
+			String result = emballageServiceExact.emballerCartons(entreesColis[i], false);
+
+			// Vértifications
+			assertTrue(nbCartons(result) == nbOptimauxCartons[i]);
+			assertTrue(verifieMemeNombreOccurenceEntreeSortie(entreesColis[i], result));
+			assertTrue(verifieTailleMaxCartons(result));
+		}
+	}
+
+	@Test
+	// Sur un grand nombre de colis, le solveur exact prouve l'optimalité et ne fait
+	// jamais moins bien que l'algorithme glouton
+	public final void testSolveurExactGrandNombre() {
+		// Initialisation
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 1000000; i++) {
+			sb.append(Math.round(Math.random() * 9 + 0.5));
+		}
+		String entreeColis = sb.toString();
+
+		// Appel méthode
+		ResultatSolveur resultatExact = emballageServiceExact.calculerCartons(entreeColis);
+		ResultatSolveur resultatGlouton = emballageService.calculerCartons(entreeColis);
+
+		// Vértifications
+		assertTrue(resultatExact.isOptimalProuve());
+		assertTrue(resultatExact.getNbCartons() <= resultatGlouton.getNbCartons());
+		assertTrue(resultatGlouton.getEcart() >= 0);
+	}
+
+	@Test
+	// Le résultat numérique décrit les mêmes cartons que l'affichage, sans avoir à
+	// relire le texte
+	public final void testResultatNumerique() {
+		// Initialisation
+		String entreeColis = "163841689525773";
+		long[] nbColisParTaille = new long[EmballageServiceImpl.TAILLE_CARTON_MAX + 1];
+		for (int i = 0; i < entreeColis.length(); i++) {
+			nbColisParTaille[entreeColis.charAt(i) - '0']++;
+		}
+
+		// Appel méthode
+		ResultatSolveur resultat = emballageService.calculerCartons(entreeColis);
+
+		// Vértifications
+		assertEquals(8, resultat.getNbCartons());
+		assertEquals(75, resultat.getVolume());
+		assertEquals(75.0 / 80, resultat.getTauxRemplissage(), 1e-9);
+		long nbCartons = 0;
+		for (int combinaison : resultat.getCombinaisonsUtilisees()) {
+			nbCartons += resultat.getNbCartons(combinaison);
+			for (int taille = 1; taille <= EmballageServiceImpl.TAILLE_COLIS_MAX; taille++) {
+				nbColisParTaille[taille] -= resultat.getNbCartons(combinaison)
+						* resultat.getMultiplicite(combinaison, taille);
+			}
+		}
+		assertEquals(resultat.getNbCartons(), nbCartons);
+		assertArrayEquals(new long[EmballageServiceImpl.TAILLE_CARTON_MAX + 1], nbColisParTaille);
+		assertEquals(emballageService.emballerCartons(entreeColis, false), resultat.afficher(false));
+	}
+
+	@Test
+	// Capacité configurable avec la table des combinaisons, au format délimité
+	public final void testCapaciteConfigurable() {
+		// Initialisation
+		EmballageService emballageService15 = new EmballageServiceImpl(
+				new ConfigurationEmballage(15, 1, 14, ','));
+		String entreeColis = "14,1,7,8,10,5";
+
+		// Appel méthode
+		String result = emballageService15.emballerCartons(entreeColis, false);
+
+		// Vértifications
+		assertTrue(nbCartons(result) == 3);
+		assertTrue(verifieCartonsDelimites(entreeColis, result, 15));
+		assertTrue(result.contains("14+1"));
+	}
+
+	@Test
+	// Grande capacité : les combinaisons sont générées à la demande (la durée est
+	// mesurée par EmballageGrandeCapaciteBenchmark)
+	public final void testGrandeCapacite() {
+		// Initialisation
+		EmballageService emballageService1000 = new EmballageServiceImpl(
+				new ConfigurationEmballage(1000, 1, 999, ','));
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 100000; i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append(Math.round(Math.random() * 999 + 0.5));
+		}
+		String entreeColis = sb.toString();
+
+		// Appel méthode
+		String result = emballageService1000.emballerCartons(entreeColis, false);
+		ResultatSolveur resultat = emballageService1000.calculerCartons(entreeColis);
+
+		// Vértifications
+		assertTrue(verifieCartonsDelimites(entreeColis, result, 1000));
+		assertEquals(resultat.getNbCartons(), (long) nbCartons(result));
+		assertTrue(resultat.getNbCartons() >= resultat.getBorneInferieure());
+	}
+
+	@Test
+	// Erreurs du format délimité
+	public final void testFormatDelimiteErreurs() {
+		EmballageService emballageService50 = new EmballageServiceImpl(new ConfigurationEmballage(50, 2, 40, ';'));
+		String[] entreesColis = { "12;;3", ";12", "12;", "12;41", "12;1", "12;3a" };
+		long[] positionsErreur = { 3, 0, 2, 3, 3, 4 };
+		for (int i = 0; i < entreesColis.length; i++) {
+			try {
+				// Appel méthode
+				emballageService50.emballerCartons(entreesColis[i], false);
+				assertTrue(false);
+			} catch (TailleColisException e) {
+				// Vértifications
+				assertEquals(positionsErreur[i], e.getPosition());
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	// Le solveur exact ne gère pas les grandes capacités
+	public final void testSolveurExactGrandeCapacite() {
+		new EmballageServiceImpl(new ConfigurationEmballage(50, 1, 50, ','), TypeSolveur.EXACT);
+	}
+
+	@Test
+	// Un lot de commandes donne les mêmes cartons que des appels successifs, dans
+	// l'ordre des commandes, et une commande invalide n'interrompt pas le lot
+	public final void testBatch() {
+		// Initialisation
+		List<String> commandes = new ArrayList<String>();
+		for (int i = 0; i < 1000; i++) {
+			StringBuilder sb = new StringBuilder();
+			for (int j = 0; j < 50 + i; j++) {
+				sb.append(Math.round(Math.random() * 9 + 0.5));
+			}
+			commandes.add(i % 100 == 7 ? sb.append('0').toString() : sb.toString());
+		}
+		ExecutorService executeur = Executors.newFixedThreadPool(4);
+
+		try {
+			// Appel méthode
+			List<ResultatCommande> resultats = emballageService.emballerCartonsBatch(commandes, true);
+			Iterator<ResultatCommande> resultatsFlux = emballageService.emballerCartonsBatch(commandes.iterator(),
+					true, executeur);
+
+			// Vértifications
+			assertEquals(commandes.size(), resultats.size());
+			for (int i = 0; i < commandes.size(); i++) {
+				ResultatCommande resultat = resultats.get(i);
+				ResultatCommande resultatFlux = resultatsFlux.next();
+				assertEquals(i, resultat.getIndice());
+				assertEquals(i, resultatFlux.getIndice());
+				assertEquals(i % 100 == 7, resultat.isEnErreur());
+				assertEquals(i % 100 == 7, resultatFlux.isEnErreur());
+				if (resultat.isEnErreur()) {
+					assertEquals(50 + i, resultat.getErreur().getPosition());
+				} else {
+					String attendu = emballageService.emballerCartons(commandes.get(i), true);
+					assertEquals(attendu, resultat.getCartons());
+					assertEquals(attendu, resultatFlux.getCartons());
+				}
+			}
+			assertTrue(!resultatsFlux.hasNext());
+		} finally {
+			executeur.shutdown();
+		}
+	}
+
+	@Test
+	// Une commande absente est en erreur sans interrompre le lot
+	public final void testBatchCommandeNull() {
+		// Initialisation
+		List<String> commandes = Arrays.asList("9551", null, "91");
+
+		// Appel méthode
+		List<ResultatCommande> resultats = emballageService.emballerCartonsBatch(commandes, false);
+		Iterator<ResultatCommande> resultatsFlux = emballageService.emballerCartonsBatch(commandes.iterator(),
+				false, ForkJoinPool.commonPool());
+
+		// Vértifications
+		for (int i = 0; i < commandes.size(); i++) {
+			ResultatCommande resultat = resultats.get(i);
+			ResultatCommande resultatFlux = resultatsFlux.next();
+			assertEquals(i == 1, resultat.isEnErreur());
+			assertEquals(i == 1, resultatFlux.isEnErreur());
+			assertEquals(resultat.getCartons(), resultatFlux.getCartons());
+		}
+		assertEquals("91/55", resultats.get(0).getCartons());
+		assertEquals("91", resultats.get(2).getCartons());
+		assertTrue(!resultatsFlux.hasNext());
+	}
+
+	@Test
+	// Les mesures reçoivent la durée de chaque phase, la taille des commandes et
+	// les erreurs
+	public final void testMesures() throws IOException {
+		// Initialisation
+		MesuresEnMemoire mesures = new MesuresEnMemoire();
+		EmballageService emballageServiceMesure = new EmballageServiceImpl(ConfigurationEmballage.DEFAUT,
+				TypeSolveur.GLOUTON, mesures);
+
+		// Appel méthode
+		emballageServiceMesure.emballerCartons("163841689525773", false);
+		emballageServiceMesure.emballerCartons("9551", true, new StringBuilder());
+		try {
+			emballageServiceMesure.emballerCartons("12a4", false);
+		} catch (TailleColisException e) {
+			// Erreur comptée par les mesures
+		}
+		InstantaneMesures instantane = mesures.instantane();
+
+		// Vértifications
+		assertEquals(2, instantane.getNbCommandes());
+		assertEquals(19, instantane.getNbColis());
+		assertEquals(10, instantane.getNbCartons());
+		assertEquals(1, instantane.getNbErreurs());
+		assertEquals(2, instantane.getNbMesures(Phase.COMPTAGE));
+		assertEquals(2, instantane.getNbMesures(Phase.EMBALLAGE));
+		assertEquals(2, instantane.getNbMesures(Phase.AFFICHAGE));
+		assertEquals(2, instantane.getNbMesures(Phase.TOTAL));
+		assertTrue(instantane.getCentileMicros(Phase.TOTAL, 50) <= instantane.getMaxMicros(Phase.TOTAL));
+		assertTrue(instantane.getMaxMicros(Phase.TOTAL) >= instantane.getMaxMicros(Phase.EMBALLAGE));
+	}
+
+	@Test
+	// Les commandes ayant les mêmes colis, dans n'importe quel ordre, sont lues
+	// dans le cache, borné au nombre d'emballages demandé
+	public final void testCache() {
+		// Initialisation
+		EmballageServiceImpl emballageServiceCache = new EmballageServiceImpl(ConfigurationEmballage.DEFAUT,
+				TypeSolveur.GLOUTON, Mesures.AUCUNE, 1);
+		CacheResultats cache = emballageServiceCache.getCache();
+
+		// Appel méthode
+		String cartons = emballageServiceCache.emballerCartons("9551", true);
+		String cartonsMemeProfil = emballageServiceCache.emballerCartons("5195", true);
+		emballageServiceCache.emballerCartons("163841689525773", false);
+		String cartonsEvinces = emballageServiceCache.emballerCartons("9551", true);
+
+		// Vértifications
+		assertEquals("91(1)/55(1)", cartons);
+		assertEquals(cartons, cartonsMemeProfil);
+		assertEquals(cartons, cartonsEvinces);
+		assertEquals(1, cache.getNbSucces());
+		assertEquals(3, cache.getNbEchecs());
+		assertEquals(2, cache.getNbEvictions());
+		assertEquals(1, cache.getTaille());
+	}
+
+	@Test
+	// Un emballage avec budget rapporte la stratégie, la durée du calcul et si
+	// l'optimum est prouvé, sans passer par le cache
+	public final void testBudget() {
+		// Initialisation
+		EmballageServiceImpl emballageServiceRecherche = new EmballageServiceImpl(ConfigurationEmballage.DEFAUT,
+				TypeSolveur.RECHERCHE, Mesures.AUCUNE, 10);
+		EmballageService emballageServiceGrandsCartons = new EmballageServiceImpl(
+				new ConfigurationEmballage(50, 1, 50, ','));
+
+		// Appel méthode
+		ResultatStrategie recherche = emballageServiceRecherche.calculerCartons("23344445", 1, TimeUnit.SECONDS);
+		ResultatStrategie glouton = emballageService.calculerCartons("23344445", 1, TimeUnit.SECONDS);
+		ResultatStrategie grandsCartons = emballageServiceGrandsCartons
+				.calculerCartons(new long[] { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+						0, 0, 0, 0, 0, 0, 3 }, 1, TimeUnit.MILLISECONDS);
+
+		// Vértifications
+		assertEquals("recherche", recherche.getStrategie());
+		assertEquals(3, recherche.getResultat().getNbCartons());
+		assertTrue(recherche.isOptimalProuve());
+		assertFalse(recherche.isBudgetEpuise());
+		assertTrue(recherche.getDureeNanos() < recherche.getBudgetNanos());
+		assertEquals(0, emballageServiceRecherche.getCache().getTaille());
+		assertEquals("glouton", glouton.getStrategie());
+		assertEquals(4, glouton.getResultat().getNbCartons());
+		assertFalse(glouton.isOptimalProuve());
+		assertEquals("premier-ajustement", grandsCartons.getStrategie());
+		assertEquals(3, grandsCartons.getResultat().getNbCartons());
+	}
+
+	@Test
+	// Une stratégie spécifique peut être branchée derrière le service
+	public final void testStrategieSpecifique() {
+		// Initialisation
+		StrategieEmballage strategieUnCartonParColis = new StrategieEmballage() {
+			@Override
+			public String getNom() {
+				return "un-carton-par-colis";
+			}
+
+			@Override
+			public ResultatSolveur resoudre(long[] nbColisParTaille, TableCombinaisons tableCombinaisons,
+					long budgetNanos, Mesures mesures) {
+				long[] nbCartonsParCombinaison = new long[tableCombinaisons.getNbCombinaisons()];
+				for (int combinaison = 0; combinaison < tableCombinaisons.getNbCombinaisons(); combinaison++) {
+					int debut = tableCombinaisons.getDebutTailles(combinaison);
+					if (tableCombinaisons.getFinTailles(combinaison) == debut + 1
+							&& tableCombinaisons.getFrequence(debut) == 1) {
+						nbCartonsParCombinaison[combinaison] = nbColisParTaille[tableCombinaisons.getTaille(debut)];
+					}
+				}
+				return new ResultatSolveur(tableCombinaisons, nbCartonsParCombinaison, 0);
+			}
+		};
+		EmballageServiceImpl emballageServiceSpecifique = new EmballageServiceImpl(ConfigurationEmballage.DEFAUT,
+				strategieUnCartonParColis, Mesures.AUCUNE, 0);
+
+		// Appel méthode
+		String cartons = emballageServiceSpecifique.emballerCartons("9551", false);
+		ResultatStrategie resultat = emballageServiceSpecifique.calculerCartons("9551", 1, TimeUnit.SECONDS);
+
+		// Vértifications
+		assertEquals("9/5/5/1", cartons);
+		assertEquals("un-carton-par-colis", resultat.getStrategie());
+		assertEquals(4, resultat.getResultat().getNbCartons());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	// Le budget d'une commande ne peut pas être négatif
+	public final void testBudgetNegatif() {
+		emballageService.calculerCartons("9551", -1, TimeUnit.MILLISECONDS);
+	}
+
+	@Test
+	// Les colis déjà comptés par taille donnent les mêmes cartons que la liste des
+	// colis, quel que soit leur nombre
+	public final void testQuantites() {
+		// Initialisation
+		long[] nbColisParTaille = new long[EmballageServiceImpl.TAILLE_CARTON_MAX + 1];
+		nbColisParTaille[5] = 1000000000000L;
+
+		// Appel méthode et vérifications
+		assertEquals(emballageService.emballerCartons("163841689525773", true),
+				emballageService.emballerQuantites("1x2,3x2,4x1,5x2,6x2,7x2,8x2,9x1,2x1", true));
+		assertEquals("91(500)/9(999999500)", emballageService.emballerQuantites("9x1000000000,1x500", true));
+		assertEquals("55(500000000000)", emballageService.emballerCartons(nbColisParTaille, true));
+		assertEquals(500000000000L, emballageServiceExact.calculerCartons(nbColisParTaille).getNbCartons());
+		assertEquals("91/55", emballageService.emballerCartons(new long[] { 0, 1, 0, 0, 0, 2, 0, 0, 0, 1 }, false));
+	}
+
+	@Test
+	// En mode tolérant, les colis invalides sont ignorés et notés, et les colis
+	// valides sont emballés comme s'ils étaient seuls
+	public final void testModeTolerant() throws IOException {
+		// Initialisation
+		RapportErreurs rapportChaine = new RapportErreurs();
+		RapportErreurs rapportFichier = new RapportErreurs();
+		Path fichier = Files.createTempFile("colis", ".txt");
+		try {
+			Files.write(fichier, "9@551\n0".getBytes(StandardCharsets.US_ASCII));
+			ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+
+			// Appel méthode
+			ResultatSolveur resultat = emballageService.calculerCartons("9@55 1", rapportChaine);
+			emballageService.emballerCartons(fichier, false, Channels.newChannel(sortie), rapportFichier);
+
+			// Vértifications
+			assertEquals(emballageService.calculerCartons("9551").afficher(false), resultat.afficher(false));
+			assertArrayEquals(new long[] { 1, 4 }, rapportChaine.getPositions());
+			assertEquals("91/55", new String(sortie.toByteArray(), StandardCharsets.US_ASCII));
+			assertArrayEquals(new long[] { 1, 6 }, rapportFichier.getPositions());
+		} finally {
+			Files.delete(fichier);
+		}
+	}
+
+	// Vérifie, au format délimité, qu'il y a les mêmes colis en entrée et en sortie
+	// et qu'aucun carton ne dépasse la capacité
+	private boolean verifieCartonsDelimites(String entree, String sortie, int capacite) {
+		int[] nbColisParTaille = new int[capacite + 1];
+		for (String taille : entree.split(",")) {
+			nbColisParTaille[Integer.parseInt(taille)]++;
+		}
+		boolean verificationOk = true;
+		for (String carton : sortie.split("/")) {
+			int somme = 0;
+			for (String taille : carton.split("\\+")) {
+				somme += Integer.parseInt(taille);
+				nbColisParTaille[Integer.parseInt(taille)]--;
+			}
+			verificationOk = verificationOk && somme <= capacite;
+		}
+		for (int taille = 0; taille <= capacite; taille++) {
+			verificationOk = verificationOk && nbColisParTaille[taille] == 0;
+		}
+		return verificationOk;
+	}
+
+	// Vérifie qu'il y a les mêmes colis en entrée et en sortie : l'entrée et la
+	// sortie sont parcourues une seule fois, pour toutes les tailles
 	private boolean verifieMemeNombreOccurenceEntreeSortie(String entree, String sortie) {
+		int[] nbColisParTaille = new int[EmballageServiceImpl.TAILLE_COLIS_MAX + 1];
+		for (int i = 0; i < entree.length(); i++) {
+			nbColisParTaille[entree.charAt(i) - '0']++;
+		}
+		for (int i = 0; i < sortie.length(); i++) {
+			if (sortie.charAt(i) != '/') {
+				nbColisParTaille[sortie.charAt(i) - '0']--;
+			}
+		}
 		boolean verificationOk = true;
-		for (int i = 1; i < EmballageServiceImpl.TAILLE_COLIS_MAX; i++) {
-			verificationOk = verificationOk && StringUtils.countMatches(entree,
-					Integer.valueOf(i).toString()) == StringUtils.countMatches(sortie, Integer.valueOf(i).toString());
+		for (int taille = 1; taille < nbColisParTaille.length; taille++) {
+			verificationOk = verificationOk && nbColisParTaille[taille] == 0;
 		}
 		return verificationOk;
 	}
@@ -0,0 +1,109 @@
+package sample.vsct.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import sample.vsct.mesure.Mesures;
+
+/**
+ * Classe de test pour StrategieRecherche
+ * @author Gaetan
+ *
+ */
+public class StrategieRechercheTest {
+
+	private final TableCombinaisons tableCombinaisons = TableCombinaisons.pour(10);
+
+	private final StrategieRecherche strategieRecherche = new StrategieRecherche();
+
+	private final StrategieGloutonne strategieGloutonne = new StrategieGloutonne();
+
+	@Test
+	// La recherche déjoue les pièges de l'algorithme glouton
+	public final void testPiegeGlouton() {
+		// Initialisation
+		long[] nbColisParTaille = { 0, 0, 1, 2, 4, 1, 0, 0, 0, 0, 0 };
+		long[] piegeMilliards = { 0, 0, 362619764, 0, 0, 670, 0, 320149454, 787, 97, 0 };
+
+		// Appel méthode
+		ResultatSolveur glouton = strategieGloutonne.resoudre(nbColisParTaille, tableCombinaisons,
+				StrategieEmballage.SANS_LIMITE, Mesures.AUCUNE);
+		ResultatSolveur recherche = strategieRecherche.resoudre(nbColisParTaille, tableCombinaisons,
+				StrategieEmballage.SANS_LIMITE, Mesures.AUCUNE);
+		ResultatSolveur rechercheMilliards = strategieRecherche.resoudre(piegeMilliards, tableCombinaisons,
+				StrategieEmballage.SANS_LIMITE, Mesures.AUCUNE);
+
+		// Vértifications
+		assertEquals("532/44/44/3", glouton.afficher(false));
+		assertEquals("442/433/54", recherche.afficher(false));
+		assertTrue(recherche.isOptimalProuve());
+		// Sur des milliards de colis, la recherche se rapproche de l'optimum sans
+		// forcément l'atteindre
+		long nbCartonsGlouton = strategieGloutonne
+				.resoudre(piegeMilliards, tableCombinaisons, 0, Mesures.AUCUNE).getNbCartons();
+		long nbCartonsExact = SolveurExact.resoudre(piegeMilliards, tableCombinaisons).getNbCartons();
+		assertTrue(rechercheMilliards.getNbCartons() < nbCartonsGlouton);
+		assertTrue(rechercheMilliards.getNbCartons() <= nbCartonsExact * 1.01);
+	}
+
+	@Test
+	// La recherche n'utilise jamais plus de cartons que l'algorithme glouton, ni
+	// moins que le solveur exact, et emballe tous les colis
+	public final void testJamaisPireQueGlouton() {
+		// Initialisation
+		Random aleatoire = new Random(20161018);
+		for (int cas = 0; cas < 300; cas++) {
+			long[] nbColisParTaille = new long[11];
+			for (int taille = 1; taille <= 9; taille++) {
+				nbColisParTaille[taille] = aleatoire.nextBoolean() ? aleatoire.nextInt(50) : 0;
+			}
+
+			// Appel méthode
+			ResultatSolveur recherche = strategieRecherche.resoudre(nbColisParTaille, tableCombinaisons,
+					TimeUnit.MILLISECONDS.toNanos(1), Mesures.AUCUNE);
+
+			// Vértifications
+			assertTrue(recherche.getNbCartons() <= strategieGloutonne
+					.resoudre(nbColisParTaille, tableCombinaisons, 0, Mesures.AUCUNE).getNbCartons());
+			assertTrue(recherche.getNbCartons() >= SolveurExact.resoudre(nbColisParTaille, tableCombinaisons)
+					.getNbCartons());
+			long[] emballes = new long[nbColisParTaille.length];
+			for (int combinaison : recherche.getCombinaisonsUtilisees()) {
+				for (int taille = 1; taille < emballes.length; taille++) {
+					emballes[taille] += recherche.getNbCartons(combinaison)
+							* recherche.getMultiplicite(combinaison, taille);
+				}
+			}
+			assertEquals(Arrays.toString(nbColisParTaille), Arrays.toString(emballes));
+		}
+	}
+
+	@Test
+	// Sans budget, la recherche rend la solution gloutonne sans la prouver
+	public final void testBudgetNul() {
+		// Initialisation
+		long[] nbColisParTaille = { 0, 0, 1, 2, 4, 1, 0, 0, 0, 0, 0 };
+
+		// Appel méthode
+		ResultatSolveur recherche = strategieRecherche.resoudre(nbColisParTaille, tableCombinaisons, 0,
+				Mesures.AUCUNE);
+
+		// Vértifications
+		assertEquals(4, recherche.getNbCartons());
+		assertFalse(recherche.isOptimalProuve());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	// Le nombre d'essais sans amélioration doit être positif
+	public final void testNbEssaisInvalide() {
+		new StrategieRecherche(0);
+	}
+
+}